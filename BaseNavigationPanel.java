@@ -4,11 +4,12 @@ import java.awt.*;
 import javax.swing.JPanel;
 
 @SuppressWarnings("serial")
-public class BaseNavigationPanel extends JPanel {
+public class BaseNavigationPanel extends JPanel implements GameCanvas.Layers {
 	/* BaseNavigationPanel:
 	 * Author: Anuraag Bharadwaj
 	 * Year: 2016 
 	 * Super Class: JPanel
+	 * Interfaces: GameCanvas.Layers
 	 * Purpose: Provides the base navigation for Pong.
 	 * Displays two options for the player to select from 
 	 * Player vs Player or Player vs Computer for each of the appropriate
@@ -21,19 +22,34 @@ public class BaseNavigationPanel extends JPanel {
 	 * BaseNagivationPanel(): Creates a BaseNavigationPanel with selected
 	 * set to 0 by default
 	 * paintComponent(Graphics g): Overrides JPanel.paintComponent(Graphics g)
-	 * Draws in text and figure indicating current option
+	 * Calls paintStatic and paintDynamic to draw in text and figure
+	 * indicating current option
+	 * 
+	 * void paintStatic(Graphics g): Draws the borders and text
+	 * 
+	 * int paintDynamic(Graphics g, Rectangle[] regions): Draws the figure
+	 * indicating the current option
 	*/
 	
 	//selected has values 0 or 1, 0 corresponds to PvP and 1 to PvE
 	public int selected; 
+	//Fonts of the menu, created on the first paint and reused afterwards
+	private Font font;
+	private Font font2;
+	//Corners of the triangle pointing to the selected option
+	private static final int[] markerX = {260,260,280};
+	private final int[] markerY = new int[3];
+	//Regions reported by paintDynamic when painted through Swing (unused)
+	private final Rectangle[] swingRegions = {new Rectangle()};
 	
 	public BaseNavigationPanel(){
 		//Constructor: No parameters
 		//Creates a JPanel with selected set to 0 (PvP) and 
-		//sets its size to 801x480
+		//sets its size to the size of the field
 		super();
 		selected = 0;
-		this.setPreferredSize(new Dimension(801,480));
+		this.setPreferredSize(new Dimension(Simulator.fieldWidth,Simulator.fieldHeight));
+		this.setBackground(Color.white);
 	}
 	
 	@Override
@@ -47,19 +63,31 @@ public class BaseNavigationPanel extends JPanel {
 		 */
 		//Calls the JPanel's paintComponent
 		super.paintComponent(g);
-		
-		//Creates the white background and top and bottom borders
 		g.setColor(Color.black);
-		this.setBackground(Color.white);
-		for(int i = 0;i<3;i++){
-			g.drawLine(0, i, 801, i);
-			g.drawLine(0, 480-i, 801, 480-i);
+		paintStatic(g);
+		paintDynamic(g, swingRegions);
+	}
+	
+	@Override
+	public void paintStatic(Graphics g){
+		/*paintStatic(Graphics g)
+		 * Draws what doesn't change on the base navigation screen: the
+		 * borders and the text.
+		 */
+		//Creates the top and bottom borders
+		int width = Simulator.fieldWidth;
+		int height = Simulator.fieldHeight;
+		for(int i = 0;i<Simulator.borderWidth;i++){
+			g.drawLine(0, i, width, i);
+			g.drawLine(0, height-i, width, height-i);
 		}
 		
 		//Creates two fonts with the same font name but different sizes 
 		//and in the bold style
-		Font font = new Font(g.getFont().getFontName(),Font.BOLD,24);
-		Font font2 = new Font(g.getFont().getFontName(),Font.BOLD,48);
+		if (font == null){
+			font = new Font(g.getFont().getFontName(),Font.BOLD,24);
+			font2 = new Font(g.getFont().getFontName(),Font.BOLD,48);
+		}
 		g.setFont(font2);
 		
 		//Prints the words for the base navigation
@@ -67,11 +95,21 @@ public class BaseNavigationPanel extends JPanel {
 		g.setFont(font);
 		g.drawString("Player v Player", 300, 275);
 		g.drawString("Player v Comp", 300, 335);
-		
+	}
+	
+	@Override
+	public int paintDynamic(Graphics g, Rectangle[] regions){
+		/*paintDynamic(Graphics g, Rectangle[] regions)
+		 * Draws the triangle pointing to the selected option. The region
+		 * reported covers both options.
+		 */
 		//Draws the triangle that points to the selected option
-		int[] markerX = {260,260,280};
-		int[] markerY = {258+60*selected,278+60*selected,268+60*selected};
+		markerY[0] = 258+60*selected;
+		markerY[1] = 278+60*selected;
+		markerY[2] = 268+60*selected;
 		g.fillPolygon(markerX, markerY, 3);
+		regions[0].setBounds(259, 257, 23, 83);
+		return 1;
 	}
 
 }
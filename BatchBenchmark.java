@@ -0,0 +1,115 @@
+package pong;
+
+public class BatchBenchmark {
+	/*BatchBenchmark:
+	 * Purpose: Compares the throughput of stepping K matches with one
+	 * Simulator each (the scalar path) against stepping them with a
+	 * single BatchSimulator (see @pong.BatchSimulator), and checks that
+	 * both end up with exactly the same states.
+	 * Every match starts from MatchRunner.seededState and its keys change
+	 * every 32 updates following a fixed pattern, so both paths see
+	 * the same inputs.
+	 *
+	 * Includes:
+	 * void main(String[] args): Runs the comparison.
+	 * Arguments (all optional): matches, ticks, rounds, warmup
+	 */
+
+	static int inputsFor(int k, long tick){
+		//Key mask of match k at the given update
+		long h = (k*0x9E3779B97F4A7C15L)^((tick>>5)*0xC2B2AE3D27D4EB4FL);
+		h ^= h>>>29;
+		return (int)(h & 15);
+	}
+
+	static long runScalar(Simulator[] simulators, long ticks, int[] inputs){
+		//Steps each simulator ticks times, returns the elapsed nanoseconds
+		boolean[] done = new boolean[simulators.length];
+		long start = System.nanoTime();
+		for (long t = 0;t<ticks;t++){
+			for (int k = 0;k<simulators.length;k++){
+				inputs[k] = inputsFor(k, t);
+			}
+			for (int k = 0;k<simulators.length;k++){
+				if (!done[k]){
+					done[k] = simulators[k].step(inputs[k]);
+				}
+			}
+		}
+		return System.nanoTime()-start;
+	}
+
+	static long runBatch(BatchSimulator batch, long ticks, int[] inputs){
+		//Steps the batch ticks times, returns the elapsed nanoseconds
+		long start = System.nanoTime();
+		for (long t = 0;t<ticks;t++){
+			for (int k = 0;k<batch.size;k++){
+				inputs[k] = inputsFor(k, t);
+			}
+			batch.step(inputs);
+		}
+		return System.nanoTime()-start;
+	}
+
+	public static void main(String[] args){
+		/*main(String[] args)
+		 * Runs both paths for warmup rounds that only let the JIT compile
+		 * them (checked but not reported), then for rounds measured rounds,
+		 * and prints match updates per second for each measured round and
+		 * for all of them together.
+		 */
+		int matches = args.length > 0 ? Integer.parseInt(args[0]) : 4096;
+		long ticks = args.length > 1 ? Long.parseLong(args[1]) : 2000;
+		int rounds = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+		int warmup = args.length > 3 ? Integer.parseInt(args[3]) : 5;
+		int[] inputs = new int[matches];
+		long scalarTotal = 0;
+		long batchTotal = 0;
+
+		for (int round = -warmup;round<rounds;round++){
+			Simulator[] simulators = new Simulator[matches];
+			BatchSimulator batch = new BatchSimulator(matches);
+			for (int k = 0;k<matches;k++){
+				GameState state = MatchRunner.seededState(MatchRunner.matchSeed(round, k));
+				simulators[k] = new Simulator(state);
+				batch.load(k, state);
+			}
+
+			long scalarNanos = runScalar(simulators, ticks, inputs);
+			long batchNanos = runBatch(batch, ticks, inputs);
+
+			//Both paths have to agree on every match
+			GameState check = new GameState();
+			for (int k = 0;k<matches;k++){
+				batch.store(k, check);
+				GameState expected = simulators[k].state;
+				if (check.ball[0] != expected.ball[0] || check.ball[1] != expected.ball[1]
+						|| check.ballDirection != expected.ballDirection
+						|| check.ballCos != expected.ballCos
+						|| check.ballSin != expected.ballSin
+						|| check.ballSpeed != expected.ballSpeed
+						|| check.paddleCenters[0] != expected.paddleCenters[0]
+						|| check.paddleCenters[1] != expected.paddleCenters[1]
+						|| check.playerScores[0] != expected.playerScores[0]
+						|| check.playerScores[1] != expected.playerScores[1]){
+					throw new IllegalStateException("Batch and scalar paths differ on match " + k);
+				}
+			}
+
+			if (round < 0){
+				continue;
+			}
+			scalarTotal += scalarNanos;
+			batchTotal += batchNanos;
+			double updates = (double)matches*ticks;
+			System.out.printf("round %d: scalar %.3e updates/s, batch %.3e updates/s (x%.2f)%n",
+					round, updates/(scalarNanos/1e9), updates/(batchNanos/1e9),
+					(double)scalarNanos/batchNanos);
+		}
+		double updates = (double)matches*ticks*rounds;
+		System.out.printf("%d matches, %d ticks, %d rounds after %d warm up: scalar %.3e updates/s, "
+				+ "batch %.3e updates/s (x%.2f)%n", matches, ticks, rounds, warmup,
+				updates/(scalarTotal/1e9), updates/(batchTotal/1e9), (double)scalarTotal/batchTotal);
+	}
+
+}
@@ -0,0 +1,301 @@
+package pong;
+
+public class BatchSimulator {
+	/*BatchSimulator:
+	 * Purpose: Plays many Player vs Player matches in lockstep. Instead of
+	 * one GameState object per match, the state of match k is stored at
+	 * index k of flat primitive arrays (ballX[k], ballY[k], ...), so a
+	 * single loop over the arrays advances every match by one update.
+	 * Each update follows exactly the same arithmetic as
+	 * Simulator.step (see @pong.Simulator), so the states stay identical
+	 * to stepping a Simulator per match with the same inputs.
+	 * Matches that are over are left untouched by later steps.
+	 *
+	 * Includes:
+	 * BatchSimulator(int size): Creates size brand new matches
+	 *
+	 * void step(int[] inputs): Advances every match that isn't over by one
+	 * update. inputs[k] is the key mask (see Simulator.UP etc.) of match k.
+	 *
+	 * void step(int[] inputs, int from, int to): Same for matches from to
+	 * to-1 only. Disjoint ranges may be stepped by different threads.
+	 *
+	 * void load(int k, GameState state): Sets match k to the given state
+	 *
+	 * void store(int k, GameState state): Copies match k into the given state
+	 *
+	 * int running(): Returns how many matches are not over yet
+	 */
+
+	public final int size; //Number of matches
+	public final double[] ballX; //Column of the ball's center
+	public final double[] ballY; //Row of the ball's center
+	public final double[] ballDirection; //See GameState.ballDirection
+	public final double[] ballCos; //Cosine of ballDirection
+	public final double[] ballSin; //Sine of ballDirection
+	public final double[] ballSpeed; //Distance travelled by ball per update
+	public final double[] leftPaddle; //Row of the left paddle's center
+	public final double[] rightPaddle; //Row of the right paddle's center
+	public final int[] leftScore;
+	public final int[] rightScore;
+	public final long[] tick; //Updates played by each match
+	public final boolean[] done; //Whether each match is over
+	//Matches left to the second pass of step, each range of matches
+	//using its own part so that ranges can be stepped on different threads
+	private final int[] rare;
+
+	//Slope and intercept of the 30 to 60 degree deflection law
+	//(see Simulator.updateBall) for the left and right paddles
+	private static final double leftM = (Math.PI/3-Math.PI/6)/(0.5-Simulator.paddleCenterTolerance);
+	private static final double leftB = Math.PI/3-leftM/2;
+	private static final double rightM = (2*Math.PI/3-5*Math.PI/6)/(0.5-Simulator.paddleCenterTolerance);
+	private static final double rightB = 2*Math.PI/3-rightM/2;
+	//Cosine and sine of the direction of a serve
+	private static final double serveCos = Math.cos(Math.PI);
+	private static final double serveSin = Math.sin(Math.PI);
+
+	public BatchSimulator(int size){
+		//Constructor: int size
+		//Creates size matches all at their starting state
+		this.size = size;
+		ballX = new double[size];
+		ballY = new double[size];
+		ballDirection = new double[size];
+		ballCos = new double[size];
+		ballSin = new double[size];
+		ballSpeed = new double[size];
+		leftPaddle = new double[size];
+		rightPaddle = new double[size];
+		leftScore = new int[size];
+		rightScore = new int[size];
+		tick = new long[size];
+		done = new boolean[size];
+		rare = new int[size];
+		GameState start = new GameState();
+		for (int k = 0;k<size;k++){
+			load(k, start);
+		}
+	}
+
+	public void load(int k, GameState state){
+		/*load(int k, GameState state)
+		 * Sets match k to a copy of state
+		 */
+		ballX[k] = state.ball[0];
+		ballY[k] = state.ball[1];
+		ballDirection[k] = state.ballDirection;
+		ballCos[k] = state.ballCos;
+		ballSin[k] = state.ballSin;
+		ballSpeed[k] = state.ballSpeed;
+		leftPaddle[k] = state.paddleCenters[0];
+		rightPaddle[k] = state.paddleCenters[1];
+		leftScore[k] = state.playerScores[0];
+		rightScore[k] = state.playerScores[1];
+		tick[k] = state.tick;
+		done[k] = false;
+	}
+
+	public void store(int k, GameState state){
+		/*store(int k, GameState state)
+		 * Copies match k into state
+		 */
+		state.ball[0] = ballX[k];
+		state.ball[1] = ballY[k];
+		state.ballDirection = ballDirection[k];
+		state.ballCos = ballCos[k];
+		state.ballSin = ballSin[k];
+		state.ballSpeed = ballSpeed[k];
+		state.paddleCenters[0] = leftPaddle[k];
+		state.paddleCenters[1] = rightPaddle[k];
+		state.playerScores[0] = leftScore[k];
+		state.playerScores[1] = rightScore[k];
+		state.tick = tick[k];
+	}
+
+	public int running(){
+		/*running()
+		 * Returns the number of matches that are not over
+		 */
+		int count = 0;
+		for (int k = 0;k<size;k++){
+			if (!done[k]){
+				count++;
+			}
+		}
+		return count;
+	}
+
+	public void step(int[] inputs){
+		//Advances every match that isn't over by one update
+		step(inputs, 0, size);
+	}
+
+	public void step(int[] inputs, int from, int to){
+		/*step(int[] inputs, int from, int to)
+		 * Advances every match from from to to-1 that isn't over by one
+		 * update, in the same order as Simulator.step: ball, paddles, then ball speed.
+		 * Done in two passes. The first plays the common update of every
+		 * match, the ball flying straight and the paddles moving, with a
+		 * single rarely taken branch per match: matches that are over and
+		 * updates that are more than that (a paddle touches the ball, the
+		 * ball meets a border or leaves the field, one in about a hundred)
+		 * leave it, the latter being listed. The second pass plays only
+		 * those with the full update (see stepMatch), so the deflection
+		 * arithmetic and trigonometry are only done for a paddle hit.
+		 */
+		final double r = Simulator.ballRadius;
+		final double half = Simulator.paddleLength/2;
+		final int left = Simulator.paddleColumns[0];
+		final int right = Simulator.paddleColumns[1];
+		final double speed = Simulator.paddleSpeed;
+		final int width = Simulator.fieldWidth;
+		final int height = Simulator.fieldHeight;
+		final int top = Simulator.borderWidth;
+		final int bottom = height-top;
+		final int[] rare = this.rare;
+
+		int rareEnd = from; //Matches of the range needing the second pass are rare[from..rareEnd-1]
+		for (int k = from;k<to;k++){
+			double x = ballX[k];
+			double y = ballY[k];
+			double cos = ballCos[k];
+			double sin = ballSin[k];
+			double v = ballSpeed[k];
+			double p0 = leftPaddle[k];
+			double p1 = rightPaddle[k];
+
+			//Whether the update is more than the common one: the match is
+			//over (it is skipped) or a paddle touches the ball (tested as in
+			//Simulator.updateBall, column first as it rarely passes), the
+			//ball meets a border or leaves the field (left to the second pass)
+			double next = x+v*cos-r;
+			double newX = x+v*cos;
+			double newY = y+v*sin;
+			if (done[k] || (next<=left && next>=left-v && y>=p0-half && y<=p0+half)
+					|| (next>=right-v && next<=right && y>=p1-half && y<=p1+half)
+					|| newY-r<=top || newY+r>=bottom || newX<0 || newX>width){
+				rare[rareEnd] = k;
+				rareEnd += done[k] ? 0 : 1;
+				continue;
+			}
+
+			//Paddles, moved only while they stay on screen (the keys,
+			//different in every match, scale the move instead of being
+			//tested, the screen tests almost always pass)
+			int keys = inputs[k];
+			double newP1 = p1-(p1>half ? (keys/Simulator.UP & 1)*speed : 0);
+			newP1 += newP1<height-half ? (keys/Simulator.DOWN & 1)*speed : 0;
+			double newP0 = p0-(p0>half ? (keys/Simulator.W & 1)*speed : 0);
+			newP0 += newP0<height-half ? (keys/Simulator.S & 1)*speed : 0;
+			ballX[k] = newX;
+			ballY[k] = newY;
+			ballSpeed[k] = v+(Simulator.maxBallSpeed-v)/Simulator.speedUpTicks;
+			leftPaddle[k] = newP0;
+			rightPaddle[k] = newP1;
+			tick[k]++;
+		}
+
+		for (int i = from;i<rareEnd;i++){
+			int k = rare[i];
+			stepMatch(k, inputs[k]);
+		}
+	}
+
+	private void stepMatch(int k, int keys){
+		/*stepMatch(int k, int keys)
+		 * Advances match k by one full update: paddle deflections with
+		 * their trigonometry, borders, points, paddles and ball speed
+		 */
+		final double r = Simulator.ballRadius;
+		final double half = Simulator.paddleLength/2;
+		final double length = Simulator.paddleLength;
+		final double tolerance = Simulator.paddleCenterTolerance;
+		final int left = Simulator.paddleColumns[0];
+		final int right = Simulator.paddleColumns[1];
+		final double speed = Simulator.paddleSpeed;
+		final int width = Simulator.fieldWidth;
+		final int height = Simulator.fieldHeight;
+		final int top = Simulator.borderWidth;
+		final int bottom = height-top;
+
+		double x = ballX[k];
+		double y = ballY[k];
+		double d = ballDirection[k];
+		double cos = ballCos[k];
+		double sin = ballSin[k];
+		double v = ballSpeed[k];
+		double p0 = leftPaddle[k];
+		double p1 = rightPaddle[k];
+
+		//Left paddle: next column inside the paddle's window and the
+		//ball's row within the paddle
+		double next = x+v*cos-r;
+		double lo = p0-half;
+		double hi = p0+half;
+		if ((next<=left) & (next>=left-v) & (y>=lo) & (y<=hi)){
+			double deflection = (y-((lo+hi)/2))/length;
+			double abs = Math.abs(deflection);
+			double angled = leftM*abs+leftB;
+			d = abs<tolerance ? -d+Math.PI : (deflection<0 ? -angled : angled);
+			cos = Math.cos(d);
+			sin = Math.sin(d);
+		}
+
+		//Right paddle, same test against the (possibly new) direction
+		next = x+v*cos-r;
+		lo = p1-half;
+		hi = p1+half;
+		if ((next<=right) & (next>=right-v) & (y>=lo) & (y<=hi)){
+			double deflection = (y-((lo+hi)/2))/length;
+			double abs = Math.abs(deflection);
+			double angled = rightM*abs+rightB;
+			d = abs<tolerance ? -d+Math.PI : (deflection<0 ? -angled : angled);
+			cos = Math.cos(d);
+			sin = Math.sin(d);
+		}
+
+		//Borders, negating the direction only flips the sine
+		double nextY = y+v*sin;
+		if ((nextY-r<=top) | (nextY+r>=bottom)){
+			d = -d;
+			sin = -sin;
+		}
+		x = x+v*cos;
+		y = y+v*sin;
+
+		//Points
+		if ((x<0) | (x>width)){
+			int s0 = leftScore[k]+(x<0 ? 0 : 1);
+			int s1 = rightScore[k]+(x<0 ? 1 : 0);
+			leftScore[k] = s0;
+			rightScore[k] = s1;
+			if ((s0==Simulator.winningScore) | (s1==Simulator.winningScore)){
+				done[k] = true;
+			}else{
+				x = width/2;
+				y = height/2;
+				d = Math.PI;
+				cos = serveCos;
+				sin = serveSin;
+				v = Simulator.serveBallSpeed;
+			}
+		}
+
+		//Paddles, moved only while they stay on screen
+		p1 -= ((keys & Simulator.UP) != 0) & (p1>half) ? speed : 0;
+		p1 += ((keys & Simulator.DOWN) != 0) & (p1<height-half) ? speed : 0;
+		p0 -= ((keys & Simulator.W) != 0) & (p0>half) ? speed : 0;
+		p0 += ((keys & Simulator.S) != 0) & (p0<height-half) ? speed : 0;
+
+		ballX[k] = x;
+		ballY[k] = y;
+		ballDirection[k] = d;
+		ballCos[k] = cos;
+		ballSin[k] = sin;
+		ballSpeed[k] = v+(Simulator.maxBallSpeed-v)/Simulator.speedUpTicks;
+		leftPaddle[k] = p0;
+		rightPaddle[k] = p1;
+		tick[k]++;
+	}
+
+}
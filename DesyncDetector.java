@@ -0,0 +1,502 @@
+package pong;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class DesyncDetector {
+	/*DesyncDetector:
+	 * Purpose: Proves that the same keys play the same match, on several
+	 * threads, JVMs or machines, or finds where they don't. A run plays
+	 * a seeded stream of matches: each starts from MatchRunner.seededState
+	 * and its keys change at random moments drawn from the match's seed.
+	 * After every update the state is chained into a StateHash (see
+	 * @pong.StateHash), and the trace of a run is its running value after
+	 * every update. Runs are compared by their traces: the first update
+	 * where they differ is the first one whose state differs, and the
+	 * state of each run at that update is then played again to report
+	 * the fields that differ, with their exact bits.
+	 * The engine played may be "double" (Simulator), "swept" (Simulator
+	 * with swept collisions, one update per step) or "fixed"
+	 * (FixedSimulator, see @pong.FixedSimulator). To check that a change
+	 * of Simulator.updateBall or updatePaddles plays exactly as before,
+	 * run the old and new classes side by side with jvms.
+	 *
+	 * Includes:
+	 * static class Run: One run of the stream, update by update
+	 *
+	 * long[] trace(int matches, long seed, String engine, List<Integer> lengths):
+	 * Plays a run and returns its trace
+	 *
+	 * long[] fields(long index, int matches, long seed, String engine):
+	 * Exact bits of every field of the state after the given update
+	 *
+	 * void main(String[] args): Modes:
+	 * threads [runs] [matches] [seed] [engine]: Plays runs at once on
+	 * their own threads and compares them
+	 * jvms java[@classpath],... [matches] [seed] [engine]: Plays a run in
+	 * a new JVM for each java (this JVM's if empty) with the classpath
+	 * given (this JVM's if none) and compares them
+	 * trace file [matches] [seed] [engine]: Writes the trace of a run
+	 * (as jvms does), e.g. to compare between machines
+	 * compare file file...: Compares traces written by trace
+	 * state index [matches] [seed] [engine]: Prints the bits of the state
+	 * after update index (as jvms does)
+	 */
+
+	//Names of the fields of a state, in the order of fields()
+	static final String[] FIELDS = {"ball x", "ball y", "ballDirection", "ballCos", "ballSin", "ballSpeed",
+			"left paddle", "right paddle", "left score", "right score", "tick"};
+	private static final int DOUBLE_FIELDS = 8; //The first fields are doubles
+
+	static final int MAGIC = 0x50444553; //"PDES"
+
+	static class Run {
+		/*Run:
+		 * Purpose: Plays the seeded stream of matches one update at a
+		 * time on one engine, chaining every state into its hash
+		 */
+		final int matches;
+		final long seed;
+		private final Simulator simulator; //Double engines, null for fixed
+		private final FixedSimulator fixed; //Fixed engine, null for the others
+		final StateHash hash = new StateHash();
+		final List<Integer> lengths = new ArrayList<>(); //Updates of each match played
+		int match = -1; //Match being played
+		long updates = 0; //Updates played over all matches
+		private SplittableRandom random;
+		private int keys;
+		private boolean over = true; //Whether the match being played has ended
+
+		Run(int matches, long seed, String engine){
+			//Constructor: int matches, long seed, String engine
+			//Creates a run of matches matches from seed on engine
+			this.matches = matches;
+			this.seed = seed;
+			if (engine.equals("fixed")){
+				simulator = null;
+				fixed = new FixedSimulator();
+			}else if (engine.equals("double") || engine.equals("swept")){
+				simulator = new Simulator();
+				simulator.setSweptTicks(engine.equals("swept") ? 1 : 0);
+				fixed = null;
+			}else{
+				throw new IllegalArgumentException("Unknown engine " + engine + ", expected double, swept or fixed");
+			}
+		}
+
+		long tick(){
+			//Updates played in the current match
+			return fixed != null ? fixed.tick : simulator.state.tick;
+		}
+
+		boolean next(){
+			/*next()
+			 * Plays the next update, starting the next match if the last
+			 * one has ended. Returns false once every match has ended.
+			 */
+			if (over || tick() >= MatchRunner.DEFAULT_MAX_TICKS){
+				if (match >= 0 && lengths.size() == match){
+					lengths.add((int)tick());
+				}
+				if (match+1 >= matches){
+					return false;
+				}
+				match++;
+				long matchSeed = MatchRunner.matchSeed(seed, match);
+				random = new SplittableRandom(matchSeed);
+				keys = 0;
+				GameState start = MatchRunner.seededState(matchSeed);
+				if (fixed != null){
+					fixed.load(start);
+				}else{
+					simulator.state.copyFrom(start);
+				}
+			}
+			if (random.nextInt(50) == 0){
+				keys = random.nextInt(16);
+			}
+			if (fixed != null){
+				over = fixed.step(keys);
+				hash.update(fixed);
+			}else{
+				over = simulator.step(keys);
+				hash.update(simulator.state);
+			}
+			updates++;
+			return true;
+		}
+
+		void store(GameState state){
+			//Copies the current state of the match into state
+			if (fixed != null){
+				fixed.store(state);
+			}else{
+				state.copyFrom(simulator.state);
+			}
+		}
+	}
+
+	public static long[] trace(int matches, long seed, String engine, List<Integer> lengths){
+		/*trace(int matches, long seed, String engine, List<Integer> lengths)
+		 * Plays a run and returns the running hash after each update.
+		 * The number of updates of each match is added to lengths.
+		 */
+		Run run = new Run(matches, seed, engine);
+		long[] trace = new long[1 << 16];
+		int size = 0;
+		while (run.next()){
+			if (size == trace.length){
+				trace = Arrays.copyOf(trace, size*2);
+			}
+			trace[size++] = run.hash.value();
+		}
+		lengths.addAll(run.lengths);
+		return Arrays.copyOf(trace, size);
+	}
+
+	public static long[] fields(long index, int matches, long seed, String engine){
+		/*fields(long index, int matches, long seed, String engine)
+		 * Plays a run up to update index (from 0) and returns the exact
+		 * bits of each field of the state after it, in the order of FIELDS
+		 */
+		Run run = new Run(matches, seed, engine);
+		while (run.updates <= index && run.next()){
+			//Plays up to index
+		}
+		GameState s = new GameState();
+		run.store(s);
+		return new long[] {Double.doubleToRawLongBits(s.ball[0]), Double.doubleToRawLongBits(s.ball[1]),
+				Double.doubleToRawLongBits(s.ballDirection), Double.doubleToRawLongBits(s.ballCos),
+				Double.doubleToRawLongBits(s.ballSin), Double.doubleToRawLongBits(s.ballSpeed),
+				Double.doubleToRawLongBits(s.paddleCenters[0]), Double.doubleToRawLongBits(s.paddleCenters[1]),
+				s.playerScores[0], s.playerScores[1], s.tick};
+	}
+
+	static long firstDifference(long[] a, long[] b){
+		//First update where two traces differ, -1 if they are the same
+		int n = Math.min(a.length, b.length);
+		for (int i = 0;i<n;i++){
+			if (a[i] != b[i]){
+				return i;
+			}
+		}
+		return a.length == b.length ? -1 : n;
+	}
+
+	static String where(long index, List<Integer> lengths){
+		//Match and tick of update index, given the lengths of the matches
+		long start = 0;
+		for (int m = 0;m<lengths.size();m++){
+			if (index < start+lengths.get(m)){
+				return "match " + m + ", tick " + (index-start+1);
+			}
+			start += lengths.get(m);
+		}
+		return "after the last match";
+	}
+
+	static String value(int field, long bits){
+		//A field's value and exact bits
+		if (field < DOUBLE_FIELDS){
+			return Double.longBitsToDouble(bits) + " (" + String.format("%016x", bits) + ")";
+		}
+		return Long.toString(bits);
+	}
+
+	static void printDifferences(String[] names, long[][] states){
+		//Prints each field that differs between the states of the runs named
+		boolean any = false;
+		for (int f = 0;f<FIELDS.length;f++){
+			boolean differs = false;
+			for (long[] state : states){
+				differs |= state[f] != states[0][f];
+			}
+			if (differs){
+				any = true;
+				System.out.println("  " + FIELDS[f] + ":");
+				for (int r = 0;r<states.length;r++){
+					System.out.println("    " + names[r] + ": " + value(f, states[r][f]));
+				}
+			}
+		}
+		if (!any){
+			System.out.println("  no field differs when played again: the runs aren't deterministic");
+		}
+	}
+
+	static boolean report(String[] names, long[][] traces, List<Integer> lengths, long[][] states, long index){
+		//Prints the outcome of a comparison, returns whether the runs agree.
+		//states are the fields of each run at index, null if not known.
+		if (index < 0){
+			System.out.printf("OK: %d runs played %d updates the same way (final hash %016x)%n",
+					names.length, traces[0].length, traces[0].length == 0 ? StateHash.SEED : traces[0][traces[0].length-1]);
+			return true;
+		}
+		System.out.println("DESYNC at update " + index + " (" + where(index, lengths) + ")");
+		for (int r = 0;r<names.length;r++){
+			System.out.println("  " + names[r] + ": " + traces[r].length + " updates"
+					+ (index < traces[r].length ? String.format(", hash %016x", traces[r][(int)index]) : ""));
+		}
+		if (states != null){
+			printDifferences(names, states);
+		}
+		return false;
+	}
+
+	static long earliest(long[][] traces){
+		//First update where any trace differs from the first, -1 if none
+		long index = -1;
+		for (int r = 1;r<traces.length;r++){
+			long i = firstDifference(traces[0], traces[r]);
+			if (i >= 0 && (index < 0 || i < index)){
+				index = i;
+			}
+		}
+		return index;
+	}
+
+	static boolean threads(int runs, final int matches, final long seed, final String engine)
+			throws InterruptedException, ExecutionException{
+		/*threads(int runs, int matches, long seed, String engine)
+		 * Plays runs runs at once on their own threads, compares them
+		 * and, if they differ, plays them again to the first difference.
+		 * Returns whether they agree.
+		 */
+		ExecutorService pool = Executors.newFixedThreadPool(runs);
+		try{
+			List<Future<long[]>> futures = new ArrayList<>();
+			final List<Integer> lengths = new ArrayList<>();
+			for (int r = 0;r<runs;r++){
+				final List<Integer> own = r == 0 ? lengths : new ArrayList<Integer>();
+				futures.add(pool.submit(() -> trace(matches, seed, engine, own)));
+			}
+			long[][] traces = new long[runs][];
+			String[] names = new String[runs];
+			for (int r = 0;r<runs;r++){
+				traces[r] = futures.get(r).get();
+				names[r] = "thread " + r;
+			}
+			final long index = earliest(traces);
+			long[][] states = null;
+			if (index >= 0){
+				List<Future<long[]>> replays = new ArrayList<>();
+				for (int r = 0;r<runs;r++){
+					replays.add(pool.submit(() -> fields(index, matches, seed, engine)));
+				}
+				states = new long[runs][];
+				for (int r = 0;r<runs;r++){
+					states[r] = replays.get(r).get();
+				}
+			}
+			return report(names, traces, lengths, states, index);
+		}finally{
+			pool.shutdown();
+		}
+	}
+
+	static List<String> command(String spec, String... args){
+		//Command running this class with args in the JVM of spec, java[@classpath]
+		int at = spec.indexOf('@');
+		String java = at < 0 ? spec : spec.substring(0, at);
+		String classpath = at < 0 ? System.getProperty("java.class.path") : spec.substring(at+1);
+		if (java.isEmpty()){
+			java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+		}
+		List<String> command = new ArrayList<>();
+		command.add(java);
+		if (System.getProperty("pong.rules") != null){
+			command.add("-Dpong.rules=" + System.getProperty("pong.rules"));
+		}
+		command.add("-cp");
+		command.add(classpath);
+		command.add(DesyncDetector.class.getName());
+		command.addAll(Arrays.asList(args));
+		return command;
+	}
+
+	static List<String> runChild(List<String> command) throws IOException, InterruptedException{
+		//Runs command, returns the lines it printed. Throws IOException if it fails.
+		Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+		List<String> lines = new ArrayList<>();
+		try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream(), "UTF-8"))){
+			for (String line = reader.readLine();line != null;line = reader.readLine()){
+				lines.add(line);
+			}
+		}
+		if (process.waitFor() != 0){
+			throw new IOException(String.join(" ", command) + " failed: " + String.join("\n", lines));
+		}
+		return lines;
+	}
+
+	static boolean jvms(String[] specs, int matches, long seed, String engine) throws IOException, InterruptedException{
+		/*jvms(String[] specs, int matches, long seed, String engine)
+		 * Writes a trace in a new JVM for each spec, compares them and, if
+		 * they differ, prints each JVM's state at the first difference.
+		 * Returns whether they agree.
+		 */
+		String[] files = new String[specs.length];
+		for (int r = 0;r<specs.length;r++){
+			File file = File.createTempFile("desync-" + r + "-", ".trace");
+			file.deleteOnExit();
+			files[r] = file.getPath();
+			runChild(command(specs[r], "trace", files[r], Integer.toString(matches), Long.toString(seed), engine));
+		}
+		long[][] traces = new long[specs.length][];
+		List<Integer> lengths = new ArrayList<>();
+		for (int r = 0;r<specs.length;r++){
+			traces[r] = readTrace(files[r], r == 0 ? lengths : new ArrayList<Integer>(), null);
+		}
+		long index = earliest(traces);
+		long[][] states = null;
+		if (index >= 0){
+			states = new long[specs.length][];
+			for (int r = 0;r<specs.length;r++){
+				List<String> lines = runChild(command(specs[r], "state", Long.toString(index),
+						Integer.toString(matches), Long.toString(seed), engine));
+				states[r] = new long[FIELDS.length];
+				for (int f = 0;f<FIELDS.length;f++){
+					states[r][f] = Long.parseUnsignedLong(lines.get(f).trim(), 16);
+				}
+			}
+		}
+		return report(specs, traces, lengths, states, index);
+	}
+
+	static void writeTrace(String path, int matches, long seed, String engine) throws IOException{
+		/*writeTrace(String path, int matches, long seed, String engine)
+		 * Plays a run and writes it to path: MAGIC, the rules fingerprint,
+		 * matches, seed, engine, the number of updates and the running hash
+		 * after each, the number of matches played and the length of each
+		 */
+		List<Integer> lengths = new ArrayList<>();
+		long[] trace = trace(matches, seed, engine, lengths);
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(path)))){
+			out.writeInt(MAGIC);
+			out.writeLong(Simulator.rules.fingerprint());
+			out.writeInt(matches);
+			out.writeLong(seed);
+			out.writeUTF(engine);
+			out.writeInt(trace.length);
+			for (long hash : trace){
+				out.writeLong(hash);
+			}
+			out.writeInt(lengths.size());
+			for (int length : lengths){
+				out.writeInt(length);
+			}
+		}
+	}
+
+	static long[] readTrace(String path, List<Integer> lengths, StringBuilder run) throws IOException{
+		//Reads a trace written by writeTrace, adding the lengths of its
+		//matches to lengths and describing the run in run (if not null)
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(path)))){
+			if (in.readInt() != MAGIC){
+				throw new IOException(path + " isn't a trace");
+			}
+			long rules = in.readLong();
+			int matches = in.readInt();
+			long seed = in.readLong();
+			String engine = in.readUTF();
+			if (run != null){
+				run.append(String.format("rules %016x, %d matches, seed %d, %s", rules, matches, seed, engine));
+			}
+			long[] trace = new long[in.readInt()];
+			for (int i = 0;i<trace.length;i++){
+				trace[i] = in.readLong();
+			}
+			int n = in.readInt();
+			for (int m = 0;m<n;m++){
+				lengths.add(in.readInt());
+			}
+			return trace;
+		}
+	}
+
+	static boolean compare(String[] paths) throws IOException{
+		/*compare(String[] paths)
+		 * Compares traces written by writeTrace, possibly on other
+		 * machines. Returns whether they agree.
+		 */
+		long[][] traces = new long[paths.length][];
+		List<Integer> lengths = new ArrayList<>();
+		String first = null;
+		for (int r = 0;r<paths.length;r++){
+			StringBuilder run = new StringBuilder();
+			traces[r] = readTrace(paths[r], r == 0 ? lengths : new ArrayList<Integer>(), run);
+			if (first == null){
+				first = run.toString();
+			}else if (!first.equals(run.toString())){
+				System.out.println("Not the same runs: " + first + " against " + run + " (" + paths[r] + ")");
+				return false;
+			}
+		}
+		long index = earliest(traces);
+		if (index >= 0){
+			System.out.println("(run \"DesyncDetector state " + index + " ...\" where each trace was written to see the fields)");
+		}
+		return report(paths, traces, lengths, null, index);
+	}
+
+	public static void main(String[] args) throws Exception{
+		/*main(String[] args)
+		 * Runs the mode given by args, exits with status 1 if runs differ
+		 */
+		String mode = args.length > 0 ? args[0] : "";
+		int matches = 50;
+		long seed = 2016;
+		String engine = "double";
+		//Every mode but compare takes [matches] [seed] [engine] after its first argument
+		if (args.length > 2 && !mode.equals("compare")){
+			matches = Integer.parseInt(args[2]);
+		}
+		if (args.length > 3 && !mode.equals("compare")){
+			seed = Long.parseLong(args[3]);
+		}
+		if (args.length > 4 && !mode.equals("compare")){
+			engine = args[4];
+		}
+		boolean agree = true;
+		if (mode.equals("threads")){
+			agree = threads(args.length > 1 ? Integer.parseInt(args[1]) : 4, matches, seed, engine);
+		}else if (mode.equals("jvms") && args.length > 1){
+			agree = jvms(args[1].split(",", -1), matches, seed, engine);
+		}else if (mode.equals("trace") && args.length > 1){
+			writeTrace(args[1], matches, seed, engine);
+		}else if (mode.equals("compare") && args.length > 2){
+			agree = compare(Arrays.copyOfRange(args, 1, args.length));
+		}else if (mode.equals("state") && args.length > 1){
+			for (long bits : fields(Long.parseLong(args[1]), matches, seed, engine)){
+				System.out.println(Long.toHexString(bits));
+			}
+		}else{
+			System.out.println("Usage: DesyncDetector threads [runs] [matches] [seed] [engine]");
+			System.out.println("       DesyncDetector jvms java[@classpath],... [matches] [seed] [engine]");
+			System.out.println("       DesyncDetector trace file [matches] [seed] [engine]");
+			System.out.println("       DesyncDetector compare file file...");
+			System.out.println("       DesyncDetector state index [matches] [seed] [engine]");
+			System.out.println("engine: double (default), swept or fixed");
+		}
+		if (!agree){
+			System.exit(1);
+		}
+	}
+
+}
@@ -4,14 +4,16 @@ import java.awt.Color;
 import java.awt.Dimension;
 import java.awt.Font;
 import java.awt.Graphics;
+import java.awt.Rectangle;
 import javax.swing.JPanel;
 
 @SuppressWarnings("serial")
-public class EndScreenPanel extends JPanel {
+public class EndScreenPanel extends JPanel implements GameCanvas.Layers {
 	/* EndScreenPanel:
 	 * Author: Anuraag Bharadwaj 
 	 * Year: 2016
 	 * Super Class: JPanel
+	 * Interfaces: GameCanvas.Layers
 	 * Purpose: End screen after game ends. Displays "Game Over"
 	 * at the top of the screen. Also, displays two options for 
 	 * the player: "Play Again" or "Quit"
@@ -24,19 +26,34 @@ public class EndScreenPanel extends JPanel {
 	 * 0 by default.
 	 * 
 	 * void paintComponent(Graphics g): Overrides JPanel.paintComponent(Graphics g)
-	 * Draws in text and figure to indicate current selection.
+	 * Calls paintStatic and paintDynamic to draw in text and figure
+	 * to indicate current selection.
+	 * 
+	 * void paintStatic(Graphics g): Draws the borders and text
+	 * 
+	 * int paintDynamic(Graphics g, Rectangle[] regions): Draws the figure
+	 * indicating the current option
 	*/
 
 	//selected has value of 0 or 1 for Play Again and Quit respectively
 	public int selected;
+	//Fonts of the menu, created on the first paint and reused afterwards
+	private Font font;
+	private Font font2;
+	//Corners of the triangle pointing to the selected option
+	private static final int[] markerX = {260,260,280};
+	private final int[] markerY = new int[3];
+	//Regions reported by paintDynamic when painted through Swing (unused)
+	private final Rectangle[] swingRegions = {new Rectangle()};
 	
 	public EndScreenPanel(){
 		//Constructor: No parameters
 		//Creates a JPanel with selected set to 0 (Play Again) and 
-		//sets its size to 801x480
+		//sets its size to the size of the field
 		super();
 		selected = 0;
-		this.setPreferredSize(new Dimension(801,480));
+		this.setPreferredSize(new Dimension(Simulator.fieldWidth,Simulator.fieldHeight));
+		this.setBackground(Color.white);
 	}
 	
 	@Override
@@ -51,18 +68,30 @@ public class EndScreenPanel extends JPanel {
 		
 		//Calls JPanel.paintComponent
 		super.paintComponent(g);
-		
-		//Creates the white background and top and bottom borders
 		g.setColor(Color.black);
-		this.setBackground(Color.white);
-		for(int i = 0;i<3;i++){
-			g.drawLine(0, i, 801, i);
-			g.drawLine(0, 480-i, 801, 480-i);
+		paintStatic(g);
+		paintDynamic(g, swingRegions);
+	}
+	
+	@Override
+	public void paintStatic(Graphics g){
+		/*paintStatic(Graphics g)
+		 * Draws what doesn't change on the end screen screen: the
+		 * borders and the text.
+		 */
+		//Creates the top and bottom borders
+		int width = Simulator.fieldWidth;
+		int height = Simulator.fieldHeight;
+		for(int i = 0;i<Simulator.borderWidth;i++){
+			g.drawLine(0, i, width, i);
+			g.drawLine(0, height-i, width, height-i);
 		}
 		
 		//Creates two font in bold with sizes of 24 and 18
-		Font font = new Font(g.getFont().getFontName(),Font.BOLD,24);
-		Font font2 = new Font(g.getFont().getFontName(),Font.BOLD,48);
+		if (font == null){
+			font = new Font(g.getFont().getFontName(),Font.BOLD,24);
+			font2 = new Font(g.getFont().getFontName(),Font.BOLD,48);
+		}
 		g.setFont(font2);
 		
 		//Draws in the texts in the appropriate locations
@@ -70,11 +99,21 @@ public class EndScreenPanel extends JPanel {
 		g.setFont(font);
 		g.drawString("Play Again?", 300, 275);
 		g.drawString("Quit", 300, 335);
-		
+	}
+	
+	@Override
+	public int paintDynamic(Graphics g, Rectangle[] regions){
+		/*paintDynamic(Graphics g, Rectangle[] regions)
+		 * Draws the triangle pointing to the selected option. The region
+		 * reported covers both options.
+		 */
 		//Draws the triangle that points to the selected option
-		int[] markerX = {260,260,280};
-		int[] markerY = {258+60*selected,278+60*selected,268+60*selected};
+		markerY[0] = 258+60*selected;
+		markerY[1] = 278+60*selected;
+		markerY[2] = 268+60*selected;
 		g.fillPolygon(markerX, markerY, 3);
+		regions[0].setBounds(259, 257, 23, 83);
+		return 1;
 	}
-	
+
 }
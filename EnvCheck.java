@@ -0,0 +1,80 @@
+package pong;
+
+public class EnvCheck {
+	/*EnvCheck:
+	 * Purpose: Checks that VectorPongEnv (see @pong.VectorPongEnv) plays
+	 * exactly like one PongEnv per environment: the same observations,
+	 * rewards and done flags at every step, episodes included. The
+	 * agents follow the ball with a simple policy read from their
+	 * observations, so the matches are played as a trained agent would.
+	 * How many environment steps per second both play is measured by
+	 * EnvBenchmark in benchmarks/.
+	 *
+	 * Includes:
+	 * void main(String[] args): Runs the check, exits with status 1 if it
+	 * fails. Arguments (all optional): environments (64), steps (20000),
+	 * seed
+	 */
+
+	static void follow(float[] observations, int[] actions, int from, int to){
+		//Moves each agent's paddle towards the ball's row
+		for (int k = from;k<to;k++){
+			int at = k*PongEnv.OBSERVATION_SIZE;
+			float gap = observations[at+1]-observations[at+5];
+			actions[k] = gap < -0.02f ? PaddleController.UP : gap > 0.02f ? PaddleController.DOWN
+					: PaddleController.STAY;
+		}
+	}
+
+	static boolean check(int size, int steps, long seed){
+		//Plays size environments both ways for steps steps and compares them
+		VectorPongEnv vector = new VectorPongEnv(size, seed, 3000);
+		PongEnv[] scalar = new PongEnv[size];
+		long[] episodes = new long[size];
+		int[] actions = new int[size];
+		float[] observations = new float[size*PongEnv.OBSERVATION_SIZE];
+		for (int k = 0;k<size;k++){
+			scalar[k] = new PongEnv(null, 3000);
+			System.arraycopy(scalar[k].reset(VectorPongEnv.episodeSeed(seed, k, episodes[k]++)), 0,
+					observations, k*PongEnv.OBSERVATION_SIZE, PongEnv.OBSERVATION_SIZE);
+		}
+		for (int t = 0;t<steps;t++){
+			follow(observations, actions, 0, size);
+			vector.step(actions);
+			for (int k = 0;k<size;k++){
+				PongEnv env = scalar[k];
+				boolean done = env.step(actions[k]);
+				float reward = env.reward();
+				float[] observation = done ? env.reset(VectorPongEnv.episodeSeed(seed, k, episodes[k]++))
+						: env.observation;
+				int at = k*PongEnv.OBSERVATION_SIZE;
+				System.arraycopy(observation, 0, observations, at, PongEnv.OBSERVATION_SIZE);
+				boolean same = done == vector.dones[k] && reward == vector.rewards[k];
+				for (int i = 0;i<PongEnv.OBSERVATION_SIZE;i++){
+					same &= observation[i] == vector.observations[at+i];
+				}
+				if (!same){
+					System.out.printf("FAIL: environment %d differs at step %d%n", k, t);
+					return false;
+				}
+			}
+		}
+		System.out.printf("Check: %d environments, %d steps, %d episodes, same as PongEnv%n",
+				size, steps, vector.episodes());
+		return true;
+	}
+
+	public static void main(String[] args){
+		/*main(String[] args)
+		 * Plays the environments both ways and prints the result
+		 */
+		int size = args.length > 0 ? Integer.parseInt(args[0]) : 64;
+		int steps = args.length > 1 ? Integer.parseInt(args[1]) : 20000;
+		long seed = args.length > 2 ? Long.parseLong(args[2]) : 1;
+		if (!check(size, steps, seed)){
+			System.exit(1);
+		}
+		System.out.println("OK");
+	}
+
+}
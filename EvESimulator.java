@@ -0,0 +1,53 @@
+package pong;
+
+public class EvESimulator extends PvESimulator {
+	/*EvESimulator:
+	 * Super Class: PvESimulator
+	 * Purpose: Comp vs Comp version of the PvESimulator, used to
+	 * play matches without any player (see @pong.MatchRunner).
+	 * Both paddles are moved by PaddleControllers (by default the same
+	 * CPU as the Player vs Comp mode). The inputs passed to step only
+	 * reach the controllers (see PaddleController.keys), so either side
+	 * can be played at the keyboard with a KeyboardController.
+	 *
+	 * Includes:
+	 * void updatePaddles(int inputs): Overrides PvESimulator.updatePaddles
+	 * Moves both paddles with their controllers
+	 */
+
+	public EvESimulator(){
+		//Constructor: No parameters
+		//Creates a simulator for a brand new match of the original CPU
+		//against itself
+		this(new GameState());
+	}
+
+	public EvESimulator(GameState state){
+		//Constructor: GameState state
+		//Creates a simulator that advances the given state, the original
+		//CPU playing both sides
+		this(state, new LookaheadController(), new LookaheadController());
+	}
+
+	public EvESimulator(GameState state, PaddleController left, PaddleController right){
+		//Constructor: GameState state, PaddleController left, PaddleController right
+		//Creates a simulator that advances the given state with the given
+		//controllers for the left and right paddles
+		super(state, right);
+		controllers[0] = left;
+	}
+
+	@Override
+	protected void updatePaddles(int inputs){
+		/*updatePaddles(int inputs)
+		 * Overrides PvESimulator.updatePaddles(int inputs)
+		 * Moves both paddles as their controllers decide, after giving
+		 * them the keys held.
+		 */
+		controllers[0].keys(inputs);
+		controllers[1].keys(inputs);
+		moveComputerPaddle(0);
+		moveComputerPaddle(1);
+	}
+
+}
@@ -0,0 +1,188 @@
+package pong;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+public class EventFileReader implements Closeable {
+	/*EventFileReader:
+	 * Interfaces: Closeable
+	 * Purpose: Reads a file of match events written by an EventFileWriter
+	 * (see @pong.EventFileWriter) block by block into the columns of a
+	 * MatchEvents batch, which can then be handed to the same consumers
+	 * as live events (e.g. @pong.MatchStats). A block is read in one call
+	 * and its columns are copied into the batch's arrays in bulk, so
+	 * reading costs little more than the disk. A last block left
+	 * incomplete is ignored.
+	 *
+	 * Includes:
+	 * EventFileReader(String path): Opens the file at path and checks its header
+	 *
+	 * boolean next(MatchEvents batch): Reads the next block into batch
+	 *
+	 * long read(MatchEvents.Consumer consumer): Hands every block left to consumer
+	 *
+	 * long rulesFingerprint(): Fingerprint of the rules the matches were played by
+	 * (see Rules.fingerprint)
+	 *
+	 * long bytesRead(): Bytes of the file read so far
+	 *
+	 * void close(): Closes the file
+	 */
+
+	private final FileChannel channel;
+	private final long rulesFingerprint;
+	private final ByteBuffer count = ByteBuffer.allocate(4);
+	private ByteBuffer block = ByteBuffer.allocateDirect(MatchEvents.DEFAULT_CAPACITY*EventFileWriter.EVENT_BYTES);
+	private long bytes = 0; //Read so far, header included
+
+	public EventFileReader(String path) throws IOException{
+		//Constructor: String path
+		//Opens the file at path. Throws IOException if it isn't an event file.
+		channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ);
+		try{
+			rulesFingerprint = checkHeader(channel);
+		}catch (IOException e){
+			channel.close();
+			throw e;
+		}
+		bytes = EventFileWriter.HEADER_BYTES;
+	}
+
+	static long checkHeader(FileChannel channel) throws IOException{
+		/*checkHeader(FileChannel channel)
+		 * Reads the header at the start of channel, leaving its position
+		 * after it, and returns the rules fingerprint. Throws IOException
+		 * if it isn't the header of an event file of this version.
+		 */
+		ByteBuffer header = ByteBuffer.allocate(EventFileWriter.HEADER_BYTES);
+		channel.position(0);
+		if (!readFully(channel, header) || header.getInt(0) != EventFileWriter.MAGIC){
+			throw new IOException("Not a file of match events");
+		}
+		if (header.getShort(4) != EventFileWriter.VERSION){
+			throw new IOException("Unsupported event file version " + header.getShort(4));
+		}
+		return header.getLong(6);
+	}
+
+	static long completeLength(FileChannel channel) throws IOException{
+		//Length of the header and the complete blocks of channel
+		long end = EventFileWriter.HEADER_BYTES;
+		long size = channel.size();
+		ByteBuffer count = ByteBuffer.allocate(4);
+		while (end+4 <= size){
+			count.clear();
+			channel.position(end);
+			readFully(channel, count);
+			long next = end+4+(long)count.getInt(0)*EventFileWriter.EVENT_BYTES;
+			if (count.getInt(0) <= 0 || next > size){
+				break;
+			}
+			end = next;
+		}
+		return end;
+	}
+
+	private static boolean readFully(FileChannel channel, ByteBuffer buffer) throws IOException{
+		//Fills buffer from channel, false if the file ends first
+		while (buffer.hasRemaining()){
+			if (channel.read(buffer) < 0){
+				return false;
+			}
+		}
+		return true;
+	}
+
+	public boolean next(MatchEvents batch) throws IOException{
+		/*next(MatchEvents batch)
+		 * Reads the next block into the columns of batch and sets its
+		 * size. Returns false, leaving batch empty, if there is no
+		 * complete block left. Throws IOException if the block holds more
+		 * events than batch can.
+		 */
+		batch.setSize(0);
+		int n = nextCount();
+		if (n > batch.capacity){
+			throw new IOException("Block of " + n + " events, the batch holds " + batch.capacity);
+		}
+		return n > 0 && fill(batch, n);
+	}
+
+	private int nextCount() throws IOException{
+		//Reads the number of events of the next block, 0 if none is left
+		count.clear();
+		return readFully(channel, count) ? Math.max(count.getInt(0), 0) : 0;
+	}
+
+	private boolean fill(MatchEvents batch, int n) throws IOException{
+		//Reads the n events of the block into batch, false if the file ends first
+		if (block.capacity() < n*EventFileWriter.EVENT_BYTES){
+			block = ByteBuffer.allocateDirect(n*EventFileWriter.EVENT_BYTES);
+		}
+		ByteBuffer b = block;
+		b.clear();
+		b.limit(n*EventFileWriter.EVENT_BYTES);
+		if (!readFully(channel, b)){
+			return false;
+		}
+		b.flip();
+		b.get(batch.types, 0, n);
+		b.get(batch.sides, 0, n);
+		b.asLongBuffer().get(batch.ticks, 0, n);
+		b.position(b.position()+8*n);
+		getColumn(b, batch.ballX, n);
+		getColumn(b, batch.ballY, n);
+		getColumn(b, batch.values, n);
+		getColumn(b, batch.speeds, n);
+		b.asShortBuffer().get(batch.leftScores, 0, n);
+		b.position(b.position()+2*n);
+		b.asShortBuffer().get(batch.rightScores, 0, n);
+		batch.setSize(n);
+		bytes += 4+n*EventFileWriter.EVENT_BYTES;
+		return true;
+	}
+
+	private static void getColumn(ByteBuffer b, float[] column, int n){
+		//Gets n values into column from b's position and moves past them
+		b.asFloatBuffer().get(column, 0, n);
+		b.position(b.position()+4*n);
+	}
+
+	public long read(MatchEvents.Consumer consumer) throws IOException{
+		/*read(MatchEvents.Consumer consumer)
+		 * Reads every block left, handing each to consumer, and returns
+		 * the number of events read
+		 */
+		MatchEvents batch = new MatchEvents();
+		long events = 0;
+		for (int n = nextCount();n > 0;n = nextCount()){
+			if (n > batch.capacity){
+				batch = new MatchEvents(n);
+			}
+			if (!fill(batch, n)){
+				break;
+			}
+			consumer.accept(batch);
+			events += n;
+		}
+		return events;
+	}
+
+	public long rulesFingerprint(){
+		return rulesFingerprint;
+	}
+
+	public long bytesRead(){
+		return bytes;
+	}
+
+	@Override
+	public void close() throws IOException{
+		channel.close();
+	}
+
+}
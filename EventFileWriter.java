@@ -0,0 +1,138 @@
+package pong;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+public class EventFileWriter implements MatchEvents.Consumer, Closeable {
+	/*EventFileWriter:
+	 * Interfaces: MatchEvents.Consumer, Closeable
+	 * Purpose: Appends the batches of a stream of match events (see
+	 * @pong.MatchEvents) to a file, column by column, so that millions of
+	 * matches can be kept and summarized quickly (see @pong.EventFileReader):
+	 * each batch is one block holding every value of a field together,
+	 * copied from the batch's arrays in bulk and read back the same way.
+	 * The file is only ever appended to. Opening an existing file checks
+	 * its header (the matches must be played by the same rules) and cuts
+	 * off a last block left incomplete (by a crash), then appends after
+	 * the complete ones.
+	 * File layout (big-endian):
+	 * header: MAGIC, VERSION, fingerprint of the rules (see
+	 * Rules.fingerprint) the matches were played by
+	 * blocks: the number of events n, then n values of each column in
+	 * order: types, sides (bytes), ticks (longs), ball x, ball y, values,
+	 * speeds (floats), left scores, right scores (shorts)
+	 *
+	 * Includes:
+	 * EventFileWriter(String path): Opens or creates the file at path
+	 *
+	 * void accept(MatchEvents batch): Appends a batch as a block. Throws
+	 * UncheckedIOException if it can't be written.
+	 *
+	 * void close(): Closes the file
+	 *
+	 * Getters: blocks(), events() (written by this writer)
+	 */
+
+	static final int MAGIC = 0x50455654; //"PEVT"
+	static final short VERSION = 1;
+	static final int HEADER_BYTES = 4+2+8;
+	static final int EVENT_BYTES = 1+1+8+4*4+2*2; //Bytes of one event in a block
+
+	private final FileChannel channel;
+	private ByteBuffer block = ByteBuffer.allocateDirect(4+MatchEvents.DEFAULT_CAPACITY*EVENT_BYTES);
+	private long blocks = 0;
+	private long events = 0;
+
+	public EventFileWriter(String path) throws IOException{
+		//Constructor: String path
+		//Opens the file at path for appending, writing its header if it is new
+		channel = FileChannel.open(Paths.get(path), StandardOpenOption.CREATE,
+				StandardOpenOption.READ, StandardOpenOption.WRITE);
+		try{
+			if (channel.size() == 0){
+				ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+				header.putInt(MAGIC).putShort(VERSION).putLong(Simulator.rules.fingerprint());
+				header.flip();
+				write(header);
+			}else{
+				if (EventFileReader.checkHeader(channel) != Simulator.rules.fingerprint()){
+					throw new IOException("The events of " + path + " were played by other rules");
+				}
+				channel.truncate(EventFileReader.completeLength(channel));
+				channel.position(channel.size());
+			}
+		}catch (IOException e){
+			channel.close();
+			throw e;
+		}
+	}
+
+	private void write(ByteBuffer buffer) throws IOException{
+		//Writes all of buffer
+		while (buffer.hasRemaining()){
+			channel.write(buffer);
+		}
+	}
+
+	@Override
+	public void accept(MatchEvents batch){
+		/*accept(MatchEvents batch)
+		 * Appends the batch's events as one block
+		 */
+		int n = batch.size();
+		if (n == 0){
+			return;
+		}
+		if (block.capacity() < 4+n*EVENT_BYTES){
+			block = ByteBuffer.allocateDirect(4+n*EVENT_BYTES);
+		}
+		ByteBuffer b = block;
+		b.clear();
+		b.putInt(n);
+		b.put(batch.types, 0, n);
+		b.put(batch.sides, 0, n);
+		b.asLongBuffer().put(batch.ticks, 0, n);
+		b.position(b.position()+8*n);
+		putColumn(b, batch.ballX, n);
+		putColumn(b, batch.ballY, n);
+		putColumn(b, batch.values, n);
+		putColumn(b, batch.speeds, n);
+		b.asShortBuffer().put(batch.leftScores, 0, n);
+		b.position(b.position()+2*n);
+		b.asShortBuffer().put(batch.rightScores, 0, n);
+		b.position(b.position()+2*n);
+		b.flip();
+		try{
+			write(b);
+		}catch (IOException e){
+			throw new UncheckedIOException("Can't write events", e);
+		}
+		blocks++;
+		events += n;
+	}
+
+	private static void putColumn(ByteBuffer b, float[] column, int n){
+		//Puts the first n values of column at b's position and moves past them
+		b.asFloatBuffer().put(column, 0, n);
+		b.position(b.position()+4*n);
+	}
+
+	@Override
+	public void close() throws IOException{
+		channel.close();
+	}
+
+	public long blocks(){
+		return blocks;
+	}
+
+	public long events(){
+		return events;
+	}
+
+}
@@ -0,0 +1,41 @@
+package pong;
+
+@SuppressWarnings("serial")
+public class FixedPanel extends PvPPanel {
+	/*FixedPanel:
+	 * Super Class: PvPPanel
+	 * Purpose: Extends the PvPPanel for Player vs Player with the
+	 * fixed-point engine (see @pong.FixedSimulator). The match is played
+	 * by the FixedSimulator and stored into the panel's state after every
+	 * update, so it is drawn exactly as in PvP. It isn't recorded or
+	 * broadcast, those replay the double engine.
+	 * Functionality similar to PvPPanel (see @pong.PvPPanel)
+	 *
+	 * Includes:
+	 * FixedPanel(): Creates a panel for a new fixed-point match
+	 *
+	 * boolean update(): Advances the match by one update with the keys
+	 * pressed. Returns whether the game is over.
+	 */
+
+	private final FixedSimulator fixed;
+
+	public FixedPanel(){
+		//Constructor: No parameters
+		//Creates a panel for a new match played in fixed point
+		super();
+		fixed = new FixedSimulator(state);
+	}
+
+	@Override
+	public boolean update(){
+		/*update()
+		 * Steps the fixed-point match and keeps its frame
+		 */
+		boolean done = fixed.step(pollInputs());
+		fixed.store(state);
+		keepFrame();
+		return done;
+	}
+
+}
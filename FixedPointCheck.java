@@ -0,0 +1,183 @@
+package pong;
+
+public class FixedPointCheck {
+	/*FixedPointCheck:
+	 * Purpose: Compares the fixed-point engine (see @pong.FixedSimulator)
+	 * with the double Simulator it approximates (see @pong.Simulator).
+	 * The same seeded matches are played by both engines side by side
+	 * with the same keys, chosen by two CPU players watching the double
+	 * match. A flight is the ball's way from one contact to the next: it
+	 * agrees if both engines end it the same way (a paddle turns the
+	 * ball, a border bounces it, or the same player scores) on the same
+	 * update. After
+	 * every flight the fixed engine is set back to the double match, so
+	 * each flight starts from the same state, and over the agreeing
+	 * flights the distance between the two balls is measured every
+	 * update. The check fails if that distance ever exceeds maxError
+	 * pixels or if fewer than minAgreement of the flights agree. Flights
+	 * are bounded rather than whole rallies because every paddle hit
+	 * turns a difference in where the ball meets the paddle into a
+	 * difference of direction, so two rallies of thousands of updates
+	 * drift apart whatever the precision; how many whole rallies (set
+	 * back only after a point) are still won by the same player is
+	 * printed for information.
+	 * It also prints a checksum (see @pong.StateHash) of fixed-point
+	 * matches played with keys that don't depend on any double
+	 * arithmetic, to compare between
+	 * JVMs and machines: it must be the same everywhere. How fast both
+	 * engines play is measured by FixedPointBenchmark in benchmarks/.
+	 *
+	 * Includes:
+	 * void main(String[] args): Runs the comparison, exits with status 1 if
+	 * it fails. Arguments (all optional): matches (200), seed, left
+	 * (lookahead), right (lookahead)
+	 */
+
+	static final double maxError = 0.1; //Pixels
+	static final double minAgreement = 0.995;
+
+	static int ending(int leftPoints, int points, boolean turned, boolean bounced){
+		//What ended a flight in an update: 1 or 2 for a point of the left
+		//or right player, else 4 for a paddle turning the ball plus 8 for
+		//a border bouncing it, 0 for nothing
+		if (points != 0){
+			return leftPoints != 0 ? 1 : 2;
+		}
+		return (turned ? 4 : 0)|(bounced ? 8 : 0);
+	}
+
+	static boolean flipped(double before, double after){
+		//Whether the ball's sine changed sign. Sines within 1e-9 of 0 count
+		//as 0: the double sine of a horizontal ball is only about 0.
+		return (before > 1e-9 && after < -1e-9) || (before < -1e-9 && after > 1e-9);
+	}
+
+	static int keys(PaddleController left, PaddleController right, GameView view){
+		//Keys held by two controllers watching view (see EvESimulator)
+		int inputs = 0;
+		int move = left.move(view, 0);
+		inputs |= move == PaddleController.UP ? Simulator.W : move == PaddleController.DOWN ? Simulator.S : 0;
+		move = right.move(view, 1);
+		inputs |= move == PaddleController.UP ? Simulator.UP : move == PaddleController.DOWN ? Simulator.DOWN : 0;
+		return inputs;
+	}
+
+	public static void main(String[] args){
+		/*main(String[] args)
+		 * Plays the matches and prints the comparison
+		 */
+		int matches = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+		long seed = args.length > 1 ? Long.parseLong(args[1]) : 2016;
+		String leftName = args.length > 2 ? args[2] : "lookahead";
+		String rightName = args.length > 3 ? args[3] : "lookahead";
+
+		//Table against the sines it approximates
+		double tableError = 0;
+		for (int a = 0;a<FixedSimulator.TURN;a++){
+			double angle = FixedSimulator.radians(a);
+			tableError = Math.max(tableError, Math.abs(FixedSimulator.sin(a)/(double)FixedSimulator.ONE-Math.sin(angle)));
+			tableError = Math.max(tableError, Math.abs(FixedSimulator.cos(a)/(double)FixedSimulator.ONE-Math.cos(angle)));
+		}
+		System.out.printf("sine table: %d angles, largest error %.2e%n", FixedSimulator.TURN, tableError);
+
+		//Flights and rallies played side by side
+		long flights = 0;
+		long agreed = 0;
+		long rallies = 0;
+		long ralliesAgreed = 0;
+		long ticks = 0;
+		double worst = 0; //Largest distance between the balls in an agreeing flight
+		double sum = 0; //Sum of the distances over the agreeing flights
+		long measured = 0;
+		for (int m = 0;m<matches;m++){
+			long matchSeed = MatchRunner.matchSeed(seed, m);
+			Simulator reference = new Simulator(MatchRunner.seededState(matchSeed));
+			GameState s = reference.state;
+			FixedSimulator flight = new FixedSimulator(s); //Set back after every flight
+			FixedSimulator rally = new FixedSimulator(s); //Set back after every point
+			PaddleController left = PaddleController.named(leftName, matchSeed+1);
+			PaddleController right = PaddleController.named(rightName, matchSeed+2);
+			double flightWorst = 0;
+			double flightSum = 0;
+			long flightTicks = 0;
+			boolean done = false;
+			while (!done && s.tick<MatchRunner.DEFAULT_MAX_TICKS){
+				int inputs = keys(left, right, s);
+				int leftPoints = s.playerScores[0];
+				int points = leftPoints+s.playerScores[1];
+				boolean forward = s.ballCos > 0;
+				double sin = s.ballSin;
+				int flightLeftPoints = flight.playerScores[0];
+				int flightPoints = flightLeftPoints+flight.playerScores[1];
+				boolean flightForward = flight.cos > 0;
+				double flightSin = flight.ballSin();
+				int rallyLeftPoints = rally.playerScores[0];
+				int rallyPoints = rallyLeftPoints+rally.playerScores[1];
+				done = reference.step(inputs);
+				flight.step(inputs);
+				rally.step(inputs);
+				int event = ending(s.playerScores[0]-leftPoints,
+						s.playerScores[0]+s.playerScores[1]-points, forward != s.ballCos > 0, flipped(sin, s.ballSin));
+				int flightEvent = ending(flight.playerScores[0]-flightLeftPoints,
+						flight.playerScores[0]+flight.playerScores[1]-flightPoints, flightForward != flight.cos > 0,
+						flipped(flightSin, flight.ballSin()));
+				if (event != 0 || flightEvent != 0){
+					flights++;
+					if (event == flightEvent){
+						agreed++;
+						worst = Math.max(worst, flightWorst);
+						sum += flightSum;
+						measured += flightTicks;
+					}
+					flight.load(s);
+					flightWorst = 0;
+					flightSum = 0;
+					flightTicks = 0;
+				}else{
+					double distance = Math.hypot(flight.ballX()-s.ball[0], flight.ballY()-s.ball[1]);
+					flightWorst = Math.max(flightWorst, distance);
+					flightSum += distance;
+					flightTicks++;
+				}
+				boolean scored = s.playerScores[0]+s.playerScores[1] != points;
+				boolean rallyScored = rally.playerScores[0]+rally.playerScores[1] != rallyPoints;
+				if (scored || rallyScored){
+					rallies++;
+					if (scored && rallyScored && s.playerScores[0]-leftPoints == rally.playerScores[0]-rallyLeftPoints){
+						ralliesAgreed++;
+					}
+					rally.load(s);
+				}
+			}
+			ticks += s.tick;
+		}
+		double agreement = flights == 0 ? 1 : agreed/(double)flights;
+		System.out.printf("%d matches of %s vs %s, %d updates%n", matches, leftName, rightName, ticks);
+		System.out.printf("%d flights: %d (%.3f%%) ended the same (bound %.1f%%)%n",
+				flights, agreed, 100*agreement, 100*minAgreement);
+		System.out.printf("ball distance over those flights: mean %.5f px, largest %.5f px (bound %.2f px)%n",
+				measured == 0 ? 0 : sum/measured, worst, maxError);
+		System.out.printf("%d rallies played through: %d (%.2f%%) won by the same player%n",
+				rallies, ralliesAgreed, rallies == 0 ? 100 : 100.0*ralliesAgreed/rallies);
+
+		//Checksum of the fixed-point engine alone, with the keys of
+		//BatchBenchmark so that no double arithmetic is involved
+		StateHash checksum = new StateHash();
+		for (int m = 0;m<matches;m++){
+			FixedSimulator fixed = new FixedSimulator(MatchRunner.seededState(MatchRunner.matchSeed(seed, m)));
+			boolean done = false;
+			while (!done && fixed.tick<MatchRunner.DEFAULT_MAX_TICKS){
+				done = fixed.step(BatchBenchmark.inputsFor(m, fixed.tick));
+				checksum.update(fixed);
+			}
+		}
+		System.out.printf("fixed-point checksum: %016x%n", checksum.value());
+
+		if (worst > maxError || agreement < minAgreement){
+			System.out.println("FAIL: the fixed-point engine strays too far from the double one");
+			System.exit(1);
+		}
+		System.out.println("OK");
+	}
+
+}
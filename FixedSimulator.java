@@ -0,0 +1,347 @@
+package pong;
+
+public class FixedSimulator implements GameView {
+	/*FixedSimulator:
+	 * Interfaces: GameView
+	 * Purpose: Player vs Player rules of Pong in fixed-point integer
+	 * arithmetic. Plays the same rules as Simulator.step (see
+	 * @pong.Simulator) in the same order, but every position is a 16.16
+	 * fixed-point int (pixels times ONE), the ball's speed a 32.32
+	 * fixed-point long (so that speeding up by a 1/speedUpTicks of what is
+	 * left doesn't stall short of the maximum) and its direction an angle
+	 * in 1/TURN of a turn. Cosines and sines come from a table built once
+	 * with StrictMath and rounded, and are only looked up when the
+	 * direction changes, like the cached cosine and sine of GameState.
+	 * Only integer operations are used while playing, so a match played
+	 * from the same state with the same keys ends bit for bit the same on
+	 * every JVM and CPU, which lockstep networking and replays rely on.
+	 * The double Simulator stays the reference: the two differ by the
+	 * rounding of the fixed-point values, which FixedPointCheck bounds
+	 * (see @pong.FixedPointCheck). Swept collisions and match events
+	 * aren't supported.
+	 *
+	 * Includes:
+	 * FixedSimulator(): Creates a simulator for a new match
+	 *
+	 * FixedSimulator(GameState state): Creates a simulator for a match
+	 * starting from state
+	 *
+	 * boolean step(int inputs): Advances the match by a single update with
+	 * the keys held (see Simulator.UP etc.). Returns whether the match is over.
+	 *
+	 * void load(GameState state), void store(GameState state): Converts
+	 * the match from or to the doubles of a GameState
+	 *
+	 * void resetBoard(): Starts the next point, as GameState.resetBoard does
+	 *
+	 * static int sin(int angle), static int cos(int angle): 16.16 sine and
+	 * cosine of an angle in 1/TURN of a turn, from the table
+	 *
+	 * static int toFixed(double value), static int angleOf(double radians),
+	 * static double radians(int angle): Conversions to and from fixed point
+	 *
+	 * GameView getters: ballX(), ballY(), ballDirection(), ballCos(),
+	 * ballSin(), ballSpeed(), paddleCenter(int), score(int), tick(), in
+	 * pixels and radians
+	 */
+
+	public static final int SHIFT = 16; //Fraction bits of positions, sines and cosines
+	public static final int ONE = 1 << SHIFT;
+	public static final int SPEED_SHIFT = 32; //Fraction bits of the ball's speed
+	public static final int ANGLE_BITS = 16;
+	public static final int TURN = 1 << ANGLE_BITS; //Angle of a full turn
+	public static final int ANGLE_MASK = TURN-1;
+	private static final int HALF_TURN = TURN/2;
+	private static final int QUARTER_TURN = TURN/4;
+	//Sines of the first quarter turn, 16.16, the rest follows by symmetry
+	private static final int[] quarterSine = new int[QUARTER_TURN+1];
+	static {
+		for (int i = 0;i<=QUARTER_TURN;i++){
+			quarterSine[i] = (int)Math.round(StrictMath.sin(i*(2*Math.PI/TURN))*ONE);
+		}
+	}
+
+	//The rules (see Simulator) in fixed point
+	private static final int width = Simulator.fieldWidth << SHIFT;
+	private static final int height = Simulator.fieldHeight << SHIFT;
+	private static final int border = Simulator.borderWidth << SHIFT;
+	private static final int radius = Simulator.ballRadius << SHIFT;
+	private static final int halfPaddle = (Simulator.paddleLength/2) << SHIFT;
+	private static final int left = Simulator.paddleColumns[0] << SHIFT;
+	private static final int right = Simulator.paddleColumns[1] << SHIFT;
+	//Distance from a paddle's center within which the ball is sent straight back
+	private static final int tolerance = toFixed(Simulator.paddleCenterTolerance*Simulator.paddleLength);
+	private static final int paddleSpeed = toFixed(Simulator.paddleSpeed);
+	private static final long maxBallSpeed = toSpeed(Simulator.maxBallSpeed);
+	private static final long serveBallSpeed = toSpeed(Simulator.serveBallSpeed);
+	//2^32/speedUpTicks rounded, and the gaps to the maximum speed it can
+	//be multiplied by without overflowing
+	private static final long speedUp = Math.round((double)(1L << SPEED_SHIFT)/Simulator.speedUpTicks);
+	private static final long gapLimit = Long.MAX_VALUE/Math.max(1, speedUp);
+	//Directions of the deflection law (see Simulator.updateBall)
+	private static final int angle30 = (int)Math.round(TURN/12.0);
+	private static final int angle60 = (int)Math.round(TURN/6.0);
+	private static final int angle120 = (int)Math.round(TURN/3.0);
+	private static final int angle150 = (int)Math.round(5*TURN/12.0);
+
+	//The match, positions in 16.16 fixed point
+	public int ballX;
+	public int ballY;
+	public int direction; //0 to TURN-1, see GameState.ballDirection
+	public int cos; //cos(direction), 16.16
+	public int sin; //sin(direction), 16.16
+	public long speed; //Distance travelled by the ball per update, 32.32
+	public final int[] paddleCenters = new int[2];
+	public final int[] playerScores = {0,0};
+	public long tick = 0;
+
+	public FixedSimulator(){
+		//Constructor: No parameters
+		//Creates a simulator for a brand new match
+		this(new GameState());
+	}
+
+	public FixedSimulator(GameState state){
+		//Constructor: GameState state
+		//Creates a simulator for a match starting from state (rounded to
+		//fixed point, see load)
+		load(state);
+	}
+
+	public static int toFixed(double value){
+		//16.16 fixed-point value nearest to value
+		return (int)Math.round(value*ONE);
+	}
+
+	private static long toSpeed(double speed){
+		//32.32 fixed-point value nearest to speed
+		return Math.round(speed*(1L << SPEED_SHIFT));
+	}
+
+	public static int angleOf(double radians){
+		//Angle nearest to radians, 0 to TURN-1
+		return (int)Math.round(radians*(TURN/(2*Math.PI))) & ANGLE_MASK;
+	}
+
+	public static double radians(int angle){
+		//Angle in radians, from -PI to PI
+		int a = angle & ANGLE_MASK;
+		return (a >= HALF_TURN ? a-TURN : a)*(2*Math.PI/TURN);
+	}
+
+	public static int sin(int angle){
+		/*sin(int angle)
+		 * Sine of angle (in 1/TURN of a turn) as 16.16 fixed point,
+		 * looked up in the table of the first quarter turn
+		 */
+		int a = angle & ANGLE_MASK;
+		int i = a & (QUARTER_TURN-1);
+		switch (a >>> (ANGLE_BITS-2)){
+			case 0: return quarterSine[i];
+			case 1: return quarterSine[QUARTER_TURN-i];
+			case 2: return -quarterSine[i];
+			default: return -quarterSine[QUARTER_TURN-i];
+		}
+	}
+
+	public static int cos(int angle){
+		//Cosine of angle as 16.16 fixed point
+		return sin(angle+QUARTER_TURN);
+	}
+
+	private void setDirection(int angle){
+		//Sets the ball's direction and looks up its cosine and sine
+		direction = angle & ANGLE_MASK;
+		cos = cos(direction);
+		sin = sin(direction);
+	}
+
+	public void load(GameState state){
+		/*load(GameState state)
+		 * Replaces the match with state, each value rounded to the
+		 * nearest fixed-point one
+		 */
+		ballX = toFixed(state.ball[0]);
+		ballY = toFixed(state.ball[1]);
+		setDirection(angleOf(state.ballDirection));
+		speed = toSpeed(state.ballSpeed);
+		paddleCenters[0] = toFixed(state.paddleCenters[0]);
+		paddleCenters[1] = toFixed(state.paddleCenters[1]);
+		playerScores[0] = state.playerScores[0];
+		playerScores[1] = state.playerScores[1];
+		tick = state.tick;
+	}
+
+	public void store(GameState state){
+		/*store(GameState state)
+		 * Writes the match into state, e.g. to draw it. The cosine and
+		 * sine are this simulator's, so they are set along with the
+		 * direction rather than by setBallDirection.
+		 */
+		state.ball[0] = ballX();
+		state.ball[1] = ballY();
+		state.ballDirection = ballDirection();
+		state.ballCos = ballCos();
+		state.ballSin = ballSin();
+		state.ballSpeed = ballSpeed();
+		state.paddleCenters[0] = paddleCenter(0);
+		state.paddleCenters[1] = paddleCenter(1);
+		state.playerScores[0] = playerScores[0];
+		state.playerScores[1] = playerScores[1];
+		state.tick = tick;
+	}
+
+	public void resetBoard(){
+		//Serves the ball from the middle, as GameState.resetBoard does
+		ballX = (Simulator.fieldWidth/2) << SHIFT;
+		ballY = (Simulator.fieldHeight/2) << SHIFT;
+		setDirection(HALF_TURN);
+		speed = serveBallSpeed;
+	}
+
+	public boolean step(int inputs){
+		/*step(int inputs)
+		 * Acts as a single frame update, as Simulator.step: moves the
+		 * ball, then the paddles and speeds up the ball. Returns whether
+		 * the match is over.
+		 */
+		boolean done = updateBall();
+		updatePaddles(inputs);
+		//The gap to the maximum divided by speedUpTicks, as a multiplication
+		//by its reciprocal unless the gap is large enough to overflow
+		long gap = maxBallSpeed-speed;
+		speed += gap<gapLimit & gap>-gapLimit ? (gap*speedUp) >> SPEED_SHIFT : gap/Simulator.speedUpTicks;
+		tick++;
+		return done;
+	}
+
+	private void updatePaddles(int inputs){
+		//Moves the paddles as Simulator.updatePaddles does
+		if ((inputs & Simulator.UP) != 0 && paddleCenters[1]>halfPaddle){
+			paddleCenters[1] -= paddleSpeed;
+		}
+		if ((inputs & Simulator.DOWN) != 0 && paddleCenters[1]<height-halfPaddle){
+			paddleCenters[1] += paddleSpeed;
+		}
+		if ((inputs & Simulator.W) != 0 && paddleCenters[0]>halfPaddle){
+			paddleCenters[0] -= paddleSpeed;
+		}
+		if ((inputs & Simulator.S) != 0 && paddleCenters[0]<height-halfPaddle){
+			paddleCenters[0] += paddleSpeed;
+		}
+	}
+
+	private static int move(long speed, int cosine){
+		//speed*cosine (32.32 times 16.16) rounded to the nearest 16.16 value
+		return (int)((speed*cosine+(1L << (SPEED_SHIFT-1))) >> SPEED_SHIFT);
+	}
+
+	private int deflect(int offset, int straight, int low, int high){
+		/*deflect(int offset, int straight, int low, int high)
+		 * Direction of the ball after hitting a paddle offset away from
+		 * its center: straight if it hits the middle, otherwise from low
+		 * (just off the middle) to high (at the end of the paddle) and
+		 * downwards if it hits the lower half, as in Simulator.updateBall
+		 */
+		int abs = Math.abs(offset);
+		if (abs < tolerance){
+			return straight;
+		}
+		int angle = low+(int)((long)(abs-tolerance)*(high-low)/Math.max(1, halfPaddle-tolerance));
+		return offset < 0 ? -angle : angle;
+	}
+
+	private boolean updateBall(){
+		/*updateBall()
+		 * Moves the ball as Simulator.updateBall does: off the paddles,
+		 * then off the borders, then along its direction. Returns whether
+		 * the point ended the match.
+		 */
+		long v = speed;
+		int reach = (int)(v >> (SPEED_SHIFT-SHIFT)); //Speed in 16.16
+		//Move of this update, rounded to the nearest 16.16 value
+		int dx = move(v, cos);
+		//Left paddle
+		int next = ballX+dx-radius;
+		if (next<=left & next>=left-reach){
+			int center = paddleCenters[0];
+			if (ballY>=center-halfPaddle && ballY<=center+halfPaddle){
+				setDirection(deflect(ballY-center, HALF_TURN-direction, angle30, angle60));
+				dx = move(v, cos);
+			}
+		}
+		//Right paddle, against the (possibly new) direction
+		next = ballX+dx-radius;
+		if (next<=right & next>=right-reach){
+			int center = paddleCenters[1];
+			if (ballY>=center-halfPaddle && ballY<=center+halfPaddle){
+				setDirection(deflect(ballY-center, HALF_TURN-direction, angle150, angle120));
+				dx = move(v, cos);
+			}
+		}
+		//Borders: cos(-d) = cos(d) and sin(-d) = -sin(d)
+		int dy = move(v, sin);
+		if (ballY+dy-radius<=border || ballY+dy+radius>=height-border){
+			direction = -direction & ANGLE_MASK;
+			sin = -sin;
+			dy = -dy;
+		}
+		ballX += dx;
+		ballY += dy;
+		//Points
+		if ((ballX<0)|(ballX>width)){
+			playerScores[ballX<0 ? 1 : 0]++;
+			if (playerScores[0]==Simulator.winningScore|playerScores[1]==Simulator.winningScore){
+				return true;
+			}
+			resetBoard();
+		}
+		return false;
+	}
+
+	@Override
+	public double ballX(){
+		return ballX/(double)ONE;
+	}
+
+	@Override
+	public double ballY(){
+		return ballY/(double)ONE;
+	}
+
+	@Override
+	public double ballDirection(){
+		return radians(direction);
+	}
+
+	@Override
+	public double ballCos(){
+		return cos/(double)ONE;
+	}
+
+	@Override
+	public double ballSin(){
+		return sin/(double)ONE;
+	}
+
+	@Override
+	public double ballSpeed(){
+		return speed/(double)(1L << SPEED_SHIFT);
+	}
+
+	@Override
+	public double paddleCenter(int paddle){
+		return paddleCenters[paddle]/(double)ONE;
+	}
+
+	@Override
+	public int score(int player){
+		return playerScores[player];
+	}
+
+	@Override
+	public long tick(){
+		return tick;
+	}
+
+}
@@ -0,0 +1,228 @@
+package pong;
+
+import java.awt.Canvas;
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.Image;
+import java.awt.Rectangle;
+import java.awt.Toolkit;
+import java.awt.image.BufferStrategy;
+import java.awt.image.VolatileImage;
+
+@SuppressWarnings("serial")
+public class GameCanvas extends Canvas {
+	/*GameCanvas:
+	 * Super Class: Canvas
+	 * Purpose: Draws the screens of the game with active rendering
+	 * instead of the Swing repaint pipeline. Frames are drawn when
+	 * render() is called (by the game loop or after a key press) and shown
+	 * through a BufferStrategy.
+	 * What a screen draws is split in two layers (see GameCanvas.Layers):
+	 * the static layer (borders, midline, menu text) is drawn once into a
+	 * cached VolatileImage, and the dynamic layer (ball, paddles, scores,
+	 * menu marker) reports the regions it drew. Each frame, only the
+	 * regions drawn in the previous frame are restored from the static
+	 * layer before the dynamic layer is drawn again, so the rest of the
+	 * frame is never redrawn.
+	 *
+	 * Includes:
+	 * GameCanvas(): Creates a canvas the size of the field (see @pong.Rules)
+	 *
+	 * void setLayers(Layers layers): Sets the screen to draw
+	 *
+	 * void setOverlay(Overlay overlay): Sets something drawn over every
+	 * screen, or null for nothing (see @pong.GameMetrics)
+	 * 
+	 * void render(): Draws and shows a frame of the current screen
+	 *
+	 * int composeFrame(...): Restores the regions of the previous frame
+	 * and draws the dynamic layer, works on any Graphics
+	 *
+	 * long frames(), long meanFrameNanos(): Number of frames rendered and
+	 * the average time taken to render one
+	 */
+
+	public interface Layers {
+		/*Layers:
+		 * Purpose: A screen that can be drawn by a GameCanvas
+		 * void paintStatic(Graphics g): Draws what never changes on the screen
+		 * int paintDynamic(Graphics g, Rectangle[] regions): Draws what moves,
+		 * sets regions[0..n-1] to the areas drawn and returns n
+		 */
+		void paintStatic(Graphics g);
+		int paintDynamic(Graphics g, Rectangle[] regions);
+	}
+
+	public interface Overlay {
+		/*Overlay:
+		 * Purpose: Drawn over the dynamic layer of every screen
+		 * boolean paintOverlay(Graphics g, Rectangle region): Draws the
+		 * overlay, sets region to the area drawn and returns true, or
+		 * returns false if nothing was drawn
+		 */
+		boolean paintOverlay(Graphics g, Rectangle region);
+	}
+
+	public static final int MAX_REGIONS = 8; //Regions a dynamic layer may report
+
+	private Layers layers; //Screen being drawn
+	private Overlay overlay; //Drawn over the screen, may be null
+	private boolean layersChanged = true; //Whether the static layer needs drawing
+	private BufferStrategy strategy;
+	private VolatileImage staticLayer; //Cached static layer of the screen
+	private VolatileImage frame; //The frame, only its dirty regions are redrawn
+	//Regions drawn by the dynamic layer in the last frame
+	private final Rectangle[] regions = new Rectangle[MAX_REGIONS];
+	private int regionCount = 0;
+
+	private volatile long frames = 0;
+	private volatile long totalFrameNanos = 0;
+
+	public GameCanvas(){
+		//Constructor: No parameters
+		//Creates the canvas with the size of the game's screen
+		super();
+		for (int i = 0;i<regions.length;i++){
+			regions[i] = new Rectangle();
+		}
+		this.setPreferredSize(new Dimension(Simulator.fieldWidth,Simulator.fieldHeight));
+		this.setBackground(Color.white);
+		//Frames are only drawn by render(), and keys go to the JFrame
+		this.setIgnoreRepaint(true);
+		this.setFocusable(false);
+	}
+
+	public synchronized void setLayers(Layers layers){
+		/*setLayers(Layers layers)
+		 * Sets the screen drawn by the next frames
+		 */
+		this.layers = layers;
+		layersChanged = true;
+	}
+
+	public synchronized void setOverlay(Overlay overlay){
+		/*setOverlay(Overlay overlay)
+		 * Sets what is drawn over every screen, null for nothing
+		 */
+		this.overlay = overlay;
+	}
+
+	@Override
+	public void paint(Graphics g){
+		//Called by AWT when the canvas is exposed, draws a whole frame
+		synchronized (this){
+			layersChanged = true;
+		}
+		render();
+	}
+
+	@Override
+	public void update(Graphics g){
+		//Skips clearing the canvas, every frame covers it
+		paint(g);
+	}
+
+	public synchronized void render(){
+		/*render()
+		 * Draws a frame of the current screen and shows it. If the
+		 * cached images were lost (e.g. the display mode changed) the
+		 * frame is drawn again from scratch.
+		 */
+		if (layers == null || !isDisplayable()){
+			return;
+		}
+		long start = System.nanoTime();
+		if (strategy == null){
+			createBufferStrategy(2);
+			strategy = getBufferStrategy();
+		}
+		GraphicsConfiguration config = getGraphicsConfiguration();
+		do{
+			boolean full = layersChanged;
+			layersChanged = false;
+			if (staticLayer == null || staticLayer.validate(config) != VolatileImage.IMAGE_OK){
+				staticLayer = validImage(staticLayer, config);
+				full = true;
+			}
+			if (frame == null || frame.validate(config) != VolatileImage.IMAGE_OK){
+				frame = validImage(frame, config);
+				full = true;
+			}
+			if (full){
+				//Draws the static layer and starts the frame from it
+				Graphics2D g = staticLayer.createGraphics();
+				g.setColor(Color.white);
+				g.fillRect(0, 0, Simulator.fieldWidth, Simulator.fieldHeight);
+				g.setColor(Color.black);
+				layers.paintStatic(g);
+				g.dispose();
+				regionCount = 0;
+				g = frame.createGraphics();
+				g.drawImage(staticLayer, 0, 0, null);
+				g.dispose();
+			}
+			Graphics2D g = frame.createGraphics();
+			regionCount = composeFrame(layers, overlay, g, staticLayer, regions, regionCount);
+			g.dispose();
+
+			//Shows the frame
+			do{
+				do{
+					Graphics screen = strategy.getDrawGraphics();
+					screen.drawImage(frame, 0, 0, null);
+					screen.dispose();
+				}while (strategy.contentsRestored());
+				strategy.show();
+			}while (strategy.contentsLost());
+		}while (staticLayer.contentsLost() || frame.contentsLost());
+		Toolkit.getDefaultToolkit().sync();
+		frames++;
+		totalFrameNanos += System.nanoTime()-start;
+	}
+
+	private VolatileImage validImage(VolatileImage image, GraphicsConfiguration config){
+		//Returns image if it can still be used, otherwise a new one
+		if (image == null || image.validate(config) == VolatileImage.IMAGE_INCOMPATIBLE){
+			if (image != null){
+				image.flush();
+			}
+			return createVolatileImage(Simulator.fieldWidth, Simulator.fieldHeight);
+		}
+		return image;
+	}
+
+	static int composeFrame(Layers layers, Overlay overlay, Graphics g, Image staticLayer,
+			Rectangle[] regions, int regionCount){
+		/*composeFrame(Layers layers, Overlay overlay, Graphics g, Image staticLayer,
+		 *		Rectangle[] regions, int regionCount)
+		 * Puts the static layer back over the regionCount regions drawn in
+		 * the last frame, then draws the dynamic layer and the overlay (if
+		 * not null). Returns the number of regions (stored in regions) that
+		 * they drew.
+		 */
+		for (int i = 0;i<regionCount;i++){
+			Rectangle r = regions[i];
+			g.drawImage(staticLayer, r.x, r.y, r.x+r.width, r.y+r.height,
+					r.x, r.y, r.x+r.width, r.y+r.height, null);
+		}
+		g.setColor(Color.black);
+		int count = layers.paintDynamic(g, regions);
+		if (overlay != null && overlay.paintOverlay(g, regions[count])){
+			count++;
+		}
+		return count;
+	}
+
+	public long frames(){
+		return frames;
+	}
+
+	public long meanFrameNanos(){
+		long count = frames;
+		return count == 0 ? 0 : totalFrameNanos/count;
+	}
+
+}
@@ -0,0 +1,212 @@
+package pong;
+
+import java.util.concurrent.locks.LockSupport;
+
+public class GameLoop implements Runnable {
+	/*GameLoop:
+	 * Interfaces: Runnable
+	 * Purpose: Drives a match on its own thread in place of a Swing Timer.
+	 * Game time advances in fixed steps of tickNanos measured with
+	 * System.nanoTime: the time elapsed since the last iteration is added
+	 * to an accumulator and one update is played for every full step in
+	 * it, so the ball moves the same distance per second however busy the
+	 * machine is. Frames are rendered at their own rate (or as often as
+	 * possible) and are given how far they are between the last two
+	 * updates so that they can be interpolated.
+	 * If the loop falls more than maxCatchUp updates behind (e.g. the
+	 * machine was suspended) the extra updates are dropped and counted
+	 * as missed rather than played all at once.
+	 *
+	 * Includes:
+	 * GameLoop(Game game, int tickRate, int renderRate): Creates a loop
+	 * playing tickRate updates and at most renderRate frames per second
+	 * (0 for as many frames as possible)
+	 *
+	 * void start(): Starts the loop on a new thread
+	 *
+	 * void stop(): Stops the loop, it can't be restarted
+	 *
+	 * void setPaused(boolean paused): Pauses or resumes the game
+	 *
+	 * void run(): The loop itself
+	 * 
+	 * void setMetrics(GameMetrics metrics): Sets where the loop records how
+	 * long updates and frames take (see @pong.GameMetrics)
+	 *
+	 * Stats getters: ticks(), missedTicks(), frames(), meanJitterNanos(),
+	 * maxJitterNanos(). Jitter is how late an update was played compared
+	 * to when it was due.
+	 */
+
+	public interface Game {
+		/*Game:
+		 * Purpose: What a GameLoop drives.
+		 * boolean update(): Plays one fixed step, returns true to stop the loop
+		 * void render(double alpha): Draws a frame, alpha (0 to 1) is how
+		 * far the frame is between the previous and the latest update
+		 */
+		boolean update();
+		void render(double alpha);
+	}
+
+	public static final int DEFAULT_TICK_RATE = 1000/Simulator.TICK_MILLIS; //Updates per second
+	public static final int DEFAULT_RENDER_RATE = 60; //Frames per second
+	private static final int maxCatchUp = 25; //Updates played at most in one iteration
+
+	private final Game game;
+	private final long tickNanos; //Length of one update
+	private final long renderNanos; //Time between frames, 0 if uncapped
+	private Thread thread;
+	private volatile boolean running = false;
+	private volatile boolean paused = false;
+	private volatile GameMetrics metrics; //Null if nothing is recorded
+
+	//Stats, only written by the loop's thread
+	private volatile long ticks = 0;
+	private volatile long missedTicks = 0;
+	private volatile long frames = 0;
+	private volatile long totalJitter = 0;
+	private volatile long maxJitter = 0;
+
+	public GameLoop(Game game, int tickRate, int renderRate){
+		//Constructor: Game game, int tickRate, int renderRate
+		//Creates a loop playing game at tickRate updates per second and
+		//rendering at most renderRate frames per second (0 for uncapped)
+		if (tickRate <= 0 || renderRate < 0){
+			throw new IllegalArgumentException("tickRate must be positive and renderRate not negative");
+		}
+		this.game = game;
+		this.tickNanos = 1000000000L/tickRate;
+		this.renderNanos = renderRate == 0 ? 0 : 1000000000L/renderRate;
+	}
+
+	public void start(){
+		/*start()
+		 * Starts the loop on a new thread named "game-loop"
+		 */
+		running = true;
+		thread = new Thread(this, "game-loop");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	public void stop(){
+		/*stop()
+		 * Asks the loop to stop. Returns without waiting for it.
+		 */
+		running = false;
+		if (thread != null){
+			LockSupport.unpark(thread);
+		}
+	}
+
+	public void setMetrics(GameMetrics metrics){
+		//Sets the metrics updates and frames are recorded in, may be null
+		this.metrics = metrics;
+	}
+
+	public void setPaused(boolean paused){
+		//Pauses or resumes the updates. Frames are still rendered.
+		this.paused = paused;
+	}
+
+	public boolean isPaused(){
+		return paused;
+	}
+
+	@Override
+	public void run(){
+		/*run()
+		 * Adds the elapsed time to the accumulator, plays every update
+		 * that is due, renders a frame if one is due and then sleeps
+		 * until the next update or frame.
+		 */
+		long previous = System.nanoTime();
+		long accumulator = 0;
+		long nextFrame = previous;
+		while (running){
+			GameMetrics m = metrics;
+			boolean measuring = m != null && m.isEnabled();
+			long now = System.nanoTime();
+			long elapsed = now-previous;
+			previous = now;
+			if (paused){
+				//Time spent paused doesn't count towards the game
+				accumulator = 0;
+			}else{
+				accumulator += elapsed;
+				long due = accumulator/tickNanos;
+				if (due > maxCatchUp){
+					missedTicks += due-maxCatchUp;
+					if (measuring){
+						m.recordMissedTicks(due-maxCatchUp);
+					}
+					accumulator -= (due-maxCatchUp)*tickNanos;
+				}
+				while (accumulator >= tickNanos && running){
+					//How long after it was due this update is being played
+					long jitter = accumulator-tickNanos;
+					totalJitter += jitter;
+					if (jitter > maxJitter){
+						maxJitter = jitter;
+					}
+					ticks++;
+					accumulator -= tickNanos;
+					long updateStart = measuring ? System.nanoTime() : 0;
+					if (game.update()){
+						running = false;
+					}
+					if (measuring){
+						m.recordUpdate(System.nanoTime()-updateStart, jitter);
+					}
+				}
+			}
+			if (!running){
+				break;
+			}
+
+			if (now-nextFrame >= 0){
+				frames++;
+				long renderStart = measuring ? System.nanoTime() : 0;
+				game.render(paused ? 1.0 : (double)accumulator/tickNanos);
+				if (measuring){
+					//Late if a whole frame passed since it was due
+					boolean late = renderNanos != 0 && now-nextFrame >= renderNanos;
+					m.recordRender(System.nanoTime()-renderStart, late);
+				}
+				nextFrame = renderNanos == 0 ? now : Math.max(nextFrame+renderNanos, now);
+			}
+
+			//Sleeps until the next update or frame is due
+			long untilTick = paused ? renderNanos : tickNanos-accumulator;
+			long wait = renderNanos == 0 ? 0 : Math.min(untilTick, nextFrame-System.nanoTime());
+			if (wait > 0){
+				LockSupport.parkNanos(wait);
+			}else{
+				Thread.yield();
+			}
+		}
+	}
+
+	public long ticks(){
+		return ticks;
+	}
+
+	public long missedTicks(){
+		return missedTicks;
+	}
+
+	public long frames(){
+		return frames;
+	}
+
+	public long meanJitterNanos(){
+		long count = ticks;
+		return count == 0 ? 0 : totalJitter/count;
+	}
+
+	public long maxJitterNanos(){
+		return maxJitter;
+	}
+
+}
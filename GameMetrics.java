@@ -0,0 +1,290 @@
+package pong;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics;
+import java.awt.Rectangle;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+public class GameMetrics implements GameMetricsMBean, GameCanvas.Overlay {
+	/*GameMetrics:
+	 * Interfaces: GameMetricsMBean, GameCanvas.Overlay
+	 * Purpose: Measures how the game loop behaves (see @pong.GameLoop):
+	 * how long updates and frames take, how late each update is played
+	 * compared to when it was due (timer lateness), updates dropped when
+	 * the loop fell behind, frames rendered later than a whole frame
+	 * after they were due, how long key events wait before an update
+	 * applies them (input latency) and the garbage collections since the
+	 * metrics were last reset. Durations go into LatencyHistograms.
+	 * While disabled the loop doesn't read the clock or record anything
+	 * for it. The metrics are available through JMX and as an overlay
+	 * drawn over the game by the GameCanvas.
+	 *
+	 * Includes:
+	 * boolean isEnabled(), void setEnabled(boolean enabled): Whether the
+	 * loop records anything
+	 *
+	 * void recordUpdate(long nanos, long lateness), void recordRender(long nanos,
+	 * boolean late), void recordMissedTicks(long missed): Called by the loop
+	 *
+	 * void recordInput(long latency): Called by the match's update for each
+	 * key event it applies
+	 *
+	 * void reset(): Clears every metric (done by the loop's thread)
+	 *
+	 * boolean paintOverlay(Graphics g, Rectangle region): Draws the metrics
+	 * in the top left corner of the screen
+	 *
+	 * void register(): Registers the metrics with the platform MBeanServer
+	 */
+
+	private static final long overlayRefreshNanos = 250000000L; //Overlay text refresh
+
+	private volatile boolean enabled = false;
+	private volatile boolean resetRequested = false;
+	private final LatencyHistogram updates = new LatencyHistogram();
+	private final LatencyHistogram renders = new LatencyHistogram();
+	private final LatencyHistogram lateness = new LatencyHistogram();
+	private final LatencyHistogram inputs = new LatencyHistogram();
+	private volatile long missedTicks = 0;
+	private volatile long lateFrames = 0;
+	private long gcCountBase = 0;
+	private long gcTimeBase = 0;
+
+	//Text of the overlay, rebuilt every overlayRefreshNanos
+	private final String[] overlayLines = new String[5];
+	private long overlayBuilt = 0;
+	private Font overlayFont;
+
+	public GameMetrics(){
+		//Constructor: No parameters
+		//Creates disabled metrics
+		resetGc();
+	}
+
+	public void register(){
+		/*register()
+		 * Registers these metrics as pong:type=GameMetrics. Failure to
+		 * register (e.g. a second instance) is reported and ignored.
+		 */
+		try{
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			server.registerMBean(this, new ObjectName("pong:type=GameMetrics"));
+		}catch (JMException e){
+			System.err.println("Could not register GameMetrics: " + e);
+		}
+	}
+
+	@Override
+	public boolean isEnabled(){
+		return enabled;
+	}
+
+	@Override
+	public void setEnabled(boolean enabled){
+		this.enabled = enabled;
+	}
+
+	@Override
+	public void reset(){
+		//The histograms are only written by the loop's thread, so they are
+		//cleared by it on its next update
+		resetRequested = true;
+	}
+
+	public void recordUpdate(long nanos, long late){
+		/*recordUpdate(long nanos, long late)
+		 * Records an update that took nanos and was played late
+		 * nanoseconds after it was due.
+		 */
+		if (resetRequested){
+			resetRequested = false;
+			updates.reset();
+			renders.reset();
+			lateness.reset();
+			inputs.reset();
+			missedTicks = 0;
+			lateFrames = 0;
+			resetGc();
+		}
+		updates.record(nanos);
+		lateness.record(late);
+	}
+
+	public void recordRender(long nanos, boolean late){
+		/*recordRender(long nanos, boolean late)
+		 * Records a frame that took nanos to render, late is whether it
+		 * was rendered more than a whole frame after it was due.
+		 */
+		renders.record(nanos);
+		if (late){
+			lateFrames++;
+		}
+	}
+
+	public void recordInput(long latency){
+		//Records a key event applied latency nanoseconds after it happened,
+		//on the loop's thread
+		inputs.record(latency);
+	}
+
+	public void recordMissedTicks(long missed){
+		//Records updates dropped by the loop
+		missedTicks += missed;
+	}
+
+	private void resetGc(){
+		//Makes the GC totals count from now
+		gcCountBase = 0;
+		gcTimeBase = 0;
+		gcCountBase = getGcCount();
+		gcTimeBase = getGcTimeMillis();
+	}
+
+	@Override
+	public long getUpdates(){
+		return updates.count();
+	}
+
+	@Override
+	public double getUpdateP50Micros(){
+		return updates.percentile(50)/1e3;
+	}
+
+	@Override
+	public double getUpdateP99Micros(){
+		return updates.percentile(99)/1e3;
+	}
+
+	@Override
+	public double getUpdateMaxMicros(){
+		return updates.max()/1e3;
+	}
+
+	@Override
+	public long getFrames(){
+		return renders.count();
+	}
+
+	@Override
+	public double getRenderP50Micros(){
+		return renders.percentile(50)/1e3;
+	}
+
+	@Override
+	public double getRenderP99Micros(){
+		return renders.percentile(99)/1e3;
+	}
+
+	@Override
+	public double getRenderMaxMicros(){
+		return renders.max()/1e3;
+	}
+
+	@Override
+	public double getTimerLatenessP50Micros(){
+		return lateness.percentile(50)/1e3;
+	}
+
+	@Override
+	public double getTimerLatenessP99Micros(){
+		return lateness.percentile(99)/1e3;
+	}
+
+	@Override
+	public double getTimerLatenessMaxMicros(){
+		return lateness.max()/1e3;
+	}
+
+	@Override
+	public long getInputEvents(){
+		return inputs.count();
+	}
+
+	@Override
+	public double getInputLatencyP50Micros(){
+		return inputs.percentile(50)/1e3;
+	}
+
+	@Override
+	public double getInputLatencyP99Micros(){
+		return inputs.percentile(99)/1e3;
+	}
+
+	@Override
+	public double getInputLatencyMaxMicros(){
+		return inputs.max()/1e3;
+	}
+
+	@Override
+	public long getMissedTicks(){
+		return missedTicks;
+	}
+
+	@Override
+	public long getLateFrames(){
+		return lateFrames;
+	}
+
+	@Override
+	public long getGcCount(){
+		long total = 0;
+		List<GarbageCollectorMXBean> collectors = ManagementFactory.getGarbageCollectorMXBeans();
+		for (GarbageCollectorMXBean collector : collectors){
+			total += Math.max(0, collector.getCollectionCount());
+		}
+		return total-gcCountBase;
+	}
+
+	@Override
+	public long getGcTimeMillis(){
+		long total = 0;
+		List<GarbageCollectorMXBean> collectors = ManagementFactory.getGarbageCollectorMXBeans();
+		for (GarbageCollectorMXBean collector : collectors){
+			total += Math.max(0, collector.getCollectionTime());
+		}
+		return total-gcTimeBase;
+	}
+
+	@Override
+	public boolean paintOverlay(Graphics g, Rectangle region){
+		/*paintOverlay(Graphics g, Rectangle region)
+		 * Draws the metrics in the top left corner when enabled. The
+		 * text is only rebuilt a few times per second.
+		 */
+		if (!enabled){
+			return false;
+		}
+		long now = System.nanoTime();
+		if (overlayLines[0] == null || now-overlayBuilt >= overlayRefreshNanos){
+			overlayBuilt = now;
+			overlayLines[0] = String.format("update us p50 %.1f p99 %.1f max %.1f",
+					getUpdateP50Micros(), getUpdateP99Micros(), getUpdateMaxMicros());
+			overlayLines[1] = String.format("render us p50 %.1f p99 %.1f max %.1f",
+					getRenderP50Micros(), getRenderP99Micros(), getRenderMaxMicros());
+			overlayLines[2] = String.format("timer late us p50 %.1f p99 %.1f max %.1f",
+					getTimerLatenessP50Micros(), getTimerLatenessP99Micros(), getTimerLatenessMaxMicros());
+			overlayLines[3] = String.format("input us p50 %.1f p99 %.1f max %.1f",
+					getInputLatencyP50Micros(), getInputLatencyP99Micros(), getInputLatencyMaxMicros());
+			overlayLines[4] = String.format("missed %d late frames %d gc %d (%d ms)",
+					getMissedTicks(), getLateFrames(), getGcCount(), getGcTimeMillis());
+		}
+		if (overlayFont == null){
+			overlayFont = new Font(Font.MONOSPACED, Font.PLAIN, 11);
+		}
+		g.setFont(overlayFont);
+		g.setColor(Color.gray);
+		for (int i = 0;i<overlayLines.length;i++){
+			g.drawString(overlayLines[i], 8, 18+13*i);
+		}
+		g.setColor(Color.black);
+		region.setBounds(4, 4, 300, 13*overlayLines.length+8);
+		return true;
+	}
+
+}
@@ -0,0 +1,36 @@
+package pong;
+
+public interface GameMetricsMBean {
+	/*GameMetricsMBean:
+	 * Purpose: JMX view of the game loop's metrics (see @pong.GameMetrics),
+	 * registered as pong:type=GameMetrics. Durations are in microseconds.
+	 */
+
+	boolean isEnabled();
+	void setEnabled(boolean enabled);
+	void reset();
+
+	long getUpdates();
+	double getUpdateP50Micros();
+	double getUpdateP99Micros();
+	double getUpdateMaxMicros();
+
+	long getFrames();
+	double getRenderP50Micros();
+	double getRenderP99Micros();
+	double getRenderMaxMicros();
+
+	double getTimerLatenessP50Micros();
+	double getTimerLatenessP99Micros();
+	double getTimerLatenessMaxMicros();
+
+	long getInputEvents();
+	double getInputLatencyP50Micros();
+	double getInputLatencyP99Micros();
+	double getInputLatencyMaxMicros();
+
+	long getMissedTicks();
+	long getLateFrames();
+	long getGcCount();
+	long getGcTimeMillis();
+}
@@ -0,0 +1,126 @@
+package pong;
+
+public class GameState implements GameView {
+	/*GameState:
+	 * Interfaces: GameView
+	 * Purpose: Holds everything needed to describe a single match of
+	 * Pong at one instant: where the ball and paddles are, how fast
+	 * and in which direction the ball is moving and the current score.
+	 * Contains no drawing code so that it can be used without AWT/Swing
+	 * (see @pong.Simulator which advances it and @pong.PvPPanel which
+	 * draws it).
+	 *
+	 * The cosine and sine of ballDirection are kept alongside it so that
+	 * the ball can be moved without trigonometry on every update. They are
+	 * only recomputed when the direction is set with setBallDirection, so
+	 * the direction should never be assigned directly.
+	 *
+	 * Includes:
+	 * void setBallDirection(double direction): Changes the ball's direction
+	 * and its cached cosine and sine
+	 *
+	 * void resetBoard(): Starts the next point by resetting the ball
+	 *
+	 * void copyFrom(GameState other): Overwrites this state with the
+	 * values of another state without allocating
+	 *
+	 * GameView getters: ballX(), ballY(), ballDirection(), ballCos(),
+	 * ballSin(), ballSpeed(), paddleCenter(int), score(int), tick()
+	 */
+
+	//Rows of paddle's centers
+	public double[] paddleCenters = {Simulator.fieldHeight/2,Simulator.fieldHeight/2};
+	//Center of ball
+	public double[] ball = {Simulator.fieldWidth/2,Simulator.fieldHeight/2};
+	public double ballSpeed = Simulator.startBallSpeed; //Distance travelled by ball per update
+	//ballDirection tracks ball's trajectory relative to the horizontal
+	//ballDirection = 0 - the ball is moving horizontally right
+	public double ballDirection = Math.PI;
+	public double ballCos = Math.cos(Math.PI); //Math.cos(ballDirection)
+	public double ballSin = Math.sin(Math.PI); //Math.sin(ballDirection)
+	public int[] playerScores = {0,0}; //Tracks Player Scores
+	public long tick = 0; //Number of updates since the match started
+
+	public void setBallDirection(double direction){
+		/*setBallDirection(double direction)
+		 * Sets the ball's direction and recomputes its cosine and sine
+		 */
+		ballDirection = direction;
+		ballCos = Math.cos(direction);
+		ballSin = Math.sin(direction);
+	}
+
+	public void resetBoard(){
+		/*resetBoard()
+		 * Resets the ball with original location, trajectory and speed
+		 */
+		ball[0] = Simulator.fieldWidth/2;
+		ball[1] = Simulator.fieldHeight/2;
+		setBallDirection(Math.PI);
+		ballSpeed = Simulator.serveBallSpeed;
+	}
+
+	public void copyFrom(GameState other){
+		/*copyFrom(GameState other)
+		 * Copies every field of other into this state. The arrays
+		 * of this state are reused rather than replaced.
+		 */
+		paddleCenters[0] = other.paddleCenters[0];
+		paddleCenters[1] = other.paddleCenters[1];
+		ball[0] = other.ball[0];
+		ball[1] = other.ball[1];
+		ballSpeed = other.ballSpeed;
+		ballDirection = other.ballDirection;
+		ballCos = other.ballCos;
+		ballSin = other.ballSin;
+		playerScores[0] = other.playerScores[0];
+		playerScores[1] = other.playerScores[1];
+		tick = other.tick;
+	}
+
+	@Override
+	public double ballX(){
+		return ball[0];
+	}
+
+	@Override
+	public double ballY(){
+		return ball[1];
+	}
+
+	@Override
+	public double ballDirection(){
+		return ballDirection;
+	}
+
+	@Override
+	public double ballCos(){
+		return ballCos;
+	}
+
+	@Override
+	public double ballSin(){
+		return ballSin;
+	}
+
+	@Override
+	public double ballSpeed(){
+		return ballSpeed;
+	}
+
+	@Override
+	public double paddleCenter(int paddle){
+		return paddleCenters[paddle];
+	}
+
+	@Override
+	public int score(int player){
+		return playerScores[player];
+	}
+
+	@Override
+	public long tick(){
+		return tick;
+	}
+
+}
@@ -0,0 +1,79 @@
+package pong;
+
+import java.nio.ByteBuffer;
+
+public class GameStateCodec {
+	/*GameStateCodec:
+	 * Purpose: Fixed-layout binary form of a full game state snapshot: the
+	 * GameState and the keys held when it was taken. Every field is at a
+	 * fixed offset, so encoding and decoding are a few absolute puts and
+	 * gets with no reflection, no Java serialization and no allocation.
+	 * Meant for anything that needs a match as bytes: pausing to disk,
+	 * rollback, replay keyframes (see @pong.ReplayWriter), moving a live
+	 * match to another process. Doubles are stored as their exact bits,
+	 * so a decoded state plays on exactly like the original.
+	 * Layout (SIZE bytes, in the buffer's byte order, big-endian unless
+	 * changed):
+	 * 0 MAGIC (short), 2 VERSION (byte), 3 keys held (byte),
+	 * 4 tick (long), 12 ball x, 20 ball y, 28 ballDirection, 36 ballCos,
+	 * 44 ballSin, 52 ballSpeed, 60 left paddle, 68 right paddle (doubles),
+	 * 76 left score, 80 right score (ints)
+	 *
+	 * Includes:
+	 * void encode(GameState state, int inputs, ByteBuffer out, int at):
+	 * Writes a snapshot at offset at of out
+	 *
+	 * int decode(ByteBuffer in, int at, GameState into): Reads the snapshot
+	 * at offset at of in into into, returns the keys held
+	 */
+
+	public static final short MAGIC = 0x5053; //"PS"
+	public static final byte VERSION = 1;
+	public static final int SIZE = 84; //Bytes of a snapshot
+
+	public static void encode(GameState state, int inputs, ByteBuffer out, int at){
+		/*encode(GameState state, int inputs, ByteBuffer out, int at)
+		 * Writes state and the keys held (a mask of Simulator.UP etc.)
+		 * at offset at. The buffer's position isn't changed.
+		 */
+		out.putShort(at, MAGIC);
+		out.put(at+2, VERSION);
+		out.put(at+3, (byte)inputs);
+		out.putLong(at+4, state.tick);
+		out.putDouble(at+12, state.ball[0]);
+		out.putDouble(at+20, state.ball[1]);
+		out.putDouble(at+28, state.ballDirection);
+		out.putDouble(at+36, state.ballCos);
+		out.putDouble(at+44, state.ballSin);
+		out.putDouble(at+52, state.ballSpeed);
+		out.putDouble(at+60, state.paddleCenters[0]);
+		out.putDouble(at+68, state.paddleCenters[1]);
+		out.putInt(at+76, state.playerScores[0]);
+		out.putInt(at+80, state.playerScores[1]);
+	}
+
+	public static int decode(ByteBuffer in, int at, GameState into){
+		/*decode(ByteBuffer in, int at, GameState into)
+		 * Reads the snapshot at offset at into into and returns the keys
+		 * held. The buffer's position isn't changed. Throws
+		 * IllegalArgumentException if the bytes aren't a snapshot of this
+		 * version, leaving into untouched.
+		 */
+		if (in.getShort(at) != MAGIC || in.get(at+2) != VERSION){
+			throw new IllegalArgumentException("Not a version " + VERSION + " game state snapshot");
+		}
+		into.tick = in.getLong(at+4);
+		into.ball[0] = in.getDouble(at+12);
+		into.ball[1] = in.getDouble(at+20);
+		into.ballDirection = in.getDouble(at+28);
+		into.ballCos = in.getDouble(at+36);
+		into.ballSin = in.getDouble(at+44);
+		into.ballSpeed = in.getDouble(at+52);
+		into.paddleCenters[0] = in.getDouble(at+60);
+		into.paddleCenters[1] = in.getDouble(at+68);
+		into.playerScores[0] = in.getInt(at+76);
+		into.playerScores[1] = in.getInt(at+80);
+		return in.get(at+3) & 0xFF;
+	}
+
+}
@@ -0,0 +1,36 @@
+package pong;
+
+public interface GameView {
+	/*GameView:
+	 * Purpose: Read-only view of a match at one instant, given to
+	 * PaddleControllers (see @pong.PaddleController) so that they can
+	 * observe the match without being able to change it. Implemented by
+	 * GameState, so a simulator hands its own state over without copying.
+	 *
+	 * Includes:
+	 * double ballX(), double ballY(): Center of the ball
+	 *
+	 * double ballDirection(), double ballCos(), double ballSin(): Direction
+	 * of the ball (see GameState.ballDirection) and its cosine and sine
+	 *
+	 * double ballSpeed(): Distance travelled by the ball per update
+	 *
+	 * double paddleCenter(int paddle): Row of the center of paddle (0 for
+	 * left, 1 for right)
+	 *
+	 * int score(int player): Points of player (0 for left, 1 for right)
+	 *
+	 * long tick(): Updates played since the match started
+	 */
+
+	double ballX();
+	double ballY();
+	double ballDirection();
+	double ballCos();
+	double ballSin();
+	double ballSpeed();
+	double paddleCenter(int paddle);
+	int score(int player);
+	long tick();
+
+}
@@ -0,0 +1,225 @@
+package pong;
+
+public class GoldenTrace {
+	/*GoldenTrace:
+	 * Purpose: Checks that Simulator, which moves the ball along the
+	 * cosine and sine cached in the GameState, plays exactly the same
+	 * matches as the original engine, which called Math.cos and Math.sin
+	 * on every use of the direction. The original updateBall is kept here
+	 * as the reference. Long seeded runs are played by both engines side
+	 * by side and every field of both states is compared after every
+	 * update, along with the cached values against Math.cos and Math.sin
+	 * of the direction. Both Player vs Player (keys from
+	 * BatchBenchmark.inputsFor) and Comp vs Comp are checked. A match that
+	 * ends is followed by the next seeded match.
+	 * A digest of each trace is printed so that runs can be compared
+	 * between versions and machines.
+	 *
+	 * Includes:
+	 * void main(String[] args): Runs the check, exits with 1 on the first
+	 * difference. Arguments (all optional): runs, ticks, seed
+	 */
+
+	static class ReferenceSimulator extends Simulator {
+		//Player vs Player with the original ball update
+		ReferenceSimulator(GameState state){
+			super(state);
+		}
+
+		@Override
+		protected boolean updateBall(){
+			return referenceUpdateBall(state);
+		}
+	}
+
+	static class ReferenceEvESimulator extends EvESimulator {
+		//Comp vs Comp with the original ball update
+		ReferenceEvESimulator(GameState state){
+			super(state);
+		}
+
+		@Override
+		protected boolean updateBall(){
+			return referenceUpdateBall(state);
+		}
+	}
+
+	static boolean referenceUpdateBall(GameState s){
+		/*referenceUpdateBall(GameState s)
+		 * Simulator.updateBall as it was before the direction's cosine
+		 * and sine were cached. The cached values are set afterwards
+		 * from the direction so that the CPU reads what it used to.
+		 */
+		double[] ball = s.ball;
+		double[] paddleCenters = s.paddleCenters;
+		int ballRadius = Simulator.ballRadius;
+		int paddleLength = Simulator.paddleLength;
+		int[] paddleColumns = Simulator.paddleColumns;
+		double paddleCenterTolerance = Simulator.paddleCenterTolerance;
+
+		if(ball[0]+s.ballSpeed*Math.cos(s.ballDirection)-ballRadius<=paddleColumns[0]&
+				ball[0]+s.ballSpeed*Math.cos(s.ballDirection)-ballRadius>=paddleColumns[0]-s.ballSpeed){
+			double paddleTop = paddleCenters[0]-paddleLength/2;
+			double paddleBottom = paddleCenters[0]+paddleLength/2;
+			if (ball[1]>=paddleTop&&ball[1]<=paddleBottom){
+				double ballDeflection = (ball[1]-((paddleTop+paddleBottom)/2))/paddleLength;
+				if (Math.abs(ballDeflection) < paddleCenterTolerance){
+					s.ballDirection *= -1;
+					s.ballDirection += Math.PI;
+				}else{
+					double m = (Math.PI/3-Math.PI/6)/(0.5-paddleCenterTolerance);
+					double b = Math.PI/3-m/2;
+					s.ballDirection = m*Math.abs(ballDeflection)+b;
+					if (ballDeflection<0){
+						s.ballDirection *= -1;
+					}
+				}
+			}
+		}
+		if (ball[0]+s.ballSpeed*Math.cos(s.ballDirection)-ballRadius<=paddleColumns[1]&
+				ball[0]+s.ballSpeed*Math.cos(s.ballDirection)-ballRadius>=paddleColumns[1]-s.ballSpeed) {
+			double paddleTop = paddleCenters[1]-paddleLength/2;
+			double paddleBottom = paddleCenters[1]+paddleLength/2;
+			if (ball[1]>=paddleTop&&ball[1]<=paddleBottom){
+				double ballDeflection =(ball[1]-((paddleTop+paddleBottom)/2))/paddleLength;
+				if (Math.abs(ballDeflection) < paddleCenterTolerance){
+					s.ballDirection *= -1;
+					s.ballDirection += Math.PI;
+				}else{
+					double m = (2*Math.PI/3-5*Math.PI/6)/(0.5-paddleCenterTolerance);
+					double b = 2*Math.PI/3-m/2;
+					s.ballDirection = m*Math.abs(ballDeflection)+b;
+					if (ballDeflection<0){
+						s.ballDirection *= -1;
+					}
+				}
+			}
+		}
+		if (ball[1]+s.ballSpeed*Math.sin(s.ballDirection)-ballRadius<=Simulator.borderWidth||
+				ball[1]+s.ballSpeed*Math.sin(s.ballDirection)+ballRadius>=Simulator.fieldHeight-Simulator.borderWidth){
+			s.ballDirection *= -1;
+		}
+		ball[0] = ball[0]+s.ballSpeed*Math.cos(s.ballDirection);
+		ball[1] = ball[1]+s.ballSpeed*Math.sin(s.ballDirection);
+		boolean over = false;
+		if ((ball[0]<0)|(ball[0]>Simulator.fieldWidth)){
+			if (ball[0]<0){
+				s.playerScores[1] += 1;
+			}else{
+				s.playerScores[0] += 1;
+			}
+			if (s.playerScores[0]==Simulator.winningScore|s.playerScores[1]==Simulator.winningScore){
+				over = true;
+			}else{
+				s.resetBoard();
+			}
+		}
+		s.setBallDirection(s.ballDirection);
+		return over;
+	}
+
+	static String compare(GameState expected, GameState actual){
+		//Returns the first field that differs, or null if none does
+		if (actual.ballCos != Math.cos(actual.ballDirection)){
+			return "ballCos";
+		}
+		if (actual.ballSin != Math.sin(actual.ballDirection)){
+			return "ballSin";
+		}
+		if (actual.ball[0] != expected.ball[0] || actual.ball[1] != expected.ball[1]){
+			return "ball";
+		}
+		if (actual.ballDirection != expected.ballDirection){
+			return "ballDirection";
+		}
+		if (actual.ballSpeed != expected.ballSpeed){
+			return "ballSpeed";
+		}
+		if (actual.paddleCenters[0] != expected.paddleCenters[0]
+				|| actual.paddleCenters[1] != expected.paddleCenters[1]){
+			return "paddleCenters";
+		}
+		if (actual.playerScores[0] != expected.playerScores[0]
+				|| actual.playerScores[1] != expected.playerScores[1]){
+			return "playerScores";
+		}
+		if (actual.tick != expected.tick){
+			return "tick";
+		}
+		return null;
+	}
+
+	static long digest(long h, GameState s){
+		//Mixes the state into the running digest h
+		h = mix(h, Double.doubleToLongBits(s.ball[0]));
+		h = mix(h, Double.doubleToLongBits(s.ball[1]));
+		h = mix(h, Double.doubleToLongBits(s.ballDirection));
+		h = mix(h, Double.doubleToLongBits(s.paddleCenters[0]));
+		h = mix(h, Double.doubleToLongBits(s.paddleCenters[1]));
+		return mix(h, s.playerScores[0]*31+s.playerScores[1]);
+	}
+
+	private static long mix(long h, long value){
+		h = (h^value)*0x9E3779B97F4A7C15L;
+		return h^(h>>>32);
+	}
+
+	static long run(boolean computer, long seed, long ticks){
+		/*run(boolean computer, long seed, long ticks)
+		 * Plays ticks updates with both engines from the seeded states,
+		 * starting a new match whenever one ends. Returns the digest of
+		 * the trace, exits on the first difference.
+		 */
+		GameState expected = MatchRunner.seededState(seed);
+		GameState actual = MatchRunner.seededState(seed);
+		Simulator reference = computer ? new ReferenceEvESimulator(expected) : new ReferenceSimulator(expected);
+		Simulator simulator = computer ? new EvESimulator(actual) : new Simulator(actual);
+		long h = seed;
+		int match = 0;
+		for (long t = 0;t<ticks;t++){
+			int inputs = BatchBenchmark.inputsFor(match, t);
+			boolean expectedDone = reference.step(inputs);
+			boolean done = simulator.step(inputs);
+			String field = compare(expected, actual);
+			if (field == null && done != expectedDone){
+				field = "end of match";
+			}
+			if (field != null){
+				System.out.println((computer ? "EvE" : "PvP") + " seed " + seed + ": " + field
+						+ " differs at update " + t);
+				System.exit(1);
+			}
+			h = digest(h, actual);
+			if (done){
+				match++;
+				GameState next = MatchRunner.seededState(MatchRunner.matchSeed(seed, match));
+				expected.copyFrom(next);
+				actual.copyFrom(next);
+			}
+		}
+		return h;
+	}
+
+	public static void main(String[] args){
+		/*main(String[] args)
+		 * Checks runs seeded runs of each mode, each ticks updates long,
+		 * and prints the digests.
+		 */
+		int runs = args.length > 0 ? Integer.parseInt(args[0]) : 16;
+		long ticks = args.length > 1 ? Long.parseLong(args[1]) : 1000000;
+		long seed = args.length > 2 ? Long.parseLong(args[2]) : 2016;
+
+		long start = System.nanoTime();
+		long pvp = 0;
+		long eve = 0;
+		for (int i = 0;i<runs;i++){
+			pvp = mix(pvp, run(false, MatchRunner.matchSeed(seed, i), ticks));
+			eve = mix(eve, run(true, MatchRunner.matchSeed(seed, i), ticks));
+		}
+		System.out.printf("%d runs of %d updates per mode match the reference (%.1f s)%n",
+				runs, ticks, (System.nanoTime()-start)/1e9);
+		System.out.printf("PvP digest: %016x%n", pvp);
+		System.out.printf("EvE digest: %016x%n", eve);
+	}
+
+}
@@ -0,0 +1,145 @@
+package pong;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class InputQueue {
+	/*InputQueue:
+	 * Purpose: Hands key events from the EDT (the only producer) to the
+	 * game loop's thread (the only consumer) without locks. Events go
+	 * into a fixed ring of slots. The producer fills a slot and then
+	 * publishes it by moving the tail forward, and the consumer reads
+	 * the slot and then frees it by moving the head forward. Each index
+	 * has one writer and is published with a release store (lazySet),
+	 * so a published slot is always seen fully written.
+	 * An event is a key (0 to 3, see PvPPanel.setKey), whether it was
+	 * pressed or released and the System.nanoTime at which it happened.
+	 * Nothing is allocated once the queue is created.
+	 * When the ring is full, events are never dropped: the producer keeps
+	 * only the latest state of each key in one pending word instead, and
+	 * goes on doing so until the consumer has read the ring and taken the
+	 * word. The consumer reads those states after the ring, so the newest
+	 * state of a key (a release in particular) always wins; only presses
+	 * and releases in between are lost.
+	 *
+	 * Includes:
+	 * InputQueue(int capacity): Creates a queue of capacity (rounded up to
+	 * a power of two) events
+	 *
+	 * boolean offer(int key, boolean pressed, long time): Adds an event,
+	 * producer only. Returns false (and counts it) if it was kept as the
+	 * key's latest state because the ring is full.
+	 *
+	 * int poll(): Removes the oldest event and returns it encoded (see
+	 * key(int) and pressed(int)), or -1 if there is none. Consumer only.
+	 *
+	 * long polledTime(): Time of the event last returned by poll (for a latest
+	 * state, possibly that of a newer event of the same key)
+	 *
+	 * long coalesced(): Number of events kept as latest states
+	 */
+
+	private final int[] events; //key << 1 | pressed
+	private final long[] times;
+	private final int mask; //Capacity-1, capacity is a power of two
+	private final AtomicLong head = new AtomicLong(); //Next slot to read
+	private final AtomicLong tail = new AtomicLong(); //Next slot to write
+	private long cachedHead = 0; //Producer's last read of head
+	private long polledTime = 0;
+	//Latest states kept while the ring is full: for key i, bit 2i is set
+	//if it has one and bit 2i+1 if it is pressed
+	private final AtomicInteger pending = new AtomicInteger();
+	private final long[] pendingTimes = new long[16]; //Time of each key's latest state (keys 0 to 15)
+	private int taken = 0; //Pending word taken by the consumer, not yet returned
+	private volatile long coalesced = 0;
+
+	public InputQueue(int capacity){
+		//Constructor: int capacity
+		//Creates an empty queue holding at least capacity events
+		if (capacity <= 0 || capacity > 1 << 30){
+			throw new IllegalArgumentException("capacity must be within 1 and 2^30");
+		}
+		int size = Integer.highestOneBit(capacity);
+		if (size < capacity){
+			size <<= 1;
+		}
+		events = new int[size];
+		times = new long[size];
+		mask = size-1;
+	}
+
+	public boolean offer(int key, boolean pressed, long time){
+		/*offer(int key, boolean pressed, long time)
+		 * Adds an event at the tail. Must only be called by the producer.
+		 */
+		long t = tail.get();
+		boolean full = pending.get() != 0;
+		if (!full && t-cachedHead > mask){
+			//Looks full, reads the consumer's progress again
+			cachedHead = head.get();
+			full = t-cachedHead > mask;
+		}
+		if (full){
+			//Keeps the key's latest state until the consumer takes it
+			pendingTimes[key] = time;
+			int bits = (1|(pressed ? 2 : 0)) << 2*key;
+			int old;
+			do{
+				old = pending.get();
+			}while (!pending.compareAndSet(old, old & ~(3 << 2*key) | bits));
+			coalesced++;
+			return false;
+		}
+		int slot = (int)t & mask;
+		events[slot] = key << 1 | (pressed ? 1 : 0);
+		times[slot] = time;
+		tail.lazySet(t+1);
+		return true;
+	}
+
+	public int poll(){
+		/*poll()
+		 * Removes the event at the head. Must only be called by the consumer.
+		 */
+		if (taken == 0){
+			long h = head.get();
+			if (h != tail.get()){
+				int slot = (int)h & mask;
+				int event = events[slot];
+				polledTime = times[slot];
+				head.lazySet(h+1);
+				return event;
+			}
+			//Ring read, then the latest states kept while it was full,
+			//returned before any event queued after them
+			taken = pending.getAndSet(0);
+			if (taken == 0){
+				return -1;
+			}
+		}
+		int key = Integer.numberOfTrailingZeros(taken) >>> 1;
+		int event = key << 1 | (taken >>> 2*key+1 & 1);
+		polledTime = pendingTimes[key];
+		taken &= ~(3 << 2*key);
+		return event;
+	}
+
+	public long polledTime(){
+		return polledTime;
+	}
+
+	public static int key(int event){
+		//Key of an event returned by poll
+		return event >>> 1;
+	}
+
+	public static boolean pressed(int event){
+		//Whether an event returned by poll is a key press
+		return (event & 1) != 0;
+	}
+
+	public long coalesced(){
+		return coalesced;
+	}
+
+}
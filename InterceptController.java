@@ -0,0 +1,129 @@
+package pong;
+
+import java.util.SplittableRandom;
+
+public class InterceptController implements PaddleController {
+	/*InterceptController:
+	 * Interfaces: PaddleController
+	 * Purpose: CPU that works out exactly where the ball will cross its
+	 * paddle's column. The ball's path is followed in a straight line to
+	 * the column and folded back into the field for every bounce off the
+	 * borders, so no matter how many bounces there are the row is found
+	 * with a few arithmetic operations. The ball's speed doesn't change
+	 * its path, only how soon it gets there, and bounces off the borders
+	 * are already part of it, so the target is computed once per flight:
+	 * when the ball's horizontal direction changes (a paddle hit) or a
+	 * point is scored. Until then the cached target is used and each
+	 * update is O(1) without trigonometry.
+	 * While the ball moves away the paddle goes back to the middle.
+	 * Difficulty:
+	 * reactionTicks - updates after a flight starts before the paddle
+	 * starts going to the new target
+	 * error - each flight's target is off by up to this many pixels (uniformly,
+	 * from the seeded random numbers, so matches can be repeated)
+	 *
+	 * Includes:
+	 * InterceptController(int reactionTicks, double error, long seed):
+	 * Creates a controller with the given difficulty
+	 *
+	 * int move(GameView view, int paddle): Moves towards the target
+	 *
+	 * double interceptRow(double x, double y, double direction, double column):
+	 * Returns the row at which a ball going from x,y in direction reaches column
+	 */
+
+	//Rows the ball's center stays within when bouncing off the borders
+	private static final double top = Simulator.borderWidth+Simulator.ballRadius;
+	private static final double bottom = Simulator.fieldHeight-Simulator.borderWidth-Simulator.ballRadius;
+
+	private final int reactionTicks;
+	private final double error;
+	private final SplittableRandom random;
+
+	//Horizontal direction (sign of the cosine) the target was computed for,
+	//0 before the first update
+	private int cachedHeading = 0;
+	private int cachedPoints = -1; //Points scored when the target was computed
+	private double target = Simulator.fieldHeight/2; //Row the paddle is going to
+	private double nextTarget = Simulator.fieldHeight/2; //Target once the reaction delay is over
+	private int reactionLeft = 0; //Updates before nextTarget is used
+
+	public InterceptController(int reactionTicks, double error, long seed){
+		//Constructor: int reactionTicks, double error, long seed
+		//Creates a controller reacting after reactionTicks updates and
+		//missing its target by up to error pixels
+		if (reactionTicks < 0 || error < 0){
+			throw new IllegalArgumentException("reactionTicks and error can't be negative");
+		}
+		this.reactionTicks = reactionTicks;
+		this.error = error;
+		this.random = new SplittableRandom(seed);
+	}
+
+	@Override
+	public int move(GameView view, int paddle){
+		/*move(GameView view, int paddle)
+		 * Recomputes the target if a new flight started, then moves the
+		 * paddle towards it unless it is within one paddle step.
+		 */
+		int points = view.score(0)+view.score(1);
+		int heading = view.ballCos() < 0 ? -1 : 1;
+		if (heading != cachedHeading || points != cachedPoints){
+			cachedHeading = heading;
+			cachedPoints = points;
+			nextTarget = computeTarget(view, paddle);
+			reactionLeft = reactionTicks;
+		}
+		if (reactionLeft > 0){
+			reactionLeft--;
+		}else{
+			target = nextTarget;
+		}
+
+		double offset = target-view.paddleCenter(paddle);
+		if (offset < -Simulator.paddleSpeed){
+			return UP;
+		}
+		if (offset > Simulator.paddleSpeed){
+			return DOWN;
+		}
+		return STAY;
+	}
+
+	private double computeTarget(GameView view, int paddle){
+		//Returns the row to go to for the ball's current flight
+		double cos = view.ballCos();
+		boolean coming = paddle == 0 ? cos < 0 : cos > 0;
+		if (!coming){
+			return Simulator.fieldHeight/2;
+		}
+		//Column of the ball's center when it touches the paddle
+		double column = Simulator.paddleColumns[paddle]+Simulator.ballRadius;
+		double row = interceptRow(view.ballX(), view.ballY(), view.ballDirection(), column);
+		if (error > 0){
+			row += (random.nextDouble()*2-1)*error;
+		}
+		return row;
+	}
+
+	public static double interceptRow(double x, double y, double direction, double column){
+		/*interceptRow(double x, double y, double direction, double column)
+		 * Follows the ball from x,y in direction to column as if there
+		 * were no borders, then folds the row back into the field: the
+		 * path between the borders repeats every 2*(bottom-top) pixels
+		 * and is mirrored in its second half.
+		 */
+		double cos = Math.cos(direction);
+		if (cos == 0){
+			return y;
+		}
+		double unfolded = y+(column-x)/cos*Math.sin(direction);
+		double span = bottom-top;
+		double folded = (unfolded-top)%(2*span);
+		if (folded < 0){
+			folded += 2*span;
+		}
+		return folded <= span ? top+folded : top+2*span-folded;
+	}
+
+}
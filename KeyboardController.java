@@ -0,0 +1,34 @@
+package pong;
+
+public class KeyboardController implements PaddleController {
+	/*KeyboardController:
+	 * Interfaces: PaddleController
+	 * Purpose: A paddle played by a person, so that any side of a match
+	 * moved by controllers can be played at the keyboard. Moves the
+	 * paddle as the keys given before each move say: W and S for the left
+	 * paddle, UP and DOWN for the right one, as in Player vs Player.
+	 * Holding both keys keeps the paddle still.
+	 */
+
+	private int inputs = 0; //Keys held in the current update
+
+	@Override
+	public void keys(int inputs){
+		//Keeps the keys held for the next move
+		this.inputs = inputs;
+	}
+
+	@Override
+	public int move(GameView view, int paddle){
+		/*move(GameView view, int paddle)
+		 * Returns the move of the keys of paddle that are held
+		 */
+		boolean up = (inputs & (paddle == 0 ? Simulator.W : Simulator.UP)) != 0;
+		boolean down = (inputs & (paddle == 0 ? Simulator.S : Simulator.DOWN)) != 0;
+		if (up == down){
+			return STAY;
+		}
+		return up ? UP : DOWN;
+	}
+
+}
@@ -0,0 +1,106 @@
+package pong;
+
+public class LatencyHistogram {
+	/*LatencyHistogram:
+	 * Purpose: Records durations in nanoseconds into a fixed set of
+	 * log-linear buckets (as in HdrHistogram): values below 64 ns get a
+	 * bucket each, larger values get 32 buckets per power of two, so any
+	 * percentile is reported within about 3% of the true value.
+	 * Recording is a few arithmetic operations and an array increment,
+	 * with no allocation.
+	 * Meant to be written by one thread. Other threads may read it while
+	 * it is written and then see counts that are a few values behind.
+	 *
+	 * Includes:
+	 * void record(long nanos): Adds a value
+	 *
+	 * long count(), long max(): Number of values and the largest one
+	 *
+	 * long percentile(double p): Value below which p percent of the values are
+	 *
+	 * void reset(): Removes every value
+	 */
+
+	private static final int subBits = 5; //32 buckets per power of two
+	private static final int subCount = 1 << subBits;
+	//Values of 0..2*subCount-1 have a bucket each, then subCount per octave
+	private static final int bucketCount = 2*subCount+(63-subBits)*subCount;
+
+	private final long[] counts = new long[bucketCount];
+	private volatile long count = 0;
+	private volatile long max = 0;
+
+	static int bucketOf(long value){
+		//Returns the bucket holding value
+		if (value < 2*subCount){
+			return (int)Math.max(value, 0);
+		}
+		int shift = 63-Long.numberOfLeadingZeros(value)-subBits;
+		return 2*subCount+(shift-1)*subCount+(int)((value>>>shift)-subCount);
+	}
+
+	static long highestOf(int bucket){
+		//Returns the largest value held by bucket
+		if (bucket < 2*subCount){
+			return bucket;
+		}
+		int shift = (bucket-2*subCount)/subCount+1;
+		long top = (bucket-2*subCount)%subCount+subCount;
+		return ((top+1)<<shift)-1;
+	}
+
+	public void record(long nanos){
+		/*record(long nanos)
+		 * Adds a value. Negative values are recorded as 0.
+		 */
+		counts[bucketOf(nanos)]++;
+		count++;
+		if (nanos > max){
+			max = nanos;
+		}
+	}
+
+	public long count(){
+		return count;
+	}
+
+	public long max(){
+		return max;
+	}
+
+	public long percentile(double p){
+		/*percentile(double p)
+		 * Returns the value below which p (0 to 100) percent of the
+		 * recorded values are, rounded up to the end of its bucket.
+		 * Returns 0 if nothing was recorded.
+		 */
+		long total = count;
+		if (total == 0){
+			return 0;
+		}
+		long rank = (long)Math.ceil(p/100*total);
+		if (rank < 1){
+			rank = 1;
+		}
+		long seen = 0;
+		for (int i = 0;i<bucketCount;i++){
+			seen += counts[i];
+			if (seen >= rank){
+				return Math.min(highestOf(i), max);
+			}
+		}
+		return max;
+	}
+
+	public void reset(){
+		/*reset()
+		 * Removes every value. Should be called by the writing thread.
+		 */
+		for (int i = 0;i<bucketCount;i++){
+			counts[i] = 0;
+		}
+		count = 0;
+		max = 0;
+	}
+
+}
@@ -0,0 +1,129 @@
+package pong;
+
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.util.PriorityQueue;
+import java.util.SplittableRandom;
+
+public class LinkSimulator {
+	/*LinkSimulator:
+	 * Purpose: Sends the datagrams of a DatagramChannel as if they went
+	 * over a worse network than loopback, so the networked mode can be
+	 * tried on one machine. Each packet is dropped with probability loss,
+	 * otherwise it is held back for latency plus a random 0 to jitter
+	 * milliseconds (so packets can arrive out of order) and sent by the
+	 * first flush() after that. With no latency, jitter or loss packets
+	 * are sent straight away. The random numbers are seeded.
+	 *
+	 * Includes:
+	 * LinkSimulator(DatagramChannel channel, int latencyMillis, int jitterMillis,
+	 * double loss, long seed): Creates a link sending through channel
+	 *
+	 * void send(ByteBuffer packet, SocketAddress to): Sends or holds back
+	 * packet (from its position to its limit)
+	 *
+	 * void flush(): Sends the packets that are due
+	 *
+	 * long sent(), long dropped(), long bytes(): Packets sent, dropped and
+	 * the bytes of those sent
+	 */
+
+	private static class Delayed implements Comparable<Delayed> {
+		//A packet held back until due (System.nanoTime)
+		final long due;
+		final long order; //Breaks ties so equal times keep their order
+		final ByteBuffer packet;
+		final SocketAddress to;
+
+		Delayed(long due, long order, ByteBuffer packet, SocketAddress to){
+			this.due = due;
+			this.order = order;
+			this.packet = packet;
+			this.to = to;
+		}
+
+		@Override
+		public int compareTo(Delayed other){
+			if (due != other.due){
+				return due < other.due ? -1 : 1;
+			}
+			return Long.compare(order, other.order);
+		}
+	}
+
+	private final DatagramChannel channel;
+	private final long latencyNanos;
+	private final long jitterNanos;
+	private final double loss;
+	private final SplittableRandom random;
+	private final PriorityQueue<Delayed> held = new PriorityQueue<Delayed>();
+	private long order = 0;
+	private long sent = 0;
+	private long dropped = 0;
+	private long bytes = 0;
+
+	public LinkSimulator(DatagramChannel channel, int latencyMillis, int jitterMillis,
+			double loss, long seed){
+		//Constructor: DatagramChannel channel, int latencyMillis, int jitterMillis,
+		//double loss, long seed
+		//Creates a link adding the given delay and loss to channel's packets
+		if (latencyMillis < 0 || jitterMillis < 0 || loss < 0 || loss > 1){
+			throw new IllegalArgumentException("latency and jitter can't be negative, loss is 0 to 1");
+		}
+		this.channel = channel;
+		this.latencyNanos = latencyMillis*1000000L;
+		this.jitterNanos = jitterMillis*1000000L;
+		this.loss = loss;
+		this.random = new SplittableRandom(seed);
+	}
+
+	public void send(ByteBuffer packet, SocketAddress to) throws IOException{
+		/*send(ByteBuffer packet, SocketAddress to)
+		 * Drops, holds back or sends packet. The packet is copied if held
+		 * back, so the caller may reuse its buffer.
+		 */
+		if (loss > 0 && random.nextDouble() < loss){
+			dropped++;
+			return;
+		}
+		if (latencyNanos == 0 && jitterNanos == 0){
+			bytes += packet.remaining();
+			channel.send(packet, to);
+			sent++;
+			return;
+		}
+		long delay = latencyNanos+(jitterNanos == 0 ? 0 : random.nextLong(jitterNanos+1));
+		ByteBuffer copy = ByteBuffer.allocate(packet.remaining());
+		copy.put(packet);
+		copy.flip();
+		held.add(new Delayed(System.nanoTime()+delay, order++, copy, to));
+	}
+
+	public void flush() throws IOException{
+		/*flush()
+		 * Sends every held back packet whose time has come
+		 */
+		long now = System.nanoTime();
+		while (!held.isEmpty() && held.peek().due-now <= 0){
+			Delayed d = held.poll();
+			bytes += d.packet.remaining();
+			channel.send(d.packet, d.to);
+			sent++;
+		}
+	}
+
+	public long sent(){
+		return sent;
+	}
+
+	public long dropped(){
+		return dropped;
+	}
+
+	public long bytes(){
+		return bytes;
+	}
+
+}
@@ -0,0 +1,32 @@
+package pong;
+
+public class LookaheadController implements PaddleController {
+	/*LookaheadController:
+	 * Interfaces: PaddleController
+	 * Purpose: The original CPU of the Player vs Comp mode. The paddle
+	 * moves in accordance where it predicts the ball will be. In order to
+	 * this, the paddle's top and bottom bound are compared to the ball's
+	 * position and its direction in 10 updates from the current time.
+	 * Wall bounces are ignored. Keeps no state.
+	 */
+
+	@Override
+	public int move(GameView view, int paddle){
+		/*move(GameView view, int paddle)
+		 * Uses the current ball direction, speed and position to predict
+		 * the theoretical position of the ball after 10 frame updates.
+		 * If this position is higher than the paddles constraints, the paddle
+		 * is moved up, if it is lower, the paddle is moved down.
+		 */
+		double predicted = view.ballY()+10*view.ballSpeed()*view.ballSin();
+		double center = view.paddleCenter(paddle);
+		if (predicted<center-Simulator.paddleLength/2){
+			return UP;
+		}
+		if (predicted>center+Simulator.paddleLength/2){
+			return DOWN;
+		}
+		return STAY;
+	}
+
+}
@@ -0,0 +1,102 @@
+package pong;
+
+import java.io.File;
+import java.io.IOException;
+
+public class MatchAnalytics {
+	/*MatchAnalytics:
+	 * Purpose: Command line front end of the match event pipeline (see
+	 * @pong.MatchEvents). "record" plays headless Comp vs Comp matches
+	 * (see @pong.EvESimulator) with their events going both to live
+	 * aggregates (see @pong.MatchStats) and to a columnar event file (see
+	 * @pong.EventFileWriter), appending to it if it exists. "summarize"
+	 * reads an event file back into the same aggregates (see
+	 * @pong.EventFileReader). Both report the aggregates and how fast the
+	 * events were produced or read.
+	 *
+	 * Includes:
+	 * void record(String path, int matches, String left, String right,
+	 * long seed, long maxTicks): Plays matches and records their events
+	 *
+	 * void summarize(String path): Aggregates the events of a file
+	 *
+	 * void main(String[] args): Arguments: record file [matches] [left]
+	 * [right] [seed] [maxTicks], or summarize file
+	 */
+
+	public static void record(String path, int matches, String left, String right, long seed, long maxTicks)
+			throws IOException{
+		/*record(String path, int matches, String left, String right, long seed, long maxTicks)
+		 * Plays matches between the controllers named left and right (see
+		 * PaddleController.named), each from its seeded state (see
+		 * MatchRunner.seededState), and appends their events to the file
+		 * at path. Prints the live aggregates.
+		 */
+		MatchEvents events = new MatchEvents();
+		MatchStats stats = new MatchStats();
+		long ticks = 0;
+		long start = System.nanoTime();
+		try (EventFileWriter writer = new EventFileWriter(path)){
+			events.addConsumer(stats);
+			events.addConsumer(writer);
+			for (int i = 0;i<matches;i++){
+				long matchSeed = MatchRunner.matchSeed(seed, i);
+				GameState state = MatchRunner.seededState(matchSeed);
+				EvESimulator simulator = new EvESimulator(state, PaddleController.named(left, matchSeed+1),
+						PaddleController.named(right, matchSeed+2));
+				simulator.setEvents(events);
+				boolean done = false;
+				while (!done && state.tick<maxTicks){
+					done = simulator.step(0);
+				}
+				ticks += state.tick;
+			}
+			events.flush();
+			double seconds = (System.nanoTime()-start)/1e9;
+			System.out.print(stats.report());
+			System.out.printf("%d matches, %d updates, %d events in %.3f s (%.3e updates/s, %.3e events/s)%n",
+					matches, ticks, writer.events(), seconds, ticks/seconds, writer.events()/seconds);
+			System.out.printf("%s: %d blocks appended, %d bytes%n", path, writer.blocks(), new File(path).length());
+		}
+	}
+
+	public static void summarize(String path) throws IOException{
+		/*summarize(String path)
+		 * Reads every event of the file at path into a MatchStats and
+		 * prints it
+		 */
+		MatchStats stats = new MatchStats();
+		long start = System.nanoTime();
+		try (EventFileReader reader = new EventFileReader(path)){
+			long events = reader.read(stats);
+			double seconds = (System.nanoTime()-start)/1e9;
+			if (reader.rulesFingerprint() != Simulator.rules.fingerprint()){
+				System.out.println("(played by other rules than this run's)");
+			}
+			System.out.print(stats.report());
+			System.out.printf("read %d events (%d bytes) in %.3f s: %.3e events/s, %.0f MB/s, %.3e matches/s%n",
+					events, reader.bytesRead(), seconds, events/seconds, reader.bytesRead()/seconds/1e6,
+					stats.matches()/seconds);
+		}
+	}
+
+	public static void main(String[] args) throws IOException{
+		/*main(String[] args)
+		 * Runs record or summarize
+		 */
+		if (args.length >= 2 && args[0].equals("record")){
+			int matches = args.length > 2 ? Integer.parseInt(args[2]) : 1000;
+			String left = args.length > 3 ? args[3] : "easy";
+			String right = args.length > 4 ? args[4] : "normal";
+			long seed = args.length > 5 ? Long.parseLong(args[5]) : 2016;
+			long maxTicks = args.length > 6 ? Long.parseLong(args[6]) : MatchRunner.DEFAULT_MAX_TICKS;
+			record(args[1], matches, left, right, seed, maxTicks);
+		}else if (args.length == 2 && args[0].equals("summarize")){
+			summarize(args[1]);
+		}else{
+			System.out.println("Usage: MatchAnalytics record file [matches] [left] [right] [seed] [maxTicks]");
+			System.out.println("       MatchAnalytics summarize file");
+		}
+	}
+
+}
@@ -0,0 +1,150 @@
+package pong;
+
+import java.util.ArrayList;
+
+public class MatchEvents {
+	/*MatchEvents:
+	 * Purpose: Stream of what happens in matches, emitted by a Simulator
+	 * (see Simulator.setEvents) as it plays: paddle hits, border bounces,
+	 * points scored and ends of matches. Events are written into a buffer
+	 * of columns (one primitive array per field) allocated once, so
+	 * emitting one is a few array stores. When the buffer is full, or
+	 * when flush is called, the whole batch is handed to each consumer in
+	 * turn and the buffer is reused, so consumers work over columns of
+	 * thousands of events at a time (see @pong.MatchStats,
+	 * @pong.EventFileWriter). Consumers run on the thread playing the
+	 * matches, during the update that filled the buffer or the call to
+	 * flush. A batch's columns are only valid during accept.
+	 * Matches of one stream are played one after the other: a match's
+	 * events end with its MATCH_END event, or with nothing if it was cut
+	 * short.
+	 * Event fields:
+	 * type: PADDLE_HIT, BORDER_BOUNCE, POINT or MATCH_END
+	 * side: paddle hit (0 left, 1 right), border hit (0 top, 1 bottom),
+	 * player who scored, winner
+	 * tick: update in which it happened
+	 * ball x and y: where the ball was when it happened
+	 * value: where a paddle hit the ball, from -0.5 (top end) to 0.5
+	 * (bottom end) of the paddle (ballDeflection in Simulator.updateBall);
+	 * 0 for other events
+	 * speed: speed of the ball
+	 * scores: score of each player after the event
+	 *
+	 * Includes:
+	 * MatchEvents(int capacity): Creates a buffer of capacity events
+	 *
+	 * void addConsumer(Consumer consumer): Adds a consumer of the batches
+	 *
+	 * void add(int type, int side, double value, GameState state): Emits
+	 * an event of the match of state
+	 *
+	 * void flush(): Hands the events in the buffer to the consumers
+	 *
+	 * Columns (fields): types, sides, ticks, ballX, ballY, values, speeds,
+	 * leftScores, rightScores, and size(), the number of events in them
+	 */
+
+	public interface Consumer {
+		/*Consumer:
+		 * Takes the batches of a MatchEvents, events 0 to size()-1 of its
+		 * columns, in order
+		 */
+		void accept(MatchEvents batch);
+	}
+
+	public static final byte PADDLE_HIT = 0;
+	public static final byte BORDER_BOUNCE = 1;
+	public static final byte POINT = 2;
+	public static final byte MATCH_END = 3;
+	public static final int DEFAULT_CAPACITY = 4096;
+
+	public final int capacity;
+	public final byte[] types;
+	public final byte[] sides;
+	public final long[] ticks;
+	public final float[] ballX;
+	public final float[] ballY;
+	public final float[] values;
+	public final float[] speeds;
+	public final short[] leftScores;
+	public final short[] rightScores;
+	private int size = 0;
+	private final ArrayList<Consumer> consumers = new ArrayList<Consumer>();
+
+	public MatchEvents(){
+		//Constructor: No parameters
+		//Creates a buffer of DEFAULT_CAPACITY events
+		this(DEFAULT_CAPACITY);
+	}
+
+	public MatchEvents(int capacity){
+		//Constructor: int capacity
+		//Creates a buffer of capacity events with no consumers
+		if (capacity <= 0){
+			throw new IllegalArgumentException("capacity must be positive");
+		}
+		this.capacity = capacity;
+		types = new byte[capacity];
+		sides = new byte[capacity];
+		ticks = new long[capacity];
+		ballX = new float[capacity];
+		ballY = new float[capacity];
+		values = new float[capacity];
+		speeds = new float[capacity];
+		leftScores = new short[capacity];
+		rightScores = new short[capacity];
+	}
+
+	public void addConsumer(Consumer consumer){
+		//Adds consumer, which is given every batch from now on after the
+		//consumers added before it
+		consumers.add(consumer);
+	}
+
+	public int size(){
+		//Number of events in the buffer
+		return size;
+	}
+
+	void setSize(int size){
+		//Sets the number of events in the buffer, for readers filling the columns
+		this.size = size;
+	}
+
+	public void add(int type, int side, double value, GameState state){
+		/*add(int type, int side, double value, GameState state)
+		 * Writes an event that just happened in the match of state, then
+		 * flushes if the buffer is full
+		 */
+		int i = size;
+		types[i] = (byte)type;
+		sides[i] = (byte)side;
+		ticks[i] = state.tick;
+		ballX[i] = (float)state.ball[0];
+		ballY[i] = (float)state.ball[1];
+		values[i] = (float)value;
+		speeds[i] = (float)state.ballSpeed;
+		leftScores[i] = (short)state.playerScores[0];
+		rightScores[i] = (short)state.playerScores[1];
+		size = i+1;
+		if (size == capacity){
+			flush();
+		}
+	}
+
+	public void flush(){
+		/*flush()
+		 * Hands the events in the buffer to every consumer, in the order
+		 * they were added, then empties the buffer. Does nothing if it is
+		 * empty.
+		 */
+		if (size == 0){
+			return;
+		}
+		for (int c = 0;c<consumers.size();c++){
+			consumers.get(c).accept(this);
+		}
+		size = 0;
+	}
+
+}
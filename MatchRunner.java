@@ -0,0 +1,268 @@
+package pong;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class MatchRunner {
+	/*MatchRunner:
+	 * Purpose: Plays a large number of headless Comp vs Comp matches
+	 * (see @pong.EvESimulator) as fast as the machine allows, spread
+	 * over a fixed pool of worker threads. Used to tune the CPU opponent.
+	 * Every match is built from its own seed (starting paddle rows and
+	 * the direction of the first serve) so a run can be repeated exactly.
+	 * Each worker plays its matches on its own simulator and keeps its
+	 * own Results, they are only combined once all workers are done, so
+	 * no state is shared between threads while matches are played.
+	 *
+	 * Includes:
+	 * MatchRunner(int matches, int threads, long seed, long maxTicks):
+	 * Creates a runner for the given number of matches of the original
+	 * CPU against itself
+	 *
+	 * MatchRunner(int matches, int threads, long seed, long maxTicks,
+	 * String left, String right): Creates a runner for matches between
+	 * the controllers named left and right (see PaddleController.named)
+	 *
+	 * Results run(): Plays all of the matches and returns the combined results
+	 *
+	 * GameState seededState(long seed): Creates the starting state of a match
+	 *
+	 * GameState seededState(long seed, GameState into): Same, written into
+	 * an existing state instead of allocating one
+	 *
+	 * void playMatch(long seed, long maxTicks, String left, String right,
+	 * Results results): Plays a single match to the end (or maxTicks) and
+	 * records it in results
+	 *
+	 * void main(String[] args): Runs a batch from the command line
+	 * and prints the report. Arguments: [matches] [threads] [seed] [maxTicks]
+	 * [left] [right]
+	 */
+
+	//Matches longer than this many updates (about 2.8 hours of play)
+	//are stopped and counted as unfinished
+	public static final long DEFAULT_MAX_TICKS = 2000000;
+
+	private final int matches; //Number of matches to play
+	private final int threads; //Number of worker threads
+	private final long seed; //Seed the seeds of each match are derived from
+	private final long maxTicks; //Updates after which a match is stopped
+	private final String left; //Controller of the left paddle
+	private final String right; //Controller of the right paddle
+
+	public MatchRunner(int matches, int threads, long seed, long maxTicks){
+		//Constructor: int matches, int threads, long seed, long maxTicks
+		//Creates a runner that will play matches on threads workers
+		this(matches, threads, seed, maxTicks, "lookahead", "lookahead");
+	}
+
+	public MatchRunner(int matches, int threads, long seed, long maxTicks,
+			String left, String right){
+		//Constructor: int matches, int threads, long seed, long maxTicks,
+		//String left, String right
+		//Creates a runner that will play matches on threads workers
+		//between the controllers named left and right
+		if (matches < 0 || threads < 1 || maxTicks < 1){
+			throw new IllegalArgumentException("matches >= 0, threads >= 1 and maxTicks >= 1 required");
+		}
+		this.matches = matches;
+		this.threads = threads;
+		this.seed = seed;
+		this.maxTicks = maxTicks;
+		this.left = left;
+		this.right = right;
+		//Fails now rather than in the workers if a name is wrong
+		PaddleController.named(left, seed);
+		PaddleController.named(right, seed);
+	}
+
+	public Results run() throws InterruptedException{
+		/*run()
+		 * Plays all of the matches. Workers take the next match not yet
+		 * taken (as in Tournament) rather than a fixed share, as matches
+		 * vary a lot in length, so none sits idle while others still have
+		 * matches to play. Returns the results of every worker combined.
+		 */
+		final AtomicInteger next = new AtomicInteger();
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		List<Future<Results>> futures = new ArrayList<Future<Results>>();
+		long start = System.nanoTime();
+		try{
+			for (int w = 0;w<threads;w++){
+				futures.add(pool.submit(() -> {
+					Results results = new Results();
+					for (int i = next.getAndIncrement();i<matches;i = next.getAndIncrement()){
+						playMatch(matchSeed(seed, i), maxTicks, left, right, results);
+					}
+					return results;
+				}));
+			}
+			Results total = new Results();
+			for (Future<Results> future : futures){
+				total.add(future.get());
+			}
+			total.nanos = System.nanoTime()-start;
+			return total;
+		}catch (ExecutionException e){
+			throw new IllegalStateException("Match failed", e.getCause());
+		}finally{
+			pool.shutdownNow();
+		}
+	}
+
+	static long matchSeed(long seed, int i){
+		//Spreads the seeds of consecutive matches apart
+		return seed + i*0x9E3779B97F4A7C15L;
+	}
+
+	public static GameState seededState(long seed){
+		/*seededState(long seed)
+		 * Creates the starting state of a match. Paddles start at a random
+		 * row and the first serve goes left within 30 degrees of the
+		 * horizontal. Every following serve is the usual one (see
+		 * GameState.resetBoard).
+		 */
+		return seededState(seed, new GameState());
+	}
+
+	public static GameState seededState(long seed, GameState into){
+		/*seededState(long seed, GameState into)
+		 * Overwrites every field of into with the starting state of the
+		 * match of the given seed and returns it. Nothing is allocated.
+		 */
+		double half = Simulator.paddleLength/2;
+		into.paddleCenters[0] = half+seededDouble(seed, 1)*(Simulator.fieldHeight-2*half);
+		into.paddleCenters[1] = half+seededDouble(seed, 2)*(Simulator.fieldHeight-2*half);
+		into.ball[0] = Simulator.fieldWidth/2;
+		into.ball[1] = Simulator.fieldHeight/2;
+		into.ballSpeed = Simulator.startBallSpeed;
+		into.setBallDirection(Math.PI+(seededDouble(seed, 3)*2-1)*Math.PI/6);
+		into.playerScores[0] = 0;
+		into.playerScores[1] = 0;
+		into.tick = 0;
+		return into;
+	}
+
+	static double seededDouble(long seed, int n){
+		//The n-th nextDouble of new SplittableRandom(seed), computed
+		//without creating it (escape analysis doesn't remove it)
+		long z = seed+n*0x9E3779B97F4A7C15L;
+		z = (z^(z >>> 30))*0xBF58476D1CE4E5B9L;
+		z = (z^(z >>> 27))*0x94D049BB133111EBL;
+		z ^= z >>> 31;
+		return (z >>> 11)*0x1.0p-53;
+	}
+
+	public static void playMatch(long seed, long maxTicks, String left, String right,
+			Results results){
+		/*playMatch(long seed, long maxTicks, String left, String right,
+		 *		Results results)
+		 * Plays one Comp vs Comp match until either side wins or
+		 * maxTicks updates have passed and records it in results.
+		 */
+		GameState state = seededState(seed);
+		EvESimulator simulator = new EvESimulator(state,
+				PaddleController.named(left, seed+1), PaddleController.named(right, seed+2));
+		boolean done = false;
+		while (!done && state.tick<maxTicks){
+			done = simulator.step(0);
+		}
+		results.record(state, done);
+	}
+
+	public static class Results {
+		/*Results:
+		 * Totals of a batch of matches. Not thread safe, each worker
+		 * keeps its own and they are combined with add.
+		 */
+		public long matches; //Matches played
+		public long ticks; //Updates simulated over all matches
+		public long nanos; //Wall time of the batch
+		public long[] wins = {0,0}; //Matches won by the left and right paddle
+		public long unfinished; //Matches stopped at maxTicks
+		//finalScores[l][r] counts matches that ended l to r
+		public long[][] finalScores = new long[Simulator.winningScore+1][Simulator.winningScore+1];
+
+		void record(GameState state, boolean done){
+			//Adds a finished (or stopped) match to the totals
+			matches++;
+			ticks += state.tick;
+			int left = Math.min(state.playerScores[0], Simulator.winningScore);
+			int right = Math.min(state.playerScores[1], Simulator.winningScore);
+			finalScores[left][right]++;
+			if (!done){
+				unfinished++;
+			}else if (left == Simulator.winningScore){
+				wins[0]++;
+			}else{
+				wins[1]++;
+			}
+		}
+
+		void add(Results other){
+			//Combines the totals of another worker into these totals
+			matches += other.matches;
+			ticks += other.ticks;
+			wins[0] += other.wins[0];
+			wins[1] += other.wins[1];
+			unfinished += other.unfinished;
+			for (int l = 0;l<finalScores.length;l++){
+				for (int r = 0;r<finalScores[l].length;r++){
+					finalScores[l][r] += other.finalScores[l][r];
+				}
+			}
+		}
+
+		public double matchesPerSecond(){
+			return matches/(nanos/1e9);
+		}
+
+		public double ticksPerSecond(){
+			return ticks/(nanos/1e9);
+		}
+
+		@Override
+		public String toString(){
+			StringBuilder report = new StringBuilder();
+			report.append(String.format("matches: %d in %.3f s (%.1f matches/s)%n",
+					matches, nanos/1e9, matchesPerSecond()));
+			report.append(String.format("ticks: %d (%.3e ticks/s, %.1f ticks/match)%n",
+					ticks, ticksPerSecond(), matches == 0 ? 0.0 : (double)ticks/matches));
+			report.append(String.format("wins: left %d, right %d, unfinished %d%n",
+					wins[0], wins[1], unfinished));
+			report.append("final scores (left-right: matches):\n");
+			for (int l = 0;l<finalScores.length;l++){
+				for (int r = 0;r<finalScores[l].length;r++){
+					if (finalScores[l][r] != 0){
+						report.append(String.format("  %2d-%-2d %d%n", l, r, finalScores[l][r]));
+					}
+				}
+			}
+			return report.toString();
+		}
+	}
+
+	public static void main(String[] args) throws InterruptedException{
+		/*main(String[] args)
+		 * Plays a batch of matches and prints the report.
+		 * Arguments (all optional): matches, threads, seed, maxTicks,
+		 * left and right controllers
+		 */
+		int matches = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+		int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+		long seed = args.length > 2 ? Long.parseLong(args[2]) : 2016;
+		long maxTicks = args.length > 3 ? Long.parseLong(args[3]) : DEFAULT_MAX_TICKS;
+		String left = args.length > 4 ? args[4] : "lookahead";
+		String right = args.length > 5 ? args[5] : "lookahead";
+
+		Results results = new MatchRunner(matches, threads, seed, maxTicks, left, right).run();
+		System.out.println("threads: " + threads + ", " + left + " vs " + right);
+		System.out.print(results);
+	}
+
+}
@@ -0,0 +1,181 @@
+package pong;
+
+public class MatchStats implements MatchEvents.Consumer {
+	/*MatchStats:
+	 * Interfaces: MatchEvents.Consumer
+	 * Purpose: Aggregates of a stream of match events (see
+	 * @pong.MatchEvents), updated incrementally batch by batch so they
+	 * can be read at any time while matches are played or a file of
+	 * events is read (see @pong.EventFileReader): matches and points won
+	 * by each side, rally lengths (paddle hits and updates from a serve to
+	 * the point), where paddles hit the ball (histogram of the hit offset
+	 * from the paddle's center, share of center hits that go straight
+	 * back), ball speeds at hits and points, border bounces. Recent rally
+	 * lengths are followed with an exponential moving average.
+	 * Each batch is processed column by column; only the rally tracking
+	 * carries state from one event (and batch) to the next. A match ends
+	 * with its MATCH_END event or, if it was cut off (e.g. stopped after
+	 * a number of updates), where the ticks go backwards: the next
+	 * match's events start again from tick 0. Either way the rally
+	 * being played is dropped and the next one starts at tick 0.
+	 *
+	 * Includes:
+	 * void accept(MatchEvents batch): Adds a batch of events
+	 *
+	 * String report(): The aggregates, readable
+	 *
+	 * Getters: matches(), points(), meanRallyHits(), maxRallyHits(),
+	 * recentRallyHits(), maxSpeed()
+	 */
+
+	public static final int OFFSET_BINS = 10; //Bins of the hit offset histogram, over -0.5 to 0.5
+	private static final double recentWeight = 1.0/64; //Weight of a rally in the moving average
+
+	private long events = 0;
+	private final long[] matchesWon = new long[2];
+	private final long[] pointsWon = new long[2];
+	private final long[] hits = new long[2]; //Paddle hits by each paddle
+	private long bounces = 0;
+	private final long[] offsetCounts = new long[OFFSET_BINS];
+	private long centerHits = 0; //Hits within Simulator.paddleCenterTolerance of the center
+	private double hitSpeedSum = 0;
+	private double pointSpeedSum = 0;
+	private double maxSpeed = 0;
+	//Rallies, one per point
+	private long rallyHits = 0; //Paddle hits of the rally being played
+	private long rallyStart = 0; //Tick at which it was served
+	private long lastTick = 0; //Tick of the latest event
+	private long rallyHitSum = 0;
+	private long rallyTickSum = 0;
+	private long maxRallyHits = 0;
+	private long maxRallyTicks = 0;
+	private double recentRallyHits = Double.NaN;
+
+	@Override
+	public void accept(MatchEvents batch){
+		/*accept(MatchEvents batch)
+		 * Adds every event of the batch to the aggregates
+		 */
+		int n = batch.size();
+		byte[] types = batch.types;
+		byte[] sides = batch.sides;
+		float[] values = batch.values;
+		float[] speeds = batch.speeds;
+		long[] ticks = batch.ticks;
+		events += n;
+		for (int i = 0;i<n;i++){
+			long tick = ticks[i];
+			if (tick < lastTick){
+				//A new match, the previous one was cut off
+				newMatch();
+			}
+			lastTick = tick;
+			float speed = speeds[i];
+			if (speed > maxSpeed){
+				maxSpeed = speed;
+			}
+			switch (types[i]){
+			case MatchEvents.PADDLE_HIT:
+				float offset = values[i];
+				hits[sides[i]]++;
+				hitSpeedSum += speed;
+				int bin = (int)((offset+0.5f)*OFFSET_BINS);
+				offsetCounts[Math.max(0, Math.min(OFFSET_BINS-1, bin))]++;
+				if (Math.abs(offset) < Simulator.paddleCenterTolerance){
+					centerHits++;
+				}
+				rallyHits++;
+				break;
+			case MatchEvents.BORDER_BOUNCE:
+				bounces++;
+				break;
+			case MatchEvents.POINT:
+				pointsWon[sides[i]]++;
+				pointSpeedSum += speed;
+				endRally(tick);
+				break;
+			case MatchEvents.MATCH_END:
+				matchesWon[sides[i]]++;
+				newMatch();
+				break;
+			default:
+				break;
+			}
+		}
+	}
+
+	private void newMatch(){
+		//Drops the rally being played, the next match is served at its tick 0
+		rallyHits = 0;
+		rallyStart = 0;
+		lastTick = 0;
+	}
+
+	private void endRally(long tick){
+		//Ends the rally being played with a point scored at tick
+		long ticks = tick-rallyStart;
+		rallyHitSum += rallyHits;
+		rallyTickSum += ticks;
+		maxRallyHits = Math.max(maxRallyHits, rallyHits);
+		maxRallyTicks = Math.max(maxRallyTicks, ticks);
+		recentRallyHits = Double.isNaN(recentRallyHits) ? rallyHits
+				: recentRallyHits+recentWeight*(rallyHits-recentRallyHits);
+		rallyHits = 0;
+		rallyStart = tick+1;
+	}
+
+	public long matches(){
+		//Matches finished
+		return matchesWon[0]+matchesWon[1];
+	}
+
+	public long points(){
+		return pointsWon[0]+pointsWon[1];
+	}
+
+	public double meanRallyHits(){
+		//Paddle hits per point
+		return points() == 0 ? 0 : (double)rallyHitSum/points();
+	}
+
+	public long maxRallyHits(){
+		return maxRallyHits;
+	}
+
+	public double recentRallyHits(){
+		//Moving average of the paddle hits of the latest rallies, NaN before the first point
+		return recentRallyHits;
+	}
+
+	public double maxSpeed(){
+		//Fastest the ball has gone
+		return maxSpeed;
+	}
+
+	public String report(){
+		/*report()
+		 * Returns the aggregates as a few lines of text
+		 */
+		long points = points();
+		long allHits = hits[0]+hits[1];
+		StringBuilder report = new StringBuilder();
+		report.append(String.format("%d events, %d matches (left %d, right %d), %d points (left %d, right %d)%n",
+				events, matches(), matchesWon[0], matchesWon[1], points, pointsWon[0], pointsWon[1]));
+		report.append(String.format("rallies: %.1f hits (max %d, recent %.1f), %.0f updates (max %d) per point%n",
+				meanRallyHits(), maxRallyHits, recentRallyHits,
+				points == 0 ? 0 : (double)rallyTickSum/points, maxRallyTicks));
+		report.append(String.format("hits: %d (left %d, right %d), %.1f%% in the center, %.2f border bounces per hit%n",
+				allHits, hits[0], hits[1], allHits == 0 ? 0 : 100.0*centerHits/allHits,
+				allHits == 0 ? 0 : (double)bounces/allHits));
+		report.append(String.format("speed: %.3f at hits, %.3f at points, %.3f max (cap %.2f)%n",
+				allHits == 0 ? 0 : hitSpeedSum/allHits, points == 0 ? 0 : pointSpeedSum/points,
+				maxSpeed, Simulator.maxBallSpeed));
+		report.append("hit offsets (top to bottom):");
+		for (int b = 0;b<OFFSET_BINS;b++){
+			report.append(String.format(" %.1f%%", allHits == 0 ? 0 : 100.0*offsetCounts[b]/allHits));
+		}
+		report.append(String.format("%n"));
+		return report.toString();
+	}
+
+}
@@ -0,0 +1,96 @@
+package pong;
+
+import java.util.SplittableRandom;
+
+public class MultiBallCheck {
+	/*MultiBallCheck:
+	 * Purpose: Checks the multi-ball mode (see @pong.MultiBallSimulator).
+	 * First, one ball without ball collisions must play exactly like a
+	 * Simulator: whole matches are played by both with the same random
+	 * keys (held for random lengths of time) and every field is compared
+	 * after every update. Then, with many balls bouncing off each other,
+	 * the pairs the grid broadphase finds touching in every update must be
+	 * exactly those found by testing every pair, for several numbers and
+	 * sizes of balls.
+	 *
+	 * Includes:
+	 * void main(String[] args): Runs the checks, exits with status 1 if one
+	 * fails. Arguments (all optional): matches (20), seed
+	 */
+
+	public static void main(String[] args){
+		/*main(String[] args)
+		 * Runs both checks and prints their results
+		 */
+		int matches = args.length > 0 ? Integer.parseInt(args[0]) : 20;
+		long seed = args.length > 1 ? Long.parseLong(args[1]) : 2016;
+		boolean failed = false;
+
+		//One ball plays like Simulator
+		long ticks = 0;
+		for (int m = 0;m<matches && !failed;m++){
+			SplittableRandom random = new SplittableRandom(MatchRunner.matchSeed(seed, m));
+			Simulator simulator = new Simulator();
+			MultiBallSimulator multi = new MultiBallSimulator(1, Simulator.ballRadius, false);
+			GameState s = simulator.state;
+			int keys = 0;
+			boolean done = false;
+			while (!done && s.tick<MatchRunner.DEFAULT_MAX_TICKS){
+				if (random.nextInt(50) == 0){
+					keys = random.nextInt(16);
+				}
+				done = simulator.step(keys);
+				boolean multiDone = multi.step(keys);
+				if (done != multiDone || s.tick != multi.tick || s.ball[0] != multi.ballX[0]
+						|| s.ball[1] != multi.ballY[0] || s.ballDirection != multi.ballDirection[0]
+						|| s.ballCos != multi.ballCos[0] || s.ballSin != multi.ballSin[0]
+						|| s.ballSpeed != multi.ballSpeed[0] || s.paddleCenters[0] != multi.paddleCenters[0]
+						|| s.paddleCenters[1] != multi.paddleCenters[1]
+						|| s.playerScores[0] != multi.playerScores[0] || s.playerScores[1] != multi.playerScores[1]){
+					System.out.println("FAIL: match " + m + " differs from Simulator at tick " + s.tick);
+					failed = true;
+					break;
+				}
+			}
+			ticks += s.tick;
+		}
+		if (!failed){
+			System.out.println("OK: one ball played " + matches + " matches (" + ticks + " updates) like Simulator");
+		}
+
+		//The broadphase finds every touching pair
+		int[] counts = {2, 50, 500, 3000};
+		double[] radii = {Simulator.ballRadius, 3, 1};
+		for (int balls : counts){
+			for (double radius : radii){
+				SplittableRandom random = new SplittableRandom(seed+balls);
+				MultiBallSimulator multi = new MultiBallSimulator(balls, radius, true);
+				multi.setWinningScore(0);
+				for (int i = 0;i<balls;i++){
+					double y = Simulator.borderWidth+radius+random.nextDouble()
+							*(Simulator.fieldHeight-2*(Simulator.borderWidth+radius));
+					multi.place(i, random.nextDouble()*Simulator.fieldWidth, y,
+							random.nextDouble()*2*Math.PI, Simulator.startBallSpeed);
+				}
+				long contacts = 0;
+				for (int t = 0;t<300;t++){
+					multi.step(random.nextInt(16));
+					int expected = multi.overlaps();
+					if (multi.contacts() != expected){
+						System.out.println("FAIL: " + balls + " balls of radius " + radius + ", tick " + t
+								+ ": " + multi.contacts() + " contacts found, " + expected + " expected");
+						failed = true;
+						break;
+					}
+					contacts += expected;
+				}
+				System.out.printf("%s: %d balls of radius %.0f, %d contacts over 300 updates%n",
+						failed ? "FAIL" : "OK", balls, radius, contacts);
+			}
+		}
+		if (failed){
+			System.exit(1);
+		}
+	}
+
+}
@@ -0,0 +1,90 @@
+package pong;
+
+import java.awt.Graphics;
+import java.awt.Rectangle;
+
+@SuppressWarnings("serial")
+public class MultiBallPanel extends PvPPanel {
+	/*MultiBallPanel:
+	 * Super Class: PvPPanel
+	 * Purpose: Extends the PvPPanel for the multi-ball Player vs Player
+	 * mode. The match is played by a MultiBallSimulator (see
+	 * @pong.MultiBallSimulator) with balls bouncing off each other; its
+	 * paddles, scores and tick are copied into the panel's state after
+	 * every update so they are drawn as in PvP, and every ball is drawn
+	 * where the latest update left it (balls aren't interpolated).
+	 * With so many balls scoring, the match is played to the rules'
+	 * winning score for every ball. It isn't recorded or broadcast.
+	 * Functionality similar to PvPPanel (see @pong.PvPPanel)
+	 *
+	 * Includes:
+	 * MultiBallPanel(int balls): Creates a panel for a match with balls balls
+	 *
+	 * boolean update(): Advances the match by one update with the keys
+	 * pressed. Returns whether the game is over.
+	 *
+	 * void drawBall(Graphics g, Rectangle region): Draws every ball
+	 */
+
+	private final MultiBallSimulator multi;
+	private final int radius; //Radius the balls are drawn with, at least 1
+	//Centers of the balls at the latest update, copied from the
+	//simulator (which the game loop may be changing) for drawing
+	private final int[] frameX;
+	private final int[] frameY;
+
+	public MultiBallPanel(int balls){
+		//Constructor: int balls
+		//Creates a panel for a new match with balls balls, as small as
+		//MultiBallSimulator.radiusFor makes them, to winningScore*balls points
+		super();
+		multi = new MultiBallSimulator(balls, MultiBallSimulator.radiusFor(balls), true);
+		multi.setWinningScore(Simulator.winningScore*balls);
+		radius = Math.max(1, (int)Math.round(multi.radius));
+		frameX = new int[balls];
+		frameY = new int[balls];
+		copyFrame();
+	}
+
+	@Override
+	public boolean update(){
+		/*update()
+		 * Steps the multi-ball match and keeps its frame
+		 */
+		boolean done = multi.step(pollInputs());
+		state.paddleCenters[0] = multi.paddleCenters[0];
+		state.paddleCenters[1] = multi.paddleCenters[1];
+		state.playerScores[0] = multi.playerScores[0];
+		state.playerScores[1] = multi.playerScores[1];
+		state.tick = multi.tick;
+		copyFrame();
+		keepFrame();
+		return done;
+	}
+
+	private void copyFrame(){
+		//Copies the centers of the balls for drawing
+		synchronized (frameX){
+			for (int i = 0;i<multi.balls;i++){
+				frameX[i] = (int)multi.ballX[i];
+				frameY[i] = (int)multi.ballY[i];
+			}
+		}
+	}
+
+	@Override
+	protected void drawBall(Graphics g, Rectangle region){
+		/*drawBall(Graphics g, Rectangle region)
+		 * Draws every ball at its center in the latest update. The
+		 * region is the whole field.
+		 */
+		int r = radius;
+		synchronized (frameX){
+			for (int i = 0;i<frameX.length;i++){
+				g.fillOval(frameX[i]-r, frameY[i]-r, r*2, r*2);
+			}
+		}
+		region.setBounds(0, 0, Simulator.fieldWidth+1, Simulator.fieldHeight+1);
+	}
+
+}
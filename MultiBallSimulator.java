@@ -0,0 +1,434 @@
+package pong;
+
+public class MultiBallSimulator {
+	/*MultiBallSimulator:
+	 * Purpose: Player vs Player match with any number of balls on the
+	 * field at once (multi-ball mode). The balls are stored in flat
+	 * primitive arrays (ballX[i], ballY[i], ...) as in BatchSimulator (see
+	 * @pong.BatchSimulator). Every ball moves, bounces off the borders and
+	 * paddles and scores exactly like the ball of Simulator.step (see
+	 * @pong.Simulator), with its own speed, so one ball without ball
+	 * collisions plays exactly like a Simulator. A ball that scores is
+	 * served again from the middle column; the match is over when a player
+	 * reaches winningScore points, which may be set to 0 to play on
+	 * forever.
+	 * Balls can also bounce off each other (elastically, as equal masses,
+	 * exchanging the parts of their velocities along the line between
+	 * their centers). To find the pairs that touch without testing every
+	 * pair, the balls are sorted into a uniform grid of cells at least a
+	 * ball wide every update (a counting sort by cell, into arrays
+	 * allocated once), and each ball is only tested against the balls of
+	 * its own cell and of the neighbouring cells after it. With balls
+	 * spread over the field an update is close to linear in their number.
+	 * The radius of the balls may be smaller than the rules' ball radius
+	 * so that thousands of them fit on the field.
+	 *
+	 * Includes:
+	 * MultiBallSimulator(int balls, double radius, boolean collisions):
+	 * Creates a match with balls balls served from the middle
+	 *
+	 * boolean step(int inputs): Plays one update with the keys held (see
+	 * Simulator.UP etc.), returns whether the match is over
+	 *
+	 * void serve(int i), void place(int i, double x, double y, double
+	 * direction, double speed): Serves ball i from the middle column, or
+	 * puts it anywhere
+	 *
+	 * void setWinningScore(int score): Points needed to win, 0 for none
+	 *
+	 * int contacts(): Pairs of balls found touching in the last update
+	 *
+	 * static double radiusFor(int balls): Radius small enough for balls
+	 * balls to leave most of the field free
+	 *
+	 * Fields: balls, radius, collisions, the ball arrays, paddleCenters,
+	 * playerScores, tick. isOver()
+	 */
+
+	public final int balls; //Number of balls
+	public final double radius; //Radius of every ball
+	public final boolean collisions; //Whether balls bounce off each other
+	public final double[] ballX;
+	public final double[] ballY;
+	public final double[] ballDirection; //See GameState.ballDirection
+	public final double[] ballCos;
+	public final double[] ballSin;
+	public final double[] ballSpeed;
+	public final double[] paddleCenters = {Simulator.fieldHeight/2, Simulator.fieldHeight/2};
+	public final int[] playerScores = {0,0};
+	public long tick = 0;
+	private int winningScore = Simulator.winningScore;
+	private boolean over = false;
+
+	//Uniform grid of the broadphase: cell c holds balls
+	//cellBalls[cellStart[c]] to cellBalls[cellStart[c+1]-1]
+	private final double cellSize;
+	private final int columns;
+	private final int rows;
+	private final int[] cellOf; //Cell of each ball
+	private final int[] cellStart;
+	private final int[] cellBalls;
+	private int contacts = 0;
+
+	//Slope and intercept of the 30 to 60 degree deflection law
+	//(see Simulator.updateBall) for the left and right paddles
+	private static final double leftM = (Math.PI/3-Math.PI/6)/(0.5-Simulator.paddleCenterTolerance);
+	private static final double leftB = Math.PI/3-leftM/2;
+	private static final double rightM = (2*Math.PI/3-5*Math.PI/6)/(0.5-Simulator.paddleCenterTolerance);
+	private static final double rightB = 2*Math.PI/3-rightM/2;
+	//Cosine and sine of the direction of a serve
+	private static final double serveCos = Math.cos(Math.PI);
+	private static final double serveSin = Math.sin(Math.PI);
+
+	public MultiBallSimulator(int balls, double radius, boolean collisions){
+		//Constructor: int balls, double radius, boolean collisions
+		//Creates a match with balls balls of the given radius. Ball 0
+		//starts like the ball of a new GameState, the others are spread
+		//along the middle column (see serve).
+		if (balls <= 0 || radius <= 0 || 2*radius >= Simulator.fieldHeight-2*Simulator.borderWidth){
+			throw new IllegalArgumentException("balls must be positive and fit between the borders");
+		}
+		this.balls = balls;
+		this.radius = radius;
+		this.collisions = collisions;
+		ballX = new double[balls];
+		ballY = new double[balls];
+		ballDirection = new double[balls];
+		ballCos = new double[balls];
+		ballSin = new double[balls];
+		ballSpeed = new double[balls];
+		GameState start = new GameState();
+		place(0, start.ball[0], start.ball[1], start.ballDirection, start.ballSpeed);
+		for (int i = 1;i<balls;i++){
+			spread(i, start.ballSpeed);
+		}
+		//Cells at least a ball wide, and about as many as there are balls
+		double area = (double)Simulator.fieldWidth*Simulator.fieldHeight;
+		cellSize = Math.max(2*radius, Math.sqrt(area/balls));
+		columns = (int)Math.ceil(Simulator.fieldWidth/cellSize);
+		rows = (int)Math.ceil(Simulator.fieldHeight/cellSize);
+		cellOf = new int[collisions ? balls : 0];
+		cellStart = new int[collisions ? columns*rows+1 : 0];
+		cellBalls = new int[collisions ? balls : 0];
+	}
+
+	public static double radiusFor(int balls){
+		//Radius at which balls balls cover a tenth of the field, at most
+		//the rules' ball radius
+		double area = (double)Simulator.fieldWidth*Simulator.fieldHeight;
+		return Math.min(Simulator.ballRadius, Math.sqrt(0.1*area/(Math.PI*balls)));
+	}
+
+	public void place(int i, double x, double y, double direction, double speed){
+		/*place(int i, double x, double y, double direction, double speed)
+		 * Puts the center of ball i at column x and row y, moving in
+		 * direction (radians) at speed pixels per update
+		 */
+		ballX[i] = x;
+		ballY[i] = y;
+		ballDirection[i] = direction;
+		ballCos[i] = Math.cos(direction);
+		ballSin[i] = Math.sin(direction);
+		ballSpeed[i] = speed;
+	}
+
+	public void serve(int i){
+		/*serve(int i)
+		 * Serves ball i from the middle column. Ball 0 is served from the
+		 * middle as GameState.resetBoard does; the others each from a row
+		 * of their own, going left and right in turn at an angle within
+		 * 30 degrees of the horizontal, so that served balls don't pile
+		 * up in one cell of the grid.
+		 */
+		if (i != 0){
+			spread(i, Simulator.serveBallSpeed);
+			return;
+		}
+		ballX[i] = Simulator.fieldWidth/2;
+		ballY[i] = Simulator.fieldHeight/2;
+		ballDirection[i] = Math.PI;
+		ballCos[i] = serveCos;
+		ballSin[i] = serveSin;
+		ballSpeed[i] = Simulator.serveBallSpeed;
+	}
+
+	private void spread(int i, double speed){
+		//Puts ball i in the middle column at its own row and angle (see serve)
+		double f = (i*0.6180339887498949) % 1;
+		double margin = Simulator.borderWidth+radius;
+		place(i, Simulator.fieldWidth/2, margin+f*(Simulator.fieldHeight-2*margin),
+				(i % 2 == 0 ? Math.PI : 0)+(f-0.5)*Math.PI/3, speed);
+	}
+
+	public void setWinningScore(int score){
+		//Sets the points that win the match, 0 to play on forever
+		if (score < 0){
+			throw new IllegalArgumentException("score can't be negative");
+		}
+		winningScore = score;
+	}
+
+	public boolean isOver(){
+		return over;
+	}
+
+	public int contacts(){
+		//Pairs of balls found touching in the last update
+		return contacts;
+	}
+
+	public boolean step(int inputs){
+		/*step(int inputs)
+		 * Plays one update in the same order as Simulator.step: every
+		 * ball moves (paddles, borders, points), the balls touching each
+		 * other bounce if collisions are on, then the paddles move and
+		 * every ball speeds up. Does nothing once the match is over.
+		 * Returns whether it is over.
+		 */
+		if (over){
+			return true;
+		}
+		moveBalls();
+		if (collisions){
+			collide();
+		}
+		movePaddles(inputs);
+		final double max = Simulator.maxBallSpeed;
+		final int ticks = Simulator.speedUpTicks;
+		double[] speed = ballSpeed;
+		for (int i = 0;i<balls;i++){
+			speed[i] += (max-speed[i])/ticks;
+		}
+		tick++;
+		return over;
+	}
+
+	private void moveBalls(){
+		/*moveBalls()
+		 * Moves every ball as Simulator.updateBall moves its ball (the
+		 * same arithmetic as BatchSimulator.step), scoring the balls that
+		 * leave the field and serving them again unless the match is won,
+		 * in which case the balls after the winning one don't move
+		 */
+		final double r = radius;
+		final double half = Simulator.paddleLength/2;
+		final double length = Simulator.paddleLength;
+		final double tolerance = Simulator.paddleCenterTolerance;
+		final int left = Simulator.paddleColumns[0];
+		final int right = Simulator.paddleColumns[1];
+		final int width = Simulator.fieldWidth;
+		final int top = Simulator.borderWidth;
+		final int bottom = Simulator.fieldHeight-top;
+		final double p0 = paddleCenters[0];
+		final double p1 = paddleCenters[1];
+		final double lo0 = p0-half;
+		final double hi0 = p0+half;
+		final double lo1 = p1-half;
+		final double hi1 = p1+half;
+
+		for (int i = 0;i<balls;i++){
+			double x = ballX[i];
+			double y = ballY[i];
+			double d = ballDirection[i];
+			double cos = ballCos[i];
+			double sin = ballSin[i];
+			double v = ballSpeed[i];
+
+			//Left paddle
+			double next = x+v*cos-r;
+			boolean hit = (next<=left) & (next>=left-v) & (y>=lo0) & (y<=hi0);
+			if (hit){
+				double deflection = (y-((lo0+hi0)/2))/length;
+				double abs = Math.abs(deflection);
+				double angled = leftM*abs+leftB;
+				d = abs<tolerance ? -d+Math.PI : (deflection<0 ? -angled : angled);
+				cos = Math.cos(d);
+				sin = Math.sin(d);
+			}
+			//Right paddle, against the (possibly new) direction
+			next = x+v*cos-r;
+			hit = (next<=right) & (next>=right-v) & (y>=lo1) & (y<=hi1);
+			if (hit){
+				double deflection = (y-((lo1+hi1)/2))/length;
+				double abs = Math.abs(deflection);
+				double angled = rightM*abs+rightB;
+				d = abs<tolerance ? -d+Math.PI : (deflection<0 ? -angled : angled);
+				cos = Math.cos(d);
+				sin = Math.sin(d);
+			}
+			//Borders
+			double nextY = y+v*sin;
+			if ((nextY-r<=top) | (nextY+r>=bottom)){
+				d = -d;
+				sin = -sin;
+			}
+			x = x+v*cos;
+			y = y+v*sin;
+
+			ballX[i] = x;
+			ballY[i] = y;
+			ballDirection[i] = d;
+			ballCos[i] = cos;
+			ballSin[i] = sin;
+			//Points
+			if ((x<0) | (x>width)){
+				playerScores[x<0 ? 1 : 0]++;
+				if (winningScore > 0 && (playerScores[0]==winningScore | playerScores[1]==winningScore)){
+					//Like Simulator, the winning ball isn't served again and
+					//the update ends the match: the balls after it stay put
+					over = true;
+					return;
+				}else{
+					serve(i);
+				}
+			}
+		}
+	}
+
+	private void movePaddles(int inputs){
+		//Moves the paddles as Simulator.updatePaddles does
+		final double half = Simulator.paddleLength/2;
+		final double speed = Simulator.paddleSpeed;
+		final int height = Simulator.fieldHeight;
+		double p0 = paddleCenters[0];
+		double p1 = paddleCenters[1];
+		p1 -= ((inputs & Simulator.UP) != 0) & (p1>half) ? speed : 0;
+		p1 += ((inputs & Simulator.DOWN) != 0) & (p1<height-half) ? speed : 0;
+		p0 -= ((inputs & Simulator.W) != 0) & (p0>half) ? speed : 0;
+		p0 += ((inputs & Simulator.S) != 0) & (p0<height-half) ? speed : 0;
+		paddleCenters[0] = p0;
+		paddleCenters[1] = p1;
+	}
+
+	private int cellAt(double x, double y){
+		//Cell holding the point (x, y), points off the field going to the nearest cell
+		int c = (int)(x/cellSize);
+		int r = (int)(y/cellSize);
+		c = c < 0 ? 0 : c >= columns ? columns-1 : c;
+		r = r < 0 ? 0 : r >= rows ? rows-1 : r;
+		return r*columns+c;
+	}
+
+	private void collide(){
+		/*collide()
+		 * Broadphase: sorts the balls by cell (counting sort). Narrow
+		 * phase: tests each ball against the later balls of its cell and
+		 * every ball of the cells right, below left, below and below
+		 * right of it, so each neighbouring pair is tested once, and
+		 * bounces the pairs that touch.
+		 */
+		int cells = columns*rows;
+		int[] start = cellStart;
+		for (int c = 0;c<=cells;c++){
+			start[c] = 0;
+		}
+		for (int i = 0;i<balls;i++){
+			int c = cellAt(ballX[i], ballY[i]);
+			cellOf[i] = c;
+			start[c+1]++;
+		}
+		for (int c = 0;c<cells;c++){
+			start[c+1] += start[c];
+		}
+		//Fills each cell from its end, leaving start[c] at the cell's first ball
+		for (int c = 0;c<cells;c++){
+			start[c] = start[c+1];
+		}
+		for (int i = balls-1;i>=0;i--){
+			cellBalls[--start[cellOf[i]]] = i;
+		}
+
+		contacts = 0;
+		for (int p = 0;p<balls;p++){
+			int i = cellBalls[p];
+			int c = cellOf[i];
+			int column = c % columns;
+			int row = c/columns;
+			//Rest of its own cell
+			for (int q = p+1;q<start[c+1];q++){
+				bounce(i, cellBalls[q]);
+			}
+			if (column+1 < columns){
+				bounceCell(i, c+1);
+			}
+			if (row+1 < rows){
+				if (column > 0){
+					bounceCell(i, c+columns-1);
+				}
+				bounceCell(i, c+columns);
+				if (column+1 < columns){
+					bounceCell(i, c+columns+1);
+				}
+			}
+		}
+	}
+
+	private void bounceCell(int i, int c){
+		//Tests ball i against every ball of cell c
+		for (int q = cellStart[c];q<cellStart[c+1];q++){
+			bounce(i, cellBalls[q]);
+		}
+	}
+
+	private void bounce(int i, int j){
+		/*bounce(int i, int j)
+		 * If balls i and j overlap and are moving towards each other,
+		 * exchanges the parts of their velocities along the line between
+		 * their centers
+		 */
+		double dx = ballX[j]-ballX[i];
+		double dy = ballY[j]-ballY[i];
+		double distance2 = dx*dx+dy*dy;
+		double reach = 2*radius;
+		if (distance2 >= reach*reach || distance2 == 0){
+			return;
+		}
+		contacts++;
+		double vxi = ballSpeed[i]*ballCos[i];
+		double vyi = ballSpeed[i]*ballSin[i];
+		double vxj = ballSpeed[j]*ballCos[j];
+		double vyj = ballSpeed[j]*ballSin[j];
+		double distance = Math.sqrt(distance2);
+		double nx = dx/distance;
+		double ny = dy/distance;
+		//Speed at which j closes in on i along the normal, negative if it does
+		double closing = (vxj-vxi)*nx+(vyj-vyi)*ny;
+		if (closing >= 0){
+			return;
+		}
+		setVelocity(i, vxi+closing*nx, vyi+closing*ny);
+		setVelocity(j, vxj-closing*nx, vyj-closing*ny);
+	}
+
+	private void setVelocity(int i, double vx, double vy){
+		//Sets ball i moving vx, vy pixels per update
+		double speed = Math.sqrt(vx*vx+vy*vy);
+		if (speed == 0){
+			//Stopped dead, keeps its direction
+			ballSpeed[i] = 0;
+			return;
+		}
+		ballSpeed[i] = speed;
+		ballCos[i] = vx/speed;
+		ballSin[i] = vy/speed;
+		ballDirection[i] = Math.atan2(vy, vx);
+	}
+
+	int overlaps(){
+		//Pairs of balls overlapping, tested pair by pair (for checks)
+		int count = 0;
+		double reach = 2*radius;
+		for (int i = 0;i<balls;i++){
+			for (int j = i+1;j<balls;j++){
+				double dx = ballX[j]-ballX[i];
+				double dy = ballY[j]-ballY[i];
+				double distance2 = dx*dx+dy*dy;
+				if (distance2 < reach*reach && distance2 != 0){
+					count++;
+				}
+			}
+		}
+		return count;
+	}
+
+}
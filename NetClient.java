@@ -0,0 +1,304 @@
+package pong;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+
+public class NetClient {
+	/*NetClient:
+	 * Purpose: Client of a networked Player vs Player match (see
+	 * @pong.NetServer and @pong.NetProtocol). tick(inputs) is called once
+	 * per update, at the server's update rate, with the keys held. Either
+	 * UP/DOWN or W/S move the player's own paddle, whichever side it is.
+	 * Prediction: the own paddle is moved straight away with the same
+	 * rule as the server's, and every input sent is kept. When a STATE
+	 * arrives the paddle is set to the server's position after the last
+	 * input it played and the inputs it hasn't played yet are applied
+	 * again (reconciliation), so the paddle answers the keys at once and
+	 * only jumps if the server played something else (e.g. a lost input).
+	 * Interpolation: the ball and the other paddle are drawn
+	 * interpolationTicks updates in the past, between the two received
+	 * states around that time, so they move smoothly between packets.
+	 * Not thread safe, meant to be used by the game loop's thread only.
+	 *
+	 * Includes:
+	 * NetClient(InetSocketAddress server, int latencyMillis, int jitterMillis,
+	 * double loss): Creates a client of server, sending through a
+	 * LinkSimulator with the given settings
+	 *
+	 * boolean tick(int inputs): Handles received packets, sends and
+	 * predicts one input, builds the view. Returns whether the match is over.
+	 *
+	 * GameState view(): State to draw: predicted own paddle, interpolated
+	 * ball and other paddle, latest score. The ball's direction is the one
+	 * it moved in between the two states interpolated.
+	 *
+	 * int side(): Paddle of the player (0 left, 1 right), -1 until known
+	 *
+	 * Stats: corrections(), maxCorrection(), statesReceived(), stateBytes(),
+	 * badPackets()
+	 */
+
+	public static final int interpolationTicks = 10; //How far in the past the view is
+	private static final int inputHistory = 64; //Inputs kept for reconciliation
+	private static final int stateHistory = 32; //Received states kept
+	private static final int helloInterval = 50; //Updates between two HELLOs
+
+	private final DatagramChannel channel;
+	private final InetSocketAddress server;
+	private final LinkSimulator link;
+	private final ByteBuffer in = ByteBuffer.allocate(NetProtocol.MAX_PACKET);
+	private final ByteBuffer out = ByteBuffer.allocate(NetProtocol.MAX_PACKET);
+
+	private int side = -1;
+	private boolean rejected = false; //The server was full
+	private int helloWait = 0;
+	private int seq = 0; //Last input sent
+	private final int[] sentMasks = new int[inputHistory]; //By seq % inputHistory
+	private double predicted; //Predicted row of the own paddle
+	//Received states, by arrival order
+	private final GameState[] states = new GameState[stateHistory];
+	private final int[] stateTicks = new int[stateHistory];
+	private int stateNext = 0;
+	private int latest = -1; //Index in states of the latest state, -1 if none
+	private int ticksSinceLatest = 0; //Updates since the latest state arrived
+	private boolean over = false;
+	private final GameState decoded = new GameState();
+	private final GameState view = new GameState();
+
+	private long corrections = 0; //Reconciliations that moved the paddle
+	private double maxCorrection = 0;
+	private long statesReceived = 0;
+	private long stateBytes = 0;
+	private long badPackets = 0; //Packets skipped because they couldn't be decoded
+
+	public NetClient(InetSocketAddress server, int latencyMillis, int jitterMillis, double loss)
+			throws IOException{
+		//Constructor: InetSocketAddress server, int latencyMillis, int jitterMillis, double loss
+		//Opens a channel to server
+		this.server = server;
+		channel = DatagramChannel.open();
+		channel.bind(null);
+		channel.configureBlocking(false);
+		link = new LinkSimulator(channel, latencyMillis, jitterMillis, loss, System.nanoTime());
+		for (int i = 0;i<stateHistory;i++){
+			states[i] = new GameState();
+			stateTicks[i] = -1;
+		}
+	}
+
+	public boolean tick(int inputs){
+		/*tick(int inputs)
+		 * Reads the packets received. Until the server's WELCOME arrives
+		 * HELLO is sent now and then. Once the match has started, sends
+		 * inputs (with the previous ones, in case some are lost) and moves
+		 * the own paddle with it. Returns whether the match is over (or
+		 * the server refused the client).
+		 */
+		try{
+			receive();
+			if (side < 0){
+				if (helloWait-- <= 0){
+					out.clear();
+					out.put(NetProtocol.HELLO);
+					out.flip();
+					link.send(out, server);
+					helloWait = helloInterval;
+				}
+			}else if (latest >= 0 && !over){
+				int mask = (inputs | inputs >> 2) & (Simulator.UP | Simulator.DOWN);
+				seq++;
+				sentMasks[seq % inputHistory] = mask;
+				predicted = movePaddle(predicted, mask);
+				out.clear();
+				out.put(NetProtocol.INPUT);
+				out.putInt(seq);
+				out.putInt(stateTicks[latest]);
+				int count = Math.min(seq, NetProtocol.MAX_REDUNDANT_INPUTS);
+				out.put((byte)count);
+				for (int i = 0;i<count;i++){
+					out.put((byte)sentMasks[(seq-i) % inputHistory]);
+				}
+				out.flip();
+				link.send(out, server);
+				ticksSinceLatest++;
+			}
+			link.flush();
+		}catch (IOException e){
+			System.err.println("Client: " + e);
+		}
+		buildView();
+		return over || rejected;
+	}
+
+	static double movePaddle(double center, int mask){
+		//Moves a paddle like Simulator.updatePaddles does for one side
+		if ((mask & Simulator.UP) != 0 && center>Simulator.paddleLength/2){
+			center -= Simulator.paddleSpeed;
+		}
+		if ((mask & Simulator.DOWN) != 0 && center<Simulator.fieldHeight-Simulator.paddleLength/2){
+			center += Simulator.paddleSpeed;
+		}
+		return center;
+	}
+
+	private void receive() throws IOException{
+		//Handles every packet waiting in the channel
+		while (true){
+			in.clear();
+			if (channel.receive(in) == null){
+				return;
+			}
+			in.flip();
+			if (!in.hasRemaining()){
+				continue;
+			}
+			byte type = in.get();
+			if (type == NetProtocol.WELCOME && in.hasRemaining()){
+				side = in.get();
+				rejected = side < 0;
+				if (rejected){
+					side = -1;
+				}
+			}else if (type == NetProtocol.STATE && side >= 0){
+				if (in.remaining() < NetProtocol.STATE_HEADER-1){
+					badPackets++;
+					continue;
+				}
+				try{
+					receiveState(in.limit());
+				}catch (RuntimeException e){
+					//A malformed packet is skipped, a later one will do
+					badPackets++;
+				}
+			}
+		}
+	}
+
+	private void receiveState(int length){
+		//Decodes a STATE and reconciles the own paddle with it
+		int tick = in.getInt();
+		int ack = in.getInt();
+		int baseTick = in.getInt();
+		if (latest >= 0 && tick <= stateTicks[latest]){
+			return; //Older than what is known, arrived out of order
+		}
+		GameState base = null;
+		if (baseTick >= 0){
+			for (int i = 0;i<stateHistory;i++){
+				if (stateTicks[i] == baseTick){
+					base = states[i];
+				}
+			}
+			if (base == null){
+				return; //Can't be decoded, a later one will be
+			}
+		}
+		over |= NetProtocol.readState(in, base, decoded);
+		statesReceived++;
+		stateBytes += length;
+		states[stateNext].copyFrom(decoded);
+		stateTicks[stateNext] = tick;
+		boolean first = latest < 0;
+		latest = stateNext;
+		stateNext = (stateNext+1) % stateHistory;
+		ticksSinceLatest = 0;
+
+		//Replays the inputs the server hasn't played yet on its paddle
+		double corrected = decoded.paddleCenters[side];
+		for (int q = Math.max(ack+1, seq-inputHistory+1);q<=seq;q++){
+			corrected = movePaddle(corrected, sentMasks[q % inputHistory]);
+		}
+		double error = Math.abs(corrected-predicted);
+		if (!first && error > 0){
+			corrections++;
+			maxCorrection = Math.max(maxCorrection, error);
+		}
+		predicted = corrected;
+	}
+
+	private void buildView(){
+		//Sets view from the received states and the prediction
+		if (latest < 0){
+			return;
+		}
+		GameState newest = states[latest];
+		view.copyFrom(newest);
+		double at = stateTicks[latest]+ticksSinceLatest-interpolationTicks;
+		//The two states closest around at
+		int before = -1;
+		int after = -1;
+		for (int i = 0;i<stateHistory;i++){
+			int t = stateTicks[i];
+			if (t < 0){
+				continue;
+			}
+			if (t <= at && (before < 0 || t > stateTicks[before])){
+				before = i;
+			}
+			if (t > at && (after < 0 || t < stateTicks[after])){
+				after = i;
+			}
+		}
+		int other = 1-side;
+		if (before >= 0 && after >= 0){
+			GameState a = states[before];
+			GameState b = states[after];
+			double f = (at-stateTicks[before])/(stateTicks[after]-stateTicks[before]);
+			boolean scored = a.playerScores[0] != b.playerScores[0] || a.playerScores[1] != b.playerScores[1];
+			GameState from = scored ? b : a;
+			view.ball[0] = from.ball[0]+(b.ball[0]-from.ball[0])*f;
+			view.ball[1] = from.ball[1]+(b.ball[1]-from.ball[1])*f;
+			view.paddleCenters[other] = a.paddleCenters[other]
+					+(b.paddleCenters[other]-a.paddleCenters[other])*f;
+			if (!scored){
+				//The direction isn't sent, it is worked out from the ball's
+				//movement for whatever reads the view (e.g. a CPU)
+				view.setBallDirection(Math.atan2(b.ball[1]-a.ball[1], b.ball[0]-a.ball[0]));
+			}
+		}else if (before >= 0){
+			view.ball[0] = states[before].ball[0];
+			view.ball[1] = states[before].ball[1];
+			view.paddleCenters[other] = states[before].paddleCenters[other];
+		}
+		view.paddleCenters[side] = predicted;
+	}
+
+	public GameState view(){
+		return view;
+	}
+
+	public int side(){
+		return side;
+	}
+
+	public void close() throws IOException{
+		channel.close();
+	}
+
+	public long corrections(){
+		return corrections;
+	}
+
+	public double maxCorrection(){
+		return maxCorrection;
+	}
+
+	public long statesReceived(){
+		return statesReceived;
+	}
+
+	public long badPackets(){
+		return badPackets;
+	}
+
+	public long stateBytes(){
+		return stateBytes;
+	}
+
+	public long packetsSent(){
+		return link.sent();
+	}
+
+}
@@ -0,0 +1,50 @@
+package pong;
+
+import java.io.IOException;
+
+@SuppressWarnings("serial")
+public class NetPanel extends PvPPanel {
+	/*NetPanel:
+	 * Super Class: PvPPanel
+	 * Purpose: Extends the PvPPanel for the networked Player vs Player
+	 * mode. The match is played by a NetServer, this panel only draws
+	 * what its NetClient shows (see @pong.NetClient): the player's own
+	 * paddle predicted from the keys and the rest received from the
+	 * server. Either UP/DOWN or W/S move the player's paddle.
+	 * Functionality similar to PvPPanel (see @pong.PvPPanel)
+	 * 
+	 * Includes:
+	 * NetPanel(NetClient client): Creates a panel for the match of client
+	 * 
+	 * boolean update(): Sends the keys pressed to the server and keeps
+	 * the client's view for drawing. Returns whether the game is over.
+	 */
+	
+	private final NetClient client;
+	
+	public NetPanel(NetClient client){
+		//Constructor: NetClient client
+		//Creates a panel drawing the view of client. The simulator is
+		//never stepped, it only holds the view.
+		super(new Simulator(client.view()));
+		this.client = client;
+	}
+	
+	@Override
+	public boolean update(){
+		/*update()
+		 * Called by the game loop once per update of the server.
+		 */
+		boolean done = client.tick(pollInputs());
+		keepFrame();
+		if (done){
+			try{
+				client.close();
+			}catch (IOException e){
+				System.err.println("Client: " + e);
+			}
+		}
+		return done;
+	}
+
+}
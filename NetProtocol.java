@@ -0,0 +1,141 @@
+package pong;
+
+import java.nio.ByteBuffer;
+
+public class NetProtocol {
+	/*NetProtocol:
+	 * Purpose: Layout of the UDP packets of the networked Player vs Player
+	 * mode (see @pong.NetServer and @pong.NetClient). Every packet starts
+	 * with its type byte. All numbers are big-endian.
+	 * HELLO (client): asks to join, resent until a WELCOME arrives
+	 * WELCOME (server): side (0 left, 1 right, -1 if the match is full)
+	 * INPUT (client): seq, tick of the last STATE received, count, then the
+	 * key masks of inputs seq, seq-1, ... (count of them, so a lost packet
+	 * is made up for by the next ones)
+	 * STATE (server): tick, seq of the last input of this client played,
+	 * base tick (-1 for none), a byte of flags and the fields of the state
+	 * that differ from the state at base tick, which the client said it
+	 * received. A field is only sent when it changed, so a packet during
+	 * a rally is the header and the ball.
+	 *
+	 * Includes:
+	 * int writeState(ByteBuffer out, int tick, int ack, int baseTick,
+	 * GameState base, GameState state, boolean over): Writes a STATE
+	 *
+	 * boolean readState(ByteBuffer in, GameState base, GameState into):
+	 * Reads the fields of a STATE (after its header) into into
+	 *
+	 * int fieldBytes(int flags): Bytes of the fields a STATE's flags announce
+	 */
+
+	public static final byte HELLO = 1;
+	public static final byte WELCOME = 2;
+	public static final byte INPUT = 3;
+	public static final byte STATE = 4;
+	public static final int MAX_PACKET = 64; //No packet is larger
+	public static final int MAX_REDUNDANT_INPUTS = 16; //Inputs repeated per INPUT
+	public static final int STATE_HEADER = 1+4+4+4+1; //Bytes before a STATE's fields
+
+	//Flags of a STATE, one per field that follows, and whether the match is over
+	static final int BALL_X = 1;
+	static final int BALL_Y = 2;
+	static final int LEFT_PADDLE = 4;
+	static final int RIGHT_PADDLE = 8;
+	static final int SCORES = 16;
+	static final int OVER = 128;
+
+	public static int writeState(ByteBuffer out, int tick, int ack, int baseTick, GameState base,
+			GameState state, boolean over){
+		/*writeState(ByteBuffer out, int tick, int ack, int baseTick, GameState base,
+		 *		GameState state, boolean over)
+		 * Writes a STATE packet from the buffer's position. base is the
+		 * state at baseTick or null to send every field. The ball is sent
+		 * as floats, it is only drawn. The paddles are sent exactly, the
+		 * clients predict theirs from it. Returns the packet's length.
+		 */
+		int start = out.position();
+		out.put(STATE);
+		out.putInt(tick);
+		out.putInt(ack);
+		out.putInt(base == null ? -1 : baseTick);
+		int flagsAt = out.position();
+		out.put((byte)0);
+		int flags = over ? OVER : 0;
+		float x = (float)state.ball[0];
+		float y = (float)state.ball[1];
+		if (base == null || x != (float)base.ball[0]){
+			flags |= BALL_X;
+			out.putFloat(x);
+		}
+		if (base == null || y != (float)base.ball[1]){
+			flags |= BALL_Y;
+			out.putFloat(y);
+		}
+		if (base == null || state.paddleCenters[0] != base.paddleCenters[0]){
+			flags |= LEFT_PADDLE;
+			out.putDouble(state.paddleCenters[0]);
+		}
+		if (base == null || state.paddleCenters[1] != base.paddleCenters[1]){
+			flags |= RIGHT_PADDLE;
+			out.putDouble(state.paddleCenters[1]);
+		}
+		if (base == null || state.playerScores[0] != base.playerScores[0]
+				|| state.playerScores[1] != base.playerScores[1]){
+			flags |= SCORES;
+			out.put((byte)state.playerScores[0]);
+			out.put((byte)state.playerScores[1]);
+		}
+		out.put(flagsAt, (byte)flags);
+		return out.position()-start;
+	}
+
+	public static boolean readState(ByteBuffer in, GameState base, GameState into){
+		/*readState(ByteBuffer in, GameState base, GameState into)
+		 * Reads the flags and fields of a STATE whose header has been read.
+		 * Fields that weren't sent are taken from base, which must be the
+		 * state at the packet's base tick (null if it has none). Returns
+		 * whether the match is over. Throws IllegalArgumentException,
+		 * leaving into untouched, if the packet is shorter than its flags
+		 * announce.
+		 */
+		if (!in.hasRemaining()){
+			throw new IllegalArgumentException("STATE without flags");
+		}
+		int flags = in.get() & 0xFF;
+		if (in.remaining() < fieldBytes(flags)){
+			throw new IllegalArgumentException("STATE shorter than its flags announce");
+		}
+		if (base != null){
+			into.copyFrom(base);
+		}
+		if ((flags & BALL_X) != 0){
+			into.ball[0] = in.getFloat();
+		}
+		if ((flags & BALL_Y) != 0){
+			into.ball[1] = in.getFloat();
+		}
+		if ((flags & LEFT_PADDLE) != 0){
+			into.paddleCenters[0] = in.getDouble();
+		}
+		if ((flags & RIGHT_PADDLE) != 0){
+			into.paddleCenters[1] = in.getDouble();
+		}
+		if ((flags & SCORES) != 0){
+			into.playerScores[0] = in.get();
+			into.playerScores[1] = in.get();
+		}
+		return (flags & OVER) != 0;
+	}
+
+	public static int fieldBytes(int flags){
+		//Bytes of the fields following the flags of a STATE
+		int bytes = 0;
+		bytes += (flags & BALL_X) != 0 ? 4 : 0;
+		bytes += (flags & BALL_Y) != 0 ? 4 : 0;
+		bytes += (flags & LEFT_PADDLE) != 0 ? 8 : 0;
+		bytes += (flags & RIGHT_PADDLE) != 0 ? 8 : 0;
+		bytes += (flags & SCORES) != 0 ? 2 : 0;
+		return bytes;
+	}
+
+}
@@ -0,0 +1,310 @@
+package pong;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+
+public class NetServer implements GameLoop.Game {
+	/*NetServer:
+	 * Interfaces: GameLoop.Game
+	 * Purpose: Headless, authoritative server of a networked Player vs
+	 * Player match (see @pong.NetProtocol). The first two clients to say
+	 * HELLO get the left and right paddle, then the match is played by a
+	 * Simulator on a GameLoop: every update plays the next input of each
+	 * client, and every frame sends each client the state, delta-encoded
+	 * against the last state that client received.
+	 * Inputs are numbered by the clients. Each client's inputs wait in a
+	 * small buffer and one is played per update, in order, so the server
+	 * plays the same inputs the client predicted its paddle with. When
+	 * none has arrived the last one is repeated, and if too many are
+	 * waiting the oldest are skipped so the client's lag doesn't grow.
+	 * Every STATE tells the client the last input of it that was played.
+	 * The channel is non-blocking and only used by the loop's thread.
+	 *
+	 * Includes:
+	 * NetServer(InetSocketAddress address, int latencyMillis, int jitterMillis,
+	 * double loss): Opens the server on address, sending through a
+	 * LinkSimulator with the given settings
+	 *
+	 * boolean update(): Reads the packets received and plays one update
+	 *
+	 * void render(double alpha): Sends the state to the clients
+	 *
+	 * int port(), boolean isFinished(), GameState state(): The port the
+	 * server listens on, whether the match is over and sent, the state
+	 *
+	 * void setSpectators(SpectatorServer spectators): Broadcasts the state
+	 * sent to the players to spectators as well (see @pong.SpectatorServer)
+	 *
+	 * void main(String[] args): Runs a server. Arguments: [port] [sendRate]
+	 * [spectatorPort]
+	 */
+
+	public static final int DEFAULT_PORT = 4816;
+	public static final int DEFAULT_SEND_RATE = 60; //STATE packets per second
+	private static final int historySize = 64; //States kept as delta bases
+	private static final int inputWindow = 64; //Inputs a client may be ahead
+	private static final int maxWaiting = 8; //Inputs waiting before old ones are skipped
+	//Updates after the end of the match during which the final state is sent
+	private static final int finalUpdates = GameLoop.DEFAULT_TICK_RATE;
+
+	private static class Player {
+		//A connected client
+		final SocketAddress address;
+		final int[] masks = new int[inputWindow]; //Inputs by seq % inputWindow
+		final int[] seqs = new int[inputWindow]; //seq of each stored input
+		int nextSeq = 1; //Next input to play
+		int highestSeq = 0; //Highest input received
+		int mask = 0; //Input played last
+		int played = 0; //seq of the input played last
+		int stateTick = -1; //Tick of the last STATE the client received
+
+		Player(SocketAddress address){
+			this.address = address;
+			for (int i = 0;i<inputWindow;i++){
+				seqs[i] = -1;
+			}
+		}
+
+		int nextInput(){
+			//Returns the input to play in this update
+			if (highestSeq >= nextSeq){
+				if (highestSeq-nextSeq >= maxWaiting){
+					//Too far behind the client, catches up
+					nextSeq = highestSeq-1;
+				}
+				int slot = nextSeq % inputWindow;
+				if (seqs[slot] == nextSeq){
+					mask = masks[slot];
+				}
+				//A missing input (lost with all its copies) repeats the last
+				played = nextSeq;
+				nextSeq++;
+			}
+			return mask;
+		}
+	}
+
+	private final DatagramChannel channel;
+	private final LinkSimulator link;
+	private final Simulator simulator = new Simulator();
+	private final GameState state = simulator.state;
+	private final Player[] players = new Player[2];
+	private final ByteBuffer in = ByteBuffer.allocate(NetProtocol.MAX_PACKET);
+	private final ByteBuffer out = ByteBuffer.allocate(NetProtocol.MAX_PACKET);
+	//States sent, by sending order, used as delta bases
+	private final GameState[] history = new GameState[historySize];
+	private final int[] historyTicks = new int[historySize];
+	private int historyNext = 0;
+	private boolean over = false;
+	private int finalLeft = finalUpdates;
+	private volatile boolean finished = false;
+	private SpectatorServer spectators; //null if the match isn't broadcast
+
+	public NetServer(InetSocketAddress address, int latencyMillis, int jitterMillis, double loss)
+			throws IOException{
+		//Constructor: InetSocketAddress address, int latencyMillis, int jitterMillis, double loss
+		//Opens the server's channel on address
+		channel = DatagramChannel.open();
+		channel.bind(address);
+		channel.configureBlocking(false);
+		link = new LinkSimulator(channel, latencyMillis, jitterMillis, loss, System.nanoTime());
+		for (int i = 0;i<historySize;i++){
+			history[i] = new GameState();
+			historyTicks[i] = -1;
+		}
+	}
+
+	public int port() throws IOException{
+		return ((InetSocketAddress)channel.getLocalAddress()).getPort();
+	}
+
+	public boolean isFinished(){
+		return finished;
+	}
+
+	public GameState state(){
+		return state;
+	}
+
+	public void setSpectators(SpectatorServer spectators){
+		//Broadcasts every state sent to the players, null to stop. Should
+		//be called before the game loop starts.
+		this.spectators = spectators;
+	}
+
+	@Override
+	public boolean update(){
+		/*update()
+		 * Reads every packet received, then plays an update once both
+		 * players are in. After the match is over the final state keeps
+		 * being sent for a second, then true is returned.
+		 */
+		try{
+			receive();
+			link.flush();
+		}catch (IOException e){
+			System.err.println("Server: " + e);
+		}
+		if (players[0] == null || players[1] == null){
+			return false;
+		}
+		if (over){
+			finalLeft--;
+			finished = finalLeft <= 0;
+			return finished;
+		}
+		//The clients send UP/DOWN for their own paddle, W/S move the left one
+		int inputs = players[0].nextInput() << 2 | players[1].nextInput();
+		over = simulator.step(inputs);
+		return false;
+	}
+
+	private void receive() throws IOException{
+		//Handles every packet waiting in the channel
+		while (true){
+			in.clear();
+			SocketAddress from = channel.receive(in);
+			if (from == null){
+				return;
+			}
+			in.flip();
+			if (!in.hasRemaining()){
+				continue;
+			}
+			byte type = in.get();
+			Player player = playerAt(from);
+			if (type == NetProtocol.HELLO){
+				int side = player != null ? (player == players[0] ? 0 : 1) : -1;
+				if (player == null){
+					for (int i = 0;i<2 && side < 0;i++){
+						if (players[i] == null){
+							players[i] = new Player(from);
+							side = i;
+						}
+					}
+				}
+				out.clear();
+				out.put(NetProtocol.WELCOME);
+				out.put((byte)side);
+				out.flip();
+				link.send(out, from);
+			}else if (type == NetProtocol.INPUT && player != null && in.remaining() >= 9){
+				int seq = in.getInt();
+				player.stateTick = Math.max(player.stateTick, in.getInt());
+				int count = Math.min(in.get() & 0xFF, in.remaining());
+				for (int i = 0;i<count;i++){
+					int s = seq-i;
+					int mask = in.get() & (Simulator.UP | Simulator.DOWN);
+					if (s >= player.nextSeq && s > player.highestSeq-inputWindow){
+						player.masks[s % inputWindow] = mask;
+						player.seqs[s % inputWindow] = s;
+					}
+				}
+				player.highestSeq = Math.max(player.highestSeq, seq);
+			}
+		}
+	}
+
+	private Player playerAt(SocketAddress address){
+		//The player sending from address, null if none
+		for (Player p : players){
+			if (p != null && p.address.equals(address)){
+				return p;
+			}
+		}
+		return null;
+	}
+
+	@Override
+	public void render(double alpha){
+		/*render(double alpha)
+		 * Sends the latest state to both players, each delta-encoded
+		 * against the last state that player received if it is still
+		 * kept, in full otherwise.
+		 */
+		if (players[0] == null || players[1] == null){
+			return;
+		}
+		int tick = (int)state.tick;
+		int previous = (historyNext+historySize-1) % historySize;
+		boolean fresh = historyTicks[previous] != tick; //A state not sent yet
+		if (fresh){
+			history[historyNext].copyFrom(state);
+			historyTicks[historyNext] = tick;
+			historyNext = (historyNext+1) % historySize;
+		}
+		try{
+			for (Player p : players){
+				GameState base = null;
+				for (int i = 0;i<historySize;i++){
+					if (historyTicks[i] == p.stateTick && p.stateTick >= 0){
+						base = history[i];
+					}
+				}
+				out.clear();
+				NetProtocol.writeState(out, tick, p.played, p.stateTick, base, state, over);
+				out.flip();
+				link.send(out, p.address);
+			}
+			link.flush();
+		}catch (IOException e){
+			System.err.println("Server: " + e);
+		}
+		if (spectators != null && fresh){
+			spectators.publish(state, players[0].mask | players[1].mask);
+		}
+	}
+
+	public void close() throws IOException{
+		channel.close();
+	}
+
+	public long packetsSent(){
+		return link.sent();
+	}
+
+	public long bytesSent(){
+		return link.bytes();
+	}
+
+	public static void main(String[] args) throws Exception{
+		/*main(String[] args)
+		 * Runs one match on the given port (default 4816), sending the
+		 * state sendRate times per second, then exits. The pong.net.*
+		 * properties add simulated latency, jitter and loss (see
+		 * @pong.LinkSimulator). With spectatorPort, the match is broadcast
+		 * to the spectators connected to it (see @pong.SpectatorServer).
+		 */
+		int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+		int sendRate = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_SEND_RATE;
+		NetServer server = new NetServer(new InetSocketAddress(port),
+				Integer.getInteger("pong.net.latency", 0), Integer.getInteger("pong.net.jitter", 0),
+				Double.parseDouble(System.getProperty("pong.net.loss", "0")));
+		SpectatorServer spectators = null;
+		if (args.length > 2){
+			spectators = new SpectatorServer(new InetSocketAddress(Integer.parseInt(args[2])));
+			spectators.start();
+			server.setSpectators(spectators);
+			System.out.println("Broadcasting to spectators on port " + spectators.port());
+		}
+		System.out.println("Waiting for two players on port " + server.port());
+		GameLoop loop = new GameLoop(server, GameLoop.DEFAULT_TICK_RATE, sendRate);
+		loop.start();
+		while (!server.isFinished()){
+			Thread.sleep(100);
+		}
+		loop.stop();
+		server.close();
+		if (spectators != null){
+			spectators.stop();
+		}
+		GameState s = server.state();
+		System.out.println("Final score: " + s.playerScores[0] + "-" + s.playerScores[1]
+				+ " after " + s.tick + " updates, " + server.packetsSent() + " packets ("
+				+ server.bytesSent() + " bytes) sent");
+	}
+
+}
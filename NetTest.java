@@ -0,0 +1,108 @@
+package pong;
+
+import java.net.InetSocketAddress;
+
+public class NetTest {
+	/*NetTest:
+	 * Purpose: Plays a networked match over loopback without a display to
+	 * check the networked mode under bad network conditions. A NetServer
+	 * and two NetClients run on their own GameLoops and every packet goes
+	 * through a LinkSimulator with the given latency, jitter and loss.
+	 * Each client is played by a CPU (by default "normal", see
+	 * @pong.PaddleController) looking at the client's view, so it reacts
+	 * to what a player would see. Prints, for each client, how many of its
+	 * predictions the server contradicted and by how much, and the size
+	 * of the STATE packets, then checks that both clients saw the
+	 * server's final score.
+	 *
+	 * Includes:
+	 * void main(String[] args): Runs the match. Arguments (all optional):
+	 * latencyMillis, jitterMillis, loss, seconds, cpu
+	 */
+
+	static class Bot implements GameLoop.Game {
+		//Plays a client with the CPU
+		final NetClient client;
+		final PaddleController cpu;
+		volatile boolean done = false;
+
+		Bot(NetClient client, PaddleController cpu){
+			this.client = client;
+			this.cpu = cpu;
+		}
+
+		@Override
+		public boolean update(){
+			int inputs = 0;
+			int side = client.side();
+			if (side >= 0){
+				int move = cpu.move(client.view(), side);
+				inputs = move == PaddleController.UP ? Simulator.UP
+						: move == PaddleController.DOWN ? Simulator.DOWN : 0;
+			}
+			done = client.tick(inputs);
+			return done;
+		}
+
+		@Override
+		public void render(double alpha){
+		}
+	}
+
+	public static void main(String[] args) throws Exception{
+		/*main(String[] args)
+		 * Runs the match until it is over or seconds have passed
+		 */
+		int latency = args.length > 0 ? Integer.parseInt(args[0]) : 50;
+		int jitter = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+		double loss = args.length > 2 ? Double.parseDouble(args[2]) : 0.05;
+		int seconds = args.length > 3 ? Integer.parseInt(args[3]) : 60;
+		String cpu = args.length > 4 ? args[4] : "normal";
+
+		NetServer server = new NetServer(new InetSocketAddress("127.0.0.1", 0), latency, jitter, loss);
+		InetSocketAddress address = new InetSocketAddress("127.0.0.1", server.port());
+		Bot[] bots = {new Bot(new NetClient(address, latency, jitter, loss), PaddleController.named(cpu, 1)),
+				new Bot(new NetClient(address, latency, jitter, loss), PaddleController.named(cpu, 2))};
+		GameLoop serverLoop = new GameLoop(server, GameLoop.DEFAULT_TICK_RATE, NetServer.DEFAULT_SEND_RATE);
+		GameLoop[] botLoops = new GameLoop[2];
+		serverLoop.start();
+		for (int i = 0;i<2;i++){
+			botLoops[i] = new GameLoop(bots[i], GameLoop.DEFAULT_TICK_RATE, 1);
+			botLoops[i].start();
+		}
+		long end = System.nanoTime()+seconds*1000000000L;
+		while (!(server.isFinished() && bots[0].done && bots[1].done) && System.nanoTime() < end){
+			Thread.sleep(50);
+		}
+		serverLoop.stop();
+		botLoops[0].stop();
+		botLoops[1].stop();
+		Thread.sleep(50);
+
+		GameState s = server.state();
+		System.out.printf("latency %d ms, jitter %d ms, loss %.0f%%: %d updates played, score %d-%d%s%n",
+				latency, jitter, loss*100, s.tick, s.playerScores[0], s.playerScores[1],
+				server.isFinished() ? "" : " (stopped before the end)");
+		System.out.printf("server: %d packets, %.1f bytes per packet%n",
+				server.packetsSent(), (double)server.bytesSent()/Math.max(1, server.packetsSent()));
+		boolean agree = true;
+		for (Bot bot : bots){
+			NetClient c = bot.client;
+			GameState v = c.view();
+			System.out.printf("client %s: %d inputs sent, %d states received (%.1f bytes each),"
+					+ " %d bad, %d predictions corrected (max %.2f px), sees %d-%d%n",
+					c.side() == 0 ? "left" : "right", c.packetsSent(), c.statesReceived(),
+					(double)c.stateBytes()/Math.max(1, c.statesReceived()), c.badPackets(), c.corrections(),
+					c.maxCorrection(), v.playerScores[0], v.playerScores[1]);
+			agree &= v.playerScores[0] == s.playerScores[0] && v.playerScores[1] == s.playerScores[1];
+			c.close();
+		}
+		server.close();
+		if (!agree){
+			System.out.println("FAILED: a client doesn't see the server's score");
+			System.exit(1);
+		}
+		System.out.println("OK");
+	}
+
+}
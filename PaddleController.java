@@ -0,0 +1,58 @@
+package pong;
+
+public interface PaddleController {
+	/*PaddleController:
+	 * Purpose: Decides how a paddle moves, whoever plays it: a CPU, a bot
+	 * or a person at the keyboard (see @pong.KeyboardController). Called
+	 * once per update, after the ball has moved, by the simulators that
+	 * move paddles with controllers (see @pong.PvESimulator and
+	 * @pong.EvESimulator), either side of a match can use any controller.
+	 * Controllers only see the match through a read-only GameView. A
+	 * controller may keep state between updates, so each paddle of each
+	 * match needs its own instance.
+	 *
+	 * Includes:
+	 * int move(GameView view, int paddle): Returns UP, DOWN or STAY for
+	 * paddle (0 for left, 1 for right)
+	 *
+	 * void keys(int inputs): Given the keys held (see Simulator.UP etc.)
+	 * before each move, ignored unless the controller is played with keys
+	 *
+	 * PaddleController named(String name, long seed): Creates the controller
+	 * called name: "lookahead" (the original CPU, see LookaheadController),
+	 * "easy", "normal", "hard", "perfect" (see InterceptController) or
+	 * "keyboard". seed drives the controller's mistakes, if it makes any.
+	 *
+	 * String[] NAMES: Every name known by named
+	 */
+
+	int UP = -1;
+	int STAY = 0;
+	int DOWN = 1;
+
+	//Names known by named, the CPUs before "keyboard"
+	String[] NAMES = {"lookahead", "easy", "normal", "hard", "perfect", "keyboard"};
+
+	int move(GameView view, int paddle);
+
+	default void keys(int inputs){
+	}
+
+	static PaddleController named(String name, long seed){
+		if (name.equals("lookahead")){
+			return new LookaheadController();
+		}else if (name.equals("easy")){
+			return new InterceptController(40, 60, seed);
+		}else if (name.equals("normal")){
+			return new InterceptController(20, 45, seed);
+		}else if (name.equals("hard")){
+			return new InterceptController(8, 30, seed);
+		}else if (name.equals("perfect")){
+			return new InterceptController(0, 0, seed);
+		}else if (name.equals("keyboard")){
+			return new KeyboardController();
+		}
+		throw new IllegalArgumentException("Unknown controller: " + name);
+	}
+
+}
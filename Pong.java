@@ -1,17 +1,18 @@
 package pong;
 
-import java.awt.event.ActionEvent;
-import java.awt.event.ActionListener;
 import java.awt.event.KeyEvent;
 import java.awt.event.KeyListener;
+import java.io.IOException;
+import java.net.InetSocketAddress;
 import javax.swing.JFrame;
-import javax.swing.Timer;
+import javax.swing.JPanel;
+import javax.swing.SwingUtilities;
 
-public class Pong implements ActionListener, KeyListener{
+public class Pong implements GameLoop.Game, KeyListener{
 	/*Pong: 
 	 * Author: Anuraag Bharadwaj
 	 * Year: 2016
-	 * Interfaces: ActionListener, KeyListener
+	 * Interfaces: GameLoop.Game, KeyListener
 	 * Purpose: Creates a version of the Classical Videogame
 	 * Pong (1972). The game is one or two player game in which
 	 * there are two paddles on either end of a screen with a ball
@@ -38,10 +39,54 @@ public class Pong implements ActionListener, KeyListener{
 	 * void keyReleased(KeyEvent key): Sets the keys set by keyPressed to false
 	 * when controlling paddles in the PvP or PvE environment. 
 	 * 
-	 * void keyTyped(KeyEvent key): Used to pause the game.
+	 * void keyTyped(KeyEvent key): Used to pause the game and to show or
+	 * hide the metrics overlay.
 	 * 
-	 * void actionPerformed(ActionEvent arg0): Acts the frame update. Called every
-	 * 5 milliseconds by the Timer. 
+	 * boolean update(): Acts the frame update. Called every 5 milliseconds
+	 * (by default) by the GameLoop's thread.
+	 * 
+	 * void render(double alpha): Repaints the match. Called by the GameLoop
+	 * at the render rate.
+	 * 
+	 * void startMatch(Screen mode): Shows a new PVP or PVE match and starts
+	 * the game loop on it
+	 * 
+	 * void endMatch(): Replaces the match with the EndScreenPanel
+	 * 
+	 * void show(JPanel panel): Makes panel the screen being displayed
+	 * 
+	 * void redraw(): Draws the screen being displayed again
+	 * 
+	 * The update and render rates can be set with the system properties
+	 * pong.tickRate and pong.renderRate (0 renders as often as possible).
+	 * The CPU of the Player vs Comp mode is chosen with pong.cpu (see
+	 * PaddleController.named), by default the original "lookahead".
+	 * With pong.left set to a controller name as well, the left paddle of
+	 * that mode is moved by that controller instead of the arrow keys
+	 * ("keyboard" plays it with W and S, and pong.cpu=keyboard plays the
+	 * right paddle with the arrows). Such matches aren't recorded.
+	 * With pong.sweptTicks set to n > 0 the matches use swept collisions
+	 * (see Simulator.setSweptTicks) and play n updates per step, so the
+	 * game loop only has to step the match tickRate/n times per second.
+	 * With pong.record set to a directory, every match is recorded there
+	 * (see @pong.ReplayWriter) and can be replayed with ReplayReader.
+	 * With pong.spectators set to a port, every local match is broadcast
+	 * to the spectators connected to that port (see @pong.SpectatorServer).
+	 * With pong.balls set to n > 1, Player vs Player is played locally
+	 * with n balls bouncing off each other (see @pong.MultiBallPanel).
+	 * With pong.fixed set to true, it is played locally by the fixed-point
+	 * engine instead (see @pong.FixedPanel).
+	 * With pong.connect set to host:port, Player vs Player is played over
+	 * the network against another player of the NetServer at that
+	 * address (see @pong.NetPanel). The pong.net.* properties add
+	 * simulated latency, jitter and loss (see @pong.LinkSimulator).
+	 * Screens are drawn with active rendering on a GameCanvas unless
+	 * pong.activeRendering is false, in which case the panels are added to
+	 * the frame and painted by Swing.
+	 * Metrics of the game loop (see @pong.GameMetrics) are available through
+	 * JMX and are drawn over the game while enabled, by typing "f" or from
+	 * the start with the system property pong.metrics. The overlay is only
+	 * drawn with active rendering.
 	 */
 	
 	private JFrame jframe; //Window for the gameplay
@@ -55,25 +100,54 @@ public class Pong implements ActionListener, KeyListener{
 	private PvPPanel pvp;
 	private PvEPanel pve; 
 	
-	private String currentPanel; // Tracks the current panel add to jframe
-	private Timer timer = new Timer(5,this); //Calls actionPerformed every 5 seconds
-	private boolean paused = false; //Used to pause game
+	//The screens of the game. Keys are handled by the current one and
+	//it only changes MENU -> PVP or PVE (ENTER), PVP or PVE -> END (the
+	//match is over) and END -> MENU (ENTER on "Play Again").
+	private enum Screen { MENU, PVP, PVE, END }
+	private Screen screen; // Tracks the current panel add to jframe
+	private JPanel shown; //Panel being displayed
+	//Draws the panels when active rendering is used, null otherwise
+	private GameCanvas canvas;
+	//Panel of the match being played (pvp or pve), used by the game loop
+	private PvPPanel match;
+	//Calls update and render on its own thread while a match is played
+	private GameLoop loop;
+	//Times updates and frames while enabled, see keyTyped
+	private final GameMetrics metrics = new GameMetrics();
+	private final int tickRate = Integer.getInteger("pong.tickRate", GameLoop.DEFAULT_TICK_RATE);
+	private final int renderRate = Integer.getInteger("pong.renderRate", GameLoop.DEFAULT_RENDER_RATE);
+	private final int sweptTicks = Integer.getInteger("pong.sweptTicks", 0);
+	private final String recordDirectory = System.getProperty("pong.record");
+	private final String connect = System.getProperty("pong.connect"); //host:port of a NetServer
+	private final String left = System.getProperty("pong.left"); //Controller of the left paddle, null for the arrow keys
+	private final Integer spectatorPort = Integer.getInteger("pong.spectators"); //null for no broadcast
+	private final int balls = Integer.getInteger("pong.balls", 1); //Balls of local PvP matches
+	private final boolean fixedPoint = Boolean.getBoolean("pong.fixed"); //Local PvP in fixed point
+	//Broadcasts the matches, opened with the first one, null if not
+	private SpectatorServer spectators;
 	
 	public Pong(){
 		//Intializes the game screen with the specifications below
 		jframe = new JFrame ("Pong");
 		jframe.setVisible(true);
-		jframe.setSize(801,480);
-		jframe.getContentPane().setSize(801, 480);
+		jframe.setSize(Simulator.fieldWidth,Simulator.fieldHeight);
+		jframe.getContentPane().setSize(Simulator.fieldWidth, Simulator.fieldHeight);
 		jframe.setLocation(200, 75);
 		jframe.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
 		jframe.setResizable(false);
 		jframe.addKeyListener(this);
 		
+		if (Boolean.parseBoolean(System.getProperty("pong.activeRendering", "true"))){
+			jframe.add(canvas = new GameCanvas());
+			canvas.setOverlay(metrics);
+		}
+		metrics.setEnabled(Boolean.getBoolean("pong.metrics"));
+		metrics.register();
+		
 		//Begins the game with the BaseNavigationPanel
-		jframe.add(base = new BaseNavigationPanel());
+		show(base = new BaseNavigationPanel());
 		jframe.pack();
-		currentPanel = "base"; 
+		screen = Screen.MENU;
 	}
 	
 	public static void main(String[] args){
@@ -98,8 +172,8 @@ public class Pong implements ActionListener, KeyListener{
 		 * removed and replaced by the base navigation panel or the program exits
 		 * with an exit message. 
 		 * 
-		 * Player vs Player - Tracks the keys pressed in the respective instance
-		 * i.e. UP goes to keyPressed[0] etc. (See PvPPanel)
+		 * Player vs Player - Queues the keys pressed for the game loop to
+		 * apply i.e. UP goes to keyPressed[0] etc. (See PvPPanel)
 		 * 
 		 * Player vs Comp - Tracks the keys pressed in the respective instance
 		 * but ignores W and S as the computer controls the other panel. (See
@@ -108,78 +182,45 @@ public class Pong implements ActionListener, KeyListener{
 		
 		int i = key.getKeyCode(); //Tracks the last key pressed
 		
-		if (currentPanel == "base"){ 
+		switch (screen){
+		case MENU:
 			//Switches the cursor location if UP or DOWN was pressed
 			if (i == KeyEvent.VK_UP | i == KeyEvent.VK_DOWN){
 				base.selected = 1 - base.selected;
-				base.repaint();
+				redraw();
 			}	
 			//Switches panels if ENTER was pressed
 			if (i == KeyEvent.VK_ENTER){
-				jframe.remove(base);
-				if (base.selected == 0){
-					//PvP was selected
-					jframe.add(pvp = new PvPPanel());
-					currentPanel = "pvp";
-				}else{
-					//PvE was selected
-					jframe.add(pve = new PvEPanel());
-					currentPanel = "pve";
-				}
-				jframe.revalidate();
-				timer.start(); //Starts the auto frame update
+				startMatch(base.selected == 0 ? Screen.PVP : Screen.PVE);
 			}
-		}
-		
-		if (currentPanel == "endscreen"){
+			break;
+		case END:
 			//Switches the cursor location if UP or DOWN was pressed
 			if (i == KeyEvent.VK_UP | i == KeyEvent.VK_DOWN){
 				endScreen.selected = 1 - endScreen.selected;
-				endScreen.repaint();
+				redraw();
 			}	
 			//Switches panels if ENTER was pressed and "Play Again" is selected
 			//Ends the game if "Quit" was selected
 			if (i == KeyEvent.VK_ENTER){
-				jframe.remove(endScreen);
 				if (endScreen.selected == 0){
-					jframe.add(base = new BaseNavigationPanel());
-					jframe.revalidate();
-					currentPanel = "base";
+					show(base = new BaseNavigationPanel());
+					screen = Screen.MENU;
 				}else{
 					System.out.println("Thanks for playing!!");
 					System.exit(0);
 				}
 			}
-		}
-		
-		if (currentPanel == "pvp"){
-				switch (i){
-					//Tracking which key was pressed
-					case KeyEvent.VK_UP:
-						pvp.keysPressed[0]=true;
-						break;
-					case KeyEvent.VK_DOWN:
-						pvp.keysPressed[1]=true;
-						break;
-					case KeyEvent.VK_W:
-						pvp.keysPressed[2]=true;
-						break;
-					case KeyEvent.VK_S:
-						pvp.keysPressed[3]=true;
-						break;
-				}
-		}
-		
-		if (currentPanel == "pve"){
-			switch (i){
-				//Tracking which key was pressed
-				case KeyEvent.VK_UP:
-					pve.keysPressed[0]=true;
-					break;
-				case KeyEvent.VK_DOWN:
-					pve.keysPressed[1]=true;
-					break;
+			break;
+		case PVP:
+		case PVE:
+			//Tracking which key was pressed, W and S only move a paddle in
+			//PvP or when a controller plays the left paddle
+			int k = keyIndex(i);
+			if (k >= 0 && (screen == Screen.PVP || k < 2 || left != null)){
+				match.setKey(k, true);
 			}
+			break;
 		}
 	}
 
@@ -192,102 +233,207 @@ public class Pong implements ActionListener, KeyListener{
 		 */
 		int i = key.getKeyCode();//Gets the key released
 		
-		if (currentPanel == "pvp"){
-			switch (i){
+		if (screen == Screen.PVP || screen == Screen.PVE){
 			//Sets the respective key to false to stop movement of paddles.
-			case KeyEvent.VK_UP:
-				pvp.keysPressed[0]=false;
-				break;
-			case KeyEvent.VK_DOWN:
-				pvp.keysPressed[1]=false;
-				break;
-			case KeyEvent.VK_W:
-				pvp.keysPressed[2]=false;
-				break;
-			case KeyEvent.VK_S:
-				pvp.keysPressed[3]=false;
-				break;
+			int k = keyIndex(i);
+			if (k >= 0){
+				match.setKey(k, false);
 			}
 		}
-		
-		if (currentPanel == "pve"){
-			switch (i){
-			//Sets the respective key to false to stop movement of paddles.
-			case KeyEvent.VK_UP:
-				pve.keysPressed[0]=false;
-				break;
-			case KeyEvent.VK_DOWN:
-				pve.keysPressed[1]=false;
-				break;
-			case KeyEvent.VK_W:
-				pve.keysPressed[2]=false;
-				break;
-			case KeyEvent.VK_S:
-				pve.keysPressed[3]=false;
-				break;
+	}
+
+	private static int keyIndex(int keyCode){
+		/*keyIndex(int keyCode):
+		 * Returns the index of the key in PvPPanel.setKey (UP, DOWN, W, S
+		 * in that order), or -1 if the key doesn't move a paddle.
+		 */
+		switch (keyCode){
+		case KeyEvent.VK_UP:
+			return 0;
+		case KeyEvent.VK_DOWN:
+			return 1;
+		case KeyEvent.VK_W:
+			return 2;
+		case KeyEvent.VK_S:
+			return 3;
+		default:
+			return -1;
+		}
+	}
+
+	private void startMatch(Screen mode){
+		/*startMatch(Screen mode):
+		 * Called on the EDT when ENTER is pressed on the menu. Shows the
+		 * panel of a new PVP or PVE match and starts the game loop on it.
+		 */
+		String cpu = null; //CPU of the match, null for PvP
+		long cpuSeed = System.nanoTime();
+		boolean networked = false;
+		if (mode == Screen.PVP && connect != null){
+			int colon = connect.lastIndexOf(':');
+			try{
+				NetClient client = new NetClient(new InetSocketAddress(connect.substring(0, colon),
+						Integer.parseInt(connect.substring(colon+1))),
+						Integer.getInteger("pong.net.latency", 0), Integer.getInteger("pong.net.jitter", 0),
+						Double.parseDouble(System.getProperty("pong.net.loss", "0")));
+				show(match = pvp = new NetPanel(client));
+				networked = true;
+			}catch (IOException e){
+				System.err.println("Can't connect to " + connect + ", playing locally: " + e);
+			}
+		}
+		//Multi-ball and fixed-point matches are only played locally and
+		//aren't recorded or broadcast
+		boolean localOnly = !networked && mode == Screen.PVP && (balls > 1 || fixedPoint);
+		if (localOnly && balls > 1){
+			show(match = pvp = new MultiBallPanel(balls));
+		}else if (localOnly){
+			show(match = pvp = new FixedPanel());
+		}else if (!networked && mode == Screen.PVP){
+			show(match = pvp = new PvPPanel());
+		}else if (!networked){
+			cpu = System.getProperty("pong.cpu", "lookahead");
+			if (left == null){
+				show(match = pve = new PvEPanel(PaddleController.named(cpu, cpuSeed)));
+			}else{
+				show(match = pve = new PvEPanel(PaddleController.named(left, cpuSeed+1),
+						PaddleController.named(cpu, cpuSeed)));
+			}
+		}
+		screen = mode;
+		//Starts the auto frame update
+		int stepRate = tickRate;
+		if (sweptTicks > 0 && !networked && !localOnly){
+			match.simulator.setSweptTicks(sweptTicks);
+			stepRate = Math.max(1, tickRate/sweptTicks);
+		}
+		//Replays only know the right paddle's controller
+		if (recordDirectory != null && !networked && !localOnly && (mode == Screen.PVP || left == null)){
+			String path = recordDirectory + "/match-" + System.currentTimeMillis() + ".replay";
+			try{
+				match.setRecorder(new ReplayWriter(path, cpu, cpuSeed,
+						sweptTicks, match.state));
+			}catch (IOException e){
+				System.err.println("Can't record to " + path + ": " + e);
+			}
+		}
+		if (spectatorPort != null && !networked && !localOnly){
+			try{
+				if (spectators == null){
+					spectators = new SpectatorServer(new InetSocketAddress(spectatorPort));
+					spectators.start();
+				}
+				match.setSpectators(spectators);
+			}catch (IOException e){
+				System.err.println("Can't broadcast on port " + spectatorPort + ": " + e);
 			}
 		}
+		match.setMetrics(metrics);
+		loop = new GameLoop(this, stepRate, renderRate);
+		loop.setMetrics(metrics);
+		loop.start();
 	}
 
 	@Override
 	public void keyTyped(KeyEvent key) {
 		/*keyTyped(KeyEvent key):
-		 * Called when a key is typed. Used to pause game by starting
-		 * and stopping the timer whenever "p" is typed.
+		 * Called when a key is typed. Used to pause game by pausing
+		 * and resuming the game loop whenever "p" is typed. Typing "f"
+		 * starts or stops the metrics and their overlay.
 		 */
 		char p = key.getKeyChar(); //Sets p to the current key typed. 
-		if (p == 'p'){
-			//Based on the current state of paused,starts or stops the timer.
-			if (paused){
-				timer.start();
-			}else{
-				timer.stop();
+		if (p == 'p' && loop != null){
+			//Based on the current state of paused,starts or stops the updates.
+			loop.setPaused(!loop.isPaused());
+		}
+		if (p == 'f'){
+			metrics.setEnabled(!metrics.isEnabled());
+			if (loop == null){
+				//Menus are only drawn when something changes
+				redraw();
 			}
-			paused = !paused; //Reverses Paused
 		}
 	}
 
 	@Override
-	public void actionPerformed(ActionEvent arg0) {
-		/*actionPerformed(ActionEvent arg0):
-		 * Called by Timer whenever it elapses. Checks to see which 
-		 * panel is active to use the appropriate instance. 
+	public boolean update() {
+		/*update():
+		 * Called by the GameLoop's thread for every update of the match.
 		 * Acts as frame update by moving ball and paddles as well
 		 * as testing to see if the game has ended in order to move
-		 * the game to the end screen.
+		 * the game to the end screen. Returns true once the game has
+		 * ended, which stops the loop.
 		 */
-		
-		if (currentPanel == "pvp"){
-			boolean done = pvp.updateBall(); 
-			pvp.updatePaddles();
-			pvp.increaseBallSpeed();
-			if (done){
-				//Removes the panel and replaces it with EndScreenPanel
-				jframe.remove(pvp);
-				jframe.add(endScreen = new EndScreenPanel());
-				jframe.revalidate();
-				pvp = null;
-				currentPanel = "endscreen";
-				timer.stop();
-			}
+		boolean done = match.update();
+		if (done){
+			//Panels are only changed on the EDT
+			SwingUtilities.invokeLater(new Runnable(){
+				@Override
+				public void run(){
+					endMatch();
+				}
+			});
 		}
-		
-		if (currentPanel == "pve"){
-			boolean done = pve.updateBall();
-			pve.updatePaddles();
-			pve.increaseBallSpeed();
-			if (done){
-				//Removes the panel and replaces it with EndScreenPanel
-				jframe.remove(pve);
-				jframe.add(endScreen = new EndScreenPanel());
-				jframe.revalidate();
-				pve = null;
-				currentPanel = "endscreen";
-				timer.stop();
+		return done;
+	}
+
+	@Override
+	public void render(double alpha) {
+		/*render(double alpha):
+		 * Called by the GameLoop's thread whenever a frame is due.
+		 * Repaints the match between its last two updates.
+		 */
+		match.setAlpha(alpha);
+		redraw();
+	}
+
+	private void endMatch(){
+		/*endMatch():
+		 * Called on the EDT once the match is over. Removes the panel
+		 * and replaces it with EndScreenPanel. Prints the loop's stats of
+		 * the match if metrics are on (-Dpong.metrics=true).
+		 */
+		if (metrics.isEnabled()){
+			System.out.printf("Updates: %d, missed: %d, frames: %d, jitter: mean %.3f ms, max %.3f ms%n",
+					loop.ticks(), loop.missedTicks(), loop.frames(),
+					loop.meanJitterNanos()/1e6, loop.maxJitterNanos()/1e6);
+		}
+		loop = null;
+		show(endScreen = new EndScreenPanel());
+		match = pvp = pve = null;
+		screen = Screen.END;
+	}
+	
+	private void show(JPanel panel){
+		/*show(JPanel panel):
+		 * Replaces the screen being displayed with panel. With active
+		 * rendering the canvas starts drawing the panel's layers, otherwise
+		 * the panel is swapped into the frame.
+		 */
+		if (canvas != null){
+			canvas.setLayers((GameCanvas.Layers)panel);
+			canvas.render();
+		}else{
+			if (shown != null){
+				jframe.remove(shown);
 			}
+			jframe.add(panel);
+			jframe.revalidate();
+			jframe.repaint();
+		}
+		shown = panel;
+	}
+	
+	private void redraw(){
+		/*redraw():
+		 * Draws the screen being displayed again. Called on the EDT for
+		 * the menus and by the game loop's thread during a match.
+		 */
+		if (canvas != null){
+			canvas.render();
+		}else{
+			shown.repaint();
 		}
-		//Calls repaint to refresh screen. 
-		jframe.repaint();
 	}
 	
 }
@@ -0,0 +1,131 @@
+package pong;
+
+public class PongEnv {
+	/*PongEnv:
+	 * Purpose: Reinforcement learning environment (in the style of Gym)
+	 * for training a paddle to take the place of the CPU of the Player vs
+	 * Comp mode. The agent moves the right paddle and a PaddleController
+	 * (by default the original CPU, see @pong.LookaheadController) moves
+	 * the left one. Each step is one update of the simulator: the
+	 * opponent chooses its move from the state before the step, then
+	 * both moves are played as keys (W/S for the left paddle, UP/DOWN for
+	 * the right one). Headless, no AWT/Swing.
+	 * Actions: PaddleController.UP, STAY or DOWN.
+	 * Observation (OBSERVATION_SIZE floats, written into observation):
+	 * ball column/fieldWidth, ball row/fieldHeight, cosine and sine of the
+	 * ball's direction, ball speed/maxBallSpeed, agent's paddle
+	 * row/fieldHeight, opponent's paddle row/fieldHeight (see @pong.Rules).
+	 * Reward: +1 when the agent scores a point, -1 when the opponent does,
+	 * 0 otherwise. An episode is one match, cut short after maxSteps steps
+	 * if maxSteps isn't 0.
+	 * See @pong.VectorPongEnv for many environments stepped at once.
+	 *
+	 * Includes:
+	 * PongEnv(PaddleController opponent, long maxSteps): Creates an
+	 * environment against opponent (null for the original CPU)
+	 *
+	 * float[] reset(long seed): Starts an episode from the seeded starting
+	 * state (see MatchRunner.seededState), returns the observation
+	 *
+	 * boolean step(int action): Plays one step, updates the observation and
+	 * the reward, returns whether the episode is over
+	 *
+	 * Getters: observation (field), reward(), isDone(), steps()
+	 */
+
+	public static final int OBSERVATION_SIZE = 7;
+	public static final int AGENT = 1; //Paddle moved by the agent
+	public static final int OPPONENT = 0; //Paddle moved by the opponent
+
+	public final float[] observation = new float[OBSERVATION_SIZE];
+	private final PaddleController opponent;
+	private final long maxSteps; //Steps per episode at most, 0 for no limit
+	private final GameState state = new GameState();
+	private final Simulator simulator = new Simulator(state);
+	private float reward = 0;
+	private boolean done = true; //No episode before the first reset
+	private long steps = 0;
+
+	public PongEnv(){
+		//Constructor: No parameters
+		//Creates an environment against the original CPU with no step limit
+		this(null, 0);
+	}
+
+	public PongEnv(PaddleController opponent, long maxSteps){
+		//Constructor: PaddleController opponent, long maxSteps
+		//Creates an environment against opponent (null for the original
+		//CPU), ending episodes after maxSteps steps (0 for no limit)
+		if (maxSteps < 0){
+			throw new IllegalArgumentException("maxSteps must not be negative");
+		}
+		this.opponent = opponent == null ? new LookaheadController() : opponent;
+		this.maxSteps = maxSteps;
+	}
+
+	public float[] reset(long seed){
+		/*reset(long seed)
+		 * Starts a new episode from MatchRunner.seededState(seed) and
+		 * returns its first observation
+		 */
+		MatchRunner.seededState(seed, state);
+		reward = 0;
+		done = false;
+		steps = 0;
+		observe(state, observation, 0);
+		return observation;
+	}
+
+	public boolean step(int action){
+		/*step(int action)
+		 * Plays one update with the agent's paddle moving as action says
+		 * (PaddleController.UP, STAY or DOWN). Updates the observation
+		 * and the reward and returns whether the episode is over. Throws
+		 * IllegalStateException if it is already over and not reset.
+		 */
+		if (done){
+			throw new IllegalStateException("The episode is over, reset the environment");
+		}
+		int inputs = keys(action, Simulator.UP, Simulator.DOWN)
+				| keys(opponent.move(state, OPPONENT), Simulator.W, Simulator.S);
+		int agentScore = state.playerScores[AGENT];
+		int opponentScore = state.playerScores[OPPONENT];
+		boolean over = simulator.step(inputs);
+		reward = (state.playerScores[AGENT]-agentScore)-(state.playerScores[OPPONENT]-opponentScore);
+		steps++;
+		done = over || (maxSteps != 0 && steps >= maxSteps);
+		observe(state, observation, 0);
+		return done;
+	}
+
+	static int keys(int move, int up, int down){
+		//Key mask playing move with the given up and down keys
+		return move == PaddleController.UP ? up : move == PaddleController.DOWN ? down : 0;
+	}
+
+	static void observe(GameState s, float[] out, int at){
+		//Writes the observation of s at index at of out
+		out[at] = (float)(s.ball[0]/Simulator.fieldWidth);
+		out[at+1] = (float)(s.ball[1]/Simulator.fieldHeight);
+		out[at+2] = (float)s.ballCos;
+		out[at+3] = (float)s.ballSin;
+		out[at+4] = (float)(s.ballSpeed/Simulator.maxBallSpeed);
+		out[at+5] = (float)(s.paddleCenters[AGENT]/Simulator.fieldHeight);
+		out[at+6] = (float)(s.paddleCenters[OPPONENT]/Simulator.fieldHeight);
+	}
+
+	public float reward(){
+		//Reward of the last step
+		return reward;
+	}
+
+	public boolean isDone(){
+		return done;
+	}
+
+	public long steps(){
+		//Steps played in the current episode
+		return steps;
+	}
+
+}
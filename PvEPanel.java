@@ -6,64 +6,40 @@ public class PvEPanel extends PvPPanel {
 	 * Author: Anuraag Bharadwaj
 	 * Year: 2016
 	 * Super Class: PvPPanel
-	 * Purpose: Extends the PvPPanel by overriding paddle control
+	 * Purpose: Extends the PvPPanel for the Player vs Comp mode
 	 * such that the user controls one panel and the other panel is 
-	 * controlled by the CPU for the Player vs Comp mode.
+	 * controlled by the CPU. The CPU itself lives in the headless
+	 * PvESimulator (see @pong.PvESimulator).
 	 * Functionality similar to PvPPanel (see @pong.PvPPanel)
 	 * 
 	 * Includes:
-	 * void updatePaddles(): Overrides PvPPanel.updatePaddles
-	 * Adds CPU component, having one panel move independent of any
-	 * keys pressed. 
+	 * PvEPanel(): Creates a panel for a new Player vs Comp match
+	 * against the original CPU
+	 * 
+	 * PvEPanel(PaddleController computer): Creates a panel for a new
+	 * Player vs Comp match against the given CPU
+	 * 
+	 * PvEPanel(PaddleController left, PaddleController right): Creates a
+	 * panel for a match where both paddles are moved by controllers, a
+	 * KeyboardController being played with the keys of Player vs Player
 	 */
 	
-	@Override
-	public void updatePaddles(){
-		/*updatePaddles: No Parameters
-		 * Overrides PvPPanel.updatePaddles()
-		 * Moves the Player's according the pressed keys if the move would 
-		 * keep the player withins the bounds of the screen.
-		 * The Computer's paddle moves in accordance where it predicts will
-		 * be. In order to this, the paddle's top and bottom bound are
-		 * compared to the ball's position and its direction in 10 updates
-		 * from the current time. 
-		 */
-		
-		//keyPressed[0] represents the UP key and will move the paddle up
-		//This only occurs if the panel will remain on screen.
-		if (keysPressed[0]){
-			if (paddleCenters[0]>PvPPanel.paddleLength/2){
-				paddleCenters[0] -= paddleSpeed;
-			}
-		}
-
-		//keyPressed[1] represents the DOWN key and will move the paddle up
-		//This only occurs if the panel will remain on screen.
-		if (keysPressed[1]){
-			if (paddleCenters[0]<480-PvPPanel.paddleLength/2){
-				paddleCenters[0] += paddleSpeed;
-			}
-		}
-		
-		//Uses the current ball direction, speed and position to predict
-		//the theoretical position of the code after 10 frame updates
-		//If this position is higher than the paddles constraints, the paddle
-		//is moved up.
-		if (ball[1]+10*ballSpeed*Math.sin(ballDirection)<paddleCenters[1]-paddleLength/2){
-			if (paddleCenters[1]>PvPPanel.paddleLength/2){
-				paddleCenters[1] -= paddleSpeed;
-			}
-		}
-		
-		//Uses the current ball direction, speed and position to predict
-		//the theoretical position of the code after 10 frame updates
-		//If this position is lower than the paddles constraints, the paddle
-		//is moved down.
-		if (ball[1]+10*ballSpeed*Math.sin(ballDirection)>paddleCenters[1]+paddleLength/2){
-			if (paddleCenters[1]<480-PvPPanel.paddleLength/2){
-				paddleCenters[1] += paddleSpeed;
-			}
-		}
+	public PvEPanel(){
+		//Constructor: No parameters
+		//Creates a panel drawing a match advanced by a PvESimulator
+		super(new PvESimulator());
+	}
+	
+	public PvEPanel(PaddleController computer){
+		//Constructor: PaddleController computer
+		//Creates a panel drawing a match against computer
+		super(new PvESimulator(new GameState(), computer));
+	}
+	
+	public PvEPanel(PaddleController left, PaddleController right){
+		//Constructor: PaddleController left, PaddleController right
+		//Creates a panel drawing a match between left and right
+		super(new EvESimulator(new GameState(), left, right));
 	}
 
 }
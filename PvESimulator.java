@@ -0,0 +1,95 @@
+package pong;
+
+public class PvESimulator extends Simulator {
+	/*PvESimulator:
+	 * Super Class: Simulator
+	 * Purpose: Extends the Simulator by overriding paddle control
+	 * such that the user controls one paddle and the other paddle is
+	 * controlled by the CPU for the Player vs Comp mode.
+	 * How the CPU plays is decided by a PaddleController (see
+	 * @pong.PaddleController), by default the original LookaheadController.
+	 * Functionality similar to Simulator (see @pong.Simulator)
+	 *
+	 * Includes:
+	 * void updatePaddles(int inputs): Overrides Simulator.updatePaddles
+	 * Adds CPU component, having one paddle move independent of any
+	 * keys pressed.
+	 *
+	 * void moveComputerPaddle(int i): Moves paddle i as its controller decides
+	 */
+
+	//controllers[i] moves paddle i, null for a paddle moved by keys
+	protected final PaddleController[] controllers = new PaddleController[2];
+
+	public PvESimulator(){
+		//Constructor: No parameters
+		//Creates a simulator for a brand new match against the original CPU
+		this(new GameState(), new LookaheadController());
+	}
+
+	public PvESimulator(GameState state){
+		//Constructor: GameState state
+		//Creates a simulator that advances the given state against the
+		//original CPU
+		this(state, new LookaheadController());
+	}
+
+	public PvESimulator(GameState state, PaddleController computer){
+		//Constructor: GameState state, PaddleController computer
+		//Creates a simulator that advances the given state, the right
+		//paddle being moved by computer
+		super(state);
+		controllers[1] = computer;
+	}
+
+	@Override
+	protected void updatePaddles(int inputs){
+		/*updatePaddles(int inputs)
+		 * Overrides Simulator.updatePaddles(int inputs)
+		 * Moves the Player's according the pressed keys if the move would
+		 * keep the player withins the bounds of the screen.
+		 * The Computer's paddle moves as its controller decides.
+		 */
+		GameState s = state;
+		double[] paddleCenters = s.paddleCenters;
+
+		//UP represents the UP key and will move the paddle up
+		//This only occurs if the panel will remain on screen.
+		if ((inputs & UP) != 0){
+			if (paddleCenters[0]>paddleLength/2){
+				paddleCenters[0] -= paddleSpeed;
+			}
+		}
+
+		//DOWN represents the DOWN key and will move the paddle down
+		//This only occurs if the panel will remain on screen.
+		if ((inputs & DOWN) != 0){
+			if (paddleCenters[0]<fieldHeight-paddleLength/2){
+				paddleCenters[0] += paddleSpeed;
+			}
+		}
+
+		//The computer controls the right paddle
+		controllers[1].keys(inputs);
+		moveComputerPaddle(1);
+	}
+
+	protected void moveComputerPaddle(int i){
+		/*moveComputerPaddle(int i)
+		 * Moves paddle i (0 for left, 1 for right) in the direction
+		 * chosen by its controller, if it stays on screen.
+		 */
+		double[] paddleCenters = state.paddleCenters;
+		int move = controllers[i].move(state, i);
+		if (move == PaddleController.UP){
+			if (paddleCenters[i]>paddleLength/2){
+				paddleCenters[i] -= paddleSpeed;
+			}
+		}else if (move == PaddleController.DOWN){
+			if (paddleCenters[i]<fieldHeight-paddleLength/2){
+				paddleCenters[i] += paddleSpeed;
+			}
+		}
+	}
+
+}
@@ -4,25 +4,34 @@ import java.awt.Color;
 import java.awt.Dimension;
 import java.awt.Font;
 import java.awt.Graphics;
+import java.awt.Rectangle;
+import java.io.IOException;
+import java.nio.ByteBuffer;
 import javax.swing.JPanel;
 
 @SuppressWarnings("serial")
-public class PvPPanel extends JPanel {
+public class PvPPanel extends JPanel implements GameCanvas.Layers {
 	/*PvPPanel:
 	 * Author: Anuraag Bharadwaj
 	 * Year: 2016
 	 * Super Class: JPanel
+	 * Interfaces: GameCanvas.Layers
 	 * Purpose: Provides player platform for playing Player
 	 * vs Player mode of Pong. Draws screen with paddles on either
-	 * end and ball as well as keeping track of where the ball
-	 * is and its current trajectory. 
-	 * If the ball contacts a border, then it is reflected back
-	 * into play. If the ball hits a paddle, it is reflected 
-	 * based on angle of incidence and location on the paddle
-	 * that is struck. 
+	 * end and ball. The match itself (where the ball is, its 
+	 * trajectory, the scores) is kept and advanced by a headless
+	 * Simulator (see @pong.Simulator), this panel only renders it 
+	 * and tracks the keys held by the players.
 	 * Includes:
+	 * PvPPanel(): Creates a panel for a new Player vs Player match
+	 * 
 	 * void paintComponent(Graphics g): Overrides JComponent.paintComponent(Graphics g)
-	 * Draws in the borders and calls drawBall,drawPaddles and printPlayerScores
+	 * Calls paintStatic and paintDynamic
+	 * 
+	 * void paintStatic(Graphics g): Draws in the borders and the midline
+	 * 
+	 * int paintDynamic(Graphics g, Rectangle[] regions): Calls drawBall,
+	 * drawPaddles and printPlayerScores and reports the regions they drew
 	 * 
 	 * void printPlayerScores(Graphics g): Displays the corresponding player's
 	 * score on their side of the board
@@ -33,251 +42,337 @@ public class PvPPanel extends JPanel {
 	 * void drawPaddles(Graphics g): Draws in the paddles in their rows, based on
 	 * their centers and static paddle length
 	 * 
-	 * void resetBoard(): Starts the next point by resetting the ball
+	 * void setKey(int i, boolean pressed): Queues a key being pressed or
+	 * released, applied at the start of the next update
+	 * 
+	 * boolean update(): Advances the match by one frame update using the
+	 * keys currently pressed. Returns whether the game is over.
+	 * 
+	 * int pollInputs(), void keepFrame(): The two halves of update around
+	 * the step, for panels that advance the match differently
+	 * 
+	 * void setAlpha(double alpha): Sets how far between the last two updates
+	 * the next frame is drawn (see @pong.GameLoop)
 	 * 
-	 * void updatePaddles(): Moves the center of panels based off on the keys
-	 * pressed by the user(s)
+	 * void setRecorder(ReplayWriter recorder): Records every update of the
+	 * match from now on (see @pong.ReplayWriter)
 	 * 
-	 * void increaseBallSpeed(): Increases the speed of the ball as the game
-	 * progresses in order to increase dificulty of play
+	 * void setSpectators(SpectatorServer spectators): Broadcasts every
+	 * update of the match from now on (see @pong.SpectatorServer)
 	 * 
-	 * boolean updateBall(): Moves the ball's center based on the ball's current
-	 * position, its trajectory and its surroundings (i.e. borders, paddles)
+	 * void setMetrics(GameMetrics metrics): Sets where the time between a
+	 * key event and the update applying it is recorded
+	 * 
+	 * void saveState(ByteBuffer out, int at), void loadState(ByteBuffer in, int at):
+	 * Writes or reads the match and the keys held (see @pong.GameStateCodec)
 	 */
 	
-	private static final int ballRadius = 10; //Pixel radius of ball
-	protected static final int paddleLength = 80; //Pixel length of paddles
-	private static final double maxBallSpeed = 4.75; //Sets a cap of the ball speed
-	private static final int[] paddleColumns = {15,770}; //Columns in which paddles are
-	//paddleCenterTolerance is the percentage of the paddle that is the center.
-	private static final double paddleCenterTolerance = 0.15; 
-	//Distance traveled by paddles per update
-	protected static final double paddleSpeed = 1.89; 
-	
-	
-	protected double[] paddleCenters = {240,240}; //Rows of paddle's centers
-	protected double[] ball = {400,240}; //Center of ball
-	protected double ballSpeed = 2.70; //Distance travelled by ball per update 
-	//ballDirection tracks ball's trajectory relative to the horizontal
-	//ballDirection = 0 - the ball is moving horizontally right
-	protected double ballDirection = Math.PI;
+	//The match drawn by this panel. All of the game's physics lives in
+	//the simulator (see @pong.Simulator), the panel only renders it.
+	protected final Simulator simulator;
+	protected final GameState state;
 	//keysPressed tracks whether or not a certain key is pressed.
 	//Tracks UP,DOWN,W,S in that order. Allows for multiple key presses
+	//Only used by the game loop, which applies the events queued by the
+	//EDT in keyEvents at the start of each update
 	protected boolean[] keysPressed = {false,false,false,false};
-	protected int[] playerScores = {0,0}; //Tracks Player Scores
+	private final InputQueue keyEvents = new InputQueue(256);
+	private GameMetrics metrics; //Records input latency, may be null
+	//The two latest updates of the match, copied from the simulator after
+	//every update. Frames are drawn from these (not from the simulator's
+	//state, which the game loop may be changing) at alpha between them.
+	private final Object frameLock = new Object();
+	private final GameState previous = new GameState();
+	private final GameState current = new GameState();
+	private double alpha = 1;
+	//Records the match, null if it isn't recorded. Only used by the game loop.
+	private ReplayWriter recorder;
+	//Spectators the match is broadcast to, null if none. Only used by the game loop.
+	private SpectatorServer spectators;
+	//Regions reported by paintDynamic when painted through Swing (unused)
+	private final Rectangle[] swingRegions = new Rectangle[GameCanvas.MAX_REGIONS];
+	//Font of the scores, created on the first paint and reused afterwards
+	private Font scoreFont;
+	//Score labels (" 0", " 1", ...) built once so painting a score
+	//doesn't build a new String every frame
+	private static final String[] scoreLabels = new String[Simulator.winningScore+1];
+	static {
+		for (int i = 0;i<scoreLabels.length;i++){
+			scoreLabels[i] = " " + i;
+		}
+	}
+	
+	public PvPPanel(){
+		//Constructor: No parameters
+		//Creates a panel for a new Player vs Player match
+		this(new Simulator());
+	}
+	
+	protected PvPPanel(Simulator simulator){
+		//Constructor: Simulator simulator
+		//Creates a panel that draws the match advanced by simulator
+		super();
+		this.simulator = simulator;
+		this.state = simulator.state;
+		previous.copyFrom(state);
+		current.copyFrom(state);
+		for (int i = 0;i<swingRegions.length;i++){
+			swingRegions[i] = new Rectangle();
+		}
+		this.setBackground(Color.white);
+		this.setPreferredSize(new Dimension(Simulator.fieldWidth,Simulator.fieldHeight));
+	}
 	
 	@Override
 	protected void paintComponent(Graphics g){
 		/*paintComponent(Graphics g)
 		 * Called whenever JComponent.repaint() is called. 
-		 * Draws in the borders and the line in the middle of the 
-		 * screen to signify to the players each side of the field.
-		 * Calls drawPaddles(g),drawBall(g) and printPlayerScores(g)
+		 * Draws both layers of the panel.
 		 */
 		
 		//Calls JComponent.paintComponent
 		super.paintComponent(g);
-		//Draws in central, upper and lower boundaries with thickness 3
 		g.setColor(Color.black);
-		this.setBackground(Color.white);
-		this.setPreferredSize(new Dimension(480,801));
-		for(int i = 0;i<3;i++){
-			g.drawLine(0, i, 801, i);
-			g.drawLine(0, 480-i, 801, 480-i);
-			g.drawLine(399+i, 0, 399+i, 480);
+		paintStatic(g);
+		paintDynamic(g, swingRegions);
+	}
+	
+	@Override
+	public void paintStatic(Graphics g){
+		/*paintStatic(Graphics g)
+		 * Draws in the borders and the line in the middle of the 
+		 * screen to signify to the players each side of the field.
+		 */
+		//Draws in central, upper and lower boundaries with the thickness
+		//of the borders
+		int width = Simulator.fieldWidth;
+		int height = Simulator.fieldHeight;
+		for(int i = 0;i<Simulator.borderWidth;i++){
+			g.drawLine(0, i, width, i);
+			g.drawLine(0, height-i, width, height-i);
+			g.drawLine(width/2-1+i, 0, width/2-1+i, height);
+		}
+	}
+	
+	@Override
+	public int paintDynamic(Graphics g, Rectangle[] regions){
+		/*paintDynamic(Graphics g, Rectangle[] regions)
+		 * Calls drawPaddles(g),drawBall(g) and printPlayerScores(g)
+		 * Each of them sets the regions it draws in.
+		 */
+		synchronized (frameLock){
+			drawPaddles(g, regions);
+			drawBall(g, regions[2]);
+			printPlayerScores(g, regions[3]);
 		}
-		//Calls other draw functions using the Graphics given
-		drawPaddles(g);
-		drawBall(g);
-		printPlayerScores(g);
+		return 4;
 	}
 	
-	private void printPlayerScores(Graphics g) {
-		/*printPlayerScores(Graphics g)
-		 * Called whenever PvPPanel.paintComponent is called
+	private void printPlayerScores(Graphics g, Rectangle region) {
+		/*printPlayerScores(Graphics g, Rectangle region)
+		 * Called whenever PvPPanel.paintDynamic is called
 		 * Draws the Players' scores on their respect sides of the field
 		 */
 		
 		//Sets font to specific to size and style
-		Font font2 = new Font(g.getFont().getFontName(),Font.BOLD,48);
-		g.setFont(font2);
+		if (scoreFont == null){
+			scoreFont = new Font(g.getFont().getFontName(),Font.BOLD,48);
+		}
+		g.setFont(scoreFont);
 		//Prints the scores in the respective spots
-		g.drawString(" " +playerScores[0], 350, 50);
-		g.drawString(" " +playerScores[1], 398, 50);
+		int middle = Simulator.fieldWidth/2;
+		g.drawString(scoreLabel(current.playerScores[0]), middle-50, 50);
+		g.drawString(scoreLabel(current.playerScores[1]), middle-2, 50);
+		region.setBounds(middle-60, 0, 150, 64);
+	}
+	
+	private static String scoreLabel(int score){
+		//Returns the text printed for a score
+		if (score>=0 && score<scoreLabels.length){
+			return scoreLabels[score];
+		}
+		return " " + score;
 	}
 
-	private void drawBall(Graphics g){
-		/*drawBall(Graphics g)
+	protected void drawBall(Graphics g, Rectangle region){
+		/*drawBall(Graphics g, Rectangle region)
 		 * Draws ball based on ball center and static radius
+		 * The center is interpolated between the last two updates
 		 */
-		g.fillOval((int)ball[0]-ballRadius,(int)ball[1]-ballRadius,
+		int ballRadius = Simulator.ballRadius;
+		double x = current.ball[0];
+		double y = current.ball[1];
+		//The ball isn't interpolated when it is put back in the middle
+		//after a point
+		if (Math.abs(x-previous.ball[0]) < 100){
+			x = previous.ball[0]+(x-previous.ball[0])*alpha;
+			y = previous.ball[1]+(y-previous.ball[1])*alpha;
+		}
+		g.fillOval((int)x-ballRadius,(int)y-ballRadius,
 					ballRadius*2, ballRadius*2);
+		region.setBounds((int)x-ballRadius, (int)y-ballRadius, ballRadius*2+1, ballRadius*2+1);
 	}
 	
-	private void drawPaddles(Graphics g){
-		/*drawPaddles(Graphics g)
+	private void drawPaddles(Graphics g, Rectangle[] regions){
+		/*drawPaddles(Graphics g, Rectangle[] regions)
 		 * Draws the paddle in specific columns. Rows are based on 
 		 * static paddle length and paddle centers
 		 */
 		
+		int paddleLength = Simulator.paddleLength;
+		int[] columns = Simulator.paddleColumns;
 		//Draws each side 
 		for(int i = 0;i<2;i++){
+			//Center interpolated between the last two updates
+			double center = previous.paddleCenters[i]
+					+(current.paddleCenters[i]-previous.paddleCenters[i])*alpha;
 			//Draws in paddles with thickness of 5 
 			for(int j = 0;j<5;j++){
-				g.drawLine(15+j+(771-2*j)*i, (int)(paddleCenters[i]-paddleLength/2), 
-					15+j+(771-2*j)*i, (int)(paddleCenters[i]+paddleLength/2));
+				int x = i == 0 ? columns[0]+j : columns[1]+16-j;
+				g.drawLine(x, (int)(center-paddleLength/2), x, (int)(center+paddleLength/2));
 			}
+			regions[i].setBounds(i == 0 ? columns[0] : columns[1]+12, (int)(center-paddleLength/2), 5, paddleLength+2);
 		}
 	}
 	
-	public void resetBoard(){
-		/*resetBoard()
-		 * Resets the ball with original location, trajectory and speed
+	public void setKey(int i, boolean pressed){
+		/*setKey(int i, boolean pressed)
+		 * Called by the key listener (on the EDT only) to set whether
+		 * key i (UP,DOWN,W,S in that order) is pressed. The change is
+		 * queued and applied by the next update. If the queue is full
+		 * only the key's latest state is kept, so a release is never lost.
 		 */
-		double[] array = {400,240};
-		ball = array;
-		ballDirection = Math.PI;
-		ballSpeed = 2.60;
+		keyEvents.offer(i, pressed, System.nanoTime());
 	}
 	
-	public void updatePaddles(){
-		/*updatePaddles()
-		 * Moves paddle location based on the current keys that are 
-		 * being pressed at the time. W and S move the left paddle.
-		 * UP and DOWN move the right paddle.
+	public boolean update(){
+		/*update()
+		 * Acts as a frame update by advancing the simulator by one step
+		 * with the keys currently pressed. Returns whether the game is over.
 		 */
-		
-		// Moves the right paddle up if UP is pressed and the paddle won't
-		// go over the edge of the screen
-		if (keysPressed[0]){
-			if (paddleCenters[1]>PvPPanel.paddleLength/2){
-				paddleCenters[1] -= paddleSpeed;
+		int inputs = pollInputs();
+		boolean done = simulator.step(inputs);
+		if (recorder != null){
+			try{
+				recorder.record(inputs, state);
+				if (done){
+					recorder.close();
+				}
+			}catch (IOException e){
+				//The match goes on without being recorded
+				System.err.println("Recording stopped: " + e);
+				recorder = null;
 			}
 		}
-		
-		// Moves the right paddle down if DOWN is pressed and the paddle won't
-		// go over the edge of the screen
-		if (keysPressed[1]){
-			if (paddleCenters[1]<480-PvPPanel.paddleLength/2){
-				paddleCenters[1] += paddleSpeed;
+		if (spectators != null){
+			spectators.publish(state, inputs);
+		}
+		keepFrame();
+		return done;
+	}
+	
+	protected int pollInputs(){
+		/*pollInputs()
+		 * Applies the key events that arrived since the last update, so a
+		 * key always changes at the boundary between two updates, and
+		 * returns the keys pressed as the mask expected by the simulator.
+		 */
+		GameMetrics m = metrics;
+		boolean measuring = m != null && m.isEnabled();
+		long now = measuring ? System.nanoTime() : 0;
+		for (int event = keyEvents.poll();event >= 0;event = keyEvents.poll()){
+			keysPressed[InputQueue.key(event)] = InputQueue.pressed(event);
+			if (measuring){
+				m.recordInput(now-keyEvents.polledTime());
 			}
 		}
-		
-		// Moves the left paddle up if W is pressed and the paddle won't
-		// go over the edge of the screen
+		int inputs = 0;
+		if (keysPressed[0]){
+			inputs |= Simulator.UP;
+		}
+		if (keysPressed[1]){
+			inputs |= Simulator.DOWN;
+		}
 		if (keysPressed[2]){
-			if (paddleCenters[0]>PvPPanel.paddleLength/2){
-				paddleCenters[0] -= paddleSpeed;
-			}
+			inputs |= Simulator.W;
 		}
-		
-		// Moves the left paddle down if S is pressed and the paddle won't
-		// go over the edge of the screen
 		if (keysPressed[3]){
-			if (paddleCenters[0]<480-PvPPanel.paddleLength/2){
-				paddleCenters[0] += paddleSpeed;
-			}
+			inputs |= Simulator.S;
 		}
+		return inputs;
 	}
-
-	public void increaseBallSpeed(){
-		/*increaseBallSpeed()
-		 * Increases ball speed on every update relative to the
-		 * current speed and the static max speed, slowly approaching
-		 * it but never completely reaching it.
+	
+	protected void keepFrame(){
+		/*keepFrame()
+		 * Keeps the state as the latest update to draw, the one before
+		 * it becomes the previous update.
 		 */
-		ballSpeed += (maxBallSpeed-ballSpeed)/3000;
+		synchronized (frameLock){
+			previous.copyFrom(current);
+			current.copyFrom(state);
+		}
 	}
-
-	public boolean updateBall(){
-		/*updateBall()
-		 * Moves the ball's center based off current location and
-		 * the ball's trajectory. The ball's trajectory is changed
-		 * if the ball will run into a paddle or a border.
-		 * Additionally the method returns a boolean that determines
-		 * whether the ball has crossed either end aka whether
-		 * the point is over. 
+	
+	public void saveState(ByteBuffer out, int at){
+		/*saveState(ByteBuffer out, int at)
+		 * Writes the match and the keys held as a GameStateCodec snapshot
+		 * at offset at of out. Should only be called by the game loop or
+		 * while it is paused.
 		 */
-		
-		//Tests the ball's next move will collide with the left paddle
-		if(ball[0]+ballSpeed*Math.cos(ballDirection)-ballRadius<=paddleColumns[0]&
-				ball[0]+ballSpeed*Math.cos(ballDirection)-ballRadius>=paddleColumns[0]-ballSpeed){
-			double[] paddleBounds = {paddleCenters[0]-paddleLength/2,paddleCenters[0]+paddleLength/2};
-			if (ball[1]>=paddleBounds[0]&&ball[1]<=paddleBounds[1]){
-				double ballDeflection = (ball[1]-((paddleBounds[0]+paddleBounds[1])/2))/paddleLength;
-				//If the ball hits the paddle in its middle based on 
-				//paddle center tolerance, then it is reflected
-				if (Math.abs(ballDeflection) < paddleCenterTolerance){
-					ballDirection *= -1;
-					ballDirection += Math.PI;
-				}else{
-					//If the ball doesn't hit the middle, the ball is
-					//reflected at angle between 30 and 60 degrees and
-					//in the direction that the ball came in at
-					//The angle is linearly dependent on the percentage
-					//of the paddle the ball hits away from the center of the
-					//paddle.
-					double m = (Math.PI/3-Math.PI/6)/(0.5-paddleCenterTolerance);
-					double b = Math.PI/3-m/2;
-					ballDirection = m*Math.abs(ballDeflection)+b;
-					if (ballDeflection<0){
-						//If the ball hits the bottom half, it is sent downwards
-						ballDirection *= -1;
-					}
-				}
+		int inputs = 0;
+		for (int i = 0;i<keysPressed.length;i++){
+			if (keysPressed[i]){
+				inputs |= 1 << i; //UP,DOWN,W,S are the bits of the mask in order
 			}
 		}
-		//Tests the ball's next move will collide with the right paddle
-		if (ball[0]+ballSpeed*Math.cos(ballDirection)-ballRadius<=paddleColumns[1]&
-				ball[0]+ballSpeed*Math.cos(ballDirection)-ballRadius>=paddleColumns[1]-ballSpeed) {
-			double[] paddleBounds = {paddleCenters[1]-paddleLength/2,paddleCenters[1]+paddleLength/2};	
-			if (ball[1]>=paddleBounds[0]&&ball[1]<=paddleBounds[1]){
-				double ballDeflection =(ball[1]-((paddleBounds[0]+paddleBounds[1])/2))/paddleLength;
-				//If the ball hits the paddle in its middle based on 
-				//paddle center tolerance, then it is reflected
-				if (Math.abs(ballDeflection) < paddleCenterTolerance){
-					ballDirection *= -1;
-					ballDirection += Math.PI;
-				}else{
-					//If the ball doesn't hit the middle, the ball is
-					//reflected at angle between 30 and 60 degrees and
-					//in the direction that the ball came in at
-					//The angle is linearly dependent on the percentage
-					//of the paddle the ball hits away from the center of the
-					//paddle.
-					double m = (2*Math.PI/3-5*Math.PI/6)/(0.5-paddleCenterTolerance);
-					double b = 2*Math.PI/3-m/2;
-					ballDirection = m*Math.abs(ballDeflection)+b;
-					if (ballDeflection<0){
-						//If the ball hits the bottom half, it is sent downwards
-						ballDirection *= -1;
-					}
-				}
-			}
-		}	
-		//If the ball would strike the borders in its next move, it is reflected away
-		if (ball[1]+ballSpeed*Math.sin(ballDirection)-ballRadius<=3||
-				ball[1]+ballSpeed*Math.sin(ballDirection)+ballRadius>=477){
-			ballDirection *= -1;
-		}
-		//The ball is updated to the next spot it will be at
-		ball[0] = ball[0]+ballSpeed*Math.cos(ballDirection);
-		ball[1] = ball[1]+ballSpeed*Math.sin(ballDirection);
-		//Test the ball to see if it goes off screen and returns whether the game is over
-		if ((ball[0]<0)|(ball[0]>801)){
-			//Assigns the points the right player depending on where the ball goes off
-			if (ball[0]<0){
-				playerScores[1] += 1;
-			}else{
-				playerScores[0] += 1;
-			}
-			if (playerScores[0]==10|playerScores[1]==10){
-				return true;	
-			}
-			//Resets the board if the ball goes off
-			resetBoard();
+		GameStateCodec.encode(state, inputs, out, at);
+	}
+	
+	public void loadState(ByteBuffer in, int at){
+		/*loadState(ByteBuffer in, int at)
+		 * Replaces the match and the keys held with the GameStateCodec
+		 * snapshot at offset at of in, e.g. to resume a match saved by
+		 * saveState. Should only be called by the game loop or while it
+		 * is paused.
+		 */
+		int inputs = GameStateCodec.decode(in, at, state);
+		for (int i = 0;i<keysPressed.length;i++){
+			keysPressed[i] = (inputs & 1 << i) != 0;
 		}
-		return false;
- 	}
+		//Both frames are the loaded state, nothing to interpolate from
+		keepFrame();
+		keepFrame();
+	}
+	
+	public void setMetrics(GameMetrics metrics){
+		//Sets the metrics input latency is recorded in, may be null.
+		//Should be called before the game loop starts.
+		this.metrics = metrics;
+	}
+	
+	public void setRecorder(ReplayWriter recorder){
+		/*setRecorder(ReplayWriter recorder)
+		 * Records the updates of the match played after this call.
+		 * Should be called before the game loop starts. The recorder
+		 * is closed when the match ends.
+		 */
+		this.recorder = recorder;
+	}
+	
+	public void setSpectators(SpectatorServer spectators){
+		//Broadcasts the updates of the match played after this call, null
+		//to stop. Should be called before the game loop starts.
+		this.spectators = spectators;
+	}
 	
+	public void setAlpha(double alpha){
+		/*setAlpha(double alpha)
+		 * Sets how far (0 to 1) between the last two updates the
+		 * next frame is drawn.
+		 */
+		synchronized (frameLock){
+			this.alpha = alpha;
+		}
+	}
+
 }
@@ -0,0 +1,206 @@
+package pong;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+public class ReplayCheck {
+	/*ReplayCheck:
+	 * Purpose: Checks that replays (see @pong.ReplayWriter and
+	 * @pong.ReplayReader) play back exactly what was recorded. Seeded
+	 * matches are recorded to temporary files, Player vs Player,
+	 * against the lookahead CPU (which seek resumes from snapshots),
+	 * against the hard CPU (which seek plays from the start) and with
+	 * swept steps, the checksum (see @pong.StateHash) of the state after
+	 * every step being kept. Each file is then replayed step by step,
+	 * sought to every snapshot and to the steps around it, forwards and
+	 * backwards, and every state reached must have the recorded checksum.
+	 * Lastly the first file is cut at every length within its header,
+	 * which must be rejected with an IOException, and at lengths spread
+	 * over the rest, which must open as the recorded steps before the
+	 * cut and replay them the same. Any other exception fails the check.
+	 *
+	 * Includes:
+	 * void main(String[] args): Runs the check, exits with status 1 if it
+	 * fails. Arguments (all optional): matches (4), seed
+	 */
+
+	static final int maxSteps = 30000; //Steps recorded of each match
+	static final int snapshotInterval = 250;
+	static final int recordCuts = 120; //Cuts spread over the records
+
+	private static int failures = 0;
+
+	private static void fail(String message){
+		//Prints a failure, the check ends with status 1
+		System.out.println("FAIL: " + message);
+		failures++;
+	}
+
+	static long[] record(String path, String cpu, long cpuSeed, int sweptTicks, long matchSeed, int m)
+			throws IOException{
+		/*record(String path, String cpu, long cpuSeed, int sweptTicks, long matchSeed, int m)
+		 * Records up to maxSteps steps of the seeded match to path with the
+		 * keys of BatchBenchmark.inputsFor(m, tick) and returns the
+		 * checksum of the state before the first step and after each step
+		 */
+		GameState s = MatchRunner.seededState(matchSeed);
+		Simulator simulator = cpu == null ? new Simulator(s)
+				: new PvESimulator(s, PaddleController.named(cpu, cpuSeed));
+		simulator.setSweptTicks(sweptTicks);
+		long[] hashes = new long[maxSteps+1];
+		hashes[0] = StateHash.of(s);
+		int steps = 0;
+		try (ReplayWriter writer = new ReplayWriter(path, cpu, cpuSeed, sweptTicks, s, snapshotInterval)){
+			boolean done = false;
+			while (!done && steps<maxSteps){
+				int inputs = BatchBenchmark.inputsFor(m, s.tick);
+				done = simulator.step(inputs);
+				writer.record(inputs, s);
+				hashes[++steps] = StateHash.of(s);
+			}
+		}
+		return Arrays.copyOf(hashes, steps+1);
+	}
+
+	static void replay(ReplayReader replay, long[] hashes, String name){
+		//Replays every step of replay, comparing with the recorded checksums
+		while (replay.step()){
+			long p = replay.position();
+			if (p >= hashes.length || StateHash.of(replay.state()) != hashes[(int)p]){
+				fail(name + ": step " + p + " replays to another state");
+				return;
+			}
+		}
+		if (replay.position() != replay.steps()){
+			fail(name + ": replayed " + replay.position() + " of " + replay.steps() + " steps");
+		}
+	}
+
+	static void seek(ReplayReader replay, long step, long[] hashes, String name){
+		//Seeks replay to step, comparing with the recorded checksum
+		replay.seek(step);
+		if (replay.position() != step || StateHash.of(replay.state()) != hashes[(int)step]){
+			fail(name + ": seeking step " + step + " reaches another state");
+		}
+	}
+
+	static int headerBytes(String cpu){
+		//Bytes of a replay before its first record (see ReplayWriter)
+		int name = cpu == null ? 0 : cpu.getBytes(StandardCharsets.UTF_8).length;
+		return 4+2+1+2+name+8+4+4+8+ReplayWriter.STATE_BYTES;
+	}
+
+	static File cut(File file, long length) throws IOException{
+		//Copy of the first length bytes of file
+		File copy = File.createTempFile("pong-cut", ".replay");
+		copy.deleteOnExit();
+		byte[] bytes = new byte[(int)length];
+		try (RandomAccessFile in = new RandomAccessFile(file, "r");
+				RandomAccessFile out = new RandomAccessFile(copy, "rw")){
+			in.readFully(bytes);
+			out.write(bytes);
+		}
+		return copy;
+	}
+
+	public static void main(String[] args) throws IOException{
+		/*main(String[] args)
+		 * Records, replays and cuts the matches and prints the results
+		 */
+		int matches = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+		long seed = args.length > 1 ? Long.parseLong(args[1]) : 2016;
+		String[] cpus = {null, "lookahead", "hard", "lookahead"};
+		int[] swept = {0, 0, 0, 4};
+
+		File first = null;
+		String firstCpu = null;
+		long[] firstHashes = null;
+		long steps = 0;
+		long seeks = 0;
+		for (int m = 0;m<matches;m++){
+			long matchSeed = MatchRunner.matchSeed(seed, m);
+			for (int c = 0;c<cpus.length;c++){
+				String name = "match " + m + " " + (cpus[c] == null ? "pvp" : cpus[c])
+						+ (swept[c] > 0 ? " x" + swept[c] : "");
+				File file = File.createTempFile("pong-check", ".replay");
+				file.deleteOnExit();
+				long[] hashes = record(file.getPath(), cpus[c], matchSeed+c, swept[c], matchSeed, m);
+				ReplayReader replay = new ReplayReader(file.getPath());
+				if (replay.steps() != hashes.length-1){
+					fail(name + ": " + replay.steps() + " steps read of " + (hashes.length-1) + " recorded");
+					continue;
+				}
+				if (StateHash.of(replay.state()) != hashes[0]){
+					fail(name + ": the starting state differs");
+				}
+				replay(replay, hashes, name);
+				steps += replay.position();
+
+				//Every snapshot and the steps next to it, forwards then backwards
+				long last = hashes.length-1;
+				for (long at = snapshotInterval;at<=last;at += snapshotInterval){
+					for (long step = Math.max(0, at-1);step<=Math.min(last, at+1);step++){
+						seek(replay, step, hashes, name);
+						seeks++;
+					}
+				}
+				for (long at = last/snapshotInterval*snapshotInterval;at>=0;at -= 3*snapshotInterval){
+					seek(replay, Math.max(0, at-snapshotInterval/2), hashes, name);
+					seek(replay, at, hashes, name);
+					seeks += 2;
+				}
+				if (first == null){
+					first = file;
+					firstCpu = cpus[c];
+					firstHashes = hashes;
+				}
+			}
+		}
+		System.out.printf("%d replays of %d matches: %d steps replayed, %d seeks%n",
+				matches*cpus.length, matches, steps, seeks);
+
+		//Cut copies of the first file
+		int rejected = 0;
+		int opened = 0;
+		if (first != null){
+			long length = first.length();
+			int header = headerBytes(firstCpu);
+			for (long at = 0;at<length;at = at < header ? at+1 : at+Math.max(1, (length-header)/recordCuts)){
+				File copy = cut(first, at);
+				String name = "cut at " + at + " of " + length + " bytes";
+				try{
+					ReplayReader replay = new ReplayReader(copy.getPath());
+					if (at < header){
+						fail(name + ": a header cut off was read");
+					}else if (replay.steps() >= firstHashes.length){
+						fail(name + ": " + replay.steps() + " steps read of " + (firstHashes.length-1) + " recorded");
+					}else{
+						replay(replay, firstHashes, name);
+						seek(replay, replay.steps()/2, firstHashes, name);
+						opened++;
+					}
+				}catch (IOException e){
+					if (at >= header){
+						fail(name + ": rejected although its header is whole (" + e.getMessage() + ")");
+					}
+					rejected++;
+				}catch (RuntimeException e){
+					fail(name + ": " + e);
+				}
+				copy.delete();
+			}
+		}
+		System.out.printf("cut files: %d rejected with an IOException, %d read as shorter replays%n",
+				rejected, opened);
+
+		if (failures > 0){
+			System.out.println("FAIL: " + failures + " replay checks failed");
+			System.exit(1);
+		}
+		System.out.println("OK");
+	}
+
+}
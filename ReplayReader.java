@@ -0,0 +1,266 @@
+package pong;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+public class ReplayReader {
+	/*ReplayReader:
+	 * Purpose: Plays a match recorded by a ReplayWriter (see
+	 * @pong.ReplayWriter for the file layout) again, headlessly and as
+	 * fast as the simulator goes. The file is memory-mapped rather than
+	 * read through a stream, so jumping around in it is just moving a
+	 * position. seek(step) starts from the last snapshot at or before step
+	 * and plays the few steps after it, so any step of a long match is
+	 * reached almost at once.
+	 * Snapshots only hold the GameState. A CPU that keeps its own state
+	 * (anything but "lookahead", see @pong.PaddleController) can't be
+	 * resumed from one, so with such a CPU seek plays from the start.
+	 *
+	 * Includes:
+	 * ReplayReader(String path): Opens a replay, positioned at its start.
+	 * Throws IOException if its header is cut off or corrupt; records cut
+	 * off (a file never closed) are read up to the last whole one.
+	 *
+	 * boolean step(): Plays the next recorded step
+	 *
+	 * void seek(long step): Moves to the state after the given step
+	 *
+	 * GameState state(), long position(), long steps(): The replayed state,
+	 * the steps played to reach it and the steps in the file
+	 *
+	 * void main(String[] args): Replays a file and prints how it ended
+	 */
+
+	private final MappedByteBuffer buffer;
+	private final String cpu; //Name of the CPU, null for Player vs Player
+	private final long cpuSeed;
+	private final int sweptTicks;
+	private final GameState start = new GameState(); //State before the first step
+	private final int recordsOffset; //Where the first record is
+	private final int recordsEnd; //Where the records end
+	private final long steps; //Steps in the file
+	private final long[] snapshotSteps;
+	private final int[] snapshotOffsets;
+
+	private final GameState state = new GameState(); //State being replayed
+	private Simulator simulator;
+	private long position = 0; //Steps played to reach state
+	private int runMask = 0; //Mask of the run being played
+	private long runLeft = 0; //Steps left in the run being played
+	private boolean over = false; //Whether the match ended
+
+	public ReplayReader(String path) throws IOException{
+		//Constructor: String path
+		//Maps the file, reads its header and snapshot index
+		try (RandomAccessFile file = new RandomAccessFile(path, "r")){
+			buffer = file.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, file.length());
+		}
+		try{
+			if (buffer.getInt() != ReplayWriter.MAGIC){
+				throw new IOException(path + " is not a replay");
+			}
+			short version = buffer.getShort();
+			if (version != ReplayWriter.VERSION){
+				throw new IOException("Unsupported replay version " + version);
+			}
+			boolean computer = buffer.get() != 0;
+			byte[] name = new byte[buffer.getShort()];
+			buffer.get(name);
+			cpu = computer ? new String(name, StandardCharsets.UTF_8) : null;
+			cpuSeed = buffer.getLong();
+			sweptTicks = buffer.getInt();
+			buffer.getInt(); //Snapshot interval, only needed by the writer
+			if (buffer.getLong() != Simulator.rules.fingerprint()){
+				throw new IOException(path + " was recorded with other rules than " + Simulator.rules);
+			}
+			readState(buffer.position(), start);
+		}catch (IllegalArgumentException e){
+			throw new IOException(path + " has a corrupt starting state", e);
+		}catch (BufferUnderflowException | IndexOutOfBoundsException e){
+			throw new IOException(path + " is cut off before the end of its header", e);
+		}
+		recordsOffset = buffer.position()+ReplayWriter.STATE_BYTES;
+
+		int limit = buffer.limit();
+		if (limit-recordsOffset >= ReplayWriter.FOOTER_BYTES
+				&& buffer.getInt(limit-4) == ReplayWriter.END_MAGIC){
+			//Closed file, the footer gives the index
+			int count = buffer.getInt(limit-ReplayWriter.FOOTER_BYTES);
+			recordsEnd = (int)buffer.getLong(limit-ReplayWriter.FOOTER_BYTES+4);
+			steps = buffer.getLong(limit-12);
+			snapshotSteps = new long[count];
+			snapshotOffsets = new int[count];
+			for (int i = 0;i<count;i++){
+				snapshotSteps[i] = buffer.getLong(recordsEnd+16*i);
+				snapshotOffsets[i] = (int)buffer.getLong(recordsEnd+16*i+8);
+			}
+		}else{
+			//The file wasn't closed, the records are scanned for the index
+			long[] foundSteps = new long[16];
+			int[] foundOffsets = new int[16];
+			int count = 0;
+			long total = 0;
+			int at = recordsOffset;
+			while (at < limit){
+				int tag = buffer.get(at) & 0xFF;
+				if ((tag & 0xF0) == ReplayWriter.RUN){
+					buffer.position(at+1);
+					long n = readVarint();
+					if (n < 0){
+						break; //Cut off while being written
+					}
+					total += n;
+					at = buffer.position();
+				}else if (tag == ReplayWriter.SNAPSHOT && at+9+ReplayWriter.STATE_BYTES <= limit){
+					if (count == foundSteps.length){
+						foundSteps = Arrays.copyOf(foundSteps, count*2);
+						foundOffsets = Arrays.copyOf(foundOffsets, count*2);
+					}
+					foundSteps[count] = buffer.getLong(at+1);
+					foundOffsets[count] = at;
+					count++;
+					at += 9+ReplayWriter.STATE_BYTES;
+				}else{
+					break;
+				}
+			}
+			recordsEnd = at;
+			steps = total;
+			snapshotSteps = Arrays.copyOf(foundSteps, count);
+			snapshotOffsets = Arrays.copyOf(foundOffsets, count);
+		}
+		rewind();
+	}
+
+	private void readState(int at, GameState s){
+		//Reads a state written by ReplayWriter.writeState at offset at
+		GameStateCodec.decode(buffer, at, s);
+	}
+
+	private long readVarint(){
+		//Reads a varint at the buffer's position, -1 if the file ends first
+		long n = 0;
+		for (int shift = 0;buffer.hasRemaining();shift += 7){
+			int b = buffer.get();
+			n |= (long)(b & 0x7F) << shift;
+			if ((b & 0x80) == 0){
+				return n;
+			}
+		}
+		return -1;
+	}
+
+	private void rewind(){
+		//Goes back to the state before the first step with a new simulator
+		state.copyFrom(start);
+		if (cpu == null){
+			simulator = new Simulator(state);
+		}else{
+			simulator = new PvESimulator(state, PaddleController.named(cpu, cpuSeed));
+		}
+		simulator.setSweptTicks(sweptTicks);
+		buffer.position(recordsOffset);
+		position = 0;
+		runLeft = 0;
+		over = false;
+	}
+
+	public boolean step(){
+		/*step()
+		 * Plays the next recorded step. Returns false, without changing
+		 * the state, if there are no more steps or the match is over.
+		 */
+		while (runLeft == 0){
+			if (over || buffer.position() >= recordsEnd){
+				return false;
+			}
+			int tag = buffer.get() & 0xFF;
+			if (tag == ReplayWriter.SNAPSHOT){
+				buffer.position(buffer.position()+8+ReplayWriter.STATE_BYTES);
+			}else{
+				runMask = tag & 0x0F;
+				runLeft = readVarint();
+			}
+		}
+		runLeft--;
+		position++;
+		over = simulator.step(runMask);
+		return true;
+	}
+
+	public void seek(long step){
+		/*seek(long step)
+		 * Moves to the state after the given step (0 for the start),
+		 * from the closest snapshot if the CPU allows it.
+		 */
+		if (step < 0 || step > steps){
+			throw new IllegalArgumentException("step must be within 0 and " + steps);
+		}
+		boolean resumable = cpu == null || cpu.equals("lookahead");
+		int i = Arrays.binarySearch(snapshotSteps, step);
+		if (i < 0){
+			i = -i-2; //Last snapshot before step
+		}
+		if (step < position){
+			rewind();
+		}
+		if (resumable && i >= 0 && snapshotSteps[i] > position){
+			//Jumps to the snapshot instead of playing up to it
+			readState(snapshotOffsets[i]+9, state);
+			buffer.position(snapshotOffsets[i]+9+ReplayWriter.STATE_BYTES);
+			position = snapshotSteps[i];
+			runLeft = 0;
+			over = false;
+		}
+		while (position < step && step()){
+		}
+	}
+
+	public GameState state(){
+		return state;
+	}
+
+	public long position(){
+		return position;
+	}
+
+	public long steps(){
+		return steps;
+	}
+
+	public static void main(String[] args) throws IOException{
+		/*main(String[] args)
+		 * Replays the file args[0] to its end and prints the final state and
+		 * how fast it was replayed. With a step number as args[1], also seeks
+		 * to that step and prints the state there.
+		 */
+		if (args.length == 0){
+			System.out.println("Usage: ReplayReader <file> [step]");
+			return;
+		}
+		ReplayReader replay = new ReplayReader(args[0]);
+		long start = System.nanoTime();
+		while (replay.step()){
+		}
+		long nanos = System.nanoTime()-start;
+		GameState s = replay.state();
+		System.out.printf("%d steps (%d updates) replayed in %.3f s, %.1fx real time%n",
+				replay.position(), s.tick, nanos/1e9,
+				s.tick*Simulator.TICK_MILLIS*1e6/Math.max(nanos, 1));
+		System.out.println("final score: " + s.playerScores[0] + "-" + s.playerScores[1]);
+		if (args.length > 1){
+			long seekStart = System.nanoTime();
+			replay.seek(Long.parseLong(args[1]));
+			s = replay.state();
+			System.out.printf("step %d reached in %.3f ms: ball %.2f,%.2f paddles %.2f,%.2f score %d-%d%n",
+					replay.position(), (System.nanoTime()-seekStart)/1e6, s.ball[0], s.ball[1],
+					s.paddleCenters[0], s.paddleCenters[1], s.playerScores[0], s.playerScores[1]);
+		}
+	}
+
+}
@@ -0,0 +1,179 @@
+package pong;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+public class ReplayWriter implements Closeable {
+	/*ReplayWriter:
+	 * Interfaces: Closeable
+	 * Purpose: Records a match as it is played so that it can be played
+	 * again exactly (see @pong.ReplayReader). The simulator is
+	 * deterministic, so a match is fully described by its starting state,
+	 * how it was played (mode, CPU, step size) and the key mask of every
+	 * step. Keys are held for many steps at a time, so the masks are
+	 * stored run-length encoded and a whole match takes a few kilobytes.
+	 * Every snapshotInterval steps the state is written as well and
+	 * indexed at the end of the file, so a reader can jump to any step
+	 * without playing the match from the start.
+	 * File layout (big-endian):
+	 * header: MAGIC, VERSION, mode (0 PvP, 1 PvE), CPU name, CPU seed,
+	 * swept ticks, snapshot interval, fingerprint of the rules (see
+	 * Rules.fingerprint), starting state
+	 * records: RUN|mask then the run's length as a varint, or
+	 * SNAPSHOT then the step number and the state after it
+	 * States are written with @pong.GameStateCodec, the keys held being
+	 * those of the step that led to them
+	 * footer (written by close): the snapshot index as (step, offset) pairs,
+	 * then the number of snapshots, the index's offset, the number of
+	 * steps and END_MAGIC
+	 *
+	 * Includes:
+	 * ReplayWriter(String path, String cpu, long cpuSeed, int sweptTicks,
+	 * GameState start): Starts a file for a match from start, cpu is null
+	 * for Player vs Player
+	 *
+	 * void record(int inputs, GameState state): Adds a step played with
+	 * inputs that led to state
+	 *
+	 * void close(): Ends the file with its snapshot index
+	 */
+
+	static final int MAGIC = 0x504F4E47; //"PONG"
+	static final int END_MAGIC = 0x52504C59; //"RPLY"
+	static final short VERSION = 3;
+	static final int RUN = 0x10; //Tag of a run, the low 4 bits hold the mask
+	static final int SNAPSHOT = 0x20; //Tag of a snapshot
+	static final int STATE_BYTES = GameStateCodec.SIZE; //Size of a written GameState
+	static final int FOOTER_BYTES = 4+8+8+4; //Size of the footer after the index
+	public static final int DEFAULT_SNAPSHOT_INTERVAL = 2000; //Steps between snapshots
+
+	private final DataOutputStream out;
+	private final int snapshotInterval;
+	//Where states are encoded before being written
+	private final ByteBuffer stateBuffer = ByteBuffer.allocate(STATE_BYTES);
+	private long steps = 0; //Steps recorded so far
+	private int runMask = -1; //Mask of the run being recorded, -1 if none
+	private long runLength = 0;
+	//Snapshot index, grown as needed
+	private long[] snapshotSteps = new long[64];
+	private long[] snapshotOffsets = new long[64];
+	private int snapshots = 0;
+	private boolean closed = false;
+
+	public ReplayWriter(String path, String cpu, long cpuSeed, int sweptTicks, GameState start)
+			throws IOException{
+		//Constructor: String path, String cpu, long cpuSeed, int sweptTicks, GameState start
+		//Creates the file at path and writes the header
+		this(path, cpu, cpuSeed, sweptTicks, start, DEFAULT_SNAPSHOT_INTERVAL);
+	}
+
+	public ReplayWriter(String path, String cpu, long cpuSeed, int sweptTicks, GameState start,
+			int snapshotInterval) throws IOException{
+		//Constructor: String path, String cpu, long cpuSeed, int sweptTicks, GameState start,
+		//int snapshotInterval
+		//Creates the file at path, writing a snapshot every snapshotInterval steps
+		if (snapshotInterval <= 0){
+			throw new IllegalArgumentException("snapshotInterval must be positive");
+		}
+		this.snapshotInterval = snapshotInterval;
+		out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(path), 1 << 16));
+		out.writeInt(MAGIC);
+		out.writeShort(VERSION);
+		out.writeByte(cpu == null ? 0 : 1);
+		byte[] name = (cpu == null ? "" : cpu).getBytes(StandardCharsets.UTF_8);
+		out.writeShort(name.length);
+		out.write(name);
+		out.writeLong(cpuSeed);
+		out.writeInt(sweptTicks);
+		out.writeInt(snapshotInterval);
+		out.writeLong(Simulator.rules.fingerprint());
+		writeState(start, 0);
+	}
+
+	public void record(int inputs, GameState state) throws IOException{
+		/*record(int inputs, GameState state)
+		 * Adds one step played with the key mask inputs, state being the
+		 * state after it. Only writes to the file when the keys change
+		 * or a snapshot is due.
+		 */
+		if (inputs != runMask){
+			flushRun();
+			runMask = inputs;
+		}
+		runLength++;
+		steps++;
+		if (steps % snapshotInterval == 0){
+			flushRun();
+			if (snapshots == snapshotSteps.length){
+				snapshotSteps = Arrays.copyOf(snapshotSteps, snapshots*2);
+				snapshotOffsets = Arrays.copyOf(snapshotOffsets, snapshots*2);
+			}
+			snapshotSteps[snapshots] = steps;
+			snapshotOffsets[snapshots] = out.size();
+			snapshots++;
+			out.writeByte(SNAPSHOT);
+			out.writeLong(steps);
+			writeState(state, inputs);
+		}
+	}
+
+	private void flushRun() throws IOException{
+		//Writes the run being recorded, if any
+		if (runLength == 0){
+			return;
+		}
+		out.writeByte(RUN | runMask);
+		long n = runLength;
+		//Varint: 7 bits per byte, high bit set on every byte but the last
+		while ((n & ~0x7FL) != 0){
+			out.writeByte((int)(n & 0x7F) | 0x80);
+			n >>>= 7;
+		}
+		out.writeByte((int)n);
+		runLength = 0;
+	}
+
+	private void writeState(GameState s, int inputs) throws IOException{
+		//Writes s and the keys held, STATE_BYTES bytes
+		GameStateCodec.encode(s, inputs, stateBuffer, 0);
+		out.write(stateBuffer.array(), 0, STATE_BYTES);
+	}
+
+	public long steps(){
+		return steps;
+	}
+
+	@Override
+	public void close() throws IOException{
+		/*close()
+		 * Writes the last run and the footer and closes the file. A file
+		 * that was never closed (e.g. the game was quit) can still be
+		 * read, only more slowly.
+		 */
+		if (closed){
+			return;
+		}
+		closed = true;
+		try{
+			flushRun();
+			long indexOffset = out.size();
+			for (int i = 0;i<snapshots;i++){
+				out.writeLong(snapshotSteps[i]);
+				out.writeLong(snapshotOffsets[i]);
+			}
+			out.writeInt(snapshots);
+			out.writeLong(indexOffset);
+			out.writeLong(steps);
+			out.writeInt(END_MAGIC);
+		}finally{
+			out.close();
+		}
+	}
+
+}
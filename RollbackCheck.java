@@ -0,0 +1,155 @@
+package pong;
+
+import java.util.Random;
+
+public class RollbackCheck {
+	/*RollbackCheck:
+	 * Purpose: Verifies RollbackSession. Two peers play the same seeded
+	 * matches, each with its own RollbackSession, and send each other the
+	 * keys of every frame with a random delay (and, for a part of them,
+	 * dropped and sent again later). Whenever a peer knows the remote keys
+	 * of every frame it played, its state must be the same as the state of
+	 * a simulator that played the real keys of both players without
+	 * prediction, and both peers must end the match on the same frame.
+	 * Prints how often and how deeply the peers rolled back, and exits
+	 * with status 1 on the first difference.
+	 *
+	 * Includes:
+	 * void main(String[] args): Runs the check.
+	 * Arguments (all optional): matches, maxDelay (frames), seed
+	 */
+
+	static final int maxFrames = 200000; //Frames played at most per match
+
+	static class Peer {
+		//A player: their session and the keys they send
+		final RollbackSession session;
+		final Random random;
+		int held = 0; //Keys held by the player
+		//Frame at which the keys of each frame reach the other peer
+		final long[] arrivals = new long[maxFrames];
+		final int[] sent = new int[maxFrames];
+
+		Peer(int player, long seed){
+			session = new RollbackSession(new Simulator(MatchRunner.seededState(seed)), player,
+					RollbackSession.DEFAULT_MAX_ROLLBACK);
+			random = new Random(seed*31+player);
+		}
+
+		int keys(int player){
+			//Changes the keys held every few frames, like a person would
+			if (random.nextInt(40) == 0){
+				int[] choices = {0, Simulator.W, Simulator.S, Simulator.UP, Simulator.DOWN};
+				held = choices[random.nextInt(choices.length)] & RollbackSession.PLAYER_KEYS[player];
+			}
+			return held;
+		}
+	}
+
+	public static void main(String[] args){
+		/*main(String[] args)
+		 * Plays the matches and checks every fully confirmed state
+		 */
+		int matches = args.length > 0 ? Integer.parseInt(args[0]) : 20;
+		int maxDelay = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+		long seed = args.length > 2 ? Long.parseLong(args[2]) : 1;
+
+		long frames = 0;
+		long rollbacks = 0;
+		long resimulated = 0;
+		long maxDepth = 0;
+		long stalls = 0;
+		long compared = 0; //States compared with the reference
+		long start = System.nanoTime();
+		for (int m = 0;m<matches;m++){
+			long matchSeed = MatchRunner.matchSeed(seed, m);
+			Peer[] peers = {new Peer(0, matchSeed), new Peer(1, matchSeed)};
+			Random network = new Random(matchSeed);
+			Simulator reference = new Simulator(MatchRunner.seededState(matchSeed));
+			int[][] played = new int[2][maxFrames];
+			long checked = 0; //Frames played by the reference
+			boolean refDone = false;
+			boolean done = false; //Both peers ended the match with every key known
+			for (long now = 0;!done && now < maxFrames;now++){
+				//Each peer receives what has arrived and plays a frame if it can
+				for (int p = 0;p<2;p++){
+					Peer peer = peers[p];
+					Peer other = peers[1-p];
+					long from = peer.session.confirmedFrame();
+					for (long f = from;f<other.session.frame();f++){
+						if (other.arrivals[(int)f] <= now){
+							peer.session.addRemoteInput(f, other.sent[(int)f]);
+						}
+					}
+					if (peer.session.canAdvance()){
+						int f = (int)peer.session.frame();
+						int keys = peer.keys(p);
+						played[p][f] = keys;
+						peer.sent[f] = keys;
+						//Lost packets are sent again a few frames later
+						int delay = network.nextInt(maxDelay+1);
+						if (network.nextInt(20) == 0){
+							delay += maxDelay;
+						}
+						peer.arrivals[f] = now+delay;
+						peer.session.advance(keys);
+					}else{
+						stalls++;
+					}
+				}
+				//A peer that knows every remote key it played has no prediction
+				//left, its state is compared with the reference at that frame
+				for (int p = 0;p<2;p++){
+					RollbackSession session = peers[p].session;
+					session.synchronize();
+					long target = session.frame();
+					if (session.confirmedFrame() < target || target < checked
+							|| peers[1-p].session.frame() < target){
+						continue;
+					}
+					while (checked < target && !refDone){
+						refDone = reference.step(played[0][(int)checked] | played[1][(int)checked]);
+						checked++;
+					}
+					if (checked != target || !same(session.state(), reference.state)){
+						System.out.printf("FAILED: match %d, peer %d differs at frame %d%n", m, p, target);
+						System.exit(1);
+					}
+					compared++;
+				}
+				done = true;
+				for (Peer peer : peers){
+					RollbackSession session = peer.session;
+					done &= session.isOver() && session.confirmedFrame() >= session.frame();
+				}
+			}
+			if (!done || !refDone || checked != peers[0].session.frame() || checked != peers[1].session.frame()){
+				System.out.printf("FAILED: match %d didn't end on the same frame for both peers%n", m);
+				System.exit(1);
+			}
+			for (Peer peer : peers){
+				frames += peer.session.frame();
+				rollbacks += peer.session.rollbacks();
+				resimulated += peer.session.resimulatedFrames();
+				maxDepth = Math.max(maxDepth, peer.session.maxDepth());
+			}
+		}
+		double seconds = (System.nanoTime()-start)/1e9;
+		System.out.printf("%d matches, %d frames, delay up to %d frames (+%d when lost)%n",
+				matches, frames, maxDelay, maxDelay);
+		System.out.printf("rollbacks: %d, resimulated frames: %d (%.1f per rollback), deepest: %d, stalls: %d%n",
+				rollbacks, resimulated, rollbacks == 0 ? 0 : (double)resimulated/rollbacks, maxDepth, stalls);
+		System.out.printf("%.2f s, %.0f frames/s including resimulation%n", seconds, (frames+resimulated)/seconds);
+		System.out.printf("OK: %d fully confirmed states matched the reference%n", compared);
+	}
+
+	static boolean same(GameState a, GameState b){
+		//Whether two states are equal in every field
+		return a.tick == b.tick && a.ball[0] == b.ball[0] && a.ball[1] == b.ball[1]
+				&& a.ballDirection == b.ballDirection && a.ballCos == b.ballCos
+				&& a.ballSin == b.ballSin && a.ballSpeed == b.ballSpeed
+				&& a.paddleCenters[0] == b.paddleCenters[0] && a.paddleCenters[1] == b.paddleCenters[1]
+				&& a.playerScores[0] == b.playerScores[0] && a.playerScores[1] == b.playerScores[1];
+	}
+
+}
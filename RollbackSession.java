@@ -0,0 +1,231 @@
+package pong;
+
+public class RollbackSession {
+	/*RollbackSession:
+	 * Purpose: Rollback netcode (as in GGPO) for a Player vs Player match
+	 * played by two peers. Each peer plays its own frames as soon as its
+	 * player's keys are known, predicting that the remote player still
+	 * holds the keys of their latest known frame. When the remote keys of
+	 * a frame arrive and differ from what was predicted, the state before
+	 * that frame is restored and every frame since is played again with
+	 * the real keys, before the next frame is played. Both peers end up
+	 * with the same states, and the local player never waits for the
+	 * network unless the remote player falls maxRollback frames behind.
+	 * The state before each of the last frames is kept in a ring of
+	 * GameStates allocated up front and restored with GameState.copyFrom,
+	 * and the keys of each frame are kept in rings of the same size, so
+	 * playing, predicting and rolling back allocate nothing.
+	 * The simulator must be deterministic given its GameState: Player vs
+	 * Player (swept or not), or Comp vs Comp with lookahead controllers.
+	 * A frame is one step of the simulator. The keys of each player are
+	 * given as simulator masks and only their own keys are kept: W and S
+	 * for the left player (0), UP and DOWN for the right player (1).
+	 *
+	 * Includes:
+	 * RollbackSession(Simulator simulator, int localPlayer, int maxRollback):
+	 * Creates a session advancing simulator for localPlayer, rolling back
+	 * at most maxRollback frames
+	 *
+	 * boolean advance(int inputs): Plays the next frame with the local keys
+	 * inputs, after any rollback that is due. Returns whether the match is over.
+	 *
+	 * void addRemoteInput(long frame, int inputs): Gives the remote keys of
+	 * a frame, schedules a rollback if they weren't the predicted ones
+	 *
+	 * boolean canAdvance(): Whether the next frame can be played without
+	 * going past maxRollback frames of unknown remote keys
+	 *
+	 * void synchronize(): Plays the rollback that is due, if any
+	 *
+	 * Getters: state(), frame(), confirmedFrame(), isOver(), and the stats
+	 * rollbacks(), resimulatedFrames(), maxDepth()
+	 */
+
+	//Keys of each player in the simulator's masks
+	public static final int[] PLAYER_KEYS = {Simulator.W | Simulator.S, Simulator.UP | Simulator.DOWN};
+	public static final int DEFAULT_MAX_ROLLBACK = 16; //Frames, 80 ms at 200 updates per second
+
+	private final Simulator simulator;
+	private final GameState state;
+	private final int localPlayer;
+	private final int maxRollback;
+	//Rings indexed by frame % size. Inputs can be given up to maxRollback
+	//frames ahead and rolled back up to maxRollback frames behind.
+	private final int size;
+	private final GameState[] snapshots; //State before each frame
+	private final int[] localInputs;
+	private final int[] remoteInputs; //Known or predicted remote keys of each frame
+	private final long[] remoteFrames; //Frame whose remote keys are known in each slot, -1 if none
+	private long frame = 0; //Next frame to play
+	private long confirmed = 0; //First frame whose remote keys aren't known
+	private long rollbackFrom = -1; //Earliest mispredicted frame, -1 if none
+	private boolean over = false;
+
+	//Stats
+	private long rollbacks = 0;
+	private long resimulated = 0;
+	private long maxDepth = 0;
+
+	public RollbackSession(Simulator simulator, int localPlayer, int maxRollback){
+		//Constructor: Simulator simulator, int localPlayer, int maxRollback
+		//Creates a session playing simulator's match from its current
+		//state as frame 0, for localPlayer (0 left, 1 right)
+		if (localPlayer != 0 && localPlayer != 1){
+			throw new IllegalArgumentException("localPlayer must be 0 or 1");
+		}
+		if (maxRollback <= 0){
+			throw new IllegalArgumentException("maxRollback must be positive");
+		}
+		this.simulator = simulator;
+		this.state = simulator.state;
+		this.localPlayer = localPlayer;
+		this.maxRollback = maxRollback;
+		this.size = 2*maxRollback;
+		snapshots = new GameState[size];
+		for (int i = 0;i<size;i++){
+			snapshots[i] = new GameState();
+		}
+		localInputs = new int[size];
+		remoteInputs = new int[size];
+		remoteFrames = new long[size];
+		for (int i = 0;i<size;i++){
+			remoteFrames[i] = -1;
+		}
+	}
+
+	private int slot(long f){
+		return (int)(f % size);
+	}
+
+	public boolean canAdvance(){
+		/*canAdvance()
+		 * Returns whether the next frame can be played: the remote keys
+		 * of fewer than maxRollback played frames are still unknown.
+		 * When false the local player has to wait for the remote one.
+		 */
+		return !over && frame-confirmed < maxRollback;
+	}
+
+	public boolean advance(int inputs){
+		/*advance(int inputs)
+		 * Plays any rollback that is due, then the next frame with the
+		 * local player holding inputs. Returns whether the match is over.
+		 * Throws IllegalStateException if canAdvance() is false.
+		 */
+		synchronize();
+		if (!canAdvance()){
+			throw new IllegalStateException(over ? "The match is over"
+					: "Remote keys unknown for " + maxRollback + " frames");
+		}
+		int i = slot(frame);
+		localInputs[i] = inputs & PLAYER_KEYS[localPlayer];
+		if (remoteFrames[i] != frame){
+			//Predicts the keys of the previous frame
+			remoteInputs[i] = frame == 0 ? 0 : remoteInputs[slot(frame-1)];
+		}
+		play(frame);
+		frame++;
+		return over;
+	}
+
+	private void play(long f){
+		//Keeps the state before frame f and plays it
+		int i = slot(f);
+		snapshots[i].copyFrom(state);
+		over = simulator.step(localInputs[i] | remoteInputs[i]);
+	}
+
+	public void addRemoteInput(long f, int inputs){
+		/*addRemoteInput(long f, int inputs)
+		 * Gives the keys held by the remote player in frame f. Keys of
+		 * frames already known are ignored, so duplicates are harmless.
+		 * If frame f was played with other keys, a rollback to it is
+		 * played by the next advance (or synchronize). Throws
+		 * IllegalArgumentException if f is maxRollback frames or more
+		 * ahead of the next frame.
+		 */
+		if (f < confirmed || remoteFrames[slot(f)] == f){
+			return;
+		}
+		if (f >= frame+maxRollback){
+			throw new IllegalArgumentException("Frame " + f + " is too far ahead of " + frame);
+		}
+		int i = slot(f);
+		inputs &= PLAYER_KEYS[1-localPlayer];
+		if (f < frame && remoteInputs[i] != inputs && (rollbackFrom < 0 || f < rollbackFrom)){
+			rollbackFrom = f;
+		}
+		remoteInputs[i] = inputs;
+		remoteFrames[i] = f;
+		while (confirmed < frame+maxRollback && remoteFrames[slot(confirmed)] == confirmed){
+			confirmed++;
+		}
+	}
+
+	public void synchronize(){
+		/*synchronize()
+		 * Restores the state before the earliest mispredicted frame and
+		 * plays every frame since again, predicting the remote keys still
+		 * unknown from the latest known ones. Does nothing if no rollback
+		 * is due.
+		 */
+		if (rollbackFrom < 0){
+			return;
+		}
+		long from = rollbackFrom;
+		rollbackFrom = -1;
+		long depth = frame-from;
+		rollbacks++;
+		resimulated += depth;
+		if (depth > maxDepth){
+			maxDepth = depth;
+		}
+		state.copyFrom(snapshots[slot(from)]);
+		over = false;
+		for (long f = from;f<frame;f++){
+			int i = slot(f);
+			if (remoteFrames[i] != f){
+				remoteInputs[i] = f == 0 ? 0 : remoteInputs[slot(f-1)];
+			}
+			play(f);
+			if (over){
+				//The match now ends earlier, the later frames never happened
+				frame = f+1;
+				break;
+			}
+		}
+	}
+
+	public GameState state(){
+		//The state after the latest frame, predicted if its remote keys
+		//aren't all known yet
+		return state;
+	}
+
+	public long frame(){
+		//Number of frames played, which is also the next frame's number
+		return frame;
+	}
+
+	public long confirmedFrame(){
+		//Number of frames from the start whose remote keys are all known
+		return confirmed;
+	}
+
+	public boolean isOver(){
+		return over;
+	}
+
+	public long rollbacks(){
+		return rollbacks;
+	}
+
+	public long resimulatedFrames(){
+		return resimulated;
+	}
+
+	public long maxDepth(){
+		return maxDepth;
+	}
+
+}
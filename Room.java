@@ -0,0 +1,76 @@
+package pong;
+
+public class Room {
+	/*Room:
+	 * Purpose: One match hosted by a RoomServer (see @pong.RoomServer).
+	 * Holds the simulator of the match, whichever rules it plays by
+	 * (Simulator for Player vs Player, PvESimulator, EvESimulator), and the
+	 * keys its players hold, which may be set from any thread. The room is
+	 * only stepped by the worker it belongs to.
+	 * A room playing rematches starts a new seeded match (see
+	 * MatchRunner.seededState) when one ends, otherwise it stops playing.
+	 *
+	 * Includes:
+	 * Room(int id, Simulator simulator, boolean rematch): Creates a room
+	 * for the match advanced by simulator
+	 *
+	 * void setInputs(int inputs): Sets the keys held (see Simulator.UP etc.)
+	 *
+	 * void tick(): Plays one update, called by the room's worker
+	 *
+	 * long ticks(), long matches(), boolean isOver(): Updates played,
+	 * matches finished and whether the room stopped playing
+	 */
+
+	public final int id;
+	public final Simulator simulator;
+	private final boolean rematch;
+	private volatile int inputs = 0;
+	private volatile boolean over = false;
+	private volatile long ticks = 0;
+	private volatile long matches = 0;
+
+	public Room(int id, Simulator simulator, boolean rematch){
+		//Constructor: int id, Simulator simulator, boolean rematch
+		//Creates room id for the match of simulator
+		this.id = id;
+		this.simulator = simulator;
+		this.rematch = rematch;
+	}
+
+	public void setInputs(int inputs){
+		this.inputs = inputs;
+	}
+
+	public void tick(){
+		/*tick()
+		 * Plays one update with the keys held, unless the room is over.
+		 * Only called by the room's worker.
+		 */
+		if (over){
+			return;
+		}
+		ticks++;
+		if (simulator.step(inputs)){
+			matches++;
+			if (rematch){
+				simulator.state.copyFrom(MatchRunner.seededState(MatchRunner.matchSeed(id, (int)matches)));
+			}else{
+				over = true;
+			}
+		}
+	}
+
+	public long ticks(){
+		return ticks;
+	}
+
+	public long matches(){
+		return matches;
+	}
+
+	public boolean isOver(){
+		return over;
+	}
+
+}
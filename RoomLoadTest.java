@@ -0,0 +1,67 @@
+package pong;
+
+public class RoomLoadTest {
+	/*RoomLoadTest:
+	 * Purpose: Finds how many rooms a RoomServer (see @pong.RoomServer)
+	 * can host on this machine. Bot rooms (Comp vs Comp matches with
+	 * rematches, see @pong.EvESimulator) are added in equal steps up to
+	 * the given number. After each step the stats are reset, the server
+	 * runs for a while and the step is reported: room updates per second
+	 * played and expected, tick latency, missed slots, utilization, CPU
+	 * per room and estimated capacity. The scaling limit is the first step
+	 * at which less than 99% of the updates due are played (the workers
+	 * can't keep up, so slots are skipped) or the p99 tick latency exceeds
+	 * a period. A few missed slots on their own only mean that the
+	 * workers were descheduled for a moment.
+	 *
+	 * Includes:
+	 * void main(String[] args): Runs the test. Arguments (all optional):
+	 * rooms (10000), steps (5), secondsPerStep (3), workers (processors),
+	 * tickRate (200)
+	 */
+
+	public static void main(String[] args) throws InterruptedException{
+		/*main(String[] args)
+		 * Adds the rooms step by step and prints a line per step
+		 */
+		int rooms = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+		int steps = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+		int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 3;
+		int workers = args.length > 3 ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+		int tickRate = args.length > 4 ? Integer.parseInt(args[4]) : GameLoop.DEFAULT_TICK_RATE;
+
+		RoomServer server = new RoomServer(workers, tickRate, RoomServer.DEFAULT_SLOTS);
+		server.register();
+		server.start();
+		double periodMicros = 1e6/tickRate;
+		int limit = -1;
+		int hosted = 0;
+		System.out.printf("%d workers, %d updates/s per room, period %.0f us%n", workers, tickRate, periodMicros);
+		for (int step = 1;step<=steps;step++){
+			int target = (int)((long)rooms*step/steps);
+			for (;hosted<target;hosted++){
+				server.addRoom(new EvESimulator(MatchRunner.seededState(hosted)), true);
+			}
+			//Lets the workers take the new rooms and the JIT settle
+			Thread.sleep(500);
+			server.resetStats();
+			Thread.sleep(seconds*1000L);
+			double played = server.getRoomTicksPerSecond();
+			System.out.printf("%6d rooms: %.3e updates/s (%.3e due), tick latency p50 %.0f p99 %.0f max %.0f us,"
+					+ " missed slots %d, utilization %.1f%%, cpu %.1f us/room/s, capacity ~%.0f rooms%n",
+					server.getRooms(), played, (double)hosted*tickRate, server.getTickLatencyP50Micros(),
+					server.getTickLatencyP99Micros(), server.getTickLatencyMaxMicros(), server.getMissedSlots(),
+					server.getUtilization()*100, server.getCpuMicrosPerRoomSecond(), server.getCapacityRooms());
+			if (limit < 0 && (played < 0.99*hosted*tickRate || server.getTickLatencyP99Micros() > periodMicros)){
+				limit = hosted;
+			}
+		}
+		server.stop();
+		if (limit < 0){
+			System.out.println("No limit reached up to " + hosted + " rooms");
+		}else{
+			System.out.println("Scaling limit reached at " + limit + " rooms");
+		}
+	}
+
+}
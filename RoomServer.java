@@ -0,0 +1,315 @@
+package pong;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.LockSupport;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+public class RoomServer implements RoomServerMBean {
+	/*RoomServer:
+	 * Interfaces: RoomServerMBean
+	 * Purpose: Hosts many matches (Rooms) in one JVM on a few threads
+	 * instead of a thread or Swing Timer per match. Rooms are spread over
+	 * a fixed number of workers, one thread each. Every worker runs a
+	 * timing wheel: the update period (1/tickRate) is cut into slots and
+	 * each room sits in one slot, so every slot is a batch of rooms that
+	 * are stepped one after the other when the slot comes round, and the
+	 * work of a period is spread evenly over it instead of all rooms
+	 * waking at once. Each room is updated once per period.
+	 * Rooms are added and removed from any thread through a queue that
+	 * the worker drains between slots, so the wheel is only touched by
+	 * its worker.
+	 * A worker that falls more than a period behind skips the slots it
+	 * missed (counted as missed) rather than playing them late.
+	 * Stats: the tick latency of a slot is how long after the slot was
+	 * due its last room finished, i.e. the worst latency of a room in
+	 * the batch. Utilization is the share of time the workers spend
+	 * stepping rooms, from which capacity (rooms at 100%) is estimated,
+	 * and CPU per room comes from the workers' thread CPU time.
+	 *
+	 * Includes:
+	 * RoomServer(int workers, int tickRate, int slots): Creates a server
+	 *
+	 * void start(), void stop(): Starts and stops the workers
+	 *
+	 * Room addRoom(Simulator simulator, boolean rematch): Hosts a match
+	 *
+	 * void removeRoom(Room room): Stops hosting a room
+	 *
+	 * void register(): Registers the server with the platform MBeanServer
+	 *
+	 * Stats getters (see @pong.RoomServerMBean) and resetStats()
+	 */
+
+	private class Worker implements Runnable {
+		//One thread stepping its share of the rooms on its own timing wheel
+		final ArrayList<ArrayList<Room>> wheel = new ArrayList<ArrayList<Room>>();
+		final ConcurrentLinkedQueue<Room> added = new ConcurrentLinkedQueue<Room>();
+		final ConcurrentLinkedQueue<Room> removed = new ConcurrentLinkedQueue<Room>();
+		final LatencyHistogram tickLatency = new LatencyHistogram();
+		volatile int rooms = 0;
+		volatile long roomTicks = 0;
+		volatile long busyNanos = 0;
+		volatile long cpuNanos = 0;
+		volatile long missedSlots = 0;
+		volatile boolean resetRequested = false;
+
+		Worker(){
+			for (int i = 0;i<slots;i++){
+				wheel.add(new ArrayList<Room>());
+			}
+		}
+
+		@Override
+		public void run(){
+			ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+			boolean cpuTime = threads.isCurrentThreadCpuTimeSupported();
+			long cpuBase = cpuTime ? threads.getCurrentThreadCpuTime() : 0;
+			long due = System.nanoTime();
+			int slot = 0;
+			while (running){
+				if (resetRequested){
+					resetRequested = false;
+					tickLatency.reset();
+					roomTicks = 0;
+					busyNanos = 0;
+					missedSlots = 0;
+					cpuBase = cpuTime ? threads.getCurrentThreadCpuTime() : 0;
+				}
+				applyChanges();
+				long wait = due-System.nanoTime();
+				if (wait > 0){
+					LockSupport.parkNanos(wait);
+					continue;
+				}
+				long start = System.nanoTime();
+				if (start-due > periodNanos){
+					//More than a period behind, skips to the current slot
+					long behind = (start-due)/slotNanos;
+					missedSlots += behind;
+					slot = (int)((slot+behind) % slots);
+					due += behind*slotNanos;
+				}
+				ArrayList<Room> batch = wheel.get(slot);
+				for (int i = 0;i<batch.size();i++){
+					batch.get(i).tick();
+				}
+				long end = System.nanoTime();
+				if (!batch.isEmpty()){
+					tickLatency.record(end-due);
+					roomTicks += batch.size();
+					busyNanos += end-start;
+				}
+				if (cpuTime){
+					cpuNanos = threads.getCurrentThreadCpuTime()-cpuBase;
+				}
+				slot = (slot+1) % slots;
+				due += slotNanos;
+			}
+		}
+
+		void applyChanges(){
+			//Puts added rooms in the emptiest slot and takes removed ones out
+			for (Room room = added.poll();room != null;room = added.poll()){
+				ArrayList<Room> emptiest = wheel.get(0);
+				for (ArrayList<Room> s : wheel){
+					if (s.size() < emptiest.size()){
+						emptiest = s;
+					}
+				}
+				emptiest.add(room);
+				rooms++;
+			}
+			for (Room room = removed.poll();room != null;room = removed.poll()){
+				for (ArrayList<Room> s : wheel){
+					if (s.remove(room)){
+						rooms--;
+					}
+				}
+			}
+		}
+	}
+
+	public static final int DEFAULT_SLOTS = 8; //Slots per period
+
+	private final Worker[] workers;
+	private final int tickRate;
+	private final int slots;
+	private final long periodNanos; //Time between two updates of a room
+	private final long slotNanos;
+	private volatile boolean running = false;
+	private int nextWorker = 0;
+	private int nextId = 0;
+	private volatile long statsSince = System.nanoTime();
+
+	public RoomServer(int workers, int tickRate, int slots){
+		//Constructor: int workers, int tickRate, int slots
+		//Creates a server stepping its rooms tickRate times per second on
+		//workers threads, with slots batches per period
+		if (workers <= 0 || tickRate <= 0 || slots <= 0){
+			throw new IllegalArgumentException("workers, tickRate and slots must be positive");
+		}
+		this.tickRate = tickRate;
+		this.slots = slots;
+		this.periodNanos = 1000000000L/tickRate;
+		this.slotNanos = periodNanos/slots;
+		this.workers = new Worker[workers];
+		for (int i = 0;i<workers;i++){
+			this.workers[i] = new Worker();
+		}
+	}
+
+	public void start(){
+		/*start()
+		 * Starts the workers, named "room-worker-<n>"
+		 */
+		running = true;
+		statsSince = System.nanoTime();
+		for (int i = 0;i<workers.length;i++){
+			Thread thread = new Thread(workers[i], "room-worker-" + i);
+			thread.setDaemon(true);
+			thread.start();
+		}
+	}
+
+	public void stop(){
+		//Asks the workers to stop, returns without waiting for them
+		running = false;
+	}
+
+	public synchronized Room addRoom(Simulator simulator, boolean rematch){
+		/*addRoom(Simulator simulator, boolean rematch)
+		 * Hosts the match of simulator in a new room on the next worker.
+		 * The room is stepped from the worker's next slot on.
+		 */
+		Room room = new Room(nextId++, simulator, rematch);
+		Worker worker = workers[nextWorker];
+		nextWorker = (nextWorker+1) % workers.length;
+		worker.added.add(room);
+		return room;
+	}
+
+	public void removeRoom(Room room){
+		//Stops hosting room, from its worker's next slot on
+		for (Worker w : workers){
+			w.removed.add(room);
+		}
+	}
+
+	public void register(){
+		/*register()
+		 * Registers the server as pong:type=RoomServer. Failure to
+		 * register (e.g. a second instance) is reported and ignored.
+		 */
+		try{
+			ManagementFactory.getPlatformMBeanServer().registerMBean(this,
+					new ObjectName("pong:type=RoomServer"));
+		}catch (JMException e){
+			System.err.println("Could not register RoomServer: " + e);
+		}
+	}
+
+	@Override
+	public void resetStats(){
+		//Each worker clears its stats before its next slot
+		statsSince = System.nanoTime();
+		for (Worker w : workers){
+			w.resetRequested = true;
+		}
+	}
+
+	private double elapsedSeconds(){
+		return Math.max(1, System.nanoTime()-statsSince)/1e9;
+	}
+
+	@Override
+	public int getRooms(){
+		int total = 0;
+		for (Worker w : workers){
+			total += w.rooms;
+		}
+		return total;
+	}
+
+	@Override
+	public int getWorkers(){
+		return workers.length;
+	}
+
+	@Override
+	public double getRoomTicksPerSecond(){
+		long total = 0;
+		for (Worker w : workers){
+			total += w.roomTicks;
+		}
+		return total/elapsedSeconds();
+	}
+
+	private double tickLatencyPercentile(double p){
+		//Worst of the workers' percentiles, in microseconds
+		long worst = 0;
+		for (Worker w : workers){
+			worst = Math.max(worst, p >= 100 ? w.tickLatency.max() : w.tickLatency.percentile(p));
+		}
+		return worst/1e3;
+	}
+
+	@Override
+	public double getTickLatencyP50Micros(){
+		return tickLatencyPercentile(50);
+	}
+
+	@Override
+	public double getTickLatencyP99Micros(){
+		return tickLatencyPercentile(99);
+	}
+
+	@Override
+	public double getTickLatencyMaxMicros(){
+		return tickLatencyPercentile(100);
+	}
+
+	@Override
+	public long getMissedSlots(){
+		long total = 0;
+		for (Worker w : workers){
+			total += w.missedSlots;
+		}
+		return total;
+	}
+
+	@Override
+	public double getUtilization(){
+		//Average share of time the workers spent stepping rooms
+		long busy = 0;
+		for (Worker w : workers){
+			busy += w.busyNanos;
+		}
+		return busy/1e9/elapsedSeconds()/workers.length;
+	}
+
+	@Override
+	public double getCpuMicrosPerRoomSecond(){
+		int rooms = getRooms();
+		long cpu = 0;
+		for (Worker w : workers){
+			cpu += w.cpuNanos;
+		}
+		return rooms == 0 ? 0 : cpu/1e3/elapsedSeconds()/rooms;
+	}
+
+	@Override
+	public double getCapacityRooms(){
+		//Rooms the workers could step if they were busy all the time
+		double utilization = getUtilization();
+		return utilization == 0 ? 0 : getRooms()/utilization;
+	}
+
+	public int tickRate(){
+		return tickRate;
+	}
+
+}
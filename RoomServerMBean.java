@@ -0,0 +1,20 @@
+package pong;
+
+public interface RoomServerMBean {
+	/*RoomServerMBean:
+	 * Purpose: JMX view of a RoomServer (see @pong.RoomServer), registered
+	 * as pong:type=RoomServer. Durations are in microseconds.
+	 */
+
+	int getRooms();
+	int getWorkers();
+	double getRoomTicksPerSecond();
+	double getTickLatencyP50Micros();
+	double getTickLatencyP99Micros();
+	double getTickLatencyMaxMicros();
+	long getMissedSlots();
+	double getUtilization();
+	double getCpuMicrosPerRoomSecond();
+	double getCapacityRooms();
+	void resetStats();
+}
@@ -0,0 +1,206 @@
+package pong;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Modifier;
+import java.util.Properties;
+
+public final class Rules {
+	/*Rules:
+	 * Purpose: The numbers that make up the game: size of the field and
+	 * its borders, size of the ball and paddles, how fast they move and
+	 * the score that wins a match. Immutable, every field is final.
+	 * The rules of a run are loaded once at startup (ACTIVE) from the
+	 * properties file named by the pong.rules system property, or are the
+	 * original ones (DEFAULT) if it isn't set. Simulator copies ACTIVE into
+	 * its static final fields, which the JIT treats as constants, so the
+	 * updates read them as cheaply as the literals they replace. Rule sets
+	 * can therefore be tried without recompiling, one per run.
+	 * Keys of a rules file are the field names below. Missing keys keep
+	 * their default, unknown keys are an error so a misspelt rule isn't
+	 * silently ignored.
+	 *
+	 * Includes:
+	 * Rules load(String path): Reads a rules file
+	 *
+	 * Rules fromProperties(Properties properties): Builds rules from
+	 * properties over the defaults
+	 *
+	 * long fingerprint(): Hash of every rule, to tell rule sets apart
+	 * (e.g. in replays)
+	 */
+
+	public static final Rules DEFAULT = new Rules();
+	//Rules of this run, from the file named by pong.rules
+	public static final Rules ACTIVE = loadActive();
+
+	public final int fieldWidth; //Pixels, the ball scores past 0 or fieldWidth
+	public final int fieldHeight;
+	public final int borderWidth; //Thickness of the top and bottom borders
+	public final int ballRadius;
+	public final int paddleLength;
+	public final int leftPaddleColumn; //Column of the left paddle (see Simulator.paddleColumns)
+	public final int rightPaddleColumn;
+	//Part of the paddle around its center that reflects the ball straight back
+	public final double paddleCenterTolerance;
+	public final double paddleSpeed; //Distance travelled by paddles per update
+	public final double maxBallSpeed; //Speed the ball approaches as the match goes on
+	public final double startBallSpeed; //Speed of the first serve
+	public final double serveBallSpeed; //Speed of the serves after a point
+	//The ball covers 1/speedUpTicks of the gap to maxBallSpeed every update
+	public final int speedUpTicks;
+	public final int winningScore; //Points needed to win a match
+
+	private Rules(){
+		//Constructor: No parameters
+		//The original rules of the game
+		this(801, 480, 3, 10, 80, 15, 770, 0.15, 1.89, 4.75, 2.70, 2.60, 3000, 10);
+	}
+
+	private Rules(int fieldWidth, int fieldHeight, int borderWidth, int ballRadius, int paddleLength,
+			int leftPaddleColumn, int rightPaddleColumn, double paddleCenterTolerance, double paddleSpeed,
+			double maxBallSpeed, double startBallSpeed, double serveBallSpeed, int speedUpTicks, int winningScore){
+		//Constructor: every rule
+		//Checks that the rules make a playable game
+		//(NaN fails every comparison below, so it is rejected first)
+		if (!Double.isFinite(paddleCenterTolerance) || !Double.isFinite(paddleSpeed) || !Double.isFinite(maxBallSpeed)
+				|| !Double.isFinite(startBallSpeed) || !Double.isFinite(serveBallSpeed)){
+			throw new IllegalArgumentException("paddleCenterTolerance and the speeds must be finite numbers");
+		}
+		if (fieldWidth <= 0 || fieldHeight <= 0 || borderWidth < 0 || ballRadius <= 0 || paddleLength <= 0
+				|| paddleSpeed <= 0 || maxBallSpeed <= 0 || startBallSpeed <= 0 || serveBallSpeed <= 0
+				|| speedUpTicks <= 0 || winningScore <= 0){
+			throw new IllegalArgumentException("Sizes, speeds, speedUpTicks and winningScore must be positive");
+		}
+		if (2*borderWidth+2*ballRadius >= fieldHeight || paddleLength >= fieldHeight){
+			throw new IllegalArgumentException("The ball and paddles must fit between the borders");
+		}
+		if (leftPaddleColumn < 0 || leftPaddleColumn >= rightPaddleColumn || rightPaddleColumn > fieldWidth){
+			throw new IllegalArgumentException("The paddle columns must be in order within the field");
+		}
+		if (paddleCenterTolerance < 0 || paddleCenterTolerance >= 0.5){
+			throw new IllegalArgumentException("paddleCenterTolerance must be within 0 and 0.5");
+		}
+		this.fieldWidth = fieldWidth;
+		this.fieldHeight = fieldHeight;
+		this.borderWidth = borderWidth;
+		this.ballRadius = ballRadius;
+		this.paddleLength = paddleLength;
+		this.leftPaddleColumn = leftPaddleColumn;
+		this.rightPaddleColumn = rightPaddleColumn;
+		this.paddleCenterTolerance = paddleCenterTolerance;
+		this.paddleSpeed = paddleSpeed;
+		this.maxBallSpeed = maxBallSpeed;
+		this.startBallSpeed = startBallSpeed;
+		this.serveBallSpeed = serveBallSpeed;
+		this.speedUpTicks = speedUpTicks;
+		this.winningScore = winningScore;
+	}
+
+	private static Rules loadActive(){
+		//Loads the rules named by pong.rules, the defaults if it isn't set
+		String path = System.getProperty("pong.rules");
+		if (path == null){
+			return DEFAULT;
+		}
+		try{
+			return load(path);
+		}catch (IOException e){
+			throw new IllegalStateException("Can't read the rules " + path, e);
+		}
+	}
+
+	public static Rules load(String path) throws IOException{
+		/*load(String path)
+		 * Reads the rules file at path. Throws IllegalArgumentException
+		 * if a rule is unknown, malformed or out of range.
+		 */
+		Properties properties = new Properties();
+		try (InputStream in = new FileInputStream(path)){
+			properties.load(in);
+		}
+		return fromProperties(properties);
+	}
+
+	public static Rules fromProperties(Properties properties){
+		/*fromProperties(Properties properties)
+		 * Builds rules from properties, the rules missing from them
+		 * keeping their default
+		 */
+		Rules d = DEFAULT;
+		for (String key : properties.stringPropertyNames()){
+			boolean rule;
+			try{
+				rule = !Modifier.isStatic(Rules.class.getField(key).getModifiers());
+			}catch (NoSuchFieldException e){
+				rule = false;
+			}
+			if (!rule){
+				throw new IllegalArgumentException("Unknown rule: " + key);
+			}
+		}
+		return new Rules(intRule(properties, "fieldWidth", d.fieldWidth),
+				intRule(properties, "fieldHeight", d.fieldHeight),
+				intRule(properties, "borderWidth", d.borderWidth),
+				intRule(properties, "ballRadius", d.ballRadius),
+				intRule(properties, "paddleLength", d.paddleLength),
+				intRule(properties, "leftPaddleColumn", d.leftPaddleColumn),
+				intRule(properties, "rightPaddleColumn", d.rightPaddleColumn),
+				doubleRule(properties, "paddleCenterTolerance", d.paddleCenterTolerance),
+				doubleRule(properties, "paddleSpeed", d.paddleSpeed),
+				doubleRule(properties, "maxBallSpeed", d.maxBallSpeed),
+				doubleRule(properties, "startBallSpeed", d.startBallSpeed),
+				doubleRule(properties, "serveBallSpeed", d.serveBallSpeed),
+				intRule(properties, "speedUpTicks", d.speedUpTicks),
+				intRule(properties, "winningScore", d.winningScore));
+	}
+
+	private static int intRule(Properties properties, String key, int value){
+		//The rule key as an int, value if it isn't set
+		String text = properties.getProperty(key);
+		try{
+			return text == null ? value : Integer.parseInt(text.trim());
+		}catch (NumberFormatException e){
+			throw new IllegalArgumentException(key + " must be a whole number: " + text);
+		}
+	}
+
+	private static double doubleRule(Properties properties, String key, double value){
+		//The rule key as a double, value if it isn't set
+		String text = properties.getProperty(key);
+		try{
+			return text == null ? value : Double.parseDouble(text.trim());
+		}catch (NumberFormatException e){
+			throw new IllegalArgumentException(key + " must be a number: " + text);
+		}
+	}
+
+	public long fingerprint(){
+		/*fingerprint()
+		 * Returns a hash of every rule. Equal rules give the same
+		 * fingerprint in every run.
+		 */
+		long h = 17;
+		long[] values = {fieldWidth, fieldHeight, borderWidth, ballRadius, paddleLength,
+				leftPaddleColumn, rightPaddleColumn, Double.doubleToLongBits(paddleCenterTolerance),
+				Double.doubleToLongBits(paddleSpeed), Double.doubleToLongBits(maxBallSpeed),
+				Double.doubleToLongBits(startBallSpeed), Double.doubleToLongBits(serveBallSpeed),
+				speedUpTicks, winningScore};
+		for (long value : values){
+			h = (h ^ value)*0x100000001B3L;
+			h ^= h >>> 29;
+		}
+		return h;
+	}
+
+	@Override
+	public String toString(){
+		return String.format("field %dx%d, border %d, ball radius %d, paddles %d long at %d,%d, "
+				+ "center tolerance %s, paddle speed %s, ball speed %s to %s (serves %s, 1/%d per update), "
+				+ "%d points to win", fieldWidth, fieldHeight, borderWidth, ballRadius, paddleLength,
+				leftPaddleColumn, rightPaddleColumn, paddleCenterTolerance, paddleSpeed, startBallSpeed,
+				maxBallSpeed, serveBallSpeed, speedUpTicks, winningScore);
+	}
+
+}
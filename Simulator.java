@@ -0,0 +1,432 @@
+package pong;
+
+public class Simulator {
+	/*Simulator:
+	 * Purpose: Headless rules of Pong for the Player vs Player mode.
+	 * Advances a GameState by one fixed timestep (one frame update,
+	 * TICK_MILLIS long) at a time given which keys are held. Has no
+	 * AWT/Swing dependencies so that matches can be played without
+	 * a display, e.g. on a server or in a batch of AI matches.
+	 * If the ball contacts a border, then it is reflected back
+	 * into play. If the ball hits a paddle, it is reflected
+	 * based on angle of incidence and location on the paddle
+	 * that is struck.
+	 * The ball moves along the cosine and sine of its direction cached in
+	 * the GameState, which are only recomputed when a paddle changes the
+	 * direction. A border reflection negates the direction, so it only
+	 * flips the sign of the sine.
+	 *
+	 * Includes:
+	 * Simulator(): Creates a simulator for a new match
+	 *
+	 * Simulator(GameState state): Creates a simulator that advances
+	 * the given state
+	 *
+	 * boolean step(int inputs): Advances the match by a single update.
+	 * Returns whether the match is over.
+	 *
+	 * void updatePaddles(int inputs): Moves the center of panels based off
+	 * on the keys pressed by the user(s)
+	 *
+	 * void increaseBallSpeed(): Increases the speed of the ball as the game
+	 * progresses in order to increase dificulty of play
+	 *
+	 * boolean updateBall(): Moves the ball's center based on the ball's current
+	 * position, its trajectory and its surroundings (i.e. borders, paddles)
+	 *
+	 * void setSweptTicks(int ticks): Switches to swept collisions, each step
+	 * then plays ticks updates at once (0 goes back to the original rules)
+	 * (sweptTicks() returns it)
+	 *
+	 * boolean sweepBall(double distance): Moves the ball distance pixels
+	 * along its path, resolving every border and paddle hit on the way at
+	 * the exact point of contact
+	 *
+	 * void setEvents(MatchEvents events): Emits the paddle hits, border
+	 * bounces, points and end of the match into events (see
+	 * @pong.MatchEvents) (events() returns it)
+	 */
+
+	public static final int TICK_MILLIS = 5; //Length of one update in milliseconds
+	//Bits of the inputs mask passed to step, one per key
+	public static final int UP = 1;
+	public static final int DOWN = 2;
+	public static final int W = 4;
+	public static final int S = 8;
+
+	//The rules of the game, loaded at startup (see @pong.Rules). They are
+	//copied into static finals so the JIT folds them like literals.
+	public static final Rules rules = Rules.ACTIVE;
+	public static final int fieldWidth = rules.fieldWidth; //Ball scores past 0 or fieldWidth
+	public static final int fieldHeight = rules.fieldHeight;
+	public static final int borderWidth = rules.borderWidth; //Top and bottom borders
+	public static final int ballRadius = rules.ballRadius; //Pixel radius of ball
+	public static final int paddleLength = rules.paddleLength; //Pixel length of paddles
+	public static final double maxBallSpeed = rules.maxBallSpeed; //Sets a cap of the ball speed
+	//Columns in which paddles are
+	public static final int[] paddleColumns = {rules.leftPaddleColumn,rules.rightPaddleColumn};
+	//paddleCenterTolerance is the percentage of the paddle that is the center.
+	public static final double paddleCenterTolerance = rules.paddleCenterTolerance;
+	//Distance traveled by paddles per update
+	public static final double paddleSpeed = rules.paddleSpeed;
+	public static final double startBallSpeed = rules.startBallSpeed; //Speed of the first serve
+	public static final double serveBallSpeed = rules.serveBallSpeed; //Speed of later serves
+	public static final int speedUpTicks = rules.speedUpTicks; //See Rules.speedUpTicks
+	public static final int winningScore = rules.winningScore; //Points needed to win a match
+
+	public final GameState state; //State advanced by this simulator
+	//Updates played by each step with swept collisions, 0 if not used
+	private int sweptTicks = 0;
+	private static final int maxContacts = 16; //Hits resolved at most per sweep
+	//Receives the events of the match, null if they aren't emitted
+	private MatchEvents events;
+
+	public Simulator(){
+		//Constructor: No parameters
+		//Creates a simulator for a brand new match
+		this(new GameState());
+	}
+
+	public Simulator(GameState state){
+		//Constructor: GameState state
+		//Creates a simulator that advances the given state
+		this.state = state;
+	}
+
+	public void setSweptTicks(int ticks){
+		/*setSweptTicks(int ticks)
+		 * With ticks > 0, every step plays ticks updates at once, each with
+		 * swept collisions (see sweepBall) followed by the paddles' move and
+		 * the ball's speed up, with the keys held for the whole step. With
+		 * 0, each step is one update of the original rules.
+		 */
+		if (ticks < 0){
+			throw new IllegalArgumentException("ticks can't be negative");
+		}
+		sweptTicks = ticks;
+	}
+
+	public int sweptTicks(){
+		return sweptTicks;
+	}
+
+	public void setEvents(MatchEvents events){
+		//Emits the events of the match into events from the next step on,
+		//null to stop. Emitting doesn't change how the match is played.
+		this.events = events;
+	}
+
+	public MatchEvents events(){
+		return events;
+	}
+
+	public boolean step(int inputs){
+		/*step(int inputs)
+		 * Acts as a single frame update. Moves the ball, then the paddles
+		 * based on the keys held (a mask of UP, DOWN, W and S) and
+		 * speeds up the ball. Returns whether the match is over.
+		 */
+		if (sweptTicks > 0){
+			return sweptStep(inputs);
+		}
+		boolean done = updateBall();
+		updatePaddles(inputs);
+		increaseBallSpeed();
+		state.tick++;
+		return done;
+	}
+
+	protected void updatePaddles(int inputs){
+		/*updatePaddles(int inputs)
+		 * Moves paddle location based on the current keys that are
+		 * being pressed at the time. W and S move the left paddle.
+		 * UP and DOWN move the right paddle.
+		 */
+		double[] paddleCenters = state.paddleCenters;
+
+		// Moves the right paddle up if UP is pressed and the paddle won't
+		// go over the edge of the screen
+		if ((inputs & UP) != 0){
+			if (paddleCenters[1]>paddleLength/2){
+				paddleCenters[1] -= paddleSpeed;
+			}
+		}
+
+		// Moves the right paddle down if DOWN is pressed and the paddle won't
+		// go over the edge of the screen
+		if ((inputs & DOWN) != 0){
+			if (paddleCenters[1]<fieldHeight-paddleLength/2){
+				paddleCenters[1] += paddleSpeed;
+			}
+		}
+
+		// Moves the left paddle up if W is pressed and the paddle won't
+		// go over the edge of the screen
+		if ((inputs & W) != 0){
+			if (paddleCenters[0]>paddleLength/2){
+				paddleCenters[0] -= paddleSpeed;
+			}
+		}
+
+		// Moves the left paddle down if S is pressed and the paddle won't
+		// go over the edge of the screen
+		if ((inputs & S) != 0){
+			if (paddleCenters[0]<fieldHeight-paddleLength/2){
+				paddleCenters[0] += paddleSpeed;
+			}
+		}
+	}
+
+	protected void increaseBallSpeed(){
+		/*increaseBallSpeed()
+		 * Increases ball speed on every update relative to the
+		 * current speed and the static max speed, slowly approaching
+		 * it but never completely reaching it.
+		 */
+		state.ballSpeed += (maxBallSpeed-state.ballSpeed)/speedUpTicks;
+	}
+
+	protected boolean updateBall(){
+		/*updateBall()
+		 * Moves the ball's center based off current location and
+		 * the ball's trajectory. The ball's trajectory is changed
+		 * if the ball will run into a paddle or a border.
+		 * Additionally the method returns a boolean that determines
+		 * whether the ball has crossed either end aka whether
+		 * the point is over.
+		 */
+		GameState s = state;
+		double[] ball = s.ball;
+		double[] paddleCenters = s.paddleCenters;
+
+		//Tests the ball's next move will collide with the left paddle
+		if(ball[0]+s.ballSpeed*s.ballCos-ballRadius<=paddleColumns[0]&
+				ball[0]+s.ballSpeed*s.ballCos-ballRadius>=paddleColumns[0]-s.ballSpeed){
+			//Upper and lower bounds of the paddle
+			double paddleTop = paddleCenters[0]-paddleLength/2;
+			double paddleBottom = paddleCenters[0]+paddleLength/2;
+			if (ball[1]>=paddleTop&&ball[1]<=paddleBottom){
+				double ballDeflection = (ball[1]-((paddleTop+paddleBottom)/2))/paddleLength;
+				//If the ball hits the paddle in its middle based on
+				//paddle center tolerance, then it is reflected
+				if (Math.abs(ballDeflection) < paddleCenterTolerance){
+					s.setBallDirection(-s.ballDirection+Math.PI);
+				}else{
+					//If the ball doesn't hit the middle, the ball is
+					//reflected at angle between 30 and 60 degrees and
+					//in the direction that the ball came in at
+					//The angle is linearly dependent on the percentage
+					//of the paddle the ball hits away from the center of the
+					//paddle.
+					double m = (Math.PI/3-Math.PI/6)/(0.5-paddleCenterTolerance);
+					double b = Math.PI/3-m/2;
+					double direction = m*Math.abs(ballDeflection)+b;
+					if (ballDeflection<0){
+						//If the ball hits the bottom half, it is sent downwards
+						direction *= -1;
+					}
+					s.setBallDirection(direction);
+				}
+				if (events != null){
+					events.add(MatchEvents.PADDLE_HIT, 0, ballDeflection, s);
+				}
+			}
+		}
+		//Tests the ball's next move will collide with the right paddle
+		if (ball[0]+s.ballSpeed*s.ballCos-ballRadius<=paddleColumns[1]&
+				ball[0]+s.ballSpeed*s.ballCos-ballRadius>=paddleColumns[1]-s.ballSpeed) {
+			//Upper and lower bounds of the paddle
+			double paddleTop = paddleCenters[1]-paddleLength/2;
+			double paddleBottom = paddleCenters[1]+paddleLength/2;
+			if (ball[1]>=paddleTop&&ball[1]<=paddleBottom){
+				double ballDeflection =(ball[1]-((paddleTop+paddleBottom)/2))/paddleLength;
+				//If the ball hits the paddle in its middle based on
+				//paddle center tolerance, then it is reflected
+				if (Math.abs(ballDeflection) < paddleCenterTolerance){
+					s.setBallDirection(-s.ballDirection+Math.PI);
+				}else{
+					//If the ball doesn't hit the middle, the ball is
+					//reflected at angle between 30 and 60 degrees and
+					//in the direction that the ball came in at
+					//The angle is linearly dependent on the percentage
+					//of the paddle the ball hits away from the center of the
+					//paddle.
+					double m = (2*Math.PI/3-5*Math.PI/6)/(0.5-paddleCenterTolerance);
+					double b = 2*Math.PI/3-m/2;
+					double direction = m*Math.abs(ballDeflection)+b;
+					if (ballDeflection<0){
+						//If the ball hits the bottom half, it is sent downwards
+						direction *= -1;
+					}
+					s.setBallDirection(direction);
+				}
+				if (events != null){
+					events.add(MatchEvents.PADDLE_HIT, 1, ballDeflection, s);
+				}
+			}
+		}
+		//If the ball would strike the borders in its next move, it is reflected away
+		if (ball[1]+s.ballSpeed*s.ballSin-ballRadius<=borderWidth||
+				ball[1]+s.ballSpeed*s.ballSin+ballRadius>=fieldHeight-borderWidth){
+			//cos(-d) = cos(d) and sin(-d) = -sin(d)
+			s.ballDirection *= -1;
+			s.ballSin = -s.ballSin;
+			if (events != null){
+				//After the reflection the ball moves away from the border it hit
+				events.add(MatchEvents.BORDER_BOUNCE, s.ballSin > 0 ? 0 : 1, 0, s);
+			}
+		}
+		//The ball is updated to the next spot it will be at
+		ball[0] = ball[0]+s.ballSpeed*s.ballCos;
+		ball[1] = ball[1]+s.ballSpeed*s.ballSin;
+		//Test the ball to see if it goes off screen and returns whether the game is over
+		if ((ball[0]<0)|(ball[0]>fieldWidth)){
+			//Assigns the points the right player depending on where the ball goes off
+			if (ball[0]<0){
+				s.playerScores[1] += 1;
+			}else{
+				s.playerScores[0] += 1;
+			}
+			if (events != null){
+				emitPoint();
+			}
+			if (s.playerScores[0]==winningScore|s.playerScores[1]==winningScore){
+				return true;
+			}
+			//Resets the board if the ball goes off
+			s.resetBoard();
+		}
+		return false;
+	}
+
+	private void emitPoint(){
+		//Emits the point just scored (the ball is off the field) and the
+		//end of the match if it was the last one
+		GameState s = state;
+		events.add(MatchEvents.POINT, s.ball[0]<0 ? 1 : 0, 0, s);
+		if (s.playerScores[0]==winningScore|s.playerScores[1]==winningScore){
+			events.add(MatchEvents.MATCH_END, s.playerScores[0]==winningScore ? 0 : 1, 0, s);
+		}
+	}
+
+	private boolean sweptStep(int inputs){
+		/*sweptStep(int inputs)
+		 * Plays sweptTicks updates in one step. In each the ball is swept
+		 * over that update's speed, then the paddles move and the ball
+		 * speeds up, so every contact is tested against the paddle rows
+		 * of the update it happens in and CPU paddles decide on the ball
+		 * as it is then, exactly as in sweptTicks steps of one update.
+		 * Stops after the update that ends the match.
+		 */
+		boolean done = false;
+		for (int i = 0;i<sweptTicks && !done;i++){
+			done = sweepBall(state.ballSpeed);
+			updatePaddles(inputs);
+			increaseBallSpeed();
+			state.tick++;
+		}
+		return done;
+	}
+
+	protected boolean sweepBall(double distance){
+		/*sweepBall(double distance)
+		 * Moves the ball's center distance pixels along its direction.
+		 * Instead of testing where the ball will be after the move, the
+		 * time of the first contact along the path is worked out: with a
+		 * border (the center reaching borderWidth+ballRadius or
+		 * fieldHeight-borderWidth-ballRadius) or
+		 * with the paddle the ball is moving towards (the center reaching
+		 * the paddle's column plus ballRadius while its row is on the
+		 * paddle). The ball is moved to that point, reflected with the same
+		 * rules as updateBall and the rest of the distance is swept again,
+		 * so any number of hits can happen in one step and a fast ball
+		 * can't pass through a paddle. Rows are those at the point of
+		 * contact, not those at the start of the step.
+		 * Returns whether the match is over, like updateBall.
+		 */
+		GameState s = state;
+		double[] ball = s.ball;
+		double[] paddleCenters = s.paddleCenters;
+		double top = borderWidth+ballRadius;
+		double bottom = fieldHeight-borderWidth-ballRadius;
+		double remaining = distance;
+
+		for (int contacts = 0;contacts<maxContacts && remaining > 0;contacts++){
+			double cos = s.ballCos;
+			double sin = s.ballSin;
+			//Distance to the border the ball is moving towards
+			double toBorder = Double.POSITIVE_INFINITY;
+			if (sin < 0){
+				toBorder = Math.max(0, (top-ball[1])/sin);
+			}else if (sin > 0){
+				toBorder = Math.max(0, (bottom-ball[1])/sin);
+			}
+			//Distance to the paddle the ball is moving towards, if the
+			//ball's row is on it when it gets there
+			int paddle = cos < 0 ? 0 : 1;
+			double column = paddleColumns[paddle]+ballRadius;
+			double toPaddle = Double.POSITIVE_INFINITY;
+			if ((cos < 0 && ball[0] > column) || (cos > 0 && ball[0] < column)){
+				double t = (column-ball[0])/cos;
+				double row = ball[1]+t*sin;
+				if (t <= toBorder && Math.abs(row-paddleCenters[paddle]) <= paddleLength/2){
+					toPaddle = t;
+				}
+			}
+
+			double t = Math.min(toBorder, toPaddle);
+			if (t > remaining){
+				break;
+			}
+			ball[0] += t*cos;
+			ball[1] += t*sin;
+			remaining -= t;
+			if (toPaddle <= toBorder){
+				//Same deflection law as updateBall, using the row of contact
+				double ballDeflection = (ball[1]-paddleCenters[paddle])/paddleLength;
+				if (Math.abs(ballDeflection) < paddleCenterTolerance){
+					s.setBallDirection(-s.ballDirection+Math.PI);
+				}else{
+					double m = paddle == 0
+							? (Math.PI/3-Math.PI/6)/(0.5-paddleCenterTolerance)
+							: (2*Math.PI/3-5*Math.PI/6)/(0.5-paddleCenterTolerance);
+					double b = (paddle == 0 ? Math.PI/3 : 2*Math.PI/3)-m/2;
+					double direction = m*Math.abs(ballDeflection)+b;
+					if (ballDeflection<0){
+						direction *= -1;
+					}
+					s.setBallDirection(direction);
+				}
+				if (events != null){
+					events.add(MatchEvents.PADDLE_HIT, paddle, ballDeflection, s);
+				}
+			}else{
+				s.ballDirection *= -1;
+				s.ballSin = -s.ballSin;
+				if (events != null){
+					events.add(MatchEvents.BORDER_BOUNCE, s.ballSin > 0 ? 0 : 1, 0, s);
+				}
+			}
+		}
+		//Whatever distance is left is travelled in a straight line
+		ball[0] += remaining*s.ballCos;
+		ball[1] += remaining*s.ballSin;
+
+		if ((ball[0]<0)|(ball[0]>fieldWidth)){
+			if (ball[0]<0){
+				s.playerScores[1] += 1;
+			}else{
+				s.playerScores[0] += 1;
+			}
+			if (events != null){
+				emitPoint();
+			}
+			if (s.playerScores[0]==winningScore|s.playerScores[1]==winningScore){
+				return true;
+			}
+			s.resetBoard();
+		}
+		return false;
+	}
+
+}
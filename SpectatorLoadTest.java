@@ -0,0 +1,230 @@
+package pong;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+
+public class SpectatorLoadTest {
+	/*SpectatorLoadTest:
+	 * Purpose: Measures how many spectators a SpectatorServer (see
+	 * @pong.SpectatorServer) can feed on this machine, over loopback. A
+	 * publisher thread plays a bot match (Comp vs Comp, see
+	 * @pong.EvESimulator) and publishes rate frames per second. Spectators
+	 * are connected in equal steps up to the given number and read by one
+	 * client thread with its own Selector, which checks every frame
+	 * (decodes it, see @pong.GameStateCodec) and records its latency:
+	 * from just before it was published to when it was read. A few slow
+	 * spectators connect too and never read, to show that they only cost
+	 * dropped frames: their sockets fill up and the others are fed as
+	 * before.
+	 * After each step the stats are reset, the test runs for a while and
+	 * the step is reported: frames delivered per second, frames dropped by
+	 * the server and gaps seen by the readers, latency percentiles, CPU of
+	 * the broadcaster thread (share of a core and time per frame sent)
+	 * and of the client thread. Everything runs in one process, so on few
+	 * cores the readers compete with the broadcaster for CPU.
+	 *
+	 * Includes:
+	 * void main(String[] args): Runs the test. Arguments (all optional):
+	 * viewers (2000), steps (4), secondsPerStep (3), rate (60 frames per
+	 * second), slow viewers (10)
+	 */
+
+	private static final int timeSlots = 1024; //Publishing times kept, by seq % timeSlots
+
+	private static class Reader {
+		//What a reading spectator received
+		final ByteBuffer in = ByteBuffer.allocateDirect(32*SpectatorServer.FRAME_SIZE);
+		long last = 0; //Last sequence number received
+	}
+
+	private static class Readers implements Runnable {
+		//Reads every frame sent to the spectators of the test, on its own thread
+		final Selector selector = Selector.open();
+		final ConcurrentLinkedQueue<SocketChannel> added = new ConcurrentLinkedQueue<SocketChannel>();
+		final LatencyHistogram latency = new LatencyHistogram();
+		final long[] publishedAt; //Shared with the publisher
+		final long[] publishedSeq;
+		final GameState decoded = new GameState();
+		volatile boolean running = true;
+		volatile boolean resetRequested = false;
+		volatile long frames = 0;
+		volatile long gaps = 0; //Frames missing from the sequence numbers received
+		volatile long cpuNanos = 0;
+
+		Readers(long[] publishedAt, long[] publishedSeq) throws IOException{
+			this.publishedAt = publishedAt;
+			this.publishedSeq = publishedSeq;
+		}
+
+		@Override
+		public void run(){
+			ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+			long cpuBase = threads.getCurrentThreadCpuTime();
+			try{
+				while (running){
+					selector.select(100);
+					if (resetRequested){
+						resetRequested = false;
+						latency.reset();
+						frames = 0;
+						gaps = 0;
+						cpuBase = threads.getCurrentThreadCpuTime();
+					}
+					for (SocketChannel channel = added.poll();channel != null;channel = added.poll()){
+						channel.configureBlocking(false);
+						channel.register(selector, SelectionKey.OP_READ, new Reader());
+					}
+					Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+					while (keys.hasNext()){
+						SelectionKey key = keys.next();
+						keys.remove();
+						read(key);
+					}
+					cpuNanos = threads.getCurrentThreadCpuTime()-cpuBase;
+				}
+				selector.close();
+			}catch (IOException e){
+				System.err.println("Readers: " + e);
+			}
+		}
+
+		void read(SelectionKey key) throws IOException{
+			//Reads what a spectator received and checks every whole frame
+			Reader reader = (Reader)key.attachment();
+			ByteBuffer in = reader.in;
+			SocketChannel channel = (SocketChannel)key.channel();
+			if (channel.read(in) < 0){
+				key.cancel();
+				channel.close();
+				return;
+			}
+			long now = System.nanoTime();
+			in.flip();
+			while (in.remaining() >= SpectatorServer.FRAME_SIZE){
+				int at = in.position();
+				long seq = in.getLong(at);
+				GameStateCodec.decode(in, at+8, decoded);
+				int slot = (int)(seq % timeSlots);
+				if (publishedSeq[slot] == seq){
+					latency.record(now-publishedAt[slot]);
+				}
+				if (reader.last != 0 && seq > reader.last+1){
+					gaps += seq-reader.last-1;
+				}
+				reader.last = seq;
+				frames++;
+				in.position(at+SpectatorServer.FRAME_SIZE);
+			}
+			in.compact();
+		}
+	}
+
+	public static void main(String[] args) throws IOException, InterruptedException{
+		/*main(String[] args)
+		 * Connects the spectators step by step and prints a line per step
+		 */
+		int viewers = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+		int steps = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+		int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 3;
+		final int rate = args.length > 3 ? Integer.parseInt(args[3]) : 60;
+		int slowViewers = args.length > 4 ? Integer.parseInt(args[4]) : 10;
+
+		InetAddress loopback = InetAddress.getLoopbackAddress();
+		final SpectatorServer server = new SpectatorServer(new InetSocketAddress(loopback, 0));
+		server.start();
+		InetSocketAddress address = new InetSocketAddress(loopback, server.port());
+		final long[] publishedAt = new long[timeSlots];
+		final long[] publishedSeq = new long[timeSlots];
+		final Readers readers = new Readers(publishedAt, publishedSeq);
+		Thread readerThread = new Thread(readers, "spectator-readers");
+		readerThread.setDaemon(true);
+		readerThread.start();
+
+		//Plays a bot match, GameLoop.DEFAULT_TICK_RATE/rate updates per frame
+		final AtomicBoolean publishing = new AtomicBoolean(true);
+		Thread publisher = new Thread(() -> {
+			EvESimulator simulator = new EvESimulator(MatchRunner.seededState(1));
+			int updates = Math.max(1, GameLoop.DEFAULT_TICK_RATE/rate);
+			long period = 1000000000L/rate;
+			long due = System.nanoTime();
+			long seq = 0;
+			int matches = 0;
+			while (publishing.get()){
+				for (int i = 0;i<updates;i++){
+					if (simulator.step(0)){
+						simulator.state.copyFrom(MatchRunner.seededState(++matches+1));
+					}
+				}
+				seq++;
+				int slot = (int)(seq % timeSlots);
+				publishedAt[slot] = System.nanoTime();
+				publishedSeq[slot] = seq;
+				server.publish(simulator.state, 0);
+				due += period;
+				long wait = due-System.nanoTime();
+				if (wait > 0){
+					LockSupport.parkNanos(wait);
+				}
+			}
+		}, "spectator-publisher");
+		publisher.setDaemon(true);
+		publisher.start();
+
+		ArrayList<SocketChannel> slow = new ArrayList<SocketChannel>();
+		for (int i = 0;i<slowViewers;i++){
+			SocketChannel channel = SocketChannel.open();
+			//A small window so the server's side fills up quickly
+			channel.setOption(StandardSocketOptions.SO_RCVBUF, 1024);
+			channel.connect(address);
+			slow.add(channel);
+		}
+		System.out.printf("%d frames/s of %d bytes, %d slow viewers that never read%n",
+				rate, SpectatorServer.FRAME_SIZE, slowViewers);
+		int connected = 0;
+		for (int step = 1;step<=steps;step++){
+			int target = (int)((long)viewers*step/steps);
+			for (;connected<target;connected++){
+				SocketChannel channel = SocketChannel.open(address);
+				channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+				readers.added.add(channel);
+			}
+			readers.selector.wakeup();
+			//Lets the spectators connect and the JIT settle
+			Thread.sleep(1000);
+			server.resetStats();
+			readers.resetRequested = true;
+			long start = System.nanoTime();
+			Thread.sleep(seconds*1000L);
+			double elapsed = (System.nanoTime()-start)/1e9;
+			long sent = server.framesSent();
+			LatencyHistogram l = readers.latency;
+			System.out.printf("%6d viewers: %.3e frames/s delivered (%.3e due), dropped %d, gaps %d,"
+					+ " latency p50 %.0f p99 %.0f max %.0f us, broadcaster cpu %.1f%% (%.2f us/frame),"
+					+ " readers cpu %.1f%%%n", server.viewers(), readers.frames/elapsed,
+					(double)server.framesPublished()*connected/elapsed, server.framesDropped(), readers.gaps,
+					l.percentile(50)/1e3, l.percentile(99)/1e3, l.max()/1e3,
+					server.cpuNanos()/(elapsed*1e7), sent == 0 ? 0 : server.cpuNanos()/1e3/sent,
+					readers.cpuNanos/(elapsed*1e7));
+		}
+		publishing.set(false);
+		readers.running = false;
+		server.stop();
+		for (SocketChannel channel : slow){
+			channel.close();
+		}
+	}
+
+}
@@ -0,0 +1,391 @@
+package pong;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+
+public class SpectatorServer implements Runnable {
+	/*SpectatorServer:
+	 * Interfaces: Runnable
+	 * Purpose: Broadcasts a live match to any number of spectators over
+	 * TCP. Spectators connect and receive a stream of frames, each the
+	 * state of one published update, and send nothing.
+	 * The thread playing the match calls publish, which encodes the state
+	 * once (see @pong.GameStateCodec) into the next slot of a ring of
+	 * direct buffers and wakes the broadcaster. The broadcaster, a single
+	 * thread running a Selector over every connection, sends the latest
+	 * frame to each spectator through a read-only view of its slot (the
+	 * views are shared, positioned for each write by the broadcaster), so
+	 * a whole frame is never copied per spectator and sending allocates
+	 * nothing per frame. Each send is one gathering write of the rest of a
+	 * frame that didn't fit in the socket last time followed by the
+	 * latest frame.
+	 * Backpressure: a spectator only ever has the latest frame waiting.
+	 * A frame that was partly sent is finished (the stream stays made of
+	 * whole frames), but frames published while a spectator's socket is
+	 * full are dropped for that spectator, not queued, so a slow
+	 * spectator costs at most one frame of memory and never delays the
+	 * others. The publisher never waits for the broadcaster, however
+	 * long it is held up (GC, descheduling), so the broadcaster only ever
+	 * reads one frame from the ring, the latest, which it pins: a frame
+	 * whose slot is pinned is skipped by the publisher (a gap, dropped
+	 * for every spectator). The rest of a frame that didn't fit is copied
+	 * at once into the spectator's own buffer, so a frame being finished
+	 * never points into the ring.
+	 * Frame layout (FRAME_SIZE bytes, big-endian): 0 sequence number of
+	 * the frame (long, from 1, gaps are dropped frames), 8 snapshot of the
+	 * state and the keys held (see GameStateCodec).
+	 *
+	 * Includes:
+	 * SpectatorServer(InetSocketAddress address): Opens the server on address
+	 *
+	 * void start(), void stop(): Starts the broadcaster thread, stops it
+	 * and closes every connection
+	 *
+	 * long publish(GameState state, int inputs): Broadcasts a state,
+	 * returns its sequence number. Only called by one thread.
+	 *
+	 * int port(): The port the server listens on
+	 *
+	 * Stats: viewers(), framesPublished(), framesSent(), framesDropped(),
+	 * bytesSent(), cpuNanos() (broadcaster thread), resetStats()
+	 */
+
+	public static final int DEFAULT_PORT = 4817;
+	public static final int FRAME_SIZE = 8+GameStateCodec.SIZE;
+	//Frames in the ring, a slot is rewritten ringSize frames later
+	private static final int ringSize = 256;
+
+	private static class Viewer {
+		//A connected spectator, only touched by the broadcaster
+		final SocketChannel channel;
+		final SelectionKey key;
+		long sent; //Last frame started
+		boolean partial = false; //Whether a frame is partly sent
+		//Rest of that frame, copied out of the ring (see keep). Allocated
+		//the first time a frame doesn't fit, then reused.
+		ByteBuffer rest;
+
+		Viewer(SocketChannel channel, SelectionKey key, long latest){
+			this.channel = channel;
+			this.key = key;
+			//The first frame sent is the latest one
+			sent = Math.max(latest-1, 0);
+		}
+	}
+
+	private final ServerSocketChannel server;
+	private final Selector selector;
+	private final ByteBuffer[] slots = new ByteBuffer[ringSize];
+	//Read-only view of each slot, positioned for each write by the broadcaster
+	private final ByteBuffer[] views = new ByteBuffer[ringSize];
+	private final ByteBuffer[] out = new ByteBuffer[2]; //Buffers of a gathering write
+	private final ArrayList<Viewer> viewers = new ArrayList<Viewer>();
+	private final ByteBuffer discard = ByteBuffer.allocateDirect(256); //Bytes sent by spectators
+	private volatile long latest = 0; //Last frame published, 0 if none
+	//Frame the broadcaster is reading, its slot isn't rewritten (see publish)
+	private volatile long pinned = 0;
+	private long broadcast = 0; //Last frame handed to the spectators
+	private volatile boolean running = false;
+	private Thread thread;
+
+	//Stats, written by the broadcaster only
+	private volatile int viewerCount = 0;
+	private volatile long framesSent = 0;
+	private volatile long framesDropped = 0;
+	private volatile long bytesSent = 0;
+	private volatile long cpuNanos = 0;
+	private volatile boolean resetRequested = false;
+	private volatile long publishedBase = 0;
+
+	public SpectatorServer(InetSocketAddress address) throws IOException{
+		//Constructor: InetSocketAddress address
+		//Opens the server's channel on address, port 0 for any free port
+		server = ServerSocketChannel.open();
+		server.bind(address, 1024);
+		server.configureBlocking(false);
+		selector = Selector.open();
+		server.register(selector, SelectionKey.OP_ACCEPT);
+		for (int i = 0;i<ringSize;i++){
+			slots[i] = ByteBuffer.allocateDirect(FRAME_SIZE);
+			views[i] = slots[i].asReadOnlyBuffer();
+		}
+	}
+
+	public int port() throws IOException{
+		return ((InetSocketAddress)server.getLocalAddress()).getPort();
+	}
+
+	public void start(){
+		/*start()
+		 * Starts the broadcaster, a daemon thread named "spectators"
+		 */
+		running = true;
+		thread = new Thread(this, "spectators");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	public void stop() throws InterruptedException{
+		//Stops the broadcaster and waits for it to close the connections
+		running = false;
+		selector.wakeup();
+		if (thread != null){
+			thread.join();
+		}
+	}
+
+	public long publish(GameState state, int inputs){
+		/*publish(GameState state, int inputs)
+		 * Encodes state and the keys held into the next frame and wakes
+		 * the broadcaster to send it. Returns the frame's sequence number.
+		 * Skips the number whose slot holds the frame the broadcaster is
+		 * reading, which only happens if it fell a whole ring behind.
+		 * Must always be called by the same thread.
+		 */
+		long seq = latest+1;
+		if ((seq-pinned) % ringSize == 0){
+			seq++;
+		}
+		ByteBuffer slot = slots[(int)(seq % ringSize)];
+		slot.putLong(0, seq);
+		GameStateCodec.encode(state, inputs, slot, 8);
+		latest = seq;
+		selector.wakeup();
+		return seq;
+	}
+
+	@Override
+	public void run(){
+		/*run()
+		 * The broadcaster: accepts spectators, sends them new frames and
+		 * the rest of the frames their sockets couldn't take, and closes
+		 * the connections of those that left
+		 */
+		ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		boolean cpuTime = threads.isCurrentThreadCpuTimeSupported();
+		long cpuBase = cpuTime ? threads.getCurrentThreadCpuTime() : 0;
+		try{
+			while (running){
+				selector.select();
+				if (resetRequested){
+					resetRequested = false;
+					framesSent = 0;
+					framesDropped = 0;
+					bytesSent = 0;
+					cpuBase = cpuTime ? threads.getCurrentThreadCpuTime() : 0;
+				}
+				long seq = pin();
+				Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+				while (keys.hasNext()){
+					SelectionKey key = keys.next();
+					keys.remove();
+					if (!key.isValid()){
+						continue;
+					}
+					if (key.isAcceptable()){
+						accept(seq);
+						continue;
+					}
+					Viewer v = (Viewer)key.attachment();
+					if (key.isReadable() && !drain(v)){
+						close(v);
+						continue;
+					}
+					if (key.isWritable()){
+						send(v, seq);
+					}
+				}
+				if (seq != broadcast){
+					broadcast = seq;
+					for (int i = viewers.size()-1;i>=0;i--){
+						Viewer v = viewers.get(i);
+						//Those still sending a frame go on when writable
+						if (!v.partial){
+							send(v, seq);
+						}
+					}
+				}
+				if (cpuTime){
+					cpuNanos = threads.getCurrentThreadCpuTime()-cpuBase;
+				}
+			}
+		}catch (IOException | ClosedSelectorException e){
+			System.err.println("Spectators: " + e);
+		}finally{
+			for (int i = viewers.size()-1;i>=0;i--){
+				close(viewers.get(i));
+			}
+			try{
+				selector.close();
+				server.close();
+			}catch (IOException e){
+				System.err.println("Spectators: " + e);
+			}
+		}
+	}
+
+	private long pin(){
+		/*pin()
+		 * Pins the latest frame and returns it. Once the pin is seen the
+		 * publisher leaves its slot alone, but a frame it was already
+		 * writing may be one ring ahead, so the pin only holds if the
+		 * publisher is then less than a ring ahead; else the newer latest
+		 * frame is pinned instead.
+		 */
+		long seq;
+		do{
+			seq = latest;
+			pinned = seq;
+		}while (latest-seq >= ringSize-1);
+		return seq;
+	}
+
+	private void accept(long seq) throws IOException{
+		//Accepts every spectator waiting to connect
+		for (SocketChannel channel = server.accept();channel != null;channel = server.accept()){
+			channel.configureBlocking(false);
+			channel.socket().setTcpNoDelay(true);
+			SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+			Viewer v = new Viewer(channel, key, seq);
+			key.attach(v);
+			viewers.add(v);
+			viewerCount = viewers.size();
+			if (seq != 0){
+				send(v, seq);
+			}
+		}
+	}
+
+	private boolean drain(Viewer v){
+		//Reads and ignores what the spectator sent, false if it left
+		try{
+			int read;
+			do{
+				discard.clear();
+				read = v.channel.read(discard);
+			}while (read > 0);
+			return read == 0;
+		}catch (IOException e){
+			return false;
+		}
+	}
+
+	private void send(Viewer v, long seq){
+		/*send(Viewer v, long seq)
+		 * Writes the rest of the frame being sent to v, if any, then
+		 * frame seq if v doesn't have it yet, in one gathering write.
+		 * Frames between the last one started and seq are dropped. Waits
+		 * for the socket to be writable if not everything fit.
+		 */
+		int n = 0;
+		ByteBuffer rest = null;
+		if (v.partial){
+			rest = v.rest;
+			out[n++] = rest;
+		}
+		ByteBuffer next = null;
+		if (seq > v.sent){
+			next = views[(int)(seq % ringSize)];
+			next.clear();
+			out[n++] = next;
+		}
+		if (n == 0){
+			v.key.interestOps(SelectionKey.OP_READ);
+			return;
+		}
+		long written;
+		try{
+			written = v.channel.write(out, 0, n);
+		}catch (IOException e){
+			close(v);
+			return;
+		}
+		bytesSent += written;
+		if (rest != null && !rest.hasRemaining()){
+			v.partial = false;
+			framesSent++;
+		}
+		if (next != null && next.position() > 0){
+			//seq is started, the frames before it that weren't are dropped
+			framesDropped += seq-v.sent-1;
+			v.sent = seq;
+			if (next.hasRemaining()){
+				keep(v, next);
+			}else{
+				framesSent++;
+			}
+		}
+		boolean waiting = v.partial || seq > v.sent;
+		v.key.interestOps(waiting ? SelectionKey.OP_READ | SelectionKey.OP_WRITE : SelectionKey.OP_READ);
+	}
+
+	private void keep(Viewer v, ByteBuffer frame){
+		//Copies the unsent rest of frame (a view into the ring) into v's
+		//own buffer, to be finished from there. Only spectators whose
+		//socket is full ever need it.
+		if (v.rest == null){
+			v.rest = ByteBuffer.allocateDirect(FRAME_SIZE);
+		}
+		v.rest.clear();
+		v.rest.put(frame);
+		v.rest.flip();
+		v.partial = true;
+	}
+
+	private void close(Viewer v){
+		//Closes the connection of a spectator that left or failed
+		v.key.cancel();
+		try{
+			v.channel.close();
+		}catch (IOException e){
+			//Closed anyway
+		}
+		viewers.remove(v);
+		viewerCount = viewers.size();
+	}
+
+	public int viewers(){
+		return viewerCount;
+	}
+
+	public long framesPublished(){
+		return latest-publishedBase;
+	}
+
+	public long framesSent(){
+		//Frames sent whole to a spectator, summed over the spectators
+		return framesSent;
+	}
+
+	public long framesDropped(){
+		//Frames skipped because a spectator's socket was full, summed over the spectators
+		return framesDropped;
+	}
+
+	public long bytesSent(){
+		return bytesSent;
+	}
+
+	public long cpuNanos(){
+		//CPU time of the broadcaster since the stats were reset
+		return cpuNanos;
+	}
+
+	public void resetStats(){
+		//Sets the stats back to 0, done by the broadcaster when it next wakes
+		publishedBase = latest;
+		resetRequested = true;
+		selector.wakeup();
+	}
+
+}
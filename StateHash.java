@@ -0,0 +1,104 @@
+package pong;
+
+public class StateHash {
+	/*StateHash:
+	 * Purpose: Cheap hash of everything that makes up a match (the ball's
+	 * position, direction, cosine, sine and speed, the paddle centers,
+	 * the scores and the tick), to prove that two runs of the same keys
+	 * play the same match (see @pong.DesyncDetector). The hash of a state
+	 * is the sum of the exact bits of each field (raw bits for doubles)
+	 * times a constant of its own. The constants are odd, so a state
+	 * differing from another in a single field, by any amount, always
+	 * hashes differently. The multiplications don't depend on each other,
+	 * so they run in parallel and hashing costs a few nanoseconds.
+	 * A StateHash object chains the hashes of successive states, one per
+	 * update, into a running value (mixed so that every bit of it depends
+	 * on every state so far): two runs have played the same match up to an
+	 * update exactly when their running values agree, barring a collision.
+	 * Nothing is allocated.
+	 *
+	 * Includes:
+	 * static long of(GameState state), static long of(FixedSimulator match):
+	 * Hash of a single state, double or fixed point
+	 *
+	 * long update(GameState state), long update(FixedSimulator match):
+	 * Chains the hash of the state into the running value and returns it
+	 *
+	 * long value(): Running value, SEED before any update
+	 *
+	 * void reset(): Goes back to SEED
+	 */
+
+	public static final long SEED = 0x2016L;
+
+	//Constant of each field
+	private static final long BALL_X = 0xF4C75864BA57BD2DL;
+	private static final long BALL_Y = 0x845A197286E2907DL;
+	private static final long DIRECTION = 0xC3E90AE32CD14C9FL;
+	private static final long COS = 0x35E13C04AE92AE11L;
+	private static final long SIN = 0xD355C99527A0F41DL;
+	private static final long SPEED = 0x0E787986870F7725L;
+	private static final long LEFT_PADDLE = 0xE3B77A3C8BD357E3L;
+	private static final long RIGHT_PADDLE = 0x91F7D736ABC66099L;
+	private static final long SCORES = 0x9D592B0F0AB6D137L;
+	private static final long TICK = 0xA69C84E76DE4EC07L;
+
+	private long value = SEED;
+
+	public static long of(GameState state){
+		//Hash of state
+		return Double.doubleToRawLongBits(state.ball[0])*BALL_X
+				+Double.doubleToRawLongBits(state.ball[1])*BALL_Y
+				+Double.doubleToRawLongBits(state.ballDirection)*DIRECTION
+				+Double.doubleToRawLongBits(state.ballCos)*COS
+				+Double.doubleToRawLongBits(state.ballSin)*SIN
+				+Double.doubleToRawLongBits(state.ballSpeed)*SPEED
+				+Double.doubleToRawLongBits(state.paddleCenters[0])*LEFT_PADDLE
+				+Double.doubleToRawLongBits(state.paddleCenters[1])*RIGHT_PADDLE
+				+((long)state.playerScores[0] << 32 | state.playerScores[1] & 0xFFFFFFFFL)*SCORES
+				+state.tick*TICK;
+	}
+
+	public static long of(FixedSimulator match){
+		//Hash of the state of a fixed-point match
+		return match.ballX*BALL_X
+				+match.ballY*BALL_Y
+				+match.direction*DIRECTION
+				+match.cos*COS
+				+match.sin*SIN
+				+match.speed*SPEED
+				+match.paddleCenters[0]*LEFT_PADDLE
+				+match.paddleCenters[1]*RIGHT_PADDLE
+				+((long)match.playerScores[0] << 32 | match.playerScores[1] & 0xFFFFFFFFL)*SCORES
+				+match.tick*TICK;
+	}
+
+	private static long chain(long value, long hash){
+		//Mixes hash into value (the finalizer of MurmurHash3)
+		long h = value*31+hash;
+		h ^= h >>> 33;
+		h *= 0xFF51AFD7ED558CCDL;
+		h ^= h >>> 33;
+		h *= 0xC4CEB9FE1A85EC53L;
+		return h ^ h >>> 33;
+	}
+
+	public long update(GameState state){
+		//Chains the hash of state, returns the running value
+		return value = chain(value, of(state));
+	}
+
+	public long update(FixedSimulator match){
+		//Chains the hash of the fixed-point match, returns the running value
+		return value = chain(value, of(match));
+	}
+
+	public long value(){
+		return value;
+	}
+
+	public void reset(){
+		value = SEED;
+	}
+
+}
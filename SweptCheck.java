@@ -0,0 +1,192 @@
+package pong;
+
+public class SweptCheck {
+	/*SweptCheck:
+	 * Purpose: Compares the original collision rules with swept collisions
+	 * (see Simulator.sweepBall) at several step sizes. The same seeded
+	 * Comp vs Comp matches are played in each mode and for each one this
+	 * prints how fast the updates are played, how the matches end and how
+	 * often the ball went through a paddle: the ball crossed the column
+	 * where it should touch a paddle, its row at the crossing was on the
+	 * paddle, and yet it kept going.
+	 * The check fails if:
+	 * - any match with several updates per step doesn't end exactly as
+	 * with one (same scores on the same update): the step size must not
+	 * change outcomes at all;
+	 * - the share of wins of the left player or the points per match with
+	 * swept collisions differ from the original rules by more than
+	 * maxDrift standard errors. The two rules play different matches from
+	 * the same seeds, so only a difference beyond what chance gives on
+	 * that many matches is a drift;
+	 * - the ball ever goes through a paddle with swept collisions.
+	 *
+	 * Includes:
+	 * void main(String[] args): Runs the comparison, exits with status 1 if
+	 * it fails. Arguments (all optional): matches, maxTicks, seed
+	 */
+
+	static final double maxDrift = 3; //Standard errors
+
+	static class Report {
+		//What one mode did over all the matches
+		long ticks = 0;
+		long steps = 0;
+		long nanos = 0;
+		long points = 0;
+		long leftWins = 0;
+		long rightWins = 0;
+		long tunnels = 0; //Paddle crossings that weren't deflected
+		final long[] matchTicks; //Updates of each match
+		final int[] leftScores; //Final scores of each match
+		final int[] rightScores;
+
+		Report(int matches){
+			matchTicks = new long[matches];
+			leftScores = new int[matches];
+			rightScores = new int[matches];
+		}
+
+		double meanPoints(){
+			return (double)points/matchTicks.length;
+		}
+
+		double pointsVariance(){
+			//Variance of the points of a match
+			double mean = meanPoints();
+			double sum = 0;
+			for (int i = 0;i<matchTicks.length;i++){
+				double d = leftScores[i]+rightScores[i]-mean;
+				sum += d*d;
+			}
+			return sum/Math.max(1, matchTicks.length-1);
+		}
+	}
+
+	static void play(int sweptTicks, long seed, long maxTicks, Report report, int match){
+		/*play(int sweptTicks, long seed, long maxTicks, Report report, int match)
+		 * Plays one match with the given step size (0 for the original
+		 * rules) and adds it to report as its match-th match
+		 */
+		GameState state = MatchRunner.seededState(seed);
+		EvESimulator simulator = new EvESimulator(state);
+		simulator.setSweptTicks(sweptTicks);
+		GameState before = new GameState();
+		boolean done = false;
+		long start = System.nanoTime();
+		while (!done && state.tick < maxTicks){
+			before.copyFrom(state);
+			done = simulator.step(0);
+			report.steps++;
+			report.tunnels += tunnelled(before, state) ? 1 : 0;
+		}
+		report.nanos += System.nanoTime()-start;
+		report.ticks += state.tick;
+		report.matchTicks[match] = state.tick;
+		report.leftScores[match] = state.playerScores[0];
+		report.rightScores[match] = state.playerScores[1];
+		report.points += state.playerScores[0]+state.playerScores[1];
+		if (state.playerScores[0] == Simulator.winningScore){
+			report.leftWins++;
+		}else if (state.playerScores[1] == Simulator.winningScore){
+			report.rightWins++;
+		}
+	}
+
+	static boolean tunnelled(GameState before, GameState after){
+		//Whether the ball crossed a paddle's contact column towards its goal
+		//between the two states, on the paddle, without being deflected
+		if (after.ballCos != before.ballCos || after.ballSin != before.ballSin
+				|| after.playerScores[0] != before.playerScores[0]
+				|| after.playerScores[1] != before.playerScores[1]){
+			//A bounce or a point, the path isn't a straight line
+			return false;
+		}
+		int paddle = before.ballCos < 0 ? 0 : 1;
+		double column = Simulator.paddleColumns[paddle]+Simulator.ballRadius;
+		double x0 = before.ball[0];
+		double x1 = after.ball[0];
+		if (paddle == 0 ? !(x0 > column && x1 <= column) : !(x0 < column && x1 >= column)){
+			return false;
+		}
+		double row = before.ball[1]+(after.ball[1]-before.ball[1])*(column-x0)/(x1-x0);
+		return Math.abs(row-before.paddleCenters[paddle]) <= Simulator.paddleLength/2;
+	}
+
+	public static void main(String[] args){
+		/*main(String[] args)
+		 * Plays the matches with the original rules and with swept
+		 * collisions at 1, 2, 4, 8 and 16 updates per step, then checks
+		 * the outcomes
+		 */
+		int matches = args.length > 0 ? Integer.parseInt(args[0]) : 100;
+		long maxTicks = args.length > 1 ? Long.parseLong(args[1]) : MatchRunner.DEFAULT_MAX_TICKS;
+		long seed = args.length > 2 ? Long.parseLong(args[2]) : 2016;
+		int[] modes = {0, 1, 2, 4, 8, 16};
+
+		//A first pass warms up the JIT so that the timings are comparable
+		Report[] reports = new Report[modes.length];
+		for (int warmup = 0;warmup<2;warmup++){
+			for (int m = 0;m<modes.length;m++){
+				int mode = modes[m];
+				Report report = reports[m] = new Report(matches);
+				for (int i = 0;i<matches;i++){
+					play(mode, MatchRunner.matchSeed(seed, i), maxTicks, report, i);
+				}
+				if (warmup == 1){
+					System.out.printf("%-9s %.3e steps/s %.3e updates/s, %.0f updates/match,"
+							+ " %.1f points/match, wins %d-%d, through paddle %d%n",
+							mode == 0 ? "original" : "swept x" + mode,
+							report.steps/(report.nanos/1e9), report.ticks/(report.nanos/1e9),
+							(double)report.ticks/matches, (double)report.points/matches,
+							report.leftWins, report.rightWins, report.tunnels);
+				}
+			}
+		}
+
+		boolean failed = false;
+		Report original = reports[0];
+		Report swept = reports[1];
+		for (int m = 1;m<modes.length;m++){
+			Report report = reports[m];
+			for (int i = 0;i<matches;i++){
+				if (report.matchTicks[i] != swept.matchTicks[i] || report.leftScores[i] != swept.leftScores[i]
+						|| report.rightScores[i] != swept.rightScores[i]){
+					System.out.printf("FAIL: match %d ends %d-%d on update %d with swept x%d, %d-%d on update %d with x1%n",
+							i, report.leftScores[i], report.rightScores[i], report.matchTicks[i], modes[m],
+							swept.leftScores[i], swept.rightScores[i], swept.matchTicks[i]);
+					failed = true;
+					break;
+				}
+			}
+			if (report.tunnels != 0){
+				System.out.printf("FAIL: the ball went through a paddle %d times with swept x%d%n",
+						report.tunnels, modes[m]);
+				failed = true;
+			}
+		}
+
+		//Share of the decided matches won by the left player
+		long decided = original.leftWins+original.rightWins;
+		long sweptDecided = swept.leftWins+swept.rightWins;
+		double share = decided == 0 ? 0.5 : (double)original.leftWins/decided;
+		double sweptShare = sweptDecided == 0 ? 0.5 : (double)swept.leftWins/sweptDecided;
+		double pooled = (double)(original.leftWins+swept.leftWins)/Math.max(1, decided+sweptDecided);
+		double shareError = Math.sqrt(pooled*(1-pooled)*(1.0/Math.max(1, decided)+1.0/Math.max(1, sweptDecided)));
+		double pointsError = Math.sqrt((original.pointsVariance()+swept.pointsVariance())/matches);
+		double shareDrift = shareError == 0 ? 0 : Math.abs(sweptShare-share)/shareError;
+		double pointsDrift = pointsError == 0 ? 0 : Math.abs(swept.meanPoints()-original.meanPoints())/pointsError;
+		System.out.printf("swept vs original: left wins %.1f%% vs %.1f%% (%.2f standard errors), "
+				+ "%.2f vs %.2f points/match (%.2f standard errors), bound %.1f%n",
+				100*sweptShare, 100*share, shareDrift, swept.meanPoints(), original.meanPoints(),
+				pointsDrift, maxDrift);
+		if (shareDrift > maxDrift || pointsDrift > maxDrift){
+			System.out.println("FAIL: swept collisions change who wins or how many points are played");
+			failed = true;
+		}
+		if (failed){
+			System.exit(1);
+		}
+		System.out.println("OK");
+	}
+
+}
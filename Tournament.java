@@ -0,0 +1,272 @@
+package pong;
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class Tournament {
+	/*Tournament:
+	 * Purpose: Round robin between PaddleControllers (see
+	 * @pong.PaddleController), played headlessly on EvESimulators. Every
+	 * pair of controllers plays matchesPerPairing matches, swapping sides
+	 * every match. All pairings of a round start from the same seeded
+	 * state (see MatchRunner.seededState), so every controller faces the
+	 * same serves. The matches are spread over a pool of worker threads
+	 * that take the next match as they finish one, since match lengths
+	 * vary a lot, and each match's result is kept in its own slot.
+	 * Once every match is played, Elo ratings are computed from the
+	 * results in match order (an unfinished match counts as a draw), so a
+	 * tournament gives the same ratings whatever the number of threads.
+	 *
+	 * Includes:
+	 * Tournament(String[] names, int matchesPerPairing, int threads,
+	 * long seed, long maxTicks): Creates a tournament between the
+	 * controllers called names (see PaddleController.named)
+	 *
+	 * Result[] run(): Plays every match, returns their results in order
+	 *
+	 * double[] ratings(Result[] results): Elo ratings of the controllers
+	 *
+	 * String report(Result[] results, long nanos): Standings, pairings and speed
+	 *
+	 * void main(String[] args): Runs a tournament from the command line.
+	 * Arguments (all optional): controllers (comma separated),
+	 * matchesPerPairing, threads, seed, maxTicks, CSV file of every match
+	 */
+
+	public static final double INITIAL_RATING = 1500;
+	public static final double K = 16; //Largest rating change per match
+
+	public static class Result {
+		//One match of the tournament
+		public int round;
+		public int left; //Index of the left paddle's controller
+		public int right; //Index of the right paddle's controller
+		public int leftScore;
+		public int rightScore;
+		public long ticks;
+		public boolean finished; //False if stopped at maxTicks
+		public long nanos; //Time taken to play it
+
+		double leftPoints(){
+			//1 if left won, 0 if it lost, 0.5 if unfinished
+			if (!finished){
+				return 0.5;
+			}
+			return leftScore > rightScore ? 1 : 0;
+		}
+	}
+
+	private final String[] names;
+	private final int matchesPerPairing;
+	private final int threads;
+	private final long seed;
+	private final long maxTicks;
+	private final int[][] pairings; //Controller indices of each pairing
+
+	public Tournament(String[] names, int matchesPerPairing, int threads, long seed, long maxTicks){
+		//Constructor: String[] names, int matchesPerPairing, int threads, long seed, long maxTicks
+		//Creates a round robin between the controllers called names
+		if (names.length < 2 || matchesPerPairing < 1 || threads < 1 || maxTicks < 1){
+			throw new IllegalArgumentException("2 controllers, 1 match per pairing, 1 thread and maxTicks >= 1 required");
+		}
+		for (String name : names){
+			if (name.equals("keyboard")){
+				throw new IllegalArgumentException("keyboard can't play a headless tournament");
+			}
+			//Fails now rather than in the workers if a name is wrong
+			PaddleController.named(name, seed);
+		}
+		this.names = names.clone();
+		this.matchesPerPairing = matchesPerPairing;
+		this.threads = threads;
+		this.seed = seed;
+		this.maxTicks = maxTicks;
+		pairings = new int[names.length*(names.length-1)/2][];
+		int p = 0;
+		for (int a = 0;a<names.length;a++){
+			for (int b = a+1;b<names.length;b++){
+				pairings[p++] = new int[]{a, b};
+			}
+		}
+	}
+
+	public int matches(){
+		//Number of matches in the tournament
+		return pairings.length*matchesPerPairing;
+	}
+
+	public Result[] run() throws InterruptedException{
+		/*run()
+		 * Plays every match on the worker threads. Match i is round
+		 * i/pairings of pairing i%pairings, the first controller of the
+		 * pairing playing left in even rounds and right in odd ones.
+		 */
+		final Result[] results = new Result[matches()];
+		final AtomicInteger next = new AtomicInteger();
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		List<Future<?>> futures = new ArrayList<Future<?>>();
+		try{
+			for (int w = 0;w<threads;w++){
+				futures.add(pool.submit(() -> {
+					for (int i = next.getAndIncrement();i<results.length;i = next.getAndIncrement()){
+						results[i] = play(i);
+					}
+				}));
+			}
+			for (Future<?> future : futures){
+				future.get();
+			}
+			return results;
+		}catch (ExecutionException e){
+			throw new IllegalStateException("Match failed", e.getCause());
+		}finally{
+			pool.shutdownNow();
+		}
+	}
+
+	private Result play(int i){
+		//Plays match i of the tournament
+		Result result = new Result();
+		int[] pairing = pairings[i % pairings.length];
+		result.round = i/pairings.length;
+		result.left = pairing[result.round % 2];
+		result.right = pairing[1-result.round % 2];
+		long matchSeed = MatchRunner.matchSeed(seed, result.round);
+		long start = System.nanoTime();
+		GameState state = MatchRunner.seededState(matchSeed);
+		EvESimulator simulator = new EvESimulator(state, PaddleController.named(names[result.left], matchSeed+1),
+				PaddleController.named(names[result.right], matchSeed+2));
+		boolean done = false;
+		while (!done && state.tick<maxTicks){
+			done = simulator.step(0);
+		}
+		result.nanos = System.nanoTime()-start;
+		result.leftScore = state.playerScores[0];
+		result.rightScore = state.playerScores[1];
+		result.ticks = state.tick;
+		result.finished = done;
+		return result;
+	}
+
+	public double[] ratings(Result[] results){
+		/*ratings(Result[] results)
+		 * Returns the Elo rating of each controller after updating them
+		 * with every result in order, starting from INITIAL_RATING
+		 */
+		double[] ratings = new double[names.length];
+		Arrays.fill(ratings, INITIAL_RATING);
+		for (Result r : results){
+			double expected = 1/(1+Math.pow(10, (ratings[r.right]-ratings[r.left])/400));
+			double change = K*(r.leftPoints()-expected);
+			ratings[r.left] += change;
+			ratings[r.right] -= change;
+		}
+		return ratings;
+	}
+
+	public String report(Result[] results, long nanos){
+		/*report(Result[] results, long nanos)
+		 * Returns the standings (sorted by rating), the record of every
+		 * pairing and how fast the tournament was played
+		 */
+		int n = names.length;
+		final double[] ratings = ratings(results);
+		long[] wins = new long[n];
+		long[] losses = new long[n];
+		long[] draws = new long[n];
+		long[] pointsFor = new long[n];
+		long[] pointsAgainst = new long[n];
+		long[][] pairWins = new long[n][n];
+		long[][] pairTicks = new long[n][n];
+		long[][] pairMatches = new long[n][n];
+		long ticks = 0;
+		for (Result r : results){
+			ticks += r.ticks;
+			pointsFor[r.left] += r.leftScore;
+			pointsAgainst[r.left] += r.rightScore;
+			pointsFor[r.right] += r.rightScore;
+			pointsAgainst[r.right] += r.leftScore;
+			int a = Math.min(r.left, r.right);
+			int b = Math.max(r.left, r.right);
+			pairMatches[a][b]++;
+			pairTicks[a][b] += r.ticks;
+			if (!r.finished){
+				draws[r.left]++;
+				draws[r.right]++;
+			}else{
+				int winner = r.leftScore > r.rightScore ? r.left : r.right;
+				int loser = winner == r.left ? r.right : r.left;
+				wins[winner]++;
+				losses[loser]++;
+				pairWins[winner][loser]++;
+			}
+		}
+		Integer[] order = new Integer[n];
+		for (int i = 0;i<n;i++){
+			order[i] = i;
+		}
+		Arrays.sort(order, (x, y) -> Double.compare(ratings[y], ratings[x]));
+
+		StringBuilder report = new StringBuilder();
+		report.append(String.format("%-10s %7s %5s %5s %5s %9s%n", "controller", "elo", "won", "lost", "draw", "points"));
+		for (int i : order){
+			report.append(String.format("%-10s %7.1f %5d %5d %5d %4d-%-4d%n", names[i], ratings[i],
+					wins[i], losses[i], draws[i], pointsFor[i], pointsAgainst[i]));
+		}
+		report.append("pairings (wins-wins-unfinished, mean ticks):\n");
+		for (int[] pairing : pairings){
+			int a = pairing[0];
+			int b = pairing[1];
+			report.append(String.format("  %-10s vs %-10s %3d-%3d-%3d %10.0f%n", names[a], names[b],
+					pairWins[a][b], pairWins[b][a], pairMatches[a][b]-pairWins[a][b]-pairWins[b][a],
+					(double)pairTicks[a][b]/pairMatches[a][b]));
+		}
+		report.append(String.format("%d matches, %d ticks in %.3f s (%.1f matches/s, %.3e ticks/s) on %d threads%n",
+				results.length, ticks, nanos/1e9, results.length/(nanos/1e9), ticks/(nanos/1e9), threads));
+		return report.toString();
+	}
+
+	void writeCsv(Result[] results, String path) throws IOException{
+		//Writes one line per match to the file at path
+		try (PrintWriter out = new PrintWriter(new FileWriter(path))){
+			out.println("match,round,left,right,left_score,right_score,ticks,finished,micros");
+			for (int i = 0;i<results.length;i++){
+				Result r = results[i];
+				out.printf("%d,%d,%s,%s,%d,%d,%d,%b,%d%n", i, r.round, names[r.left], names[r.right],
+						r.leftScore, r.rightScore, r.ticks, r.finished, r.nanos/1000);
+			}
+		}
+	}
+
+	public static void main(String[] args) throws InterruptedException, IOException{
+		/*main(String[] args)
+		 * Plays a tournament and prints the report
+		 */
+		String[] names = args.length > 0 ? args[0].split(",")
+				: Arrays.copyOf(PaddleController.NAMES, PaddleController.NAMES.length-1);
+		int matchesPerPairing = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+		int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+		long seed = args.length > 3 ? Long.parseLong(args[3]) : 2016;
+		long maxTicks = args.length > 4 ? Long.parseLong(args[4]) : MatchRunner.DEFAULT_MAX_TICKS;
+
+		Tournament tournament = new Tournament(names, matchesPerPairing, threads, seed, maxTicks);
+		long start = System.nanoTime();
+		Result[] results = tournament.run();
+		long nanos = System.nanoTime()-start;
+		System.out.print(tournament.report(results, nanos));
+		if (args.length > 5){
+			tournament.writeCsv(results, args[5]);
+			System.out.println("Matches written to " + args[5]);
+		}
+	}
+
+}
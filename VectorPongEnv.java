@@ -0,0 +1,169 @@
+package pong;
+
+public class VectorPongEnv {
+	/*VectorPongEnv:
+	 * Purpose: Many PongEnv environments stepped together (as a Gym
+	 * vector environment). The matches are held by a BatchSimulator (see
+	 * @pong.BatchSimulator) and the observations, rewards and done flags
+	 * of every environment are written into flat primitive arrays
+	 * allocated once, so a step over thousands of environments is a few
+	 * loops over arrays. Environment k plays exactly like a PongEnv
+	 * against the original CPU reset with episodeSeed(seed, k, e) for
+	 * its episode e.
+	 * An environment whose episode ends is reset at once: its done flag
+	 * and reward are those of the last step of the episode, and its
+	 * observation is the first one of the next episode.
+	 * The range version of step lets disjoint ranges of environments be
+	 * stepped by different threads, each environment being independent.
+	 *
+	 * Includes:
+	 * VectorPongEnv(int size, long seed, long maxSteps): Creates size
+	 * environments and starts their first episodes
+	 *
+	 * void reset(): Starts a new episode in every environment
+	 *
+	 * void step(int[] actions): Plays one step in every environment,
+	 * actions[k] being the action (PaddleController.UP etc.) of environment k
+	 *
+	 * void step(int[] actions, int[] opponentActions, int from, int to):
+	 * Plays one step in environments from to to-1, the opponents moving as
+	 * opponentActions says, or as the original CPU if it is null (self-play
+	 * passes the actions of a second policy)
+	 *
+	 * long episodeSeed(long seed, int k, long episode): Seed of an episode
+	 *
+	 * long episodes(): Episodes started by all the environments
+	 *
+	 * Fields: observations (OBSERVATION_SIZE floats per environment,
+	 * see PongEnv), rewards, dones
+	 */
+
+	public final int size; //Number of environments
+	//Observation of environment k at k*PongEnv.OBSERVATION_SIZE
+	public final float[] observations;
+	public final float[] rewards; //Reward of the last step
+	public final boolean[] dones; //Whether the last step ended an episode
+	private final BatchSimulator batch;
+	private final long seed;
+	private final long maxSteps; //Steps per episode at most, 0 for no limit
+	private final long[] episodes; //Episodes started by each environment
+	private final long[] steps; //Steps played in each current episode
+	private final int[] inputs; //Key masks of the step being played
+	//Agent's (right) score minus the opponent's (left) before the step
+	private final int[] scoreDiff;
+	//Starting state being built by resetEnv, one per thread since ranges
+	//may be stepped by different threads
+	private final ThreadLocal<GameState> start = ThreadLocal.withInitial(GameState::new);
+
+	public VectorPongEnv(int size, long seed, long maxSteps){
+		//Constructor: int size, long seed, long maxSteps
+		//Creates size environments against the original CPU, ending
+		//episodes after maxSteps steps (0 for no limit), and resets them
+		if (size <= 0 || maxSteps < 0){
+			throw new IllegalArgumentException("size must be positive and maxSteps not negative");
+		}
+		this.size = size;
+		this.seed = seed;
+		this.maxSteps = maxSteps;
+		batch = new BatchSimulator(size);
+		observations = new float[size*PongEnv.OBSERVATION_SIZE];
+		rewards = new float[size];
+		dones = new boolean[size];
+		episodes = new long[size];
+		steps = new long[size];
+		inputs = new int[size];
+		scoreDiff = new int[size];
+		reset();
+	}
+
+	public static long episodeSeed(long seed, int k, long episode){
+		//Seed of episode (0 for the first) of environment k
+		return MatchRunner.matchSeed(seed+episode*0xC2B2AE3D27D4EB4FL, k);
+	}
+
+	public void reset(){
+		/*reset()
+		 * Starts the next episode of every environment
+		 */
+		for (int k = 0;k<size;k++){
+			resetEnv(k);
+			rewards[k] = 0;
+			dones[k] = false;
+		}
+	}
+
+	private void resetEnv(int k){
+		//Starts the next episode of environment k and observes it
+		batch.load(k, MatchRunner.seededState(episodeSeed(seed, k, episodes[k]), start.get()));
+		episodes[k]++;
+		steps[k] = 0;
+		observe(k);
+	}
+
+	public void step(int[] actions){
+		//Plays one step in every environment against the original CPU
+		step(actions, null, 0, size);
+	}
+
+	public void step(int[] actions, int[] opponentActions, int from, int to){
+		/*step(int[] actions, int[] opponentActions, int from, int to)
+		 * Plays one step in environments from to to-1, the agent of
+		 * environment k playing actions[k] and its opponent
+		 * opponentActions[k], or the move of the original CPU if
+		 * opponentActions is null. Writes the observations, rewards and
+		 * done flags of those environments and resets those whose
+		 * episode ended.
+		 */
+		final double half = Simulator.paddleLength/2;
+		for (int k = from;k<to;k++){
+			int opponent;
+			if (opponentActions != null){
+				opponent = opponentActions[k];
+			}else{
+				//LookaheadController.move on the left paddle
+				double predicted = batch.ballY[k]+10*batch.ballSpeed[k]*batch.ballSin[k];
+				double center = batch.leftPaddle[k];
+				opponent = predicted<center-half ? PaddleController.UP
+						: predicted>center+half ? PaddleController.DOWN : PaddleController.STAY;
+			}
+			inputs[k] = PongEnv.keys(actions[k], Simulator.UP, Simulator.DOWN)
+					| PongEnv.keys(opponent, Simulator.W, Simulator.S);
+			scoreDiff[k] = batch.rightScore[k]-batch.leftScore[k];
+		}
+		batch.step(inputs, from, to);
+		for (int k = from;k<to;k++){
+			rewards[k] = batch.rightScore[k]-batch.leftScore[k]-scoreDiff[k];
+			steps[k]++;
+			boolean done = batch.done[k] || (maxSteps != 0 && steps[k] >= maxSteps);
+			dones[k] = done;
+			if (done){
+				resetEnv(k);
+			}else{
+				observe(k);
+			}
+		}
+	}
+
+	private void observe(int k){
+		//Writes the observation of environment k, as PongEnv.observe does
+		int at = k*PongEnv.OBSERVATION_SIZE;
+		float[] out = observations;
+		out[at] = (float)(batch.ballX[k]/Simulator.fieldWidth);
+		out[at+1] = (float)(batch.ballY[k]/Simulator.fieldHeight);
+		out[at+2] = (float)batch.ballCos[k];
+		out[at+3] = (float)batch.ballSin[k];
+		out[at+4] = (float)(batch.ballSpeed[k]/Simulator.maxBallSpeed);
+		out[at+5] = (float)(batch.rightPaddle[k]/Simulator.fieldHeight);
+		out[at+6] = (float)(batch.leftPaddle[k]/Simulator.fieldHeight);
+	}
+
+	public long episodes(){
+		//Episodes started by all the environments
+		long total = 0;
+		for (int k = 0;k<size;k++){
+			total += episodes[k];
+		}
+		return total;
+	}
+
+}
@@ -0,0 +1,184 @@
+package pong;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+
+public class AllocationCheck {
+	/*AllocationCheck:
+	 * Purpose: Verifies that the game loop doesn't allocate once it is
+	 * running. Each tick path is warmed up and then run for 100k ticks
+	 * while the bytes allocated by the current thread are counted
+	 * (com.sun.management.ThreadMXBean). Any tick path allocating is
+	 * reported and the check exits with status 1.
+	 * The repaint of each panel is measured the same way and reported,
+	 * but only the game's own code is held to zero: Java2D may allocate
+	 * internally while drawing text.
+	 *
+	 * Run with: java -Djava.awt.headless=true -cp target/benchmarks.jar pong.AllocationCheck
+	 *
+	 * Includes:
+	 * void main(String[] args): Runs every check
+	 */
+
+	private static final int TICKS = 100000;
+
+	private static final com.sun.management.ThreadMXBean threads =
+			(com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+
+	interface Tick {
+		void run();
+	}
+
+	static long allocated(Tick tick){
+		//Returns the bytes allocated by TICKS calls of tick after a warm up
+		for (int i = 0;i<TICKS;i++){
+			tick.run();
+		}
+		long id = Thread.currentThread().getId();
+		//Cost of reading the counter itself
+		long overhead = -threads.getThreadAllocatedBytes(id)+threads.getThreadAllocatedBytes(id);
+		long before = threads.getThreadAllocatedBytes(id);
+		for (int i = 0;i<TICKS;i++){
+			tick.run();
+		}
+		return Math.max(0, threads.getThreadAllocatedBytes(id)-before-overhead);
+	}
+
+	public static void main(String[] args){
+		/*main(String[] args)
+		 * Measures every tick path and repaint, exits with status 1
+		 * if any tick path allocated.
+		 */
+		threads.setThreadAllocatedMemoryEnabled(true);
+		boolean failed = false;
+
+		final Simulator pvp = new Simulator();
+		final Simulator pve = new PvESimulator();
+		final Simulator eve = new EvESimulator();
+		final GameState fresh = new GameState();
+		final BatchSimulator batch = new BatchSimulator(64);
+		final int[] inputs = new int[batch.size];
+		final PvPPanel panel = new PvPPanel();
+		final int[] tick = {0};
+		final ByteBuffer snapshot = ByteBuffer.allocate(GameStateCodec.SIZE);
+		final GameState decoded = new GameState();
+		final Simulator emitting = new EvESimulator();
+		//A small buffer so that batches are handed to the consumer often
+		final MatchEvents events = new MatchEvents(64);
+		events.addConsumer(new MatchStats());
+		emitting.setEvents(events);
+		final MultiBallSimulator multi = new MultiBallSimulator(100, 3, true);
+		multi.setWinningScore(0);
+		final FixedSimulator fixed = new FixedSimulator();
+		final Simulator hashed = new Simulator();
+		final StateHash hash = new StateHash();
+		//Short episodes so that environments are reset often
+		final VectorPongEnv env = new VectorPongEnv(64, 2016, 50);
+		final int[] actions = new int[env.size];
+
+		String[] names = {"Simulator.step", "PvESimulator.step", "EvESimulator.step",
+				"BatchSimulator.step (64 matches)", "PvPPanel.update",
+				"GameStateCodec encode+decode", "EvESimulator.step + MatchStats",
+				"MultiBallSimulator.step (100)", "FixedSimulator.step",
+				"Simulator.step + StateHash", "VectorPongEnv.step (64 envs)"};
+		Tick[] ticks = {
+			() -> {
+				if (pvp.step(BatchBenchmark.inputsFor(0, tick[0]++))){
+					pvp.state.copyFrom(fresh);
+				}
+			},
+			() -> {
+				if (pve.step(BatchBenchmark.inputsFor(1, tick[0]++))){
+					pve.state.copyFrom(fresh);
+				}
+			},
+			() -> {
+				if (eve.step(0)){
+					eve.state.copyFrom(fresh);
+				}
+			},
+			() -> {
+				for (int k = 0;k<batch.size;k++){
+					inputs[k] = BatchBenchmark.inputsFor(k, tick[0]);
+					if (batch.done[k]){
+						batch.load(k, fresh);
+					}
+				}
+				tick[0]++;
+				batch.step(inputs);
+			},
+			() -> {
+				panel.keysPressed[0] = (tick[0]++ & 512) != 0;
+				if (panel.update()){
+					panel.state.copyFrom(fresh);
+				}
+			},
+			() -> {
+				GameStateCodec.encode(pvp.state, tick[0]++ & 15, snapshot, 0);
+				GameStateCodec.decode(snapshot, 0, decoded);
+			},
+			() -> {
+				if (emitting.step(0)){
+					emitting.state.copyFrom(fresh);
+				}
+			},
+			() -> multi.step(BatchBenchmark.inputsFor(0, tick[0]++)),
+			() -> {
+				if (fixed.step(BatchBenchmark.inputsFor(0, tick[0]++))){
+					fixed.load(fresh);
+				}
+			},
+			() -> {
+				if (hashed.step(BatchBenchmark.inputsFor(0, tick[0]++))){
+					hashed.state.copyFrom(fresh);
+				}
+				hash.update(hashed.state);
+			},
+			() -> {
+				for (int k = 0;k<env.size;k++){
+					actions[k] = BatchBenchmark.inputsFor(k, tick[0]) % 3-1;
+				}
+				tick[0]++;
+				env.step(actions);
+			},
+		};
+		for (int i = 0;i<ticks.length;i++){
+			long bytes = allocated(ticks[i]);
+			System.out.printf("%-34s %10d bytes over %d ticks%n", names[i], bytes, TICKS);
+			if (bytes != 0){
+				failed = true;
+			}
+		}
+
+		//Repaints, reported only
+		BufferedImage image = new BufferedImage(Simulator.fieldWidth, Simulator.fieldHeight, BufferedImage.TYPE_INT_RGB);
+		final Graphics2D graphics = image.createGraphics();
+		final BaseNavigationPanel base = new BaseNavigationPanel();
+		final EndScreenPanel endScreen = new EndScreenPanel();
+		base.setSize(Simulator.fieldWidth, Simulator.fieldHeight);
+		endScreen.setSize(Simulator.fieldWidth, Simulator.fieldHeight);
+		panel.setSize(Simulator.fieldWidth, Simulator.fieldHeight);
+		String[] paintNames = {"BaseNavigationPanel.paintComponent",
+				"EndScreenPanel.paintComponent", "PvPPanel.paintComponent"};
+		Tick[] paints = {
+			() -> base.paintComponent(graphics),
+			() -> endScreen.paintComponent(graphics),
+			() -> panel.paintComponent(graphics),
+		};
+		for (int i = 0;i<paints.length;i++){
+			long bytes = allocated(paints[i]);
+			System.out.printf("%-34s %10d bytes over %d paints (%.1f per paint)%n",
+					paintNames[i], bytes, TICKS, (double)bytes/TICKS);
+		}
+		graphics.dispose();
+
+		if (failed){
+			System.out.println("FAILED: the game loop allocates");
+			System.exit(1);
+		}
+		System.out.println("OK: no allocation per tick");
+	}
+
+}
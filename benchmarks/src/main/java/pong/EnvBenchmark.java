@@ -0,0 +1,77 @@
+package pong;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class EnvBenchmark {
+	/*EnvBenchmark:
+	 * Purpose: Measures one step of every environment of a training batch,
+	 * played by a VectorPongEnv (see @pong.VectorPongEnv) against the same
+	 * environments played one PongEnv at a time. The agents follow the
+	 * ball (EnvCheck.follow) and episodes never stop early, so they end
+	 * with the match and are reset as in training. Dividing environments
+	 * by the time of an operation gives the env-steps per second of one
+	 * thread; VectorPongEnv splits between threads by range. That both
+	 * play alike is checked by EnvCheck.
+	 */
+
+	@Param({"64", "4096"})
+	public int environments;
+
+	private VectorPongEnv vector;
+	private PongEnv[] scalar;
+	private long[] episodes; //Episodes started by each scalar environment
+	private int[] actions; //Actions of the vector's environments
+	private final int[] action = new int[1]; //Action of one scalar environment
+
+	@Setup
+	public void setUp(){
+		vector = new VectorPongEnv(environments, 2, 0);
+		scalar = new PongEnv[environments];
+		episodes = new long[environments];
+		actions = new int[environments];
+		for (int k = 0;k<environments;k++){
+			scalar[k] = new PongEnv(null, 0);
+			scalar[k].reset(VectorPongEnv.episodeSeed(2, k, episodes[k]++));
+		}
+	}
+
+	@Benchmark
+	public float vector(){
+		EnvCheck.follow(vector.observations, actions, 0, environments);
+		vector.step(actions);
+		return vector.rewards[0];
+	}
+
+	@Benchmark
+	public float scalar(){
+		float rewards = 0;
+		for (int k = 0;k<environments;k++){
+			PongEnv env = scalar[k];
+			EnvCheck.follow(env.observation, action, 0, 1);
+			boolean done = env.step(action[0]);
+			rewards += env.reward();
+			if (done){
+				env.reset(VectorPongEnv.episodeSeed(2, k, episodes[k]++));
+			}
+		}
+		return rewards;
+	}
+
+}
@@ -0,0 +1,57 @@
+package pong;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class FixedPointBenchmark {
+	/*FixedPointBenchmark:
+	 * Purpose: Measures one Player vs Player update of the double
+	 * Simulator against one of the fixed-point engine (see
+	 * @pong.FixedSimulator). Both play seeded matches with the keys of
+	 * BatchBenchmark.inputsFor, starting a new match when one ends.
+	 */
+
+	private final GameState fresh = MatchRunner.seededState(2016); //State of a new match
+	private Simulator reference;
+	private FixedSimulator fixed;
+
+	@Setup
+	public void setUp(){
+		reference = new Simulator();
+		reference.state.copyFrom(fresh);
+		fixed = new FixedSimulator(fresh);
+	}
+
+	@Benchmark
+	public boolean doubleStep(){
+		GameState s = reference.state;
+		if (reference.step(BatchBenchmark.inputsFor(0, s.tick))){
+			s.copyFrom(fresh);
+		}
+		return s.ballSin > 0;
+	}
+
+	@Benchmark
+	public boolean fixedStep(){
+		if (fixed.step(BatchBenchmark.inputsFor(0, fixed.tick))){
+			fixed.load(fresh);
+		}
+		return fixed.sin > 0;
+	}
+
+}
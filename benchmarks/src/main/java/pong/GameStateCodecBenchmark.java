@@ -0,0 +1,61 @@
+package pong;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class GameStateCodecBenchmark {
+	/*GameStateCodecBenchmark:
+	 * Purpose: Measures encoding and decoding a snapshot with
+	 * GameStateCodec, into a heap buffer (as ReplayWriter does) and into
+	 * a direct buffer (as a file or socket channel would use). The state
+	 * is taken from the middle of a match so no field is a default.
+	 */
+
+	@Param({"heap", "direct"})
+	public String buffer;
+
+	private final GameState state = new GameState();
+	private final GameState decoded = new GameState();
+	private ByteBuffer bytes;
+
+	@Setup
+	public void setUp(){
+		bytes = buffer.equals("heap") ? ByteBuffer.allocate(GameStateCodec.SIZE)
+				: ByteBuffer.allocateDirect(GameStateCodec.SIZE);
+		Simulator simulator = new Simulator(state);
+		for (int i = 0;i<5000;i++){
+			simulator.step(BatchBenchmark.inputsFor(0, i));
+		}
+		GameStateCodec.encode(state, Simulator.UP, bytes, 0);
+	}
+
+	@Benchmark
+	public ByteBuffer encode(){
+		GameStateCodec.encode(state, Simulator.UP, bytes, 0);
+		return bytes;
+	}
+
+	@Benchmark
+	public GameState decode(){
+		GameStateCodec.decode(bytes, 0, decoded);
+		return decoded;
+	}
+
+}
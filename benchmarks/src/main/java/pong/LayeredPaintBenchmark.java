@@ -0,0 +1,93 @@
+package pong;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+import javax.swing.JPanel;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+@State(Scope.Thread)
+public class LayeredPaintBenchmark {
+	/*LayeredPaintBenchmark:
+	 * Purpose: Compares the cost of a frame drawn by Swing's
+	 * paintComponent (the whole screen every time) with a frame drawn
+	 * the way GameCanvas does it (only the regions of the previous frame
+	 * restored from the cached static layer, then the dynamic layer).
+	 * Both draw into offscreen images so no display is needed; the final
+	 * copy of the frame to the screen is the same for both and is left out.
+	 */
+
+	@Param({"base", "pvp"})
+	public String panelName;
+
+	private JPanel panel;
+	private GameCanvas.Layers layers;
+	private BufferedImage frame;
+	private BufferedImage staticLayer;
+	private Graphics2D graphics;
+	private final Rectangle[] regions = new Rectangle[GameCanvas.MAX_REGIONS];
+	private int regionCount = 0;
+
+	@Setup
+	public void setUp(){
+		if (panelName.equals("base")){
+			panel = new BaseNavigationPanel();
+		}else{
+			panel = new PvPPanel();
+		}
+		panel.setSize(Simulator.fieldWidth, Simulator.fieldHeight);
+		layers = (GameCanvas.Layers)panel;
+		for (int i = 0;i<regions.length;i++){
+			regions[i] = new Rectangle();
+		}
+		staticLayer = new BufferedImage(Simulator.fieldWidth, Simulator.fieldHeight, BufferedImage.TYPE_INT_RGB);
+		Graphics2D g = staticLayer.createGraphics();
+		g.setColor(Color.white);
+		g.fillRect(0, 0, Simulator.fieldWidth, Simulator.fieldHeight);
+		g.setColor(Color.black);
+		layers.paintStatic(g);
+		g.dispose();
+		frame = new BufferedImage(Simulator.fieldWidth, Simulator.fieldHeight, BufferedImage.TYPE_INT_RGB);
+		graphics = frame.createGraphics();
+		graphics.drawImage(staticLayer, 0, 0, null);
+	}
+
+	@TearDown
+	public void tearDown(){
+		graphics.dispose();
+	}
+
+	@Benchmark
+	public void fullRepaint(){
+		if (panel instanceof PvPPanel){
+			((PvPPanel)panel).paintComponent(graphics);
+		}else{
+			((BaseNavigationPanel)panel).paintComponent(graphics);
+		}
+	}
+
+	@Benchmark
+	public int layered(){
+		regionCount = GameCanvas.composeFrame(layers, null, graphics, staticLayer, regions, regionCount);
+		return regionCount;
+	}
+
+}
@@ -0,0 +1,66 @@
+package pong;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MultiBallBenchmark {
+	/*MultiBallBenchmark:
+	 * Purpose: Measures one update of a multi-ball match (see
+	 * @pong.MultiBallSimulator) as the number of balls grows from 1 to
+	 * 100k, with and without balls bouncing off each other. The balls
+	 * are placed at random and the match never ends. So that the field
+	 * stays as crowded at every count, the balls get smaller as there
+	 * are more of them (see MultiBallSimulator.radiusFor), covering at
+	 * most a tenth of the field together. Time per ball should stay
+	 * about the same as the count grows if the broadphase keeps the
+	 * collisions linear.
+	 */
+
+	@Param({"1", "10", "100", "1000", "10000", "100000"})
+	public int balls;
+
+	@Param({"true", "false"})
+	public boolean collisions;
+
+	private MultiBallSimulator simulator;
+	private int inputs = 0;
+
+	@Setup
+	public void setUp(){
+		double radius = MultiBallSimulator.radiusFor(balls);
+		simulator = new MultiBallSimulator(balls, radius, collisions);
+		simulator.setWinningScore(0);
+		SplittableRandom random = new SplittableRandom(2016);
+		double margin = Simulator.borderWidth+radius;
+		for (int i = 0;i<balls;i++){
+			simulator.place(i, random.nextDouble()*Simulator.fieldWidth,
+					margin+random.nextDouble()*(Simulator.fieldHeight-2*margin),
+					random.nextDouble()*2*Math.PI, Simulator.startBallSpeed);
+		}
+	}
+
+	@Benchmark
+	public boolean step(){
+		//Moves the paddles up and down in turn
+		inputs = (simulator.tick & 64) == 0 ? Simulator.UP | Simulator.W : Simulator.DOWN | Simulator.S;
+		return simulator.step(inputs);
+	}
+
+}
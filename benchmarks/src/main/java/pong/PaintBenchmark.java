@@ -0,0 +1,72 @@
+package pong;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+import javax.swing.JPanel;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+@State(Scope.Thread)
+public class PaintBenchmark {
+	/*PaintBenchmark:
+	 * Purpose: Measures paintComponent of each panel drawing into an
+	 * offscreen image the size of the field, i.e. the work done for every repaint
+	 * of the frame without depending on a display.
+	 */
+
+	@Param({"base", "endscreen", "pvp", "pve"})
+	public String panelName;
+
+	private JPanel panel;
+	private BufferedImage image;
+	private Graphics2D graphics;
+
+	@Setup
+	public void setUp(){
+		if (panelName.equals("base")){
+			panel = new BaseNavigationPanel();
+		}else if (panelName.equals("endscreen")){
+			panel = new EndScreenPanel();
+		}else if (panelName.equals("pvp")){
+			panel = new PvPPanel();
+		}else{
+			panel = new PvEPanel();
+		}
+		panel.setSize(Simulator.fieldWidth, Simulator.fieldHeight);
+		image = new BufferedImage(Simulator.fieldWidth, Simulator.fieldHeight, BufferedImage.TYPE_INT_RGB);
+		graphics = image.createGraphics();
+	}
+
+	@TearDown
+	public void tearDown(){
+		graphics.dispose();
+	}
+
+	@Benchmark
+	public void paint(){
+		if (panel instanceof PvPPanel){
+			((PvPPanel)panel).paintComponent(graphics);
+		}else if (panel instanceof BaseNavigationPanel){
+			((BaseNavigationPanel)panel).paintComponent(graphics);
+		}else{
+			((EndScreenPanel)panel).paintComponent(graphics);
+		}
+	}
+
+}
@@ -0,0 +1,79 @@
+package pong;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class RollbackBenchmark {
+	/*RollbackBenchmark:
+	 * Purpose: Measures RollbackSession. Each operation plays depth frames
+	 * before the remote keys of any of them are known, then receives them.
+	 * In rollback the remote keys always differ from the prediction, so
+	 * the state is restored to the first of those frames and all depth
+	 * frames are played again. In predicted the prediction was right and
+	 * nothing is played again, so the difference between the two is the
+	 * cost of one rollback of depth frames.
+	 * A new session is created whenever a match ends, which is the only
+	 * allocation measured by -prof gc.
+	 */
+
+	@Param({"1", "10", "30"})
+	public int depth;
+
+	private RollbackSession session;
+	private int op = 0;
+
+	@Setup
+	public void setUp(){
+		newSession();
+	}
+
+	private void newSession(){
+		session = new RollbackSession(new Simulator(), 0, 32);
+	}
+
+	private void play(boolean mispredict){
+		if (session.isOver()){
+			newSession();
+		}
+		op++;
+		long first = session.frame();
+		for (int i = 0;i<depth && !session.isOver();i++){
+			session.advance(BatchBenchmark.inputsFor(0, first+i));
+		}
+		//Alternates the remote keys so they never match the prediction
+		int remote = mispredict && (op & 1) == 0 ? Simulator.UP : Simulator.DOWN;
+		for (long f = first;f<session.frame();f++){
+			session.addRemoteInput(f, remote);
+		}
+		session.synchronize();
+	}
+
+	@Benchmark
+	public GameState rollback(){
+		play(true);
+		return session.state();
+	}
+
+	@Benchmark
+	public GameState predicted(){
+		play(false);
+		return session.state();
+	}
+
+}
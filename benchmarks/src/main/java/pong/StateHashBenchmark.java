@@ -0,0 +1,58 @@
+package pong;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class StateHashBenchmark {
+	/*StateHashBenchmark:
+	 * Purpose: Measures what hashing every update costs (see
+	 * @pong.StateHash): one Player vs Player update alone against one
+	 * update followed by chaining the hash of its state. Both play seeded
+	 * matches with the keys of BatchBenchmark.inputsFor, starting a new
+	 * match when one ends.
+	 */
+
+	private final GameState fresh = MatchRunner.seededState(2016); //State of a new match
+	private Simulator simulator;
+	private final StateHash hash = new StateHash();
+
+	@Setup
+	public void setUp(){
+		simulator = new Simulator();
+		simulator.state.copyFrom(fresh);
+	}
+
+	@Benchmark
+	public boolean step(){
+		GameState s = simulator.state;
+		if (simulator.step(BatchBenchmark.inputsFor(0, s.tick))){
+			s.copyFrom(fresh);
+		}
+		return s.ballSin > 0;
+	}
+
+	@Benchmark
+	public long stepAndHash(){
+		GameState s = simulator.state;
+		if (simulator.step(BatchBenchmark.inputsFor(0, s.tick))){
+			s.copyFrom(fresh);
+		}
+		return hash.update(s);
+	}
+
+}
@@ -0,0 +1,64 @@
+package pong;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+@State(Scope.Thread)
+public class TickBenchmark {
+	/*TickBenchmark:
+	 * Purpose: Measures a full frame of the game as done by
+	 * Pong.update and Pong.render: the active panel is updated and then
+	 * repainted. Pong itself needs a JFrame, which can't be created
+	 * without a display, so the repaint is done into an offscreen
+	 * image instead. When a match ends it is started again so every
+	 * call is a gameplay frame.
+	 */
+
+	@Param({"pvp", "pve"})
+	public String mode;
+
+	private final GameState fresh = new GameState(); //State of a new match
+	private PvPPanel panel;
+	private BufferedImage image;
+	private Graphics2D graphics;
+
+	@Setup
+	public void setUp(){
+		panel = mode.equals("pvp") ? new PvPPanel() : new PvEPanel();
+		panel.setSize(Simulator.fieldWidth, Simulator.fieldHeight);
+		image = new BufferedImage(Simulator.fieldWidth, Simulator.fieldHeight, BufferedImage.TYPE_INT_RGB);
+		graphics = image.createGraphics();
+	}
+
+	@TearDown
+	public void tearDown(){
+		graphics.dispose();
+	}
+
+	@Benchmark
+	public void tick(){
+		if (panel.update()){
+			panel.state.copyFrom(fresh);
+		}
+		panel.paintComponent(graphics);
+	}
+
+}
@@ -0,0 +1,64 @@
+package pong;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class UpdateBallBenchmark {
+	/*UpdateBallBenchmark:
+	 * Purpose: Measures Simulator.updateBall in each of its collision
+	 * regimes. Before every call the state is set back to a position
+	 * where the ball's next move takes the wanted path:
+	 * free - the ball crosses the middle of the field
+	 * leftPaddle / rightPaddle - the ball is deflected by a paddle
+	 * wall - the ball is reflected by the upper border
+	 * score - the ball leaves the field, a point is scored and the
+	 * board is reset
+	 */
+
+	@Param({"free", "leftPaddle", "rightPaddle", "wall", "score"})
+	public String regime;
+
+	private final GameState start = new GameState(); //State restored before each call
+	private Simulator simulator;
+
+	@Setup
+	public void setUp(){
+		if (regime.equals("leftPaddle")){
+			start.ball[0] = 27;
+			start.setBallDirection(Math.PI);
+		}else if (regime.equals("rightPaddle")){
+			start.ball[0] = 777;
+			start.setBallDirection(0);
+		}else if (regime.equals("wall")){
+			start.ball[1] = 14;
+			start.setBallDirection(-Math.PI/4);
+		}else if (regime.equals("score")){
+			start.ball[0] = 1;
+			start.setBallDirection(Math.PI);
+		}
+		simulator = new Simulator();
+	}
+
+	@Benchmark
+	public boolean updateBall(){
+		simulator.state.copyFrom(start);
+		return simulator.updateBall();
+	}
+
+}
@@ -0,0 +1,55 @@
+package pong;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class UpdatePaddlesBenchmark {
+	/*UpdatePaddlesBenchmark:
+	 * Purpose: Measures the paddle update of the Player vs Player mode
+	 * (keys only) and of the Player vs Comp mode (keys and CPU).
+	 * The ball is heading up towards the CPU's paddle so that the
+	 * CPU has to move every update.
+	 */
+
+	private final GameState start = new GameState(); //State restored before each call
+	private Simulator pvp;
+	private PvESimulator pve;
+
+	@Setup
+	public void setUp(){
+		start.ball[1] = 100;
+		start.setBallDirection(-Math.PI/4);
+		pvp = new Simulator();
+		pve = new PvESimulator();
+	}
+
+	@Benchmark
+	public double pvpPaddles(){
+		pvp.state.copyFrom(start);
+		pvp.updatePaddles(Simulator.UP | Simulator.S);
+		return pvp.state.paddleCenters[1];
+	}
+
+	@Benchmark
+	public double pvePaddles(){
+		pve.state.copyFrom(start);
+		pve.updatePaddles(Simulator.UP);
+		return pve.state.paddleCenters[1];
+	}
+
+}